@@ -0,0 +1,327 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Contains the verified state of an session with a device. The state is 
+ * persisted per key (e.g. the name of the serial port) in a properties file, 
+ * so it survives restarts of the application. With a verified state the 
+ * {@link de.sitec_systems.jmoduleconnect.at.AtImpl} and the 
+ * {@link de.sitec_systems.jmoduleconnect.file.ModuleFileManager} can attach 
+ * warm to the device. The warm attach skips the handshakes and performs only 
+ * a single liveness probe, that also checks the IMEI of the device. The IMEI
+ * confirmed by the AT interface is kept for the session, so the file manager
+ * needs no own probe.
+ * <p>
+ * If the device was reconfigured outside of this framework then the state must
+ * be discarded with {@link #invalidate() }.
+ * </p>
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AttachState
+{
+    private final File storeFile;
+    private final String key;
+    private String imei;
+    private boolean atVerified;
+    private boolean errorCodes;
+    private boolean echo;
+    private boolean fileManagerVerified;
+    private String confirmedImei;
+    
+    private static final Object STORE_LOCK = new Object();
+    private static final String PROPERTY_IMEI = ".imei";
+    private static final String PROPERTY_AT_VERIFIED = ".at.verified";
+    private static final String PROPERTY_AT_ERROR_CODES = ".at.errorCodes";
+    private static final String PROPERTY_AT_ECHO = ".at.echo";
+    private static final String PROPERTY_FILE_VERIFIED = ".file.verified";
+
+    private AttachState(final File storeFile, final String key)
+    {
+        this.storeFile = storeFile;
+        this.key = key;
+    }
+    
+    /**
+     * Loads the state for the key from the properties file. If the file or the
+     * key dont exist then the state is not verified.
+     * @param storeFile The properties file for persisting the states. One file
+     *        can contain the states of many devices
+     * @param key The key of the device like the name of the serial port
+     * @return The loaded state
+     * @throws IOException An error at reading the properties file
+     * @throws IllegalArgumentException If an input value is <code>null</code>
+     * @since 1.6
+     */
+    public static final AttachState loadAttachState(final File storeFile
+            , final String key) throws IOException
+    {
+        if(storeFile == null || key == null)
+        {
+            throw new IllegalArgumentException("The input values cant be null");
+        }
+        
+        final AttachState attachState = new AttachState(storeFile, key);
+        
+        synchronized(STORE_LOCK)
+        {
+            final Properties properties = readProperties(storeFile);
+            attachState.imei = properties.getProperty(key + PROPERTY_IMEI);
+            attachState.atVerified = Boolean.parseBoolean(properties.getProperty(key 
+                    + PROPERTY_AT_VERIFIED));
+            attachState.errorCodes = Boolean.parseBoolean(properties.getProperty(key 
+                    + PROPERTY_AT_ERROR_CODES));
+            attachState.echo = Boolean.parseBoolean(properties.getProperty(key 
+                    + PROPERTY_AT_ECHO));
+            attachState.fileManagerVerified = Boolean.parseBoolean(properties.getProperty(key 
+                    + PROPERTY_FILE_VERIFIED));
+        }
+        
+        return attachState;
+    }
+    
+    private static Properties readProperties(final File storeFile) throws IOException
+    {
+        final Properties properties = new Properties();
+        if(storeFile.exists())
+        {
+            try(final InputStream is = new FileInputStream(storeFile))
+            {
+                properties.load(is);
+            }
+        }
+        
+        return properties;
+    }
+    
+    /**
+     * Writes the state to the properties file. The states of other keys in the
+     * file will be preserved.
+     * @throws IOException An error at writing the properties file
+     * @since 1.6
+     */
+    private void store() throws IOException
+    {
+        synchronized(STORE_LOCK)
+        {
+            final Properties properties = readProperties(storeFile);
+            if(imei != null)
+            {
+                properties.setProperty(key + PROPERTY_IMEI, imei);
+            }
+            else
+            {
+                properties.remove(key + PROPERTY_IMEI);
+            }
+            properties.setProperty(key + PROPERTY_AT_VERIFIED, Boolean.toString(atVerified));
+            properties.setProperty(key + PROPERTY_AT_ERROR_CODES, Boolean.toString(errorCodes));
+            properties.setProperty(key + PROPERTY_AT_ECHO, Boolean.toString(echo));
+            properties.setProperty(key + PROPERTY_FILE_VERIFIED, Boolean.toString(fileManagerVerified));
+            
+            try(final OutputStream os = new FileOutputStream(storeFile))
+            {
+                properties.store(os, "jModuleConnect attach states");
+            }
+        }
+    }
+    
+    /**
+     * Gets the key of the device.
+     * @return The key of the device
+     * @since 1.6
+     */
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * Gets the IMEI of the device at the last verification.
+     * @return The IMEI or <code>null</code> if unknown
+     * @since 1.6
+     */
+    public synchronized String getImei()
+    {
+        return imei;
+    }
+    
+    /**
+     * Gets the IMEI from the response of <code>AT+CGSN</code>.
+     * @param response The response
+     * @return The IMEI or <code>null</code> if the response contains no IMEI
+     * @since 1.6
+     */
+    public static String parseImei(final String response)
+    {
+        for(final String line: response.split("\r\n"))
+        {
+            final String trimmedLine = line.trim();
+            boolean digits = trimmedLine.length() >= 14;
+            for(int i=0; i<trimmedLine.length() && digits; i++)
+            {
+                digits = Character.isDigit(trimmedLine.charAt(i));
+            }
+            
+            if(digits)
+            {
+                return trimmedLine;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Checks if the AT interface was verified with the same modes.
+     * @param errorCodes The error code mode
+     * @param echo The echo mode
+     * @return <code>true</code> if a warm attach of the AT interface is possible
+     * @since 1.6
+     */
+    public synchronized boolean isAtVerified(final boolean errorCodes, final boolean echo)
+    {
+        return atVerified && imei != null && this.errorCodes == errorCodes 
+                && this.echo == echo;
+    }
+    
+    /**
+     * Marks the AT interface as verified and writes the state to the properties
+     * file.
+     * @param imei The IMEI of the device
+     * @param errorCodes The error code mode
+     * @param echo The echo mode
+     * @throws IOException An error at writing the properties file
+     * @since 1.6
+     */
+    public synchronized void setAtVerified(final String imei, final boolean errorCodes
+            , final boolean echo) throws IOException
+    {
+        if(this.imei != null && !this.imei.equals(imei))
+        {
+            fileManagerVerified = false;
+        }
+        this.imei = imei;
+        this.errorCodes = errorCodes;
+        this.echo = echo;
+        atVerified = true;
+        confirmedImei = imei;
+        store();
+    }
+    
+    /**
+     * Marks the IMEI as confirmed by the liveness probe of a warm attach. The 
+     * confirmation is valid for this session only and is not written to the 
+     * properties file.
+     * @param imei The IMEI read from the device
+     * @since 1.6
+     */
+    public synchronized void setImeiConfirmed(final String imei)
+    {
+        confirmedImei = imei;
+    }
+    
+    /**
+     * Checks if the AT interface has read the IMEI of the verified state from
+     * the device in this session.
+     * @return <code>true</code> - The connected device is the verified device /
+     *         <code>false</code> - The device was not checked or has an other
+     *         IMEI
+     * @since 1.6
+     */
+    public synchronized boolean isImeiConfirmed()
+    {
+        return confirmedImei != null && confirmedImei.equals(imei);
+    }
+    
+    /**
+     * Checks if the file manager was verified on the device.
+     * @return <code>true</code> if a warm attach of the file manager is possible
+     * @since 1.6
+     */
+    public synchronized boolean isFileManagerVerified()
+    {
+        return fileManagerVerified;
+    }
+    
+    /**
+     * Marks the file manager as verified and writes the state to the properties
+     * file.
+     * @throws IOException An error at writing the properties file
+     * @since 1.6
+     */
+    public synchronized void setFileManagerVerified() throws IOException
+    {
+        fileManagerVerified = true;
+        store();
+    }
+    
+    /**
+     * Discards the verified state. The next attach will be done with all 
+     * handshakes.
+     * @throws IOException An error at writing the properties file
+     * @since 1.6
+     */
+    public synchronized void invalidate() throws IOException
+    {
+        imei = null;
+        atVerified = false;
+        fileManagerVerified = false;
+        confirmedImei = null;
+        store();
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        final StringBuilder sb = new StringBuilder("AttachState{key=");
+        sb.append(key);
+        sb.append(", imei=");
+        sb.append(imei);
+        sb.append(", atVerified=");
+        sb.append(atVerified);
+        sb.append(", errorCodes=");
+        sb.append(errorCodes);
+        sb.append(", echo=");
+        sb.append(echo);
+        sb.append(", fileManagerVerified=");
+        sb.append(fileManagerVerified);
+        sb.append('}');
+        
+        return sb.toString();
+    }
+}
@@ -60,4 +60,15 @@ public interface CommHandler extends Closeable
      * @since 1.0
      */
     void send(final byte[] data) throws IOException;
+    
+    /**
+     * Sends a part of the data to the connected device. This allows sending
+     * from reused buffers without copying.
+     * @param data The data
+     * @param offset The start offset in the data
+     * @param length The count of bytes to send
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    void send(final byte[] data, final int offset, final int length) throws IOException;
 }
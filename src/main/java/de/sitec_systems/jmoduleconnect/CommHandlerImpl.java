@@ -227,6 +227,15 @@ public class CommHandlerImpl implements CommHandler
         serialOut.flush();
     }
     
+    /** {@inheritDoc } */
+    @Override
+    public void send(final byte[] data, final int offset, final int length) 
+            throws IOException
+    {
+        serialOut.write(data, offset, length);
+        serialOut.flush();
+    }
+    
     /**
      * Implements the {@link SerialPortEventListener} interface for receiving an
      * notificaten if data available on the {@link InputStream}. If data available
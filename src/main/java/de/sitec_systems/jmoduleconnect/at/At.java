@@ -48,7 +48,8 @@ public interface At extends ProtocolParser, Closeable
     void addAtListener(final AtListener atListener);
     
     /**
-     * Close an non AT mode on device with <code>+++</code>. The class 
+     * Close an non AT mode on device with <code>+++</code>. The echo mode of
+     * the AT interface will be restored afterwards. The class 
      * {@link ModuleFileManager} use this mehtod automatically.
      * @throws AtCommandFailedException The response from device contains 
      *         <code>ERROR</code>
@@ -65,7 +66,18 @@ public interface At extends ProtocolParser, Closeable
     void removeAtListener(final AtListener atListener);
     
     /**
-     * Sends a AT command to a connected device.
+     * Sets the handler of a non AT mode. If the device is not in AT mode at
+     * sending of an AT command then the handler is requested to release its
+     * mode before, else the sending fails with an {@link IOException}. The 
+     * class {@link ModuleFileManager} sets itself as handler.
+     * @param modeHandler The handler or <code>null</code> to remove the handler
+     * @since 1.6
+     */
+    void setModeHandler(final ModeHandler modeHandler);
+    
+    /**
+     * Sends a AT command to a connected device. This method is {@link Thread} 
+     * safety. Concurrent commands will be sent one after another.
      * @param atCommand The AT command. An <code>\r</code> is not necessary
      * @return The response to sent command
      * @throws AtCommandFailedException The response from device contains 
@@ -77,4 +89,19 @@ public interface At extends ProtocolParser, Closeable
      */
     String send(final String atCommand) 
             throws AtCommandFailedException, IOException;
+    
+    /**
+     * Sends a AT command to a connected device without throwing an 
+     * {@link AtCommandFailedException}. This is designed for AT commands they
+     * fail regularly like polling on an unregistered SIM. This method is 
+     * {@link Thread} safety.
+     * @param atCommand The AT command. An <code>\r</code> is not necessary
+     * @return The response to sent command with the {@link AtError} if the 
+     *         response contains <code>ERROR</code>
+     * @throws IOException The communication to the device failed
+     * @throws IllegalArgumentException The parameter atCommand is <code>null</code>
+     *         or dont start with <code>AT</code>
+     * @since 1.6
+     */
+    AtResponse trySend(final String atCommand) throws IOException;
 }
@@ -37,12 +37,16 @@ public class AtCommandFailedException extends Exception
 {
     private final Type type;
     private final short errorCode;
+    private final AtError error;
     
     /**
      * Indicates that the error code mode is off.
      * @since 1.4
      */
-    private static final short ERROR_CODE_MODE_OFF = -32768;
+    /* package */ static final short ERROR_CODE_MODE_OFF = -32768;
+    
+    private static final String CME_INDICATOR = "+CME ERROR:";
+    private static final String CMS_INDICATOR = "+CMS ERROR:";
     
     /**
      * Constructs an <code>AtCommandFailedException</code> with no
@@ -55,6 +59,7 @@ public class AtCommandFailedException extends Exception
         super();
         this.type = type;
         errorCode = ERROR_CODE_MODE_OFF;
+        error = resolveError(type, null);
     }
 
     /**
@@ -69,6 +74,7 @@ public class AtCommandFailedException extends Exception
         super(message);
         this.type = type;
         errorCode = ERROR_CODE_MODE_OFF;
+        error = resolveError(type, message);
     }
 
     /**
@@ -83,6 +89,7 @@ public class AtCommandFailedException extends Exception
         super(cause);
         this.type = type;
         errorCode = ERROR_CODE_MODE_OFF;
+        error = resolveError(type, null);
     }
     
     /**
@@ -99,6 +106,7 @@ public class AtCommandFailedException extends Exception
         super(message, cause);
         this.type = type;
         errorCode = ERROR_CODE_MODE_OFF;
+        error = resolveError(type, message);
     }
 
     /**
@@ -112,6 +120,7 @@ public class AtCommandFailedException extends Exception
     {
         this.type = type;
         this.errorCode = errorCode;
+        error = AtError.getError(type, errorCode);
     }
 
     /**
@@ -128,6 +137,7 @@ public class AtCommandFailedException extends Exception
         super(message);
         this.type = type;
         this.errorCode = errorCode;
+        error = AtError.getError(type, errorCode);
     }
 
     /**
@@ -145,6 +155,7 @@ public class AtCommandFailedException extends Exception
         super(message, cause);
         this.type = type;
         this.errorCode = errorCode;
+        error = AtError.getError(type, errorCode);
     }
 
     /**
@@ -161,6 +172,24 @@ public class AtCommandFailedException extends Exception
         super(cause);
         this.type = type;
         this.errorCode = errorCode;
+        error = AtError.getError(type, errorCode);
+    }
+    
+    /**
+     * Constructs an <code>AtCommandFailedException</code> with the
+     * specified detail message for a resolved {@link AtError}.
+     * @param error The error of the AT command
+     * @param errorCode The error code of the AT command or {@link #ERROR_CODE_MODE_OFF}
+     * @param message  The detail message
+     * @since 1.6
+     */
+    public AtCommandFailedException(final AtError error, final short errorCode
+            , final String message)
+    {
+        super(message);
+        this.type = error.getType();
+        this.errorCode = errorCode;
+        this.error = error;
     }
     
     /**
@@ -185,6 +214,74 @@ public class AtCommandFailedException extends Exception
         return errorCode;
     }
     
+    /**
+     * Gets the error of the AT command. The error is resolved from the error 
+     * code or error message without parsing of strings by the caller.
+     * @return The error of the AT command or <code>null</code> if the 
+     *         exception was created without error code and the detail message
+     *         contains no <code>+CME ERROR:</code> or <code>+CMS ERROR:</code>
+     * @since 1.6
+     */
+    public AtError getError()
+    {
+        return error;
+    }
+    
+    /**
+     * Resolves the error from a detail message like <code>AT command: AT+CPIN? 
+     * deliver +CME ERROR: SIM PIN required</code>. The details behind the 
+     * indicator are resolved like by the responses of {@link At#trySend(java.lang.String) }
+     * as error code if they are numeric else as error message.
+     * @param type The type of the AT error
+     * @param message The detail message or <code>null</code>
+     * @return The error or <code>null</code> if the type is <code>null</code> 
+     *         or the message contains no details
+     * @since 1.6
+     */
+    private static AtError resolveError(final Type type, final String message)
+    {
+        if(type == Type.ERROR)
+        {
+            return AtError.ERROR;
+        }
+        else if(type == null || message == null)
+        {
+            return null;
+        }
+        
+        final String indicator = type == Type.CME ? CME_INDICATOR : CMS_INDICATOR;
+        final int index = message.indexOf(indicator);
+        if(index < 0)
+        {
+            return null;
+        }
+        
+        final int detailsIndex = index + indicator.length();
+        int detailsEnd = detailsIndex;
+        while(detailsEnd < message.length() && message.charAt(detailsEnd) != '\r' 
+                && message.charAt(detailsEnd) != '\n')
+        {
+            detailsEnd++;
+        }
+        final String details = message.substring(detailsIndex, detailsEnd).trim();
+        
+        int errorCode = 0;
+        int digits = 0;
+        for(int i=0; i<details.length(); i++)
+        {
+            final char c = details.charAt(i);
+            if(c < '0' || c > '9' || digits == 5)
+            {
+                return AtError.getError(type, details);
+            }
+            errorCode = (errorCode * 10) + (c - '0');
+            digits++;
+        }
+        
+        return digits > 0 ? AtError.getError(type, errorCode) 
+                : AtError.getError(type, details);
+    }
+    
     /**
      * Enum for AT error types.
      * @since 1.4
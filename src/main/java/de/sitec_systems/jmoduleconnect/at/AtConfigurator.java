@@ -0,0 +1,487 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies a desired configuration to the device. The current values of all
+ * settings are read in bulk with concatenated read commands like 
+ * <code>AT+IPR?;+CNMI?;^SCFG?</code>. Only the settings they differ from the
+ * current values will be written. The writes are grouped by command in order 
+ * of the first occurrence of the command and concatenated to command lines 
+ * like <code>AT+CNMI=2,1;^SCFG="Userware/Autostart","1"</code>. This prevents
+ * unnecessary round trips and flash write cycles on the device.
+ * <p>
+ * Basic commands like <code>E</code> or <code>&amp;C</code> cant be read with
+ * <code>AT&lt;command&gt;?</code> on most devices. Their current value is 
+ * unknown, so they are always written without a read. The writing of a basic
+ * command changes only the active profile and not the flash.
+ * </p>
+ * <p>
+ * The values are compared without quotes, whitespaces and case. Parameters they
+ * are not given in the desired value are not compared. Example: The desired 
+ * value <code>2,1</code> of <code>+CNMI</code> is equal to the current value
+ * <code>2,1,0,0,1</code>.
+ * </p>
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtConfigurator
+{
+    private final At at;
+    private final Map<String, AtSetting> settings;
+    
+    private static final Logger LOG = LoggerFactory.getLogger(AtConfigurator.class);
+    private static final short MAX_COMMAND_LINE_LENGTH = 128;
+    private static final String CR_LF = "\r\n";
+
+    private AtConfigurator(final At at)
+    {
+        this.at = at;
+        settings = new LinkedHashMap<>();
+    }
+    
+    /**
+     * Creates an instance of this class.
+     * @param at The AT interface for reading and writing of the settings
+     * @return The instance of this class
+     * @throws IllegalArgumentException If the parameter at is <code>null</code>
+     * @since 1.6
+     */
+    public static final AtConfigurator createConfigurator(final At at)
+    {
+        if(at == null)
+        {
+            throw new IllegalArgumentException("The parameter at cant be null");
+        }
+        
+        return new AtConfigurator(at);
+    }
+    
+    /**
+     * Adds a desired setting. An existing setting with same command and key 
+     * will be replaced.
+     * @param setting The desired setting
+     * @throws IllegalArgumentException If the parameter setting is <code>null</code>
+     * @since 1.6
+     */
+    public void addSetting(final AtSetting setting)
+    {
+        if(setting == null)
+        {
+            throw new IllegalArgumentException("The parameter setting cant be null");
+        }
+        
+        settings.put(getSettingId(setting.getCommand(), setting.getKey()), setting);
+    }
+    
+    /**
+     * Gets all desired settings in order of adding.
+     * @return All desired settings
+     * @since 1.6
+     */
+    public List<AtSetting> getSettings()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(settings.values()));
+    }
+    
+    /**
+     * Reads the current values from device and delivers the settings they
+     * differ from the current values. Settings with unknown current value like
+     * the settings of basic commands are always part of the result.
+     * @return The settings they must be written
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    public List<AtSetting> getDifferences() throws IOException
+    {
+        final Map<String, String> currentValues = readCurrentValues();
+        final Map<String, List<AtSetting>> differences = new LinkedHashMap<>();
+        
+        for(final AtSetting setting: settings.values())
+        {
+            final String current = currentValues.get(getSettingId(setting.getCommand()
+                    , setting.getKey()));
+            
+            if(current != null && isEqual(setting.getValue(), current))
+            {
+                LOG.debug("Setting: {} is up to date", setting);
+                continue;
+            }
+            
+            List<AtSetting> group = differences.get(setting.getCommand());
+            if(group == null)
+            {
+                group = new ArrayList<>();
+                differences.put(setting.getCommand(), group);
+            }
+            group.add(setting);
+        }
+        
+        final List<AtSetting> result = new ArrayList<>();
+        for(final List<AtSetting> group: differences.values())
+        {
+            result.addAll(group);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Applies the desired settings to the device. Only settings they differ from
+     * the current values will be written.
+     * @return The written settings
+     * @throws AtCommandFailedException The writing of a setting has failed
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    public List<AtSetting> apply() throws AtCommandFailedException, IOException
+    {
+        final List<AtSetting> differences = getDifferences();
+        final List<AtSetting> batch = new ArrayList<>();
+        final StringBuilder sb = new StringBuilder("AT");
+        
+        for(final AtSetting setting: differences)
+        {
+            final int length = sb.length();
+            appendWriteCommand(sb, setting, batch.isEmpty() ? null 
+                    : batch.get(batch.size() - 1));
+            if(!batch.isEmpty() && sb.length() > MAX_COMMAND_LINE_LENGTH)
+            {
+                sb.setLength(length);
+                writeValues(batch, sb.toString());
+                batch.clear();
+                sb.setLength(2);
+                appendWriteCommand(sb, setting, null);
+            }
+            batch.add(setting);
+        }
+        
+        if(!batch.isEmpty())
+        {
+            writeValues(batch, sb.toString());
+        }
+        
+        LOG.debug("{} of {} settings written", differences.size(), settings.size());
+        
+        return differences;
+    }
+    
+    /**
+     * Appends the write command of a setting to a command line. The extended
+     * commands and the commands after an extended command are separated with
+     * <code>;</code>, the basic commands are concatenated directly.
+     * @param sb The command line
+     * @param setting The setting
+     * @param previous The previous setting in the command line or 
+     *        <code>null</code> if the setting is the first one
+     * @since 1.6
+     */
+    private static void appendWriteCommand(final StringBuilder sb
+            , final AtSetting setting, final AtSetting previous)
+    {
+        if(previous != null && (setting.isExtended() || previous.isExtended()))
+        {
+            sb.append(';');
+        }
+        setting.appendWriteCommand(sb);
+    }
+    
+    /**
+     * Writes the settings with one concatenated command line. If the command
+     * line fails then each setting will be written alone, because the device
+     * stops the command line at the failed command.
+     * @param settings The settings
+     * @param commandLine The concatenated write commands of the settings
+     * @throws AtCommandFailedException The writing of a setting has failed
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    private void writeValues(final List<AtSetting> settings, final String commandLine) 
+            throws AtCommandFailedException, IOException
+    {
+        try
+        {
+            at.send(commandLine);
+        }
+        catch (final AtCommandFailedException ex)
+        {
+            if(settings.size() == 1)
+            {
+                throw ex;
+            }
+            
+            LOG.debug("Writing of: {} has failed. Settings will be written alone"
+                    , commandLine, ex);
+            for(final AtSetting setting: settings)
+            {
+                at.send(setting.getWriteCommand());
+            }
+        }
+    }
+    
+    /**
+     * Reads the current values of all settings. The read commands are 
+     * concatenated up to a maximum length of the command line. If a 
+     * concatenated read fails then each command of it will be read alone. The
+     * basic commands are not read.
+     * @return The current values by id of setting
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    private Map<String, String> readCurrentValues() throws IOException
+    {
+        final List<String> commands = new ArrayList<>();
+        for(final AtSetting setting: settings.values())
+        {
+            if(setting.isExtended() && !commands.contains(setting.getCommand()))
+            {
+                commands.add(setting.getCommand());
+            }
+        }
+        
+        final Map<String, String> result = new HashMap<>();
+        final List<String> batch = new ArrayList<>();
+        int batchLength = 2;
+        
+        for(final String command: commands)
+        {
+            if(!batch.isEmpty() && batchLength + command.length() + 2 > MAX_COMMAND_LINE_LENGTH)
+            {
+                readValues(batch, result);
+                batch.clear();
+                batchLength = 2;
+            }
+            batch.add(command);
+            batchLength += command.length() + 2;
+        }
+        
+        if(!batch.isEmpty())
+        {
+            readValues(batch, result);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Reads the current values of the commands with one concatenated read
+     * command.
+     * @param commands The commands
+     * @param values The map for the read values
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    private void readValues(final List<String> commands, final Map<String, String> values) 
+            throws IOException
+    {
+        final StringBuilder sb = new StringBuilder("AT");
+        for(int i=0; i<commands.size(); i++)
+        {
+            if(i > 0)
+            {
+                sb.append(';');
+            }
+            sb.append(commands.get(i));
+            sb.append('?');
+        }
+        
+        try
+        {
+            parseValues(commands, at.send(sb.toString()), values);
+        }
+        catch (final AtCommandFailedException ex)
+        {
+            if(commands.size() > 1)
+            {
+                for(final String command: commands)
+                {
+                    readValues(Collections.singletonList(command), values);
+                }
+            }
+            else
+            {
+                LOG.debug("Reading of: {} has failed. Setting will be written", sb, ex);
+            }
+        }
+    }
+    
+    /**
+     * Parses the lines of a read response. Each line starts with the command 
+     * followed by <code>:</code>.
+     * @param commands The read commands
+     * @param response The response of the read commands
+     * @param values The map for the read values
+     * @since 1.6
+     */
+    /* package */ static void parseValues(final List<String> commands, final String response
+            , final Map<String, String> values)
+    {
+        for(final String line: response.split(CR_LF))
+        {
+            final String trimmedLine = line.trim();
+            for(final String command: commands)
+            {
+                if(trimmedLine.length() > command.length() 
+                        && trimmedLine.startsWith(command)
+                        && trimmedLine.charAt(command.length()) == ':')
+                {
+                    final String value = trimmedLine.substring(command.length() + 1).trim();
+                    final String[] parameters = splitParameters(value);
+                    values.put(getSettingId(command, null), value);
+                    
+                    if(parameters.length > 1)
+                    {
+                        values.put(getSettingId(command, parameters[0])
+                                , value.substring(findParameterEnd(value) + 1));
+                    }
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Finds the end of the first parameter with consideration of quotes.
+     * @param value The parameters
+     * @return The index of the first separator outside of quotes
+     * @since 1.6
+     */
+    private static int findParameterEnd(final String value)
+    {
+        boolean quoted = false;
+        for(int i=0; i<value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            if(c == '"')
+            {
+                quoted = !quoted;
+            }
+            else if(c == ',' && !quoted)
+            {
+                return i;
+            }
+        }
+        
+        return value.length();
+    }
+    
+    /**
+     * Splits the parameters of an AT command. The parameters are normalized 
+     * without quotes, whitespaces and in upper case.
+     * @param value The parameters
+     * @return The normalized parameters
+     * @since 1.6
+     */
+    private static String[] splitParameters(final String value)
+    {
+        final List<String> result = new ArrayList<>();
+        final StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        
+        for(int i=0; i<value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            if(c == '"')
+            {
+                quoted = !quoted;
+            }
+            else if(c == ',' && !quoted)
+            {
+                result.add(sb.toString());
+                sb.setLength(0);
+            }
+            else if(quoted || !Character.isWhitespace(c))
+            {
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+        result.add(sb.toString());
+        
+        return result.toArray(new String[result.size()]);
+    }
+    
+    /**
+     * Compares the desired and the current value. Parameters they are not 
+     * given in the desired value are not compared.
+     * @param desired The desired value
+     * @param current The current value
+     * @return <code>true</code> - The values are equal / <code>false</code> 
+     *         - The values are different
+     * @since 1.6
+     */
+    /* package */ static boolean isEqual(final String desired, final String current)
+    {
+        final String[] desiredParameters = splitParameters(desired);
+        final String[] currentParameters = splitParameters(current);
+        
+        if(desiredParameters.length > currentParameters.length)
+        {
+            return false;
+        }
+        
+        for(int i=0; i<desiredParameters.length; i++)
+        {
+            if(!desiredParameters[i].equals(currentParameters[i]))
+            {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Gets the id of a setting.
+     * @param command The command of the setting
+     * @param key The key of the setting or <code>null</code>
+     * @return The id of the setting
+     * @since 1.6
+     */
+    /* package */ static String getSettingId(final String command, final String key)
+    {
+        if(key == null)
+        {
+            return command;
+        }
+        else
+        {
+            return command + '|' + splitParameters(key)[0];
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import de.sitec_systems.jmoduleconnect.at.AtCommandFailedException.Type;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Defines the errors of AT commands. The CME errors are defined in 
+ * <i>3GPP TS 27.007</i> and the CMS errors in <i>3GPP TS 27.005</i>. The 
+ * errors are resolved by precomputed tables from the error codes 
+ * (<code>AT+CMEE=1</code>) or from the error messages (<code>AT+CMEE=2</code>).
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public enum AtError
+{
+    ERROR(Type.ERROR, -1, "ERROR"),
+    
+    CME_PHONE_FAILURE(Type.CME, 0, "phone failure"),
+    CME_NO_CONNECTION_TO_PHONE(Type.CME, 1, "no connection to phone"),
+    CME_PHONE_ADAPTOR_LINK_RESERVED(Type.CME, 2, "phone-adaptor link reserved"),
+    CME_OPERATION_NOT_ALLOWED(Type.CME, 3, "operation not allowed"),
+    CME_OPERATION_NOT_SUPPORTED(Type.CME, 4, "operation not supported"),
+    CME_PH_SIM_PIN_REQUIRED(Type.CME, 5, "PH-SIM PIN required"),
+    CME_PH_FSIM_PIN_REQUIRED(Type.CME, 6, "PH-FSIM PIN required"),
+    CME_PH_FSIM_PUK_REQUIRED(Type.CME, 7, "PH-FSIM PUK required"),
+    CME_SIM_NOT_INSERTED(Type.CME, 10, "SIM not inserted"),
+    CME_SIM_PIN_REQUIRED(Type.CME, 11, "SIM PIN required"),
+    CME_SIM_PUK_REQUIRED(Type.CME, 12, "SIM PUK required"),
+    CME_SIM_FAILURE(Type.CME, 13, "SIM failure"),
+    CME_SIM_BUSY(Type.CME, 14, "SIM busy"),
+    CME_SIM_WRONG(Type.CME, 15, "SIM wrong"),
+    CME_INCORRECT_PASSWORD(Type.CME, 16, "incorrect password"),
+    CME_SIM_PIN2_REQUIRED(Type.CME, 17, "SIM PIN2 required"),
+    CME_SIM_PUK2_REQUIRED(Type.CME, 18, "SIM PUK2 required"),
+    CME_MEMORY_FULL(Type.CME, 20, "memory full"),
+    CME_INVALID_INDEX(Type.CME, 21, "invalid index"),
+    CME_NOT_FOUND(Type.CME, 22, "not found"),
+    CME_MEMORY_FAILURE(Type.CME, 23, "memory failure"),
+    CME_TEXT_STRING_TOO_LONG(Type.CME, 24, "text string too long"),
+    CME_INVALID_CHARACTERS_IN_TEXT_STRING(Type.CME, 25, "invalid characters in text string"),
+    CME_DIAL_STRING_TOO_LONG(Type.CME, 26, "dial string too long"),
+    CME_INVALID_CHARACTERS_IN_DIAL_STRING(Type.CME, 27, "invalid characters in dial string"),
+    CME_NO_NETWORK_SERVICE(Type.CME, 30, "no network service"),
+    CME_NETWORK_TIMEOUT(Type.CME, 31, "network timeout"),
+    CME_NETWORK_NOT_ALLOWED(Type.CME, 32, "network not allowed - emergency calls only"),
+    CME_NETWORK_PERSONALISATION_PIN_REQUIRED(Type.CME, 40, "network personalisation PIN required"),
+    CME_NETWORK_PERSONALISATION_PUK_REQUIRED(Type.CME, 41, "network personalisation PUK required"),
+    CME_NETWORK_SUBSET_PERSONALISATION_PIN_REQUIRED(Type.CME, 42, "network subset personalisation PIN required"),
+    CME_NETWORK_SUBSET_PERSONALISATION_PUK_REQUIRED(Type.CME, 43, "network subset personalisation PUK required"),
+    CME_SERVICE_PROVIDER_PERSONALISATION_PIN_REQUIRED(Type.CME, 44, "service provider personalisation PIN required"),
+    CME_SERVICE_PROVIDER_PERSONALISATION_PUK_REQUIRED(Type.CME, 45, "service provider personalisation PUK required"),
+    CME_CORPORATE_PERSONALISATION_PIN_REQUIRED(Type.CME, 46, "corporate personalisation PIN required"),
+    CME_CORPORATE_PERSONALISATION_PUK_REQUIRED(Type.CME, 47, "corporate personalisation PUK required"),
+    CME_HIDDEN_KEY_REQUIRED(Type.CME, 48, "hidden key required"),
+    CME_EAP_METHOD_NOT_SUPPORTED(Type.CME, 49, "EAP method not supported"),
+    CME_INCORRECT_PARAMETERS(Type.CME, 50, "incorrect parameters"),
+    CME_UNKNOWN(Type.CME, 100, "unknown"),
+    CME_ILLEGAL_MS(Type.CME, 103, "Illegal MS"),
+    CME_ILLEGAL_ME(Type.CME, 106, "Illegal ME"),
+    CME_GPRS_SERVICES_NOT_ALLOWED(Type.CME, 107, "GPRS services not allowed"),
+    CME_PLMN_NOT_ALLOWED(Type.CME, 111, "PLMN not allowed"),
+    CME_LOCATION_AREA_NOT_ALLOWED(Type.CME, 112, "Location area not allowed"),
+    CME_ROAMING_NOT_ALLOWED(Type.CME, 113, "Roaming not allowed in this location area"),
+    CME_SERVICE_OPTION_NOT_SUPPORTED(Type.CME, 132, "service option not supported"),
+    CME_SERVICE_OPTION_NOT_SUBSCRIBED(Type.CME, 133, "requested service option not subscribed"),
+    CME_SERVICE_OPTION_OUT_OF_ORDER(Type.CME, 134, "service option temporarily out of order"),
+    CME_UNSPECIFIED_GPRS_ERROR(Type.CME, 148, "unspecified GPRS error"),
+    CME_PDP_AUTHENTICATION_FAILURE(Type.CME, 149, "PDP authentication failure"),
+    CME_INVALID_MOBILE_CLASS(Type.CME, 150, "invalid mobile class"),
+    
+    CMS_ME_FAILURE(Type.CMS, 300, "ME failure"),
+    CMS_SMS_SERVICE_RESERVED(Type.CMS, 301, "SMS service of ME reserved"),
+    CMS_OPERATION_NOT_ALLOWED(Type.CMS, 302, "operation not allowed"),
+    CMS_OPERATION_NOT_SUPPORTED(Type.CMS, 303, "operation not supported"),
+    CMS_INVALID_PDU_MODE_PARAMETER(Type.CMS, 304, "invalid PDU mode parameter"),
+    CMS_INVALID_TEXT_MODE_PARAMETER(Type.CMS, 305, "invalid text mode parameter"),
+    CMS_SIM_NOT_INSERTED(Type.CMS, 310, "SIM not inserted"),
+    CMS_SIM_PIN_REQUIRED(Type.CMS, 311, "SIM PIN required"),
+    CMS_PH_SIM_PIN_REQUIRED(Type.CMS, 312, "PH-SIM PIN required"),
+    CMS_SIM_FAILURE(Type.CMS, 313, "SIM failure"),
+    CMS_SIM_BUSY(Type.CMS, 314, "SIM busy"),
+    CMS_SIM_WRONG(Type.CMS, 315, "SIM wrong"),
+    CMS_SIM_PUK_REQUIRED(Type.CMS, 316, "SIM PUK required"),
+    CMS_SIM_PIN2_REQUIRED(Type.CMS, 317, "SIM PIN2 required"),
+    CMS_SIM_PUK2_REQUIRED(Type.CMS, 318, "SIM PUK2 required"),
+    CMS_MEMORY_FAILURE(Type.CMS, 320, "memory failure"),
+    CMS_INVALID_MEMORY_INDEX(Type.CMS, 321, "invalid memory index"),
+    CMS_MEMORY_FULL(Type.CMS, 322, "memory full"),
+    CMS_SMSC_ADDRESS_UNKNOWN(Type.CMS, 330, "SMSC address unknown"),
+    CMS_NO_NETWORK_SERVICE(Type.CMS, 331, "no network service"),
+    CMS_NETWORK_TIMEOUT(Type.CMS, 332, "network timeout"),
+    CMS_NO_CNMA_ACKNOWLEDGEMENT_EXPECTED(Type.CMS, 340, "no +CNMA acknowledgement expected"),
+    CMS_UNKNOWN(Type.CMS, 500, "unknown error");
+    
+    private final Type type;
+    private final short code;
+    private final String message;
+    
+    private static final AtError[] CME_CODES = new AtError[CME_INVALID_MOBILE_CLASS.code + 1];
+    private static final AtError[] CMS_CODES = new AtError[CMS_UNKNOWN.code + 1];
+    private static final Map<String, AtError> CME_MESSAGES = new HashMap<>();
+    private static final Map<String, AtError> CMS_MESSAGES = new HashMap<>();
+    
+    static
+    {
+        for(final AtError error: values())
+        {
+            if(error.type == Type.CME)
+            {
+                CME_CODES[error.code] = error;
+                CME_MESSAGES.put(error.message.toLowerCase(Locale.ROOT), error);
+            }
+            else if(error.type == Type.CMS)
+            {
+                CMS_CODES[error.code] = error;
+                CMS_MESSAGES.put(error.message.toLowerCase(Locale.ROOT), error);
+            }
+        }
+    }
+
+    private AtError(final Type type, final int code, final String message)
+    {
+        this.type = type;
+        this.code = (short)code;
+        this.message = message;
+    }
+
+    /**
+     * Gets the type of the error.
+     * @return The type of the error
+     * @since 1.6
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Gets the error code like delivered with <code>AT+CMEE=1</code>.
+     * @return The error code or <code>-1</code> for {@link #ERROR}
+     * @since 1.6
+     */
+    public short getCode()
+    {
+        return code;
+    }
+
+    /**
+     * Gets the error message like delivered with <code>AT+CMEE=2</code>.
+     * @return The error message
+     * @since 1.6
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+    
+    /**
+     * Gets the error for an error code. Unknown codes are resolved to 
+     * {@link #CME_UNKNOWN} or {@link #CMS_UNKNOWN}.
+     * @param type The type of the error
+     * @param code The error code
+     * @return The error
+     * @throws IllegalArgumentException If the parameter type is <code>null</code>
+     * @since 1.6
+     */
+    public static AtError getError(final Type type, final int code)
+    {
+        if(type == null)
+        {
+            throw new IllegalArgumentException("The parameter type cant be null");
+        }
+        
+        AtError result;
+        switch(type)
+        {
+            case CME:
+                result = (code >= 0 && code < CME_CODES.length) ? CME_CODES[code] : null;
+                return result != null ? result : CME_UNKNOWN;
+            case CMS:
+                result = (code >= 0 && code < CMS_CODES.length) ? CMS_CODES[code] : null;
+                return result != null ? result : CMS_UNKNOWN;
+            default:
+                return ERROR;
+        }
+    }
+    
+    /**
+     * Gets the error for an error message. The case of the message will be 
+     * ignored. Unknown messages are resolved to {@link #CME_UNKNOWN} or 
+     * {@link #CMS_UNKNOWN}.
+     * @param type The type of the error
+     * @param message The error message
+     * @return The error
+     * @throws IllegalArgumentException If the parameter type is <code>null</code>
+     * @since 1.6
+     */
+    public static AtError getError(final Type type, final String message)
+    {
+        if(type == null)
+        {
+            throw new IllegalArgumentException("The parameter type cant be null");
+        }
+        
+        AtError result;
+        switch(type)
+        {
+            case CME:
+                result = message != null ? CME_MESSAGES.get(message.toLowerCase(Locale.ROOT)) : null;
+                return result != null ? result : CME_UNKNOWN;
+            case CMS:
+                result = message != null ? CMS_MESSAGES.get(message.toLowerCase(Locale.ROOT)) : null;
+                return result != null ? result : CMS_UNKNOWN;
+            default:
+                return ERROR;
+        }
+    }
+}
@@ -28,12 +28,18 @@
  */
 package de.sitec_systems.jmoduleconnect.at;
 
+import de.sitec_systems.jmoduleconnect.AttachState;
 import de.sitec_systems.jmoduleconnect.CommHandler;
 import de.sitec_systems.jmoduleconnect.at.AtCommandFailedException.Type;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -44,9 +50,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Implements the {@link At} interface. <b>IMPORTANT: </b> DONT disable the echo 
- * on the module (<code>ATE0</code>). This can disrupt the communction to the 
- * module.
+ * Implements the {@link At} interface. <b>IMPORTANT: </b> DONT change the echo 
+ * on the module (<code>ATE0</code> or <code>ATE1</code>) with 
+ * {@link #send(java.lang.String) }. This can disrupt the communction to the 
+ * module. The echo mode must be selected with 
+ * {@link #createAt(de.sitec_systems.jmoduleconnect.CommHandler, boolean, boolean) }.
+ * Without echo the responses will be assigned to the AT commands in order of 
+ * sending.
  * @author sitec systems GmbH
  * @since 1.0
  */
@@ -56,11 +66,15 @@ public class AtImpl implements At
     private final AtEventNotifier eventNotifier;
     private final Thread eventNotifierThread;
     private final boolean errorCodes;
+    private final boolean echo;
+    private volatile String pendingCommand;
     private String atResponse;
     private final Lock lock = new ReentrantLock();
     private final Condition resonseAvailable = lock.newCondition();
-    private boolean atMode;
+    private final Lock commandLock = new ReentrantLock(true);
+    private volatile boolean atMode;
     private long lastCommandTime;
+    private volatile ModeHandler modeHandler;
     
     private static final Logger LOG = LoggerFactory.getLogger(AtImpl.class);
     private static final byte PROTOCOL_CHECK_WAIT_TRAILS = 100;
@@ -74,9 +88,8 @@ public class AtImpl implements At
     private static final String CR_LF = "\r\n";
     private static final String AT_START = "AT";
     private static final String AT_ERROR = "ERROR" + CR_LF;
-    private static final String AT_CME_CMS_INDICATOR = " ERROR: ";
-    private static final Pattern AT_CME_CMS_PATTERN =  Pattern.compile(Pattern.quote("+") 
-            + "CM\\p{Upper} ERROR: .*");
+    private static final String AT_CME_INDICATOR = "+CME ERROR: ";
+    private static final String AT_CMS_INDICATOR = "+CMS ERROR: ";
     private static final Pattern AT_EVENT_PATTERN = Pattern.compile("\\A(?!AT.*\\r)" 
             + CR_LF + Pattern.quote("+") + ".+" + CR_LF + "(?!" + CR_LF + "OK" 
             + ")");
@@ -85,13 +98,23 @@ public class AtImpl implements At
             + "CM(E|S) ERROR: .*)" + CR_LF +")" 
             + "|" + "(\\A(?!AT.*\\r)" + CR_LF + ".+" + CR_LF + "(" + CR_LF + "OK" 
             + ")?)", Pattern.DOTALL);
+    private static final Pattern AT_NO_ECHO_PATTERN = Pattern.compile("\\A(AT[^\r]*\r)?(" 
+            + CR_LF + ".*?)?" + CR_LF + "(OK|ERROR|NO CARRIER|NO DIALTONE|BUSY|" 
+            + Pattern.quote("+") + "CM(E|S) ERROR: [^\r]*)" + CR_LF, Pattern.DOTALL);
+    private static final Pattern AT_PREFIXED_LINE_PATTERN = Pattern.compile(CR_LF 
+            + "([+^][A-Z][A-Z0-9]*):[^\r\n]*(?=" + CR_LF + ")");
+    private static final Pattern AT_COMMAND_NAME_PATTERN = Pattern.compile(
+            "[+^][A-Za-z][A-Za-z0-9]*");
     private static final long COMMAND_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
     private static final byte AT_CONNECTING_TRAILS = 3;
+    private static final byte MODE_RELEASE_TRAILS = 3;
 
-    private AtImpl(final CommHandler commHandler, final boolean errorCodes)
+    private AtImpl(final CommHandler commHandler, final boolean errorCodes
+            , final boolean echo)
     {
         this.commHandler = commHandler;
         this.errorCodes = errorCodes;
+        this.echo = echo;
         eventNotifier = new AtEventNotifier();
         eventNotifierThread = new Thread(eventNotifier);
     }
@@ -127,21 +150,80 @@ public class AtImpl implements At
      */
     public static final At createAt(final CommHandler commHandler
             , final boolean errorCodes) throws AtCommandFailedException, IOException
+    {
+        return createAt(commHandler, errorCodes, true);
+    }
+    
+    /**
+     * Creates an instance of this class.
+     * @param commHandler The communication handler
+     * @param errorCodes <code>true</code> - Enables error codes in {@link AtCommandFailedException}
+     *        / <code>false</code> - Displays error messages in {@link AtCommandFailedException}
+     *        instead of error codes
+     * @param echo <code>true</code> - The module echoes the AT commands 
+     *        (<code>ATE1</code>) / <code>false</code> - The echo is disabled 
+     *        (<code>ATE0</code>) and the responses will be assigned to the AT 
+     *        commands in order of sending. This halves the received data
+     * @return The instance of this class
+     * @throws AtCommandFailedException The response from device contains 
+     *         <code>ERROR</code>
+     * @throws IOException The communication to the device failed
+     * @throws IllegalArgumentException If the parameter commHandler <code>null</code>
+     * @since 1.6
+     */
+    public static final At createAt(final CommHandler commHandler
+            , final boolean errorCodes, final boolean echo) 
+            throws AtCommandFailedException, IOException
+    {
+        return createAt(commHandler, errorCodes, echo, null);
+    }
+    
+    /**
+     * Creates an instance of this class. If the attach state is verified for 
+     * the same modes then the handshakes will be skipped and only a single 
+     * liveness probe is sent, that checks the IMEI of the device. Otherwise
+     * all handshakes will be done and the state will be updated.
+     * @param commHandler The communication handler
+     * @param errorCodes <code>true</code> - Enables error codes in {@link AtCommandFailedException}
+     *        / <code>false</code> - Displays error messages in {@link AtCommandFailedException}
+     *        instead of error codes
+     * @param echo <code>true</code> - The module echoes the AT commands 
+     *        (<code>ATE1</code>) / <code>false</code> - The echo is disabled 
+     *        (<code>ATE0</code>)
+     * @param attachState The state of the last session for a warm attach or 
+     *        <code>null</code> for an attach with all handshakes
+     * @return The instance of this class
+     * @throws AtCommandFailedException The response from device contains 
+     *         <code>ERROR</code>
+     * @throws IOException The communication to the device failed
+     * @throws IllegalArgumentException If the parameter commHandler <code>null</code>
+     * @since 1.6
+     */
+    public static final At createAt(final CommHandler commHandler
+            , final boolean errorCodes, final boolean echo
+            , final AttachState attachState) 
+            throws AtCommandFailedException, IOException
     {
         if(commHandler == null)
         {
             throw new IllegalArgumentException("The parameter commHandler cant be null");
         }
         
-        final AtImpl at = new AtImpl(commHandler, errorCodes);
+        final AtImpl at = new AtImpl(commHandler, errorCodes, echo);
         at.init();
         try
         {
+            if(attachState != null && attachState.isAtVerified(errorCodes, echo)
+                    && at.attachWarm(attachState))
+            {
+                return at;
+            }
+            
             for(int trails=0; trails<AT_CONNECTING_TRAILS; trails++)
             {
                 try
                 {
-                    at.send("ATE1", false);
+                    at.send(at.getEchoCommand(), false);
                     break;
                 }
                 catch (final IOException ex)
@@ -162,15 +244,71 @@ public class AtImpl implements At
                 at.send("AT+CMEE=2", false);
             }
             
+            if(attachState != null)
+            {
+                final String imei = AttachState.parseImei(at.send("AT+CGSN", false));
+                try
+                {
+                    attachState.setAtVerified(imei, errorCodes, echo);
+                }
+                catch (final IOException ex)
+                {
+                    LOG.warn("The attach state of: {} could not be stored", attachState.getKey(), ex);
+                }
+            }
+            
             return at;
         }
-        catch (final AtCommandFailedException ex)
+        catch (final AtCommandFailedException | IOException ex)
         {
             at.close();
             throw ex;
         }
     }
     
+    /**
+     * Attaches warm to the device with a single liveness probe. The probe 
+     * restores the echo and error mode and reads the IMEI in one command line.
+     * The read IMEI is confirmed in the attach state for the file manager.
+     * @param attachState The verified state of the last session
+     * @return <code>true</code> - The device is alive and has the same IMEI /
+     *         <code>false</code> - An attach with all handshakes is necessary
+     * @since 1.6
+     */
+    private boolean attachWarm(final AttachState attachState)
+    {
+        final String probe = getEchoCommand() + (errorCodes ? "+CMEE=1" : "+CMEE=2") 
+                + ";+CGSN";
+        try
+        {
+            final String imei = AttachState.parseImei(send(probe, false));
+            if(attachState.getImei().equals(imei))
+            {
+                LOG.debug("Warm attach to device with IMEI: {}", imei);
+                attachState.setImeiConfirmed(imei);
+                return true;
+            }
+            LOG.info("Device on: {} has changed from IMEI: {} to: {}", attachState.getKey()
+                    , attachState.getImei(), imei);
+        }
+        catch (final AtCommandFailedException | IOException ex)
+        {
+            LOG.debug("Warm attach has failed", ex);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Gets the AT command for the selected echo mode.
+     * @return <code>ATE1</code> or <code>ATE0</code>
+     * @since 1.6
+     */
+    private String getEchoCommand()
+    {
+        return echo ? "ATE1" : "ATE0";
+    }
+    
     private void init()
     {
         this.commHandler.addProtocolParser(this);
@@ -251,6 +389,9 @@ public class AtImpl implements At
         {
             throw new IOException("The AT command +++ failed", ex);
         }
+        
+        // The echo mode is not preserved by the non AT mode
+        send(getEchoCommand(), false);
     }
     
     /**
@@ -327,6 +468,13 @@ public class AtImpl implements At
         eventNotifier.removeAtListener(atListener);
     }
     
+    /** {@inheritDoc } */
+    @Override
+    public void setModeHandler(final ModeHandler modeHandler)
+    {
+        this.modeHandler = modeHandler;
+    }
+    
     /** {@inheritDoc } */
     @Override
     public String send(final String atCommand) 
@@ -335,6 +483,13 @@ public class AtImpl implements At
         return send(atCommand, true);
     }
     
+    /** {@inheritDoc } */
+    @Override
+    public AtResponse trySend(final String atCommand) throws IOException
+    {
+        return sendForResponse(atCommand, true);
+    }
+    
     /**
      * Sends an AT command and gets the response. The check of <code>AT+CMEE=</code>
      * can be enabled or disabled. This can prevents against a change of error 
@@ -351,7 +506,35 @@ public class AtImpl implements At
     private String send(final String atCommand, final boolean cmeeCheck) 
             throws AtCommandFailedException, IOException
     {   
-        if(!atMode)
+        final AtResponse response = sendForResponse(atCommand, cmeeCheck);
+        
+        if(!response.isSuccess())
+        {
+            throw response.toException();
+        }
+        
+        return response.getResponse();
+    }
+    
+    /**
+     * Sends an AT command and gets the response without throwing of an 
+     * {@link AtCommandFailedException}. If the device is not in AT mode then
+     * the {@link ModeHandler} is requested to release its mode before. The 
+     * mode is hold closed until the response is received, so the operations
+     * of the handler are waiting for the AT command.
+     * @param atCommand The AT command
+     * @param cmeeCheck <code>true</code> - Throws an {@link IllegalArgumentException}
+     *        if the command contains <code>AT+CMEE=</code> | <code>false</code> 
+     *        - Does not check for <code>AT+CMEE=</code> in the input command
+     * @return The response of the AT command
+     * @throws IOException The communication to modem has failed
+     * @since 1.6
+     */
+    private AtResponse sendForResponse(final String atCommand, final boolean cmeeCheck) 
+            throws IOException
+    {   
+        final ModeHandler handler = modeHandler;
+        if(!atMode && handler == null)
         {
             throw new IOException("Device is not in AT mode");
         }
@@ -375,25 +558,76 @@ public class AtImpl implements At
                     + atCommand);
         }
         
+        int trails = 0;
+        while(true)
+        {
+            final boolean release = !atMode && handler != null;
+            if(release)
+            {
+                handler.releaseMode();
+            }
+            
+            try
+            {
+                // Serializes the commands of concurrent callers like the AtPollScheduler
+                commandLock.lock();
+                try
+                {
+                    // Without release the non AT mode can be opened before the lock
+                    if(atMode)
+                    {
+                        return sendCommand(atCommUpper);
+                    }
+                }
+                finally
+                {
+                    commandLock.unlock();
+                }
+            }
+            finally
+            {
+                if(release)
+                {
+                    handler.resumeMode();
+                }
+            }
+            
+            trails++;
+            if(trails >= MODE_RELEASE_TRAILS)
+            {
+                throw new IOException("Device is not in AT mode");
+            }
+        }
+    }
+    
+    /**
+     * Sends an AT command after the check of the modem availability for 
+     * <code>ATD</code>. The command lock must be hold by the caller.
+     * @param atCommUpper The AT command in upper case
+     * @return The response of the AT command
+     * @throws IOException The communication to modem has failed
+     * @since 1.6
+     */
+    private AtResponse sendCommand(final String atCommUpper) throws IOException
+    {
         // This check is necessary to prevent again a long timeout of ATD command
         // if the modem not available
         if(atCommUpper.contains("ATD"))
         {
             try
             {
-                sendAtCommand("AT");
-            }
-            catch(final AtCommandFailedException ex)
-            {
-                throw new AtCommandFailedException(ex.getType()
-                        , "The sending of ATD has failed", ex);
+                final AtResponse response = sendAtCommand("AT");
+                if(!response.isSuccess())
+                {
+                    return response;
+                }
             }
             catch(final IOException ex)
             {
                 throw new IOException("The sending of ATD has failed", ex);
             }
         }
-        
+
         return sendAtCommand(atCommUpper);
     }
     
@@ -401,12 +635,10 @@ public class AtImpl implements At
      * Sends an AT command without checks and gets the response.
      * @param atCommand The AT command
      * @return The response of the AT command
-     * @throws AtCommandFailedException The AT command has failed
      * @throws IOException The communication to modem has failed
      * @since 1.2
      */
-    private String sendAtCommand(final String atCommand) 
-            throws AtCommandFailedException, IOException
+    private AtResponse sendAtCommand(final String atCommand) throws IOException
     {   
         final byte waitTrails;
         
@@ -439,33 +671,42 @@ public class AtImpl implements At
             
             LOG.debug("Send AT command: {}", atCommand);
             
-            commHandler.send(parameter.getBytes(BYTE_CHARSET));
-            
             String response = null;
-            byte waitTrailsCount = 0;
             
-            lock.lock();
+            pendingCommand = atCommand;
             try
             {
-                while(atResponse == null && waitTrailsCount < waitTrails)
+                commHandler.send(parameter.getBytes(BYTE_CHARSET));
+
+                byte waitTrailsCount = 0;
+
+                lock.lock();
+                try
                 {
-                    try
+                    while(atResponse == null && waitTrailsCount < waitTrails)
                     {
-                        resonseAvailable.await(WAIT_TIMEOUT, TimeUnit.SECONDS);
-                    }
-                    catch (final InterruptedException ex)
-                    {
-                        Thread.currentThread().interrupt();
-                        LOG.error("Interrupt at waiting for AT response", ex);
+                        try
+                        {
+                            resonseAvailable.await(WAIT_TIMEOUT, TimeUnit.SECONDS);
+                        }
+                        catch (final InterruptedException ex)
+                        {
+                            Thread.currentThread().interrupt();
+                            LOG.error("Interrupt at waiting for AT response", ex);
+                        }
+                        waitTrailsCount++;
                     }
-                    waitTrailsCount++;
+                    response = atResponse;
+                    atResponse = null;
+                }
+                finally
+                {
+                    lock.unlock();
                 }
-                response = atResponse;
-                atResponse = null;
             }
             finally
             {
-                lock.unlock();
+                pendingCommand = null;
             }
             
             lastCommandTime = System.nanoTime();
@@ -474,46 +715,99 @@ public class AtImpl implements At
             {
                 throw new IOException("Response timeout");
             }
-            else if(response.contains(AT_ERROR) 
-                    || AT_CME_CMS_PATTERN.matcher(response).find())
+            
+            final AtResponse result = createResponse(atCommand, response, errorCodes);
+            
+            if(result.isSuccess())
             {
-                final Matcher errorMatcher = AT_CME_CMS_PATTERN.matcher(response);
-                if(errorMatcher.find())
+                LOG.debug("Response of AT command: {} is: {}", atCommand, response);
+
+                checkModeChange(atCommand);
+            }
+            
+            return result;
+        }
+        catch (final IOException ex)
+        {
+            throw new IOException("Sending the AT command: " + atCommand 
+                    + " failed", ex);
+        }
+    }
+    
+    /**
+     * Creates the {@link AtResponse} for a received response. The error will be
+     * resolved from the precomputed tables of {@link AtError}.
+     * @param atCommand The AT command
+     * @param response The received response
+     * @param errorCodes <code>true</code> - The error codes are numeric 
+     *        (<code>AT+CMEE=1</code>) / <code>false</code> - The error codes
+     *        are verbose
+     * @return The {@link AtResponse}
+     * @since 1.6
+     */
+    /* package */ static AtResponse createResponse(final String atCommand
+            , final String response, final boolean errorCodes)
+    {
+        final String result = removeEcho(atCommand, response).trim();
+        
+        Type type = Type.CME;
+        int errorIndex = response.indexOf(AT_CME_INDICATOR);
+        if(errorIndex < 0)
+        {
+            type = Type.CMS;
+            errorIndex = response.indexOf(AT_CMS_INDICATOR);
+        }
+        
+        if(errorIndex >= 0)
+        {
+            final int detailsIndex = errorIndex + AT_CME_INDICATOR.length();
+            int detailsEnd = response.indexOf('\r', detailsIndex);
+            if(detailsEnd < 0)
+            {
+                detailsEnd = response.length();
+            }
+            
+            final String errorDetails = response.substring(errorIndex, detailsEnd);
+            
+            if(errorCodes)
+            {
+                int errorCode = 0;
+                int digits = 0;
+                for(int i=detailsIndex; i<detailsEnd; i++)
                 {
-                    final String errorDetails = errorMatcher.group();
-                    final Type type = errorDetails.contains("CME") ? Type.CME : Type.CMS;
-                    final String error = "AT command: " + atCommand + " deliver "
-                            + errorDetails;
-                    if(errorCodes)
+                    final char c = response.charAt(i);
+                    if(c >= '0' && c <= '9' && digits < 5)
                     {
-                        final int errorCodeStartIndex = errorDetails.indexOf(AT_CME_CMS_INDICATOR) 
-                                + AT_CME_CMS_INDICATOR.length();
-                        final short errorCode = Short.parseShort(errorDetails.substring(errorCodeStartIndex));
-                        throw new AtCommandFailedException(type, errorCode, error);
+                        errorCode = (errorCode * 10) + (c - '0');
+                        digits++;
                     }
-                    else
+                    else if(c != ' ')
                     {
-                        throw new AtCommandFailedException(type, error);
+                        digits = 0;
+                        break;
                     }
                 }
-                else if(response.contains(AT_ERROR))
+                
+                if(digits > 0)
                 {
-                    final String error = "AT command: " + atCommand + " deliver Error";
-                    throw new AtCommandFailedException(Type.ERROR, error);
+                    return new AtResponse(atCommand, result, AtError.getError(type, errorCode)
+                            , (short)errorCode, errorDetails);
                 }
             }
             
-            LOG.debug("Response of AT command: {} is: {}", atCommand, response);
-            
-            checkModeChange(atCommand);
-            
-            return removeEcho(atCommand, response).trim();
+            final AtError error = AtError.getError(type, response.substring(detailsIndex
+                    , detailsEnd).trim());
+            return new AtResponse(atCommand, result, error
+                    , AtCommandFailedException.ERROR_CODE_MODE_OFF, errorDetails);
         }
-        catch (final IOException ex)
+        else if(response.contains(AT_ERROR))
         {
-            throw new IOException("Sending the AT command: " + atCommand 
-                    + " failed", ex);
+            return new AtResponse(atCommand, result, AtError.ERROR
+                    , AtCommandFailedException.ERROR_CODE_MODE_OFF, "Error");
         }
+        
+        return new AtResponse(atCommand, result, null
+                , AtCommandFailedException.ERROR_CODE_MODE_OFF, null);
     }
     
     /**
@@ -549,6 +843,61 @@ public class AtImpl implements At
         eventNotifier.addEvent(new AtEvent(this, atEvent));
     }
     
+    /**
+     * Splits the unsolicited result codes from a response received without 
+     * echo. Without echo the URCs they are received before the final result 
+     * code are within the response. A line like <code>+CREG: 1</code> or 
+     * <code>^SIS: 0,1</code> is a URC if its name is not a name of the sent
+     * AT command. The URCs are delivered in the same format like the events 
+     * of {@link #AT_EVENT_PATTERN}.
+     * @param atCommand The sent AT command
+     * @param response The response up to the final result code
+     * @param atEvents The {@link List} for the split URCs
+     * @return The response without the URCs
+     * @since 1.6
+     */
+    /* package */ static String splitEvents(final String atCommand
+            , final String response, final List<String> atEvents)
+    {
+        final Matcher lineMatcher = AT_PREFIXED_LINE_PATTERN.matcher(response);
+        if(!lineMatcher.find())
+        {
+            return response;
+        }
+        
+        final Set<String> names = new HashSet<>();
+        final Matcher nameMatcher = AT_COMMAND_NAME_PATTERN.matcher(atCommand);
+        while(nameMatcher.find())
+        {
+            names.add(nameMatcher.group().toUpperCase(Locale.ROOT));
+        }
+        
+        final StringBuilder sb = new StringBuilder(response.length());
+        int index = 0;
+        do
+        {
+            if(!names.contains(lineMatcher.group(1)))
+            {
+                final int start = lineMatcher.start();
+                sb.append(response, index, start);
+                atEvents.add(lineMatcher.group() + CR_LF);
+                index = lineMatcher.end();
+                
+                // A URC in an own block takes the following empty line with it
+                final boolean blockStart = start == 0 || response.startsWith(CR_LF, start - 2)
+                        || response.charAt(start - 1) == '\r';
+                if(blockStart && response.startsWith(CR_LF + CR_LF, index))
+                {
+                    index += CR_LF.length();
+                }
+            }
+        }
+        while(lineMatcher.find());
+        sb.append(response, index, response.length());
+        
+        return sb.toString();
+    }
+    
     /**
      * Read AT response from the input {@link InputStream} and parse it to an
      * {@link String}. Interpretation of different formats:
@@ -575,6 +924,11 @@ public class AtImpl implements At
      * <td>Response of an AT command</td>
      * </tr>
      * </table>
+     * If the echo is disabled and an AT command was sent then all data up to 
+     * the final result code will be interpreted as the response of this AT command.
+     * The URCs within this data are split with 
+     * {@link #splitEvents(java.lang.String, java.lang.String, java.util.List) }
+     * and delivered as events.
      * @param serialIn The {@link InputStream}
      * @return The AT response as {@link String}
      * @throws IOException The communication to the device failed
@@ -600,12 +954,24 @@ public class AtImpl implements At
 
                     if(response.length() > 3)
                     {
-                        final Matcher atMatcher = AT_PATTERN.matcher(response);
+                        final String command = pendingCommand;
+                        final boolean noEchoResponse = !echo && command != null;
+                        final Matcher atMatcher = noEchoResponse 
+                                ? AT_NO_ECHO_PATTERN.matcher(response) 
+                                : AT_PATTERN.matcher(response);
                         if(atMatcher.find())
                         {
                             final String atMatch = atMatcher.group();
-                            final Matcher atEventMatcher = AT_EVENT_PATTERN.matcher(atMatch);
-                            if(atEventMatcher.find())
+                            if(noEchoResponse)
+                            {
+                                final List<String> atEvents = new ArrayList<>();
+                                result = splitEvents(command, atMatch, atEvents);
+                                for(final String atEvent: atEvents)
+                                {
+                                    notifyAtEvent(atEvent);
+                                }
+                            }
+                            else if(AT_EVENT_PATTERN.matcher(atMatch).find())
                             {
                                 notifyAtEvent(atMatch);
                             }
@@ -0,0 +1,117 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import java.io.IOException;
+import java.util.EventObject;
+
+/**
+ * This class contains the result of an AT command polled by an 
+ * {@link AtPollScheduler}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtPollEvent extends EventObject
+{
+    private static final long serialVersionUID = 1L;
+    private final String atCommand;
+    private final String response;
+    private final AtError atError;
+    private final IOException error;
+
+    /* package */ AtPollEvent(final Object source, final String atCommand
+            , final String response, final AtError atError, final IOException error)
+    {
+        super(source);
+        this.atCommand = atCommand;
+        this.response = response;
+        this.atError = atError;
+        this.error = error;
+    }
+
+    /**
+     * Gets the polled AT command.
+     * @return The polled AT command
+     * @since 1.6
+     */
+    public String getAtCommand()
+    {
+        return atCommand;
+    }
+
+    /**
+     * Gets the response of the polled AT command.
+     * @return The response of the polled AT command or <code>null</code> if 
+     *         the poll has failed
+     * @since 1.6
+     */
+    public String getResponse()
+    {
+        return response;
+    }
+
+    /**
+     * Gets the error delivered by the device for a failed poll.
+     * @return The {@link AtError} if the device response contains 
+     *         <code>ERROR</code> / <code>null</code> if the poll was successful
+     *         or the communication has failed
+     * @since 1.6
+     */
+    public AtError getAtError()
+    {
+        return atError;
+    }
+
+    /**
+     * Gets the cause of a failed communication with the device.
+     * @return An {@link IOException} if the communication has failed / 
+     *         <code>null</code> if the communication was successful
+     * @since 1.6
+     */
+    public IOException getError()
+    {
+        return error;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("AtPollEvent{atCommand=");
+        sb.append(atCommand);
+        sb.append(", response=");
+        sb.append(response);
+        sb.append(", atError=");
+        sb.append(atError);
+        sb.append(", error=");
+        sb.append(error);
+        sb.append('}');
+        
+        return sb.toString();
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import java.util.EventListener;
+
+/**
+ * An interface for receiving the results of AT commands polled by an
+ * {@link AtPollScheduler}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public interface AtPollListener extends EventListener
+{
+    /**
+     * Notifys about a new response of a polled AT command.
+     * @param atPollEvent The event data
+     * @since 1.6
+     */
+    void pollReceived(final AtPollEvent atPollEvent);
+    
+    /**
+     * Notifys about a failed poll of an AT command.
+     * @param atPollEvent The event data. The cause of the failure is available
+     *        with {@link AtPollEvent#getAtError() } or {@link AtPollEvent#getError() }
+     * @since 1.6
+     */
+    void pollFailed(final AtPollEvent atPollEvent);
+}
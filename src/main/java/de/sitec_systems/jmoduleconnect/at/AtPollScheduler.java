@@ -0,0 +1,510 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A shared scheduler for periodically polled AT commands like <code>AT+CSQ</code>
+ * or <code>AT+CREG?</code>. Any number of {@link AtPollListener} can subscribe
+ * to the same AT command with different intervals. The scheduler sends each 
+ * distinct AT command only once with the shortest requested interval and 
+ * delivers the response to all subscribers. The points of time for polling are
+ * aligned to a common grid, so AT commands they are due at nearly the same time
+ * will be sent as one batch.
+ * <p>
+ * The listeners are notified in the thread of the scheduler. Long running
+ * operations inside of an listener delays the following polls.
+ * </p>
+ * <p>
+ * If the {@link At} is shared with a {@link ModeHandler} like the 
+ * {@link de.sitec_systems.jmoduleconnect.file.ModuleFileManager} then each 
+ * poll waits for the running file operation, closes the OBEX mode and holds 
+ * the file operations until the response is received. The next file 
+ * operation opens the OBEX mode again, that needs some AT commands and an 
+ * OBEX <code>CONNECT</code>. So short intervals slow down file transfers and
+ * the polling should be paused with {@link #unsubscribe(String, AtPollListener)}
+ * during large transfers.
+ * </p>
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtPollScheduler implements Closeable
+{
+    private final At at;
+    private final long batchWindow;
+    private final Map<String, PollQuery> queries;
+    private final Lock lock = new ReentrantLock();
+    private final Condition queriesChanged = lock.newCondition();
+    private final Thread schedulerThread;
+    private final Clock clock;
+    private final long startTime;
+    private volatile boolean running;
+    
+    private static final Logger LOG = LoggerFactory.getLogger(AtPollScheduler.class);
+    private static final long DEFAULT_BATCH_WINDOW = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final Clock SYSTEM_CLOCK = new Clock()
+    {
+        @Override
+        public long nanoTime()
+        {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Creates an instance of this class without starting the scheduling.
+     * @param at The AT interface for sending the polled commands
+     * @param batchWindow The size of the window for the alignment of polls in 
+     *        nanoseconds
+     * @param clock The source of the current point of time. The grid of the 
+     *        batch window starts at the creation
+     * @since 1.6
+     */
+    /* package */ AtPollScheduler(final At at, final long batchWindow, final Clock clock)
+    {
+        this.at = at;
+        this.batchWindow = batchWindow;
+        this.clock = clock;
+        queries = new LinkedHashMap<>();
+        schedulerThread = new Thread(new Scheduler(), "AtPollScheduler");
+        schedulerThread.setDaemon(true);
+        startTime = clock.nanoTime();
+    }
+    
+    /**
+     * Creates an instance of this class and starts the scheduling. The 
+     * polls are aligned to a window of 250 ms.
+     * @param at The AT interface for sending the polled commands
+     * @return The instance of this class
+     * @throws IllegalArgumentException If the parameter at is <code>null</code>
+     * @since 1.6
+     */
+    public static final AtPollScheduler createPollScheduler(final At at)
+    {
+        return createPollScheduler(at, DEFAULT_BATCH_WINDOW, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Creates an instance of this class and starts the scheduling.
+     * @param at The AT interface for sending the polled commands
+     * @param batchWindow The size of the window for the alignment of polls. All 
+     *        AT commands they are due within this window will be sent together
+     * @param unit The {@link TimeUnit} of parameter batchWindow
+     * @return The instance of this class
+     * @throws IllegalArgumentException If the parameter at or unit is <code>null</code>
+     *         or the batchWindow is not positive
+     * @since 1.6
+     */
+    public static final AtPollScheduler createPollScheduler(final At at
+            , final long batchWindow, final TimeUnit unit)
+    {
+        if(at == null || unit == null)
+        {
+            throw new IllegalArgumentException("The parameters at and unit cant be null");
+        }
+        
+        if(batchWindow <= 0)
+        {
+            throw new IllegalArgumentException("The parameter batchWindow must be positive");
+        }
+        
+        final AtPollScheduler scheduler = new AtPollScheduler(at, unit.toNanos(batchWindow)
+                , SYSTEM_CLOCK);
+        scheduler.running = true;
+        scheduler.schedulerThread.start();
+        
+        return scheduler;
+    }
+    
+    /**
+     * Subscribes an {@link AtPollListener} to an AT command. If the listener is
+     * already subscribed to the AT command then only the interval will be 
+     * updated.
+     * @param atCommand The AT command to poll. An <code>\r</code> is not necessary
+     * @param interval The desired poll interval
+     * @param unit The {@link TimeUnit} of parameter interval
+     * @param atPollListener The listener for the results
+     * @throws IllegalArgumentException If an input value is <code>null</code>,
+     *         the atCommand dont start with <code>AT</code> or the interval
+     *         is not positive
+     * @since 1.6
+     */
+    public void subscribe(final String atCommand, final long interval
+            , final TimeUnit unit, final AtPollListener atPollListener)
+    {
+        if(atCommand == null || unit == null || atPollListener == null)
+        {
+            throw new IllegalArgumentException("The input values cant be null");
+        }
+        
+        if(interval <= 0)
+        {
+            throw new IllegalArgumentException("The parameter interval must be positive");
+        }
+        
+        final String key = atCommand.trim().toUpperCase();
+        if(!key.startsWith("AT"))
+        {
+            throw new IllegalArgumentException("An AT command must start with AT. Input: " 
+                    + atCommand);
+        }
+        
+        lock.lock();
+        try
+        {
+            PollQuery query = queries.get(key);
+            if(query == null)
+            {
+                query = new PollQuery(atCommand.trim());
+                queries.put(key, query);
+            }
+            query.listeners.put(atPollListener, unit.toNanos(interval));
+            query.updateInterval(clock.nanoTime());
+            queriesChanged.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Removes the subscription of an {@link AtPollListener} from an AT command.
+     * The AT command will be not longer polled if no subscriber left.
+     * @param atCommand The AT command
+     * @param atPollListener The listener
+     * @since 1.6
+     */
+    public void unsubscribe(final String atCommand, final AtPollListener atPollListener)
+    {
+        if(atCommand == null)
+        {
+            return;
+        }
+        
+        final String key = atCommand.trim().toUpperCase();
+        
+        lock.lock();
+        try
+        {
+            final PollQuery query = queries.get(key);
+            if(query != null)
+            {
+                query.listeners.remove(atPollListener);
+                if(query.listeners.isEmpty())
+                {
+                    queries.remove(key);
+                }
+                else
+                {
+                    query.updateInterval(clock.nanoTime());
+                }
+                queriesChanged.signalAll();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Stops the scheduling and removes all subscriptions. The {@link At} 
+     * interface will be not closed.
+     * @since 1.6
+     */
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try
+        {
+            running = false;
+            queries.clear();
+            queriesChanged.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        schedulerThread.interrupt();
+    }
+    
+    /**
+     * Aligns a point of time to the grid of the batch window.
+     * @param time The point of time in nanoseconds
+     * @return The next point of time on the grid
+     * @since 1.6
+     */
+    private long align(final long time)
+    {
+        final long offset = time - startTime;
+        final long windows = (offset + batchWindow - 1) / batchWindow;
+        
+        return startTime + (Math.max(windows, 0) * batchWindow);
+    }
+    
+    /**
+     * Gets the point of time of the next due AT command.
+     * @return The point of time in nanoseconds or {@link Long#MAX_VALUE} if no
+     *         AT command is subscribed
+     * @since 1.6
+     */
+    /* package */ long getNextPoll()
+    {
+        lock.lock();
+        try
+        {
+            long nextPoll = Long.MAX_VALUE;
+            for(final PollQuery query: queries.values())
+            {
+                nextPoll = Math.min(nextPoll, query.nextPoll);
+            }
+
+            return nextPoll;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Takes all AT commands they are due within the batch window and 
+     * schedules their next poll.
+     * @param now The current point of time in nanoseconds
+     * @return The subscribers at time of polling by AT command
+     * @since 1.6
+     */
+    /* package */ Map<String, List<AtPollListener>> takeDueQueries(final long now)
+    {
+        final Map<String, List<AtPollListener>> batch = new LinkedHashMap<>();
+        
+        lock.lock();
+        try
+        {
+            for(final PollQuery query: queries.values())
+            {
+                if(query.nextPoll - now < batchWindow)
+                {
+                    batch.put(query.atCommand, new ArrayList<>(query.listeners.keySet()));
+                    query.nextPoll = align(Math.max(query.nextPoll + query.interval
+                            , now + 1));
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        
+        return batch;
+    }
+    
+    /**
+     * Sends a polled AT command and notifies all subscribers.
+     * @param atCommand The AT command
+     * @param listeners The subscribers at time of polling
+     * @since 1.6
+     */
+    /* package */ void poll(final String atCommand, final List<AtPollListener> listeners)
+    {
+        String response = null;
+        AtError atError = null;
+        IOException error = null;
+        try
+        {
+            final AtResponse atResponse = at.trySend(atCommand);
+            if(atResponse.isSuccess())
+            {
+                response = atResponse.getResponse();
+            }
+            else
+            {
+                atError = atResponse.getError();
+                LOG.debug("Polling of AT command: {} deliver {}", atCommand, atError);
+            }
+        }
+        catch (final IOException ex)
+        {
+            LOG.debug("Polling of AT command: {} failed", atCommand, ex);
+            error = ex;
+        }
+        
+        final AtPollEvent event = new AtPollEvent(this, atCommand, response
+                , atError, error);
+        for(final AtPollListener listener: listeners)
+        {
+            try
+            {
+                if(atError == null && error == null)
+                {
+                    listener.pollReceived(event);
+                }
+                else
+                {
+                    listener.pollFailed(event);
+                }
+            }
+            catch(final RuntimeException ex)
+            {
+                LOG.error("Error in poll listener of AT command: " + atCommand, ex);
+            }
+        }
+    }
+    
+    /**
+     * The source of the current point of time for the scheduling.
+     * @since 1.6
+     */
+    /* package */ interface Clock
+    {
+        /**
+         * Gets the current point of time like {@link System#nanoTime() }.
+         * @return The current point of time in nanoseconds
+         * @since 1.6
+         */
+        long nanoTime();
+    }
+    
+    /**
+     * Contains the state of an distinct polled AT command.
+     * @since 1.6
+     */
+    private final class PollQuery
+    {
+        private final String atCommand;
+        private final Map<AtPollListener, Long> listeners;
+        private long interval;
+        private long nextPoll;
+
+        private PollQuery(final String atCommand)
+        {
+            this.atCommand = atCommand;
+            listeners = new HashMap<>();
+            interval = Long.MAX_VALUE;
+            nextPoll = Long.MAX_VALUE;
+        }
+        
+        /**
+         * Recalculates the interval as the shortest requested interval of all
+         * subscribers. An new subscriber with shorter interval will be served
+         * at the next point on the grid.
+         * @param now The current point of time in nanoseconds
+         * @since 1.6
+         */
+        private void updateInterval(final long now)
+        {
+            long shortest = Long.MAX_VALUE;
+            for(final Long listenerInterval: listeners.values())
+            {
+                shortest = Math.min(shortest, listenerInterval);
+            }
+            
+            if(nextPoll == Long.MAX_VALUE)
+            {
+                nextPoll = align(now);
+            }
+            else if(shortest < interval)
+            {
+                nextPoll = Math.min(nextPoll, align(now + shortest));
+            }
+            interval = shortest;
+        }
+    }
+    
+    /**
+     * Waits for the next due AT commands and polls all AT commands they are 
+     * due within the batch window.
+     * @since 1.6
+     */
+    private final class Scheduler implements Runnable
+    {
+        /** {@inheritDoc } */
+        @Override
+        public void run()
+        {
+            while(running && !Thread.currentThread().isInterrupted())
+            {
+                Map<String, List<AtPollListener>> batch = Collections.emptyMap();
+                
+                lock.lock();
+                try
+                {
+                    final long nextPoll = getNextPoll();
+                    final long now = clock.nanoTime();
+                    if(nextPoll == Long.MAX_VALUE)
+                    {
+                        queriesChanged.await();
+                        continue;
+                    }
+                    else if(nextPoll - now > 0)
+                    {
+                        queriesChanged.awaitNanos(nextPoll - now);
+                        continue;
+                    }
+                    
+                    batch = takeDueQueries(now);
+                }
+                catch (final InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    LOG.debug("AtPollScheduler was finished");
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+                
+                for(final Map.Entry<String, List<AtPollListener>> entry: batch.entrySet())
+                {
+                    if(!running)
+                    {
+                        break;
+                    }
+                    poll(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+/**
+ * This class contains the result of an AT command sent with 
+ * {@link At#trySend(java.lang.String) }. An error of the AT command is 
+ * delivered as {@link AtError} instead of an {@link AtCommandFailedException}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtResponse
+{
+    private final String atCommand;
+    private final String response;
+    private final AtError error;
+    private final short errorCode;
+    private final String errorDetails;
+
+    /* package */ AtResponse(final String atCommand, final String response
+            , final AtError error, final short errorCode, final String errorDetails)
+    {
+        this.atCommand = atCommand;
+        this.response = response;
+        this.error = error;
+        this.errorCode = errorCode;
+        this.errorDetails = errorDetails;
+    }
+
+    /**
+     * Gets the sent AT command.
+     * @return The sent AT command
+     * @since 1.6
+     */
+    public String getAtCommand()
+    {
+        return atCommand;
+    }
+
+    /**
+     * Gets the response of the AT command without echo.
+     * @return The response of the AT command
+     * @since 1.6
+     */
+    public String getResponse()
+    {
+        return response;
+    }
+    
+    /**
+     * Gets the information is the AT command successful.
+     * @return <code>true</code> - The AT command was successful / 
+     *         <code>false</code> - The response contains <code>ERROR</code>
+     * @since 1.6
+     */
+    public boolean isSuccess()
+    {
+        return error == null;
+    }
+
+    /**
+     * Gets the error of the AT command.
+     * @return The error or <code>null</code> if the AT command was successful
+     * @since 1.6
+     */
+    public AtError getError()
+    {
+        return error;
+    }
+
+    /**
+     * Gets the error code of the AT command. If error code mode off then 
+     * delivers the same value like {@link AtCommandFailedException#getErrorCode() }.
+     * @return The error code of the AT command
+     * @since 1.6
+     */
+    public short getErrorCode()
+    {
+        return errorCode;
+    }
+    
+    /**
+     * Creates the {@link AtCommandFailedException} for an failed AT command.
+     * @return The {@link AtCommandFailedException}
+     * @since 1.6
+     */
+    /* package */ AtCommandFailedException toException()
+    {
+        return new AtCommandFailedException(error, errorCode, "AT command: " 
+                + atCommand + " deliver " + errorDetails);
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("AtResponse{atCommand=");
+        sb.append(atCommand);
+        sb.append(", response=");
+        sb.append(response);
+        sb.append(", error=");
+        sb.append(error);
+        sb.append('}');
+        
+        return sb.toString();
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+/**
+ * This class represents a desired setting of the device for the 
+ * {@link AtConfigurator}. A setting of an extended command is written with 
+ * <code>AT&lt;command&gt;=[&lt;key&gt;,]&lt;value&gt;</code> and read with 
+ * <code>AT&lt;command&gt;?</code>. A setting of a basic command like 
+ * <code>E</code> or <code>&amp;C</code> is written with 
+ * <code>AT&lt;command&gt;&lt;value&gt;</code> and cant be read. Examples:
+ * <ul>
+ * <li><code>new AtSetting("+IPR", "115200")</code></li>
+ * <li><code>new AtSetting("+CNMI", "2,1")</code></li>
+ * <li><code>new AtSetting("^SCFG", "\"Userware/Autostart\"", "\"1\"")</code></li>
+ * <li><code>new AtSetting("&amp;C", "1")</code></li>
+ * </ul>
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtSetting
+{
+    private final String command;
+    private final String key;
+    private final String value;
+
+    /**
+     * Constructor for settings without key.
+     * @param command The command without <code>AT</code> like <code>+IPR</code>
+     * @param value The parameters of the write command like <code>115200</code>
+     * @throws IllegalArgumentException If an input value is <code>null</code>
+     * @since 1.6
+     */
+    public AtSetting(final String command, final String value)
+    {
+        this(command, null, value);
+    }
+    
+    /**
+     * Constructor for settings with key. The key is the first parameter of the
+     * write command and of each line of the read response like the name of
+     * the parameter on <code>AT^SCFG</code>.
+     * @param command The command without <code>AT</code> like <code>^SCFG</code>
+     * @param key The first parameter like <code>"Userware/Autostart"</code> or
+     *        <code>null</code> for settings without key
+     * @param value The remaining parameters of the write command
+     * @throws IllegalArgumentException If parameter command or value is <code>null</code>
+     * @since 1.6
+     */
+    public AtSetting(final String command, final String key, final String value)
+    {
+        if(command == null || value == null)
+        {
+            throw new IllegalArgumentException("The parameters command and value cant be null");
+        }
+        
+        final String commandUpper = command.trim().toUpperCase();
+        this.command = commandUpper.startsWith("AT") ? commandUpper.substring(2) : commandUpper;
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * Gets the command without <code>AT</code>.
+     * @return The command without <code>AT</code>
+     * @since 1.6
+     */
+    public String getCommand()
+    {
+        return command;
+    }
+
+    /**
+     * Gets the key of the setting.
+     * @return The key of the setting or <code>null</code> if the setting has
+     *         no key
+     * @since 1.6
+     */
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * Gets the desired value of the setting.
+     * @return The desired value of the setting
+     * @since 1.6
+     */
+    public String getValue()
+    {
+        return value;
+    }
+    
+    /**
+     * Gets the AT command for writing of this setting.
+     * @return The AT command for writing of this setting
+     * @since 1.6
+     */
+    public String getWriteCommand()
+    {
+        final StringBuilder sb = new StringBuilder("AT");
+        appendWriteCommand(sb);
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Appends the write command of this setting without <code>AT</code>. So 
+     * the write commands of many settings can be concatenated to one command 
+     * line.
+     * @param sb The destination {@link StringBuilder}
+     * @since 1.6
+     */
+    /* package */ void appendWriteCommand(final StringBuilder sb)
+    {
+        sb.append(command);
+        if(isExtended())
+        {
+            sb.append('=');
+        }
+        if(key != null)
+        {
+            sb.append(key);
+            sb.append(',');
+        }
+        sb.append(value);
+    }
+    
+    /**
+     * Checks if the command is an extended command starting with 
+     * <code>+</code> or <code>^</code>. Only extended commands can be read 
+     * with <code>AT&lt;command&gt;?</code>.
+     * @return <code>true</code> - The command is an extended command / 
+     *         <code>false</code> - The command is a basic command like 
+     *         <code>E</code> or <code>&amp;C</code>
+     * @since 1.6
+     */
+    public boolean isExtended()
+    {
+        return command.startsWith("+") || command.startsWith("^");
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("AtSetting{command=");
+        sb.append(command);
+        sb.append(", key=");
+        sb.append(key);
+        sb.append(", value=");
+        sb.append(value);
+        sb.append('}');
+        
+        return sb.toString();
+    }
+}
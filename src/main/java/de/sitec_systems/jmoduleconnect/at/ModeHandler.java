@@ -0,0 +1,64 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import java.io.IOException;
+
+/**
+ * A handler for a non AT mode like the OBEX mode of the file manager. The 
+ * serial port is occupied by the non AT mode, so the {@link At} requests the
+ * release of the mode before an AT command will be sent. The handler can keep
+ * its mode open as long as no AT command is requested. The mode stays closed
+ * until the AT command is finished, so the handler dont open its mode again 
+ * between the release and the sending of the AT command.
+ * @author sitec systems GmbH
+ * @since 1.6
+ * @see At#setModeHandler(de.sitec_systems.jmoduleconnect.at.ModeHandler) 
+ */
+public interface ModeHandler
+{
+    /**
+     * Closes the non AT mode, so the device is in AT mode afterwards. A 
+     * running operation of the non AT mode will be finished before. If the 
+     * mode is already closed then nothing happens. The mode is hold closed 
+     * until {@link #resumeMode() } is called by the same {@link Thread}. If 
+     * this method throws an exception then the mode is not hold.
+     * @throws IOException The switching to AT mode failed
+     * @since 1.6
+     */
+    void releaseMode() throws IOException;
+    
+    /**
+     * Allows the opening of the non AT mode again after an 
+     * {@link #releaseMode() }. The mode is opened at the next operation of 
+     * the handler and not by this method.
+     * @since 1.6
+     */
+    void resumeMode();
+}
@@ -0,0 +1,300 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a directory tree of the flash filesystem for 
+ * {@link ModuleFileManager#mirror(String, Path)}. The methods must be called 
+ * with the operation lock of the {@link ModuleFileManager}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ class DirectoryMirror
+{
+    private final ModuleFileManager fileManager;
+    
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryMirror.class);
+    
+    /**
+     * Constructs a mirror for a file manager.
+     * @param fileManager The file manager for the communication to the device
+     * @since 1.6
+     */
+    /* package */ DirectoryMirror(final ModuleFileManager fileManager)
+    {
+        this.fileManager = fileManager;
+    }
+    
+    /**
+     * Downloads a directory tree recursive to a local directory. The files 
+     * are collected at first, so the aggregate progress can be notified, and 
+     * afterwards downloaded. Unchanged local files are skipped.
+     * @param remoteDirectory The relative or absolute path of the directory 
+     *        on flash filesystem
+     * @param localDirectory The local directory
+     * @return The statistics of the mirror
+     * @throws InterruptedIOException Thrown after an interrupt by {@link ModuleFileManager#cancel() }
+     * @throws IOException The writing of the local files or the communication
+     *         to the device failed
+     * @since 1.6
+     */
+    /* package */ MirrorResult mirror(final String remoteDirectory, final Path localDirectory) 
+            throws InterruptedIOException, IOException
+    {
+        final MirrorResult result = new MirrorResult();
+        final List<FileMeta> files = new ArrayList<FileMeta>();
+        final List<Path> targets = new ArrayList<Path>();
+
+        fileManager.moveToDirectory(ModuleFileManager.resolveDirectory(
+                fileManager.getWorkingDirectory()
+                , remoteDirectory.isEmpty() ? "." : remoteDirectory));
+        final long totalBytes = collectMirrorFiles(fileManager.getDirectoryPointer()
+                , localDirectory, files, targets, result);
+        LOG.debug("Mirror of: {} downloads: {} files with: {} bytes"
+                , remoteDirectory, files.size(), totalBytes);
+
+        fileManager.notifyProgress(OperationType.MIRROR, 0);
+        try
+        {
+            final MirrorProgressChannel progressChannel = new MirrorProgressChannel(totalBytes);
+            for(int i = 0; i < files.size(); i++)
+            {
+                fileManager.checkCanceled();
+                final FileMeta file = files.get(i);
+                fileManager.moveToDirectory(file.getParentDirectory());
+                downloadFile(file, targets.get(i), progressChannel);
+                result.addDownloadedFile(file.getSize());
+            }
+        }
+        catch (final IOException ex)
+        {
+            fileManager.notifyProgressDone(OperationType.MIRROR, false);
+            throw ex;
+        }
+        fileManager.notifyProgress(OperationType.MIRROR, 100);
+        fileManager.notifyProgressDone(OperationType.MIRROR, true);
+        LOG.debug("Mirror of: {} finished: {}", remoteDirectory, result);
+
+        return result;
+    }
+    
+    /**
+     * Collects the files of a directory recursive they must be downloaded 
+     * for a mirror. The tree is walked depth first with the cached file 
+     * listings and the missing local directories are created.
+     * @param directory The directory on flash filesystem
+     * @param localDirectory The local directory
+     * @param files The files to download
+     * @param targets The local paths of the files to download
+     * @param result The statistics of the mirror
+     * @return The sum of the sizes of the collected files
+     * @throws IOException The creation of a local directory or the 
+     *         communication to the device failed
+     * @since 1.6
+     */
+    private long collectMirrorFiles(final FileMeta directory, final Path localDirectory
+            , final List<FileMeta> files, final List<Path> targets
+            , final MirrorResult result) throws IOException
+    {
+        if(!Files.isDirectory(localDirectory))
+        {
+            Files.createDirectories(localDirectory);
+            result.addCreatedDirectory();
+        }
+        
+        fileManager.moveToDirectory(directory);
+        long totalBytes = 0;
+        final List<FileMeta> directories = new ArrayList<FileMeta>();
+        for(final FileMeta fileMeta: new ArrayList<FileMeta>(fileManager.getCurrentFileListing()))
+        {
+            final Path target = resolveLocalPath(localDirectory, fileMeta.getName());
+            if(fileMeta.isDirectory())
+            {
+                directories.add(fileMeta);
+            }
+            else if(Files.isRegularFile(target) && Files.size(target) == fileMeta.getSize()
+                    && Math.abs(Files.getLastModifiedTime(target).toMillis() 
+                    - fileMeta.getLastModified().getTime()) <= ModuleFileManager.SYNC_TIME_TOLERANCE)
+            {
+                result.addSkippedFile();
+            }
+            else
+            {
+                files.add(fileMeta);
+                targets.add(target);
+                totalBytes += fileMeta.getSize();
+            }
+        }
+        
+        for(final FileMeta subDirectory: directories)
+        {
+            totalBytes += collectMirrorFiles(subDirectory
+                    , resolveLocalPath(localDirectory, subDirectory.getName()), files
+                    , targets, result);
+        }
+        
+        return totalBytes;
+    }
+    
+    /**
+     * Resolves the name of an entry on the flash filesystem against a local
+     * directory. The names are delivered by the device and must not leave the
+     * local directory, so names with path separators or relative parts are
+     * rejected.
+     * @param localDirectory The local directory
+     * @param name The name of the entry on flash filesystem
+     * @return The local path of the entry inside the local directory
+     * @throws IOException The name is not a valid name of a single entry
+     * @since 1.6
+     */
+    private static Path resolveLocalPath(final Path localDirectory, final String name) 
+            throws IOException
+    {
+        if(name.isEmpty() || name.equals(".") || name.equals("..") 
+                || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0 
+                || name.indexOf(':') >= 0 || name.indexOf('\0') >= 0)
+        {
+            throw new IOException("The device has delivered the invalid file name: " + name);
+        }
+        
+        final Path directory = localDirectory.toAbsolutePath().normalize();
+        final Path target = directory.resolve(name).normalize();
+        if(!directory.equals(target.getParent()))
+        {
+            throw new IOException("The file name: " + name + " leaves the directory: " 
+                    + localDirectory);
+        }
+        
+        return target;
+    }
+    
+    /**
+     * Downloads a file from the current directory to a local file. The data
+     * is streamed to a temporary file beside the target that replaces the 
+     * target after the successful download, so the target is never left 
+     * incomplete. The local file gets the modification date of the remote file.
+     * @param file The file on flash filesystem
+     * @param target The local file
+     * @param progressChannel The channel for the aggregate progress
+     * @throws InterruptedIOException Thrown after an interrupt by {@link ModuleFileManager#cancel() }
+     * @throws IOException The writing of the local file or the communication
+     *         to the device failed
+     * @since 1.6
+     */
+    private void downloadFile(final FileMeta file, final Path target
+            , final MirrorProgressChannel progressChannel) 
+            throws InterruptedIOException, IOException
+    {
+        final Path temp = target.resolveSibling(target.getFileName() + ".part");
+        final FileChannel fileChannel = FileChannel.open(temp, StandardOpenOption.CREATE
+                , StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        boolean success = false;
+        try
+        {
+            final ObexHeader<String> name = new ObexHeader<String>(ObexHeader.Code.NAME, file.getName());
+            progressChannel.setTarget(fileChannel);
+            fileManager.processObexMultipart(new Obex(Obex.Code.REQUEST_GET_FINAL, name), null
+                    , progressChannel);
+            fileChannel.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(target, FileTime.fromMillis(file.getLastModified().getTime()));
+            success = true;
+        }
+        finally
+        {
+            if(!success)
+            {
+                fileChannel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+    
+    /**
+     * Writes the downloaded data of a mirror to the local file and notifies 
+     * the aggregate progress of all files.
+     * @since 1.6
+     */
+    private class MirrorProgressChannel implements WritableByteChannel
+    {
+        private final long totalBytes;
+        private long writtenBytes;
+        private WritableByteChannel target;
+
+        private MirrorProgressChannel(final long totalBytes)
+        {
+            this.totalBytes = totalBytes;
+        }
+        
+        private void setTarget(final WritableByteChannel target)
+        {
+            this.target = target;
+        }
+        
+        @Override
+        public int write(final ByteBuffer src) throws IOException
+        {
+            final int count = target.write(src);
+            writtenBytes += count;
+            if(totalBytes > 0)
+            {
+                fileManager.notifyProgress(OperationType.MIRROR, (int)(writtenBytes * 99 / totalBytes));
+            }
+            
+            return count;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return target.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            target.close();
+        }
+    }
+}
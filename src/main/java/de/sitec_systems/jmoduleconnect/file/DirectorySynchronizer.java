@@ -0,0 +1,397 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Synchronizes a local directory tree to the flash filesystem for 
+ * {@link ModuleFileManager#synchronize(Path, String, boolean, boolean)}. The 
+ * methods must be called with the operation lock of the 
+ * {@link ModuleFileManager}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ class DirectorySynchronizer
+{
+    private final ModuleFileManager fileManager;
+    
+    private static final Logger LOG = LoggerFactory.getLogger(DirectorySynchronizer.class);
+    
+    /**
+     * Constructs a synchronizer for a file manager.
+     * @param fileManager The file manager for the communication to the device
+     * @since 1.6
+     */
+    /* package */ DirectorySynchronizer(final ModuleFileManager fileManager)
+    {
+        this.fileManager = fileManager;
+    }
+    
+    /**
+     * Synchronizes a local directory tree to a directory on the flash 
+     * filesystem. The missing directories of the remote path are created.
+     * @param localDirectory The local directory
+     * @param remoteDirectory The relative or absolute path of the directory 
+     *        on flash filesystem
+     * @param deleteStale If <code>true</code> the files and directories they 
+     *        dont exist locally will be deleted
+     * @param useManifest If <code>true</code> the hashes of the files are 
+     *        compared with the manifest {@link ModuleFileManager#SYNC_MANIFEST}
+     * @return The statistics of the synchronisation
+     * @throws InterruptedIOException Thrown after an interrupt by {@link ModuleFileManager#cancel() }
+     * @throws IOException The reading of the local files or the communication
+     *         to the device failed
+     * @since 1.6
+     */
+    /* package */ SyncResult synchronize(final Path localDirectory
+            , final String remoteDirectory, final boolean deleteStale
+            , final boolean useManifest) throws InterruptedIOException, IOException
+    {
+        final SyncResult result = new SyncResult();
+        final FileMeta base = ensureDirectory(ModuleFileManager.resolveDirectory(
+                fileManager.getWorkingDirectory()
+                , remoteDirectory.isEmpty() ? "." : remoteDirectory), result);
+
+        final byte[] oldManifest = useManifest ? readManifest() : null;
+        final Map<String, String> manifestEntries = useManifest 
+                ? parseManifest(oldManifest) : null;
+        final StringBuilder newManifest = useManifest ? new StringBuilder() : null;
+
+        synchronizeDirectory(localDirectory, base, "", deleteStale
+                , manifestEntries, newManifest, result);
+
+        if(useManifest)
+        {
+            final byte[] manifest = newManifest.toString().getBytes(
+                    ModuleFileManager.MANIFEST_CHARSET);
+            if(!Arrays.equals(manifest, oldManifest))
+            {
+                fileManager.moveToDirectory(base);
+                fileManager.putFileData(ModuleFileManager.SYNC_MANIFEST, new Date()
+                        , manifest.length
+                        , Channels.newChannel(new ByteArrayInputStream(manifest)), true);
+            }
+        }
+
+        LOG.debug("Synchronisation of: {} finished: {}", localDirectory, result);
+
+        return result;
+    }
+    
+    /**
+     * Synchronizes a local directory recursive with a directory on flash 
+     * filesystem. The stale entries are deleted at first to free space, then
+     * the changed files are uploaded and afterwards the sub directories are 
+     * synchronized depth first, so every directory is entered only once.
+     * @param localDirectory The local directory
+     * @param directory The directory on flash filesystem
+     * @param relativePath The path of the directory relative to the base 
+     *        directory of the synchronisation with <code>/</code> at the end
+     * @param deleteStale If <code>true</code> the files and directories they 
+     *        dont exist locally will be deleted
+     * @param manifestEntries The entries of the old manifest or <code>null</code>
+     *        if no manifest is used
+     * @param newManifest The builder for the new manifest or <code>null</code>
+     *        if no manifest is used
+     * @param result The statistics of the synchronisation
+     * @throws InterruptedIOException Thrown after an interrupt by {@link ModuleFileManager#cancel() }
+     * @throws IOException The reading of the local files or the communication
+     *         to the device failed
+     * @since 1.6
+     */
+    private void synchronizeDirectory(final Path localDirectory
+            , final FileMeta directory, final String relativePath
+            , final boolean deleteStale, final Map<String, String> manifestEntries
+            , final StringBuilder newManifest, final SyncResult result) 
+            throws InterruptedIOException, IOException
+    {
+        final List<Path> files = new ArrayList<Path>();
+        final List<Path> directories = new ArrayList<Path>();
+        final DirectoryStream<Path> stream = Files.newDirectoryStream(localDirectory);
+        try
+        {
+            for(final Path path: stream)
+            {
+                if(Files.isDirectory(path))
+                {
+                    directories.add(path);
+                }
+                else
+                {
+                    files.add(path);
+                }
+            }
+        }
+        finally
+        {
+            stream.close();
+        }
+        Collections.sort(files);
+        Collections.sort(directories);
+        
+        fileManager.moveToDirectory(directory);
+        
+        final Map<String, FileMeta> remoteEntries = new HashMap<String, FileMeta>();
+        for(final FileMeta fileMeta: fileManager.getCurrentFileListing())
+        {
+            remoteEntries.put(fileMeta.getName().toLowerCase(Locale.ROOT), fileMeta);
+        }
+        if(relativePath.isEmpty() && manifestEntries != null)
+        {
+            remoteEntries.remove(ModuleFileManager.SYNC_MANIFEST);
+        }
+        
+        final Map<String, FileMeta> staleEntries = new HashMap<String, FileMeta>(remoteEntries);
+        for(final Path path: files)
+        {
+            staleEntries.remove(path.getFileName().toString().toLowerCase(Locale.ROOT));
+        }
+        for(final Path path: directories)
+        {
+            staleEntries.remove(path.getFileName().toString().toLowerCase(Locale.ROOT));
+        }
+        if(deleteStale)
+        {
+            for(final FileMeta fileMeta: staleEntries.values())
+            {
+                fileManager.checkCanceled();
+                fileManager.deleteEntry(fileMeta.getName(), true);
+                result.addDeletedEntry();
+            }
+        }
+        
+        for(final Path path: files)
+        {
+            fileManager.checkCanceled();
+            final String name = path.getFileName().toString();
+            final String key = name.toLowerCase(Locale.ROOT);
+            final long size = Files.size(path);
+            final long lastModified = Files.getLastModifiedTime(path).toMillis();
+            final String hash = newManifest != null ? getHash(path) : null;
+            final FileMeta remote = remoteEntries.get(key);
+            final String manifestEntry = size + "\t" + hash;
+            
+            final String oldManifestEntry = manifestEntries != null 
+                    ? manifestEntries.get(relativePath.toLowerCase(Locale.ROOT) + key) : null;
+            
+            if(remote != null && !remote.isDirectory() && remote.getSize() == size 
+                    && (oldManifestEntry != null ? oldManifestEntry.equals(manifestEntry)
+                    : Math.abs(remote.getLastModified().getTime() - lastModified) 
+                    <= ModuleFileManager.SYNC_TIME_TOLERANCE))
+            {
+                result.addSkippedFile();
+            }
+            else
+            {
+                if(remote != null && remote.isDirectory())
+                {
+                    fileManager.deleteEntry(remote.getName(), true);
+                    result.addDeletedEntry();
+                }
+                fileManager.putLocalFile(path, true);
+                result.addUploadedFile(size);
+            }
+            
+            if(newManifest != null)
+            {
+                newManifest.append(relativePath).append(name).append('\t')
+                        .append(manifestEntry).append('\n');
+            }
+        }
+        
+        for(final Path path: directories)
+        {
+            fileManager.checkCanceled();
+            final String name = path.getFileName().toString();
+            FileMeta remote = remoteEntries.get(name.toLowerCase(Locale.ROOT));
+            if(remote == null || !remote.isDirectory())
+            {
+                fileManager.moveToDirectory(directory);
+                if(remote != null)
+                {
+                    fileManager.deleteEntry(remote.getName(), true);
+                    result.addDeletedEntry();
+                }
+                fileManager.createDirectory(name);
+                result.addCreatedDirectory();
+                remote = fileManager.getDirectoryPointer();
+            }
+            
+            synchronizeDirectory(path, remote, relativePath + remote.getName() + '/'
+                    , deleteStale, manifestEntries, newManifest, result);
+        }
+    }
+    
+    /**
+     * Changes the directory pointer to a directory and creates the missing 
+     * directories of the path.
+     * @param target The directory
+     * @param result The statistics of the synchronisation
+     * @return The directory
+     * @throws IOException A file with the name of a directory exists or the 
+     *         communication to the device failed
+     * @since 1.6
+     */
+    private FileMeta ensureDirectory(final FileMeta target, final SyncResult result) 
+            throws IOException
+    {
+        final FileMeta parent = target.getParentDirectory();
+        if(parent == null)
+        {
+            fileManager.moveToDirectory(target);
+            return target;
+        }
+        
+        ensureDirectory(parent, result);
+        final FileMeta existing = fileManager.getFileMetaFromListing(target.getName());
+        if(existing == null)
+        {
+            fileManager.createDirectory(target.getName());
+            result.addCreatedDirectory();
+        }
+        else if(existing.isDirectory())
+        {
+            fileManager.moveToDirectory(existing);
+        }
+        else
+        {
+            throw new IOException("The path: " + existing.getPath() + " is a file");
+        }
+        
+        return fileManager.getDirectoryPointer();
+    }
+    
+    /**
+     * Reads the manifest of a synchronisation from the current directory.
+     * @return The content of the manifest or <code>null</code> if no manifest
+     *         exists
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    private byte[] readManifest() throws IOException
+    {
+        final FileMeta manifest = fileManager.getFileMetaFromListing(
+                ModuleFileManager.SYNC_MANIFEST);
+        if(manifest == null || manifest.isDirectory())
+        {
+            return null;
+        }
+        
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(manifest.getSize());
+        fileManager.getFileData(manifest.getName(), Channels.newChannel(out));
+        
+        return out.toByteArray();
+    }
+    
+    /**
+     * Parses the manifest of a synchronisation. Each line contains the 
+     * relative path, the size and the MD5 hash of a file separated by tabs.
+     * @param manifest The content of the manifest or <code>null</code>
+     * @return The size and hash separated by tab by the relative path in 
+     *         lower case
+     * @since 1.6
+     */
+    private static Map<String, String> parseManifest(final byte[] manifest)
+    {
+        final Map<String, String> entries = new HashMap<String, String>();
+        if(manifest != null)
+        {
+            for(final String line: new String(manifest, ModuleFileManager.MANIFEST_CHARSET).split("\n"))
+            {
+                final int index = line.indexOf('\t');
+                if(index > 0)
+                {
+                    entries.put(line.substring(0, index).toLowerCase(Locale.ROOT)
+                            , line.substring(index + 1));
+                }
+            }
+        }
+        
+        return entries;
+    }
+    
+    /**
+     * Calculates the MD5 hash of a local file.
+     * @param path The path of the local file
+     * @return The hash as hex <code>String</code>
+     * @throws IOException The reading of the file failed
+     * @since 1.6
+     */
+    /* package */ static String getHash(final Path path) throws IOException
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("MD5");
+        }
+        catch (final NoSuchAlgorithmException ex)
+        {
+            throw new IOException(ex);
+        }
+        
+        final InputStream in = Files.newInputStream(path);
+        try
+        {
+            final byte[] buffer = new byte[8192];
+            int count;
+            while((count = in.read(buffer)) >= 0)
+            {
+                digest.update(buffer, 0, count);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        
+        return String.format("%032x", new BigInteger(1, digest.digest()));
+    }
+}
@@ -30,7 +30,13 @@ package de.sitec_systems.jmoduleconnect.file;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Date;
 import java.util.Set;
 
 
@@ -49,7 +55,10 @@ public interface FileManager extends Closeable
     void addProgressListener(final ProgressListener progressListener);
     
     /**
-     * Cancel an time intensive operation. This method is {@link Thread} safety.
+     * Cancel an time intensive operation. This method is {@link Thread} safety
+     * and dont wait for the running operation. The OBEX <code>ABORT</code> is
+     * sent immediately and the operation ends at the next packet with an 
+     * {@link InterruptedIOException}.
      * @throws IOException The communication to the device failed
      * @since 1.0
      */
@@ -75,8 +84,8 @@ public interface FileManager extends Closeable
     
     /**
      * Delete a file or folder on the flash filesystem.
-     * @param filename The specific file or folder. Only files or folder on the 
-     *        current directory. Paths not allowed
+     * @param filename The specific file or folder. The path can be relative to
+     *        the current directory or absolute with drive letter
      * @param filledFolder If <code>true</code> and the filename is an not empty 
      *        folder then erases the folder with included files and sub folders. 
      *        If <code>false</code> and the filename is an not empty folder then
@@ -91,7 +100,7 @@ public interface FileManager extends Closeable
     
     /**
      * Gets the complete memory capacity of the flash filesystem. This dont means
-     * the free space.
+     * the free space. The capacity is read only once from the device.
      * @return The complete memory capacity in Byte
      * @throws IOException The communication to the device failed
      * @since 1.0
@@ -99,7 +108,8 @@ public interface FileManager extends Closeable
     long getDiskSpace() throws IOException;
     
     /**
-     * Gets the current directory.
+     * Gets the current directory. Operations on other directories dont change
+     * the current directory.
      * @return The current directory
      * @since 1.0
      */
@@ -108,7 +118,8 @@ public interface FileManager extends Closeable
     /**
      * Transfers an file from flash filesystem to local memory. Only files 
      * allowed to transfer. 
-     * @param filename The name of file
+     * @param filename The name of file. The path can be relative to the 
+     *        current directory or absolute with drive letter
      * @return The file with data
      * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
      * @throws IOException The parameter filename is an directory, dont exist 
@@ -118,6 +129,66 @@ public interface FileManager extends Closeable
     FileContent getFile(final String filename) 
             throws InterruptedIOException, IOException;
     
+    /**
+     * Transfers an file from flash filesystem to an {@link OutputStream}. Each
+     * received part of the file is written directly, so the memory usage is 
+     * independent of the file size. The stream will not be closed.
+     * @param filename The name of file. The path can be relative to the 
+     *        current directory or absolute with drive letter
+     * @param out The destination of the file data
+     * @return The count of transfered bytes
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException The parameter filename is an directory, dont exist,
+     *         the communication to the device failed or the writing to the 
+     *         stream failed
+     * @throws IllegalArgumentException If the parameter out is <code>null</code>
+     * @since 1.6
+     */
+    long getFile(final String filename, final OutputStream out) 
+            throws InterruptedIOException, IOException;
+    
+    /**
+     * Transfers an file from flash filesystem to an {@link WritableByteChannel}. 
+     * Each received part of the file is written directly, so the memory usage 
+     * is independent of the file size. The channel will not be closed.
+     * @param filename The name of file. The path can be relative to the 
+     *        current directory or absolute with drive letter
+     * @param channel The destination of the file data
+     * @return The count of transfered bytes
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException The parameter filename is an directory, dont exist,
+     *         the communication to the device failed or the writing to the 
+     *         channel failed
+     * @throws IllegalArgumentException If the parameter channel is <code>null</code>
+     * @since 1.6
+     */
+    long getFile(final String filename, final WritableByteChannel channel) 
+            throws InterruptedIOException, IOException;
+    
+    /**
+     * Downloads a directory of the flash filesystem recursive to a local 
+     * directory. The directory tree is walked once with the cached file 
+     * listings, then each file is streamed directly to the local filesystem.
+     * Files they exist locally with same size and a modification date that 
+     * differs at most two seconds are skipped. The aggregate progress of all 
+     * files is notified with the {@link OperationType#MIRROR}. The current 
+     * directory will not be changed.
+     * @param remoteDirectory The relative or absolute path of the directory on 
+     *        flash filesystem
+     * @param localDirectory The local directory. It will be created if it
+     *        dont exist
+     * @return The statistics of the mirror
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException The remote directory dont exist, the device has 
+     *         delivered a name that would leave the local directory, the 
+     *         writing of the local files failed or the communication to the 
+     *         device failed
+     * @throws IllegalArgumentException If an input value is <code>null</code>
+     * @since 1.6
+     */
+    MirrorResult mirror(final String remoteDirectory, final Path localDirectory)
+            throws InterruptedIOException, IOException;
+    
     /**
      * Gets the file listing of the current directory.
      * @return The files and folders from current directory
@@ -126,7 +197,52 @@ public interface FileManager extends Closeable
     Set<FileMeta> getFileListing() throws IOException;
     
     /**
-     * Gets the free available space on the flash filesystem.
+     * Gets the file listing of a directory by its path. The path can be 
+     * relative to the current directory or absolute with drive letter like
+     * <code>a:/cfg</code>. A cached file listing is returned without any
+     * communication. The current directory will not be changed.
+     * @param path The path of the directory
+     * @return The files and folders from the directory
+     * @throws IOException The directory dont exist or the communication to the
+     *         device failed
+     * @throws IllegalArgumentException If the parameter path is <code>null</code>
+     * @since 1.6
+     */
+    Set<FileMeta> getFileListing(final String path) throws IOException;
+    
+    /**
+     * Reads the file listing of the current directory again from the device. 
+     * The file listings are cached and updated by the operations of this 
+     * interface, so this is only necessary if the flash filesystem was changed
+     * by an other way.
+     * @return The files and folders from current directory
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    Set<FileMeta> refreshFileListing() throws IOException;
+    
+    /**
+     * Gets the metadata of a file or directory by its path. The path can be 
+     * relative to the current directory or absolute with drive letter like
+     * <code>a:/cfg/app.jad</code>. The lookup uses the cached file listings,
+     * only the listing of the parent directory will be read if it is not 
+     * cached. The current directory will not be changed.
+     * @param path The path of the file or directory
+     * @return The {@link FileMeta} or <code>null</code> if the file or 
+     *         directory dont exist
+     * @throws IOException The parent directory dont exist or the 
+     *         communication to the device failed
+     * @throws IllegalArgumentException If the parameter path is <code>null</code>
+     * @since 1.6
+     */
+    FileMeta getFileMeta(final String path) throws IOException;
+    
+    /**
+     * Gets the free available space on the flash filesystem. The free space is
+     * estimated locally from the operations of this interface and read again
+     * from the device after some seconds or after an operation with unknown 
+     * effect like {@link #cancel()}. So changes of the flash filesystem by an 
+     * other way are not visible immediately.
      * @return The free available space in Byte
      * @throws IOException The communication to the device failed
      * @since 1.0
@@ -134,8 +250,10 @@ public interface FileManager extends Closeable
     long getFreeSpace() throws IOException;
     
     /**
-     * Creates a new directory on the flash filesystem.
-     * @param directoryName The name for new directory
+     * Creates a new directory on the flash filesystem. The parent directory 
+     * must exist.
+     * @param directoryName The name for new directory. The path can be 
+     *        relative to the current directory or absolute with drive letter
      * @throws IOException If the directory exists or the communication to the 
      *         device failed
      * @since 1.0
@@ -167,6 +285,102 @@ public interface FileManager extends Closeable
      */
     void putFile(final FileContent file, final boolean override)
             throws InterruptedIOException, IOException;
+    
+    /**
+     * Puts the data of an {@link InputStream} as file to the flash filesystem 
+     * on the current directory. The data will be read part by part during the
+     * transfer, so the file is never hold complete in memory. The stream will 
+     * not be closed.
+     * @param filename The name of the file. The path can be relative to the 
+     *        current directory or absolute with drive letter
+     * @param lastModified The last modification date
+     * @param size The size of the file in bytes. The stream must contain at 
+     *        least this count of bytes
+     * @param in The source of the file data
+     * @param override If <code>true</code> it will override the old one on 
+     *        flash filesystem. If <code>false</code> and a file with same name
+     *        exists on flash file system then throws an {@link IOException}
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException If parameter override <code>false</code> and a file 
+     *         with same name exists on flash filesystem, the stream ends before
+     *         size or the communication to the device failed
+     * @throws IllegalArgumentException If an input value is <code>null</code>
+     *         or the size is negative
+     * @since 1.6
+     */
+    void putFile(final String filename, final Date lastModified, final long size
+            , final InputStream in, final boolean override)
+            throws InterruptedIOException, IOException;
+    
+    /**
+     * Puts the data of an {@link ReadableByteChannel} as file to the flash 
+     * filesystem on the current directory. The data will be read part by part 
+     * during the transfer, so the file is never hold complete in memory. The
+     * channel will not be closed.
+     * @param filename The name of the file. The path can be relative to the 
+     *        current directory or absolute with drive letter
+     * @param lastModified The last modification date
+     * @param size The size of the file in bytes. The channel must contain at 
+     *        least this count of bytes
+     * @param channel The source of the file data
+     * @param override If <code>true</code> it will override the old one on 
+     *        flash filesystem. If <code>false</code> and a file with same name
+     *        exists on flash file system then throws an {@link IOException}
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException If parameter override <code>false</code> and a file 
+     *         with same name exists on flash filesystem, the channel ends before
+     *         size or the communication to the device failed
+     * @throws IllegalArgumentException If an input value is <code>null</code>
+     *         or the size is negative
+     * @since 1.6
+     */
+    void putFile(final String filename, final Date lastModified, final long size
+            , final ReadableByteChannel channel, final boolean override)
+            throws InterruptedIOException, IOException;
+    
+    /**
+     * Puts a local file to the flash filesystem on the current directory. The
+     * local file will be memory mapped if possible, so the file is never hold 
+     * complete in the heap. The name and last modification date are taken 
+     * from the local file.
+     * @param path The path of the local file
+     * @param override If <code>true</code> it will override the old one on 
+     *        flash filesystem. If <code>false</code> and a file with same name
+     *        exists on flash file system then throws an {@link IOException}
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException If parameter override <code>false</code> and a file 
+     *         with same name exists on flash filesystem, the reading of the 
+     *         local file failed or the communication to the device failed
+     * @throws IllegalArgumentException If the parameter path is <code>null</code>
+     * @since 1.6
+     */
+    void putFile(final Path path, final boolean override)
+            throws InterruptedIOException, IOException;
+    
+    /**
+     * Puts a local file resumable as numbered part files to the flash 
+     * filesystem on the current directory. The flash filesystem supports no 
+     * appending to files, so the file is splitted in parts of the size from 
+     * the checkpoint and the parts must be reassembled on the device by the 
+     * application. The names of the parts are defined by 
+     * {@link UploadCheckpoint#getPartName(String, int)}. Every acknowledged 
+     * part is recorded in the checkpoint and a retry with the same checkpoint
+     * continues with the first part they is not on the flash filesystem. If
+     * the local file was changed since the checkpoint the upload starts again
+     * from the first part. Parts of a previous upload behind the last part 
+     * are deleted. After all parts the manifest 
+     * {@link UploadCheckpoint#getManifestName(String)} with the sizes and the
+     * MD5 hash is written, so the parts are complete if the manifest exists.
+     * @param path The path of the local file
+     * @param checkpoint The checkpoint of the upload
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException The reading of the local file failed or the 
+     *         communication to the device failed
+     * @throws IllegalArgumentException If an input value is <code>null</code>
+     * @since 1.6
+     */
+    void putFileParts(final Path path, final UploadCheckpoint checkpoint)
+            throws InterruptedIOException, IOException;
 
     /**
      * Removes an {@link ProgressListener}.
@@ -174,4 +388,34 @@ public interface FileManager extends Closeable
      * @since 1.0
      */
     void removeProgressListener(final ProgressListener progressListener);
+    
+    /**
+     * Synchronizes a local directory tree to a directory on the flash 
+     * filesystem. Only new and changed files are uploaded, missing directories
+     * are created and the directory tree is walked depth first to keep the 
+     * directory changes low. A file is unchanged if the size is equal and the
+     * last modification dates differ at most two seconds. With manifest the 
+     * MD5 hashes of the files are stored in the file 
+     * {@link ModuleFileManager#SYNC_MANIFEST} in the remote directory and a 
+     * file listed in the manifest is unchanged if the size and hash are equal,
+     * so files with changed modification date but same content are not 
+     * uploaded again.
+     * The current directory will not be changed.
+     * @param localDirectory The local directory
+     * @param remoteDirectory The relative or absolute path of the directory on 
+     *        flash filesystem. It will be created if it dont exist
+     * @param deleteStale If <code>true</code> the files and directories they 
+     *        dont exist in the local directory will be deleted
+     * @param useManifest If <code>true</code> the manifest with the hashes 
+     *        will be used and updated
+     * @return The statistics of the synchronisation
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException The local directory dont exist, the reading of the 
+     *         local files failed or the communication to the device failed
+     * @throws IllegalArgumentException If an input value is <code>null</code>
+     * @since 1.6
+     */
+    SyncResult synchronize(final Path localDirectory, final String remoteDirectory
+            , final boolean deleteStale, final boolean useManifest) 
+            throws InterruptedIOException, IOException;
 }
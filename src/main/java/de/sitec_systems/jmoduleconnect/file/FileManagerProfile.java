@@ -0,0 +1,228 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+/**
+ * Contains the tuning parameters of the {@link ModuleFileManager}. The 
+ * default values of a new profile are suitable for all supported modules.
+ * Changes of the profile after creation of the {@link ModuleFileManager} have
+ * no effect.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class FileManagerProfile
+{
+    private int maxPacketLength;
+    private boolean singleResponseMode;
+    private int putWindow;
+    private int idleTimeout;
+    
+    /**
+     * The minimum OBEX packet length defined by the OBEX standard.
+     * @since 1.6
+     */
+    public static final int MIN_PACKET_LENGTH = 255;
+    
+    /**
+     * The maximum OBEX packet length defined by the OBEX standard.
+     * @since 1.6
+     */
+    public static final int MAX_PACKET_LENGTH = 0xFFFF;
+    
+    /**
+     * The default upper limit for the OBEX packet length. A packet of this 
+     * length needs about 0.4 seconds at 115200 baud and stays far below the 
+     * timeout for a response, also at lower baud rates.
+     * @since 1.6
+     */
+    public static final int DEFAULT_PACKET_LENGTH = 0x1000;
+    
+    /**
+     * The maximum count of PUT packets without response.
+     * @since 1.6
+     */
+    public static final int MAX_PUT_WINDOW = 16;
+
+    /**
+     * Constructs a profile with the default values.
+     * @since 1.6
+     */
+    public FileManagerProfile()
+    {
+        maxPacketLength = DEFAULT_PACKET_LENGTH;
+        putWindow = 1;
+    }
+
+    /**
+     * Gets the upper limit for the length of OBEX packets.
+     * @return The upper limit for the length of OBEX packets
+     * @since 1.6
+     */
+    public int getMaxPacketLength()
+    {
+        return maxPacketLength;
+    }
+
+    /**
+     * Sets the upper limit for the length of OBEX packets. The length is 
+     * advertised to the device in the OBEX <code>CONNECT</code> and the 
+     * smaller value of this and the length from the device will be used for 
+     * all PUT and GET packets. The default value is {@link #DEFAULT_PACKET_LENGTH}.
+     * <p>
+     * A packet must be transferred completely within the response timeout of 
+     * 6 seconds. A packet of {@link #MAX_PACKET_LENGTH} needs about 5.7 seconds 
+     * at 115200 baud, so longer packets than the default should only be used 
+     * with faster connections like USB.
+     * </p>
+     * @param maxPacketLength The upper limit for the length of OBEX packets
+     * @throws IllegalArgumentException If the parameter maxPacketLength is 
+     *         not between {@link #MIN_PACKET_LENGTH} and {@link #MAX_PACKET_LENGTH}
+     * @since 1.6
+     */
+    public void setMaxPacketLength(final int maxPacketLength)
+    {
+        if(maxPacketLength < MIN_PACKET_LENGTH || maxPacketLength > MAX_PACKET_LENGTH)
+        {
+            throw new IllegalArgumentException("The parameter maxPacketLength must be between " 
+                    + MIN_PACKET_LENGTH + " and " + MAX_PACKET_LENGTH);
+        }
+        this.maxPacketLength = maxPacketLength;
+    }
+
+    /**
+     * Gets if the OBEX Single Response Mode will be requested.
+     * @return <code>true</code> - The Single Response Mode will be requested /
+     *         <code>false</code> - Each packet will be confirmed
+     * @since 1.6
+     */
+    public boolean isSingleResponseMode()
+    {
+        return singleResponseMode;
+    }
+
+    /**
+     * Sets if the OBEX Single Response Mode (OBEX 1.5) will be requested for
+     * PUT and GET operations. If the device agrees then PUT packets are sent 
+     * without waiting for a response and GET packets are received back to 
+     * back. If the device dont agree then the operation continues with a 
+     * response for each packet. The default value is <code>false</code>, 
+     * because older modules are not tested with the additional header.
+     * @param singleResponseMode <code>true</code> - Request the Single Response
+     *        Mode / <code>false</code> - Each packet will be confirmed
+     * @since 1.6
+     */
+    public void setSingleResponseMode(final boolean singleResponseMode)
+    {
+        this.singleResponseMode = singleResponseMode;
+    }
+
+    /**
+     * Gets the count of PUT packets they can be sent without waiting for the
+     * response.
+     * @return The count of PUT packets without response
+     * @since 1.6
+     */
+    public int getPutWindow()
+    {
+        return putWindow;
+    }
+
+    /**
+     * Sets the count of PUT packets they can be sent without waiting for the
+     * response, if the Single Response Mode is not active. The responses are
+     * matched in order of sending and the operation is aborted at the first 
+     * error response. If the device misbehaves (no response or an early final
+     * response) then the pipelining is disabled for the following operations.
+     * The default value is <code>1</code>, so each packet is confirmed before
+     * the next is sent.
+     * @param putWindow The count of PUT packets without response
+     * @throws IllegalArgumentException If the parameter putWindow is not 
+     *         between <code>1</code> and {@link #MAX_PUT_WINDOW}
+     * @since 1.6
+     */
+    public void setPutWindow(final int putWindow)
+    {
+        if(putWindow < 1 || putWindow > MAX_PUT_WINDOW)
+        {
+            throw new IllegalArgumentException("The parameter putWindow must be between 1 and " 
+                    + MAX_PUT_WINDOW);
+        }
+        this.putWindow = putWindow;
+    }
+
+    /**
+     * Gets the time without file operations after them the OBEX mode will be 
+     * closed.
+     * @return The idle timeout in milliseconds or <code>0</code> if the OBEX 
+     *         mode stays open
+     * @since 1.6
+     */
+    public int getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the time without file operations after them the OBEX mode will be 
+     * closed and the device returns to AT mode. The OBEX mode will be opened 
+     * again at the next file operation. Independent of this value the OBEX 
+     * mode is closed if an AT command is sent with the {@link de.sitec_systems.jmoduleconnect.at.At}
+     * of the file manager. The default value is <code>0</code>, so the OBEX
+     * mode stays open until an AT command is sent or the file manager is 
+     * closed.
+     * @param idleTimeout The idle timeout in milliseconds or <code>0</code> 
+     *        to keep the OBEX mode open
+     * @throws IllegalArgumentException If the parameter idleTimeout is negative
+     * @since 1.6
+     */
+    public void setIdleTimeout(final int idleTimeout)
+    {
+        if(idleTimeout < 0)
+        {
+            throw new IllegalArgumentException("The parameter idleTimeout cant be negative");
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("FileManagerProfile{maxPacketLength=");
+        sb.append(maxPacketLength);
+        sb.append(", singleResponseMode=");
+        sb.append(singleResponseMode);
+        sb.append(", putWindow=");
+        sb.append(putWindow);
+        sb.append(", idleTimeout=");
+        sb.append(idleTimeout);
+        sb.append('}');
+        
+        return sb.toString();
+    }
+}
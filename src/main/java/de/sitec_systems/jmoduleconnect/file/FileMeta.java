@@ -149,6 +149,30 @@ public class FileMeta implements Comparable<FileMeta>
         return parentDirectory;
     }
 
+    /**
+     * Gets the absolute path of the file or directory, e.g. 
+     * <code>a:/folder/file.txt</code>. The path starts with the drive of the
+     * root directory.
+     * @return The absolute path of the file or directory
+     * @since 1.6
+     */
+    public String getPath()
+    {
+        if(parentDirectory == null)
+        {
+            return name;
+        }
+        
+        final StringBuilder sb = new StringBuilder(parentDirectory.getPath());
+        if(sb.length() == 0 || sb.charAt(sb.length() - 1) != '/')
+        {
+            sb.append('/');
+        }
+        sb.append(name);
+        
+        return sb.toString();
+    }
+
     /**
      * Gets the size of an file. If the object an directory then is size always
      * <code>0</code>.
@@ -0,0 +1,224 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Caches the metadata of the flash filesystem as tree of directory listings.
+ * The listings are populated lazy per directory and the known effects of 
+ * successful operations are applied to them, so a directory must be read from 
+ * the device only after an invalidation. The directories are identified by 
+ * their absolute path and the files by their name, both are hashed without 
+ * case sensitivity. So the lookup of a file by path is independent of the 
+ * size of the directory. This class is {@link Thread} safety.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ class FileMetaCache
+{
+    private final Map<String, Listing> listings = new HashMap<String, Listing>();
+    
+    /**
+     * Gets the cached file listing of a directory.
+     * @param directory The directory
+     * @return The cached file listing as unmodifiable {@link Set} or 
+     *         <code>null</code> if the directory is not cached
+     * @since 1.6
+     */
+    /* package */ synchronized Set<FileMeta> get(final FileMeta directory)
+    {
+        final Listing listing = listings.get(getKey(directory));
+        
+        return listing != null ? listing.view : null;
+    }
+    
+    /**
+     * Checks if the listing of a directory is cached.
+     * @param directory The directory
+     * @return <code>true</code> if the listing is cached
+     * @since 1.6
+     */
+    /* package */ synchronized boolean contains(final FileMeta directory)
+    {
+        return listings.containsKey(getKey(directory));
+    }
+    
+    /**
+     * Searchs a file or directory in the cached listing of a directory without
+     * case sensitivity.
+     * @param directory The parent directory
+     * @param name The name of the file or directory
+     * @return The {@link FileMeta} or <code>null</code> if the entry dont 
+     *         exist or the directory is not cached
+     * @since 1.6
+     */
+    /* package */ synchronized FileMeta find(final FileMeta directory, final String name)
+    {
+        final Listing listing = listings.get(getKey(directory));
+        
+        return listing != null ? listing.byName.get(getKey(name)) : null;
+    }
+    
+    /**
+     * Stores the file listing of a directory.
+     * @param directory The directory
+     * @param files The files and directories of the directory
+     * @since 1.6
+     */
+    /* package */ synchronized void put(final FileMeta directory, final Set<FileMeta> files)
+    {
+        final Listing listing = new Listing();
+        for(final FileMeta fileMeta: files)
+        {
+            listing.add(fileMeta);
+        }
+        listings.put(getKey(directory), listing);
+    }
+    
+    /**
+     * Adds an file or directory to the cached listing of a directory. An entry
+     * with the same name will be replaced. If the directory is not cached then
+     * nothing happens.
+     * @param directory The parent directory
+     * @param fileMeta The new file or directory
+     * @since 1.6
+     */
+    /* package */ synchronized void add(final FileMeta directory, final FileMeta fileMeta)
+    {
+        final Listing listing = listings.get(getKey(directory));
+        if(listing != null)
+        {
+            listing.add(fileMeta);
+        }
+    }
+    
+    /**
+     * Removes an file or directory from the cached listing of a directory. If
+     * it is a directory then the cached listings of it and its sub directories
+     * will be removed also.
+     * @param directory The parent directory
+     * @param name The name of the file or directory
+     * @since 1.6
+     */
+    /* package */ synchronized void remove(final FileMeta directory, final String name)
+    {
+        final Listing listing = listings.get(getKey(directory));
+        if(listing != null)
+        {
+            listing.remove(name);
+        }
+        invalidate(new FileMeta(name, directory, true));
+    }
+    
+    /**
+     * Removes the cached listings of a directory and its sub directories.
+     * @param directory The directory
+     * @since 1.6
+     */
+    /* package */ synchronized void invalidate(final FileMeta directory)
+    {
+        final String key = getKey(directory);
+        final String subKeyPrefix = key.endsWith("/") ? key : key + '/';
+        final Iterator<String> keyIt = listings.keySet().iterator();
+        while(keyIt.hasNext())
+        {
+            final String currKey = keyIt.next();
+            if(currKey.equals(key) || currKey.startsWith(subKeyPrefix))
+            {
+                keyIt.remove();
+            }
+        }
+    }
+    
+    /**
+     * Removes all cached listings.
+     * @since 1.6
+     */
+    /* package */ synchronized void clear()
+    {
+        listings.clear();
+    }
+    
+    /**
+     * Gets the key of a directory for the cache.
+     * @param directory The directory
+     * @return The path of the directory in lower case
+     * @since 1.6
+     */
+    private static String getKey(final FileMeta directory)
+    {
+        return getKey(directory.getPath());
+    }
+    
+    /**
+     * Gets the key of a name or path for the cache.
+     * @param name The name or path
+     * @return The name or path in lower case
+     * @since 1.6
+     */
+    private static String getKey(final String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * The cached listing of a directory. The entries are sorted for the 
+     * listing and hashed by name for the lookup.
+     * @since 1.6
+     */
+    private static class Listing
+    {
+        private final Set<FileMeta> files = new TreeSet<FileMeta>();
+        private final Set<FileMeta> view = Collections.unmodifiableSet(files);
+        private final Map<String, FileMeta> byName = new HashMap<String, FileMeta>();
+        
+        private void add(final FileMeta fileMeta)
+        {
+            remove(fileMeta.getName());
+            files.add(fileMeta);
+            byName.put(getKey(fileMeta.getName()), fileMeta);
+        }
+        
+        private void remove(final String name)
+        {
+            final FileMeta old = byName.remove(getKey(name));
+            if(old != null)
+            {
+                files.remove(old);
+            }
+        }
+    }
+}
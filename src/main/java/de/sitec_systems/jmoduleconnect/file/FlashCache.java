@@ -0,0 +1,266 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the state of the flash filesystem with the file listings in a 
+ * {@link FileMetaCache} and the free space in a {@link FreeSpaceEstimate}. 
+ * This class contains the rules how the operations of the 
+ * {@link ModuleFileManager} change the cache:
+ * <ul>
+ *     <li>A successful put, creation, deletion or local move is applied to the
+ *         listing and to the free space</li>
+ *     <li>A deletion of a not cached file, an aborted put or a refresh 
+ *         invalidates the listing of the directory and the free space</li>
+ *     <li>A move over directories, a reopened OBEX mode or a deletion of all
+ *         files clears the cache</li>
+ * </ul>
+ * This class is {@link Thread} safety.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ class FlashCache
+{
+    private final FileMetaCache listings = new FileMetaCache();
+    private final FreeSpaceEstimate freeSpace;
+    
+    /**
+     * Constructs an empty cache.
+     * @param maxAge The maximum age of the free space read from the device
+     * @param unit The unit of the maximum age
+     * @param fileAllowance The space in bytes that is reserved for each 
+     *        operation additional to the file size
+     * @since 1.6
+     */
+    /* package */ FlashCache(final long maxAge, final TimeUnit unit
+            , final long fileAllowance)
+    {
+        freeSpace = new FreeSpaceEstimate(maxAge, unit, fileAllowance);
+    }
+    
+    /**
+     * Gets the cached file listing of a directory.
+     * @param directory The directory
+     * @return The cached file listing as unmodifiable {@link Set} or 
+     *         <code>null</code> if the directory is not cached
+     * @since 1.6
+     */
+    /* package */ Set<FileMeta> getListing(final FileMeta directory)
+    {
+        return listings.get(directory);
+    }
+    
+    /**
+     * Checks if the file listing of a directory is cached.
+     * @param directory The directory
+     * @return <code>true</code> if the file listing is cached
+     * @since 1.6
+     */
+    /* package */ boolean containsListing(final FileMeta directory)
+    {
+        return listings.contains(directory);
+    }
+    
+    /**
+     * Finds a file or directory by name without case sensitivity in the 
+     * cached listing of a directory.
+     * @param directory The parent directory
+     * @param name The name of the file or directory
+     * @return The file or directory or <code>null</code> if it is not in the
+     *         cached listing
+     * @since 1.6
+     */
+    /* package */ FileMeta find(final FileMeta directory, final String name)
+    {
+        return listings.find(directory, name);
+    }
+    
+    /**
+     * Stores the file listing of a directory read from the device.
+     * @param directory The directory
+     * @param files The files and directories of the directory
+     * @since 1.6
+     */
+    /* package */ void putListing(final FileMeta directory, final Set<FileMeta> files)
+    {
+        listings.put(directory, files);
+    }
+    
+    /**
+     * Applies a successful put of a file.
+     * @param directory The parent directory
+     * @param filename The name of the file
+     * @param lastModified The last modification date of the file
+     * @param size The size of the file in bytes
+     * @since 1.6
+     */
+    /* package */ void fileCreated(final FileMeta directory, final String filename
+            , final Date lastModified, final long size)
+    {
+        listings.add(directory, new FileMeta(filename, directory, false
+                , new Date(lastModified.getTime() / 1000 * 1000), (int)size));
+        freeSpace.allocate(size);
+    }
+    
+    /**
+     * Applies a successful creation of a directory. The new directory is 
+     * empty, so its listing is cached.
+     * @param directory The new directory
+     * @since 1.6
+     */
+    /* package */ void directoryCreated(final FileMeta directory)
+    {
+        listings.add(directory.getParentDirectory(), directory);
+        listings.put(directory, new TreeSet<FileMeta>());
+        freeSpace.allocate(0);
+    }
+    
+    /**
+     * Applies a successful deletion of a file or directory. If the size of 
+     * the file is not known then the free space estimate is invalidated.
+     * @param directory The parent directory
+     * @param name The name of the file or directory
+     * @since 1.6
+     */
+    /* package */ void entryDeleted(final FileMeta directory, final String name)
+    {
+        final FileMeta fileMeta = listings.find(directory, name);
+        if(fileMeta != null)
+        {
+            freeSpace.release(fileMeta.getSize());
+        }
+        else
+        {
+            freeSpace.invalidate();
+        }
+        listings.remove(directory, name);
+    }
+    
+    /**
+     * Applies a successful move. A move of a file within a directory is 
+     * applied directly, other moves clear the cached listings.
+     * @param directory The directory of the relative paths
+     * @param oldPath The old path
+     * @param newPath The new path
+     * @since 1.6
+     */
+    /* package */ void entryMoved(final FileMeta directory, final String oldPath
+            , final String newPath)
+    {
+        final boolean local = isName(oldPath) && isName(newPath);
+        final FileMeta source = local ? listings.find(directory, oldPath) : null;
+        
+        if(source != null && !source.isDirectory())
+        {
+            listings.remove(directory, oldPath);
+            listings.add(directory, new FileMeta(newPath, directory
+                    , false, source.getLastModified(), source.getSize()));
+        }
+        else
+        {
+            listings.clear();
+        }
+    }
+    
+    /**
+     * Invalidates the listing of a directory and the free space after an 
+     * operation with unknown effect.
+     * @param directory The directory
+     * @since 1.6
+     */
+    /* package */ void invalidate(final FileMeta directory)
+    {
+        listings.invalidate(directory);
+        freeSpace.invalidate();
+    }
+    
+    /**
+     * Clears the cache, because the flash filesystem could be changed 
+     * without this cache.
+     * @since 1.6
+     */
+    /* package */ void clear()
+    {
+        listings.clear();
+        freeSpace.invalidate();
+    }
+    
+    /**
+     * Gets the free space estimate if it can be used without reading from 
+     * the device.
+     * @return The estimated free space in bytes or <code>-1</code> if the 
+     *         estimate is not valid
+     * @since 1.6
+     */
+    /* package */ long getFreeSpace()
+    {
+        synchronized(freeSpace)
+        {
+            return freeSpace.isValid() ? freeSpace.get() : -1;
+        }
+    }
+    
+    /**
+     * Checks if a file fits with certainty into the estimated free space.
+     * @param size The size of the file in bytes
+     * @return <code>true</code> if the file fits. If <code>false</code> the 
+     *         free space must be read from the device
+     * @since 1.6
+     */
+    /* package */ boolean isSufficient(final long size)
+    {
+        return freeSpace.isSufficient(size);
+    }
+    
+    /**
+     * Sets the free space read from the device.
+     * @param freeSpace The free space in bytes
+     * @since 1.6
+     */
+    /* package */ void updateFreeSpace(final long freeSpace)
+    {
+        this.freeSpace.update(freeSpace);
+    }
+    
+    /**
+     * Checks if a path is the name of an entry in the directory.
+     * @param path The path
+     * @return <code>true</code> if the path contains no separator and drive
+     * @since 1.6
+     */
+    private static boolean isName(final String path)
+    {
+        return path.indexOf('/') < 0 && path.indexOf('\\') < 0 && path.indexOf(':') < 0;
+    }
+}
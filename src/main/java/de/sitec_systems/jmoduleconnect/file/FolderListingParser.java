@@ -0,0 +1,161 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parses the OBEX folder listing XML of a directory. The XML is read directly
+ * from the received bytes with a cached {@link XMLInputFactory} and the 
+ * attributes are looked up by name, so the order of the attributes is not
+ * relevant. This class is {@link Thread} safety.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ final class FolderListingParser
+{
+    private static final XMLInputFactory FACTORY = createFactory();
+    private static final String ENCODING = "ISO-8859-1";
+    private static final String ELEMENT_FILE = "file";
+    private static final String ELEMENT_FOLDER = "folder";
+    private static final String ATTRIBUTE_NAME = "name";
+    private static final String ATTRIBUTE_SIZE = "size";
+    private static final String ATTRIBUTE_MODIFIED = "modified";
+    private static final String TELECOM_FOLDER = "telecom";
+    
+    private FolderListingParser(){}
+    
+    /**
+     * Parses the files and folders from a folder listing XML. The XML will be
+     * decoded as <code>ISO-8859-1</code> independent of the XML declaration.
+     * @param in The folder listing XML
+     * @param directory The directory of the folder listing
+     * @return The files and folders of the directory
+     * @throws XMLStreamException An error at reading the XML
+     * @throws ParseException An error at parsing a value of the XML
+     * @since 1.6
+     */
+    /* package */ static Set<FileMeta> parse(final InputStream in
+            , final FileMeta directory) throws XMLStreamException, ParseException
+    {
+        final XMLStreamReader parser = FACTORY.createXMLStreamReader(in, ENCODING);
+        try
+        {
+            final Set<FileMeta> files = new TreeSet<FileMeta>();
+            while(parser.hasNext())
+            {
+                if(parser.next() == XMLStreamConstants.START_ELEMENT)
+                {
+                    final String element = parser.getLocalName();
+                    final boolean isFile = element.equals(ELEMENT_FILE);
+                    if(isFile || element.equals(ELEMENT_FOLDER))
+                    {
+                        final String name = parser.getAttributeValue(null, ATTRIBUTE_NAME);
+                        if(name != null && !name.equals(TELECOM_FOLDER))
+                        {
+                            files.add(new FileMeta(name, directory, !isFile
+                                    , parseDate(parser.getAttributeValue(null, ATTRIBUTE_MODIFIED))
+                                    , isFile ? parseSize(parser.getAttributeValue(null, ATTRIBUTE_SIZE)) : 0));
+                        }
+                    }
+                }
+            }
+
+            return files;
+        }
+        finally
+        {
+            parser.close();
+        }
+    }
+    
+    /**
+     * Parses the value of the attribute <code>modified</code>.
+     * @param value The value or <code>null</code>
+     * @return The date or the begin of the epoch if the value is <code>null</code>
+     * @throws ParseException The value is not a valid OBEX time
+     * @since 1.6
+     */
+    private static Date parseDate(final String value) throws ParseException
+    {
+        if(value == null)
+        {
+            return new Date(0);
+        }
+        
+        return ObexTimeCodec.parse(value);
+    }
+    
+    /**
+     * Parses the value of the attribute <code>size</code>.
+     * @param value The value or <code>null</code>
+     * @return The size or <code>0</code> if the value is <code>null</code>
+     * @throws ParseException The value is not a number
+     * @since 1.6
+     */
+    private static int parseSize(final String value) throws ParseException
+    {
+        if(value == null)
+        {
+            return 0;
+        }
+        
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (final NumberFormatException ex)
+        {
+            throw new ParseException("Invalid size: " + value, 0);
+        }
+    }
+    
+    /**
+     * Creates the factory for all parsers. The external entities are not 
+     * supported, because a folder listing never needs them.
+     * @return The factory
+     * @since 1.6
+     */
+    private static XMLInputFactory createFactory()
+    {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        
+        return factory;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the free space of the flash filesystem locally. The value read 
+ * from the device is updated with the known effects of successful operations,
+ * so the device must be asked again only if the estimate is too old or too 
+ * close to the requested size. Each operation increases the uncertainty of 
+ * the estimate by an allowance for the allocation units and directory entry 
+ * of a file. This class is {@link Thread} safety.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ class FreeSpaceEstimate
+{
+    private final long maxAge;
+    private final long fileAllowance;
+    private boolean valid;
+    private long freeSpace;
+    private long uncertainty;
+    private long updateTime;
+    
+    /**
+     * Constructs an invalid estimate.
+     * @param maxAge The maximum age of the value read from the device
+     * @param unit The unit of the maximum age
+     * @param fileAllowance The space in bytes that is reserved for each 
+     *        operation additional to the file size
+     * @since 1.6
+     */
+    /* package */ FreeSpaceEstimate(final long maxAge, final TimeUnit unit
+            , final long fileAllowance)
+    {
+        this.maxAge = unit.toNanos(maxAge);
+        this.fileAllowance = fileAllowance;
+    }
+    
+    /**
+     * Sets the free space read from the device. The uncertainty is reset.
+     * @param freeSpace The free space in bytes
+     * @since 1.6
+     */
+    /* package */ synchronized void update(final long freeSpace)
+    {
+        this.freeSpace = freeSpace;
+        uncertainty = 0;
+        updateTime = System.nanoTime();
+        valid = true;
+    }
+    
+    /**
+     * Checks if the estimate can be used without reading from the device.
+     * @return <code>true</code> if a value was read from the device within 
+     *         the maximum age and the estimate was not invalidated
+     * @since 1.6
+     */
+    /* package */ synchronized boolean isValid()
+    {
+        return valid && System.nanoTime() - updateTime < maxAge;
+    }
+    
+    /**
+     * Gets the estimated free space.
+     * @return The estimated free space in bytes
+     * @since 1.6
+     */
+    /* package */ synchronized long get()
+    {
+        return freeSpace;
+    }
+    
+    /**
+     * Checks if a file fits with certainty into the estimated free space.
+     * @param size The size of the file in bytes
+     * @return <code>true</code> if the estimate is valid and the size is 
+     *         smaller than the free space minus the uncertainty. If 
+     *         <code>false</code> the free space must be read from the device
+     * @since 1.6
+     */
+    /* package */ synchronized boolean isSufficient(final long size)
+    {
+        return isValid() && size + fileAllowance <= freeSpace - uncertainty;
+    }
+    
+    /**
+     * Applies the creation of a file or directory to the estimate.
+     * @param size The size of the file in bytes or <code>0</code> for a 
+     *        directory
+     * @since 1.6
+     */
+    /* package */ synchronized void allocate(final long size)
+    {
+        freeSpace -= size;
+        uncertainty += fileAllowance;
+    }
+    
+    /**
+     * Applies the deletion of a file or directory to the estimate.
+     * @param size The size of the file in bytes or <code>0</code> for a 
+     *        directory
+     * @since 1.6
+     */
+    /* package */ synchronized void release(final long size)
+    {
+        freeSpace += size;
+        uncertainty += fileAllowance;
+    }
+    
+    /**
+     * Invalidates the estimate after an operation with unknown effect, so
+     * the free space will be read from the device at next use.
+     * @since 1.6
+     */
+    /* package */ synchronized void invalidate()
+    {
+        valid = false;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        final StringBuilder sb = new StringBuilder("FreeSpaceEstimate{valid=");
+        sb.append(valid);
+        sb.append(", freeSpace=");
+        sb.append(freeSpace);
+        sb.append(", uncertainty=");
+        sb.append(uncertainty);
+        sb.append('}');
+        
+        return sb.toString();
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+/**
+ * Contains the statistics of a mirror download by 
+ * {@link FileManager#mirror(String, java.nio.file.Path)}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class MirrorResult
+{
+    private int downloadedFiles;
+    private long downloadedBytes;
+    private int skippedFiles;
+    private int createdDirectories;
+    
+    /**
+     * Constructor
+     * @since 1.6
+     */
+    /* package */ MirrorResult(){}
+    
+    /**
+     * Gets the count of downloaded files. These are new or changed files.
+     * @return The count of downloaded files
+     * @since 1.6
+     */
+    public int getDownloadedFiles()
+    {
+        return downloadedFiles;
+    }
+    
+    /**
+     * Gets the sum of the sizes of all downloaded files.
+     * @return The downloaded bytes
+     * @since 1.6
+     */
+    public long getDownloadedBytes()
+    {
+        return downloadedBytes;
+    }
+    
+    /**
+     * Gets the count of files they was not downloaded, because the local file
+     * has the same size and modification date.
+     * @return The count of skipped files
+     * @since 1.6
+     */
+    public int getSkippedFiles()
+    {
+        return skippedFiles;
+    }
+    
+    /**
+     * Gets the count of created local directories.
+     * @return The count of created directories
+     * @since 1.6
+     */
+    public int getCreatedDirectories()
+    {
+        return createdDirectories;
+    }
+    
+    /* package */ void addDownloadedFile(final long size)
+    {
+        downloadedFiles++;
+        downloadedBytes += size;
+    }
+    
+    /* package */ void addSkippedFile()
+    {
+        skippedFiles++;
+    }
+    
+    /* package */ void addCreatedDirectory()
+    {
+        createdDirectories++;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("MirrorResult{downloadedFiles=");
+        sb.append(downloadedFiles);
+        sb.append(", downloadedBytes=");
+        sb.append(downloadedBytes);
+        sb.append(", skippedFiles=");
+        sb.append(skippedFiles);
+        sb.append(", createdDirectories=");
+        sb.append(createdDirectories);
+        sb.append('}');
+        
+        return sb.toString();
+    }
+}
@@ -28,25 +28,36 @@
  */
 package de.sitec_systems.jmoduleconnect.file;
 
+import de.sitec_systems.jmoduleconnect.AttachState;
 import de.sitec_systems.jmoduleconnect.ProtocolParser;
 import de.sitec_systems.jmoduleconnect.utils.BinaryUtils;
 import de.sitec_systems.jmoduleconnect.CommHandler;
 import de.sitec_systems.jmoduleconnect.at.AtCommandFailedException;
 import de.sitec_systems.jmoduleconnect.file.ObexHeader.Code;
 import de.sitec_systems.jmoduleconnect.at.At;
+import de.sitec_systems.jmoduleconnect.at.ModeHandler;
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,41 +66,109 @@ import org.slf4j.LoggerFactory;
  * @author sitec systems GmbH
  * @since 1.0
  */
-public class ModuleFileManager implements FileManager, ProtocolParser
+public class ModuleFileManager implements FileManager, ProtocolParser, ModeHandler
 {
     private final CommHandler commHandler;
     private final At at;
     private final ProgressEventNotifier eventNotifier;
     private final Thread eventNotifierThread;
     private FileMeta currentDirectory;
+    private FileMeta workingDirectory = FileMeta.ROOT_DIRECTORY;
     private volatile boolean obexMode;
     private byte progress;
-    private Set<FileMeta> currentFileListing;
-    private Obex obexRepsonse;
-    private final Lock responseLock = new ReentrantLock();
-    private final Condition responseAvailable = responseLock.newCondition();
-    private final Lock operationLock = new ReentrantLock();
+    private final FlashCache flashCache = new FlashCache(FREE_SPACE_MAX_AGE
+            , TimeUnit.SECONDS, FILE_SPACE_ALLOWANCE);
+    private final DirectoryMirror directoryMirror;
+    private final DirectorySynchronizer directorySynchronizer;
+    private final PartUploader partUploader;
+    private long diskSpace = -1;
+    private final BlockingQueue<Obex> responseQueue = new LinkedBlockingQueue<Obex>();
+    private final ReentrantLock operationLock = new ReentrantLock();
     private final Lock interruptLock = new ReentrantLock(true);
-    private volatile boolean running;
+    private final Lock sendLock = new ReentrantLock();
+    private final ObexEncoder encoder = new ObexEncoder(DEFAULT_BODY_LENGTH 
+            + PUT_PACKET_OVERHEAD);
+    private volatile boolean cancelRequested;
     private volatile boolean interruptable;
-    private ByteArrayOutputStream responseBuffer;
+    private volatile boolean abortSent;
+    private volatile boolean abortResponseReceived;
+    private volatile int unansweredFrames;
+    private int responsesBeforeAbort;
+    private int silentFramesAfterAbort;
+    private final ObexFrameAssembler frameAssembler = new ObexFrameAssembler();
+    private final int maxPacketLength;
+    private final boolean singleResponseMode;
+    private volatile int putWindow;
+    private int bodyLength = DEFAULT_BODY_LENGTH;
+    private volatile boolean connectPending;
+    private final long idleTimeout;
+    private final ScheduledExecutorService idleMonitor;
+    private volatile long lastActivity;
     
     private static final Logger LOG = LoggerFactory.getLogger(ModuleFileManager.class);
-    private static final byte DEFAULT_SLEEP_MILLIS = 10;
-    private static final short OBEX_RESPONSE_TIMEOUT = 5000;
     private static final byte WAIT_TIMEOUT = 2;
     private static final byte WAIT_TIMEOUT_DELETE_ALL = 30;
     private static final byte WAIT_TRAILS = 3;
+    private static final byte ABORT_QUIET_TIME = 100;
     private static final Charset BYTE_CHARSET = Charset.forName("ISO_8859_1");
     private static final Charset NAME_CHARSET = Charset.forName("UTF_16BE");
-    private static final short MAX_PACKET_LENGTH = 512;
+    private static final short DEFAULT_BODY_LENGTH = 512;
+    private static final byte PUT_PACKET_OVERHEAD = 6;
+    /* package */ static final Charset MANIFEST_CHARSET = Charset.forName("UTF-8");
+    /* package */ static final int SYNC_TIME_TOLERANCE = 2000;
+    private static final int FREE_SPACE_MAX_AGE = 30;
+    private static final int FILE_SPACE_ALLOWANCE = 1024;
+    
+    /**
+     * The name of the manifest file that is stored by 
+     * {@link #synchronize(Path, String, boolean, boolean)} in the base 
+     * directory of the synchronisation.
+     * @since 1.6
+     */
+    public static final String SYNC_MANIFEST = "sync.md5";
 
-    private ModuleFileManager(final CommHandler commHandler, final At at)
+    private ModuleFileManager(final CommHandler commHandler, final At at
+            , final FileManagerProfile profile)
     {
         this.commHandler = commHandler;
         this.at = at;     
+        maxPacketLength = profile.getMaxPacketLength();
+        singleResponseMode = profile.isSingleResponseMode();
+        putWindow = profile.getPutWindow();
+        idleTimeout = TimeUnit.MILLISECONDS.toNanos(profile.getIdleTimeout());
         eventNotifier = new ProgressEventNotifier();
         eventNotifierThread = new Thread(eventNotifier);
+        directoryMirror = new DirectoryMirror(this);
+        directorySynchronizer = new DirectorySynchronizer(this);
+        partUploader = new PartUploader(this);
+        
+        if(idleTimeout > 0)
+        {
+            idleMonitor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(final Runnable runnable)
+                {
+                    final Thread thread = new Thread(runnable, "ObexIdleMonitor");
+                    thread.setDaemon(true);
+                    
+                    return thread;
+                }
+            });
+            final long period = Math.max(idleTimeout / 2, TimeUnit.MILLISECONDS.toNanos(10));
+            idleMonitor.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    closeIdleObexMode();
+                }
+            }, period, period, TimeUnit.NANOSECONDS);
+        }
+        else
+        {
+            idleMonitor = null;
+        }
     }
     
     /**
@@ -106,15 +185,110 @@ public class ModuleFileManager implements FileManager, ProtocolParser
     public static final FileManager createFileManager(final CommHandler commHandler
             , final At at) throws AtCommandFailedException, IOException 
     {
-        if(commHandler == null || at == null)
+        return createFileManager(commHandler, at, new FileManagerProfile(), null);
+    }
+    
+    /**
+     * Creates an instance of this class. If the attach state is verified and 
+     * the IMEI was confirmed by the AT interface with the same state then
+     * the AT handshakes will be skipped and the file listing will be read at 
+     * the first access. Otherwise all handshakes will be done and the state 
+     * will be updated.
+     * @param commHandler The communication handler
+     * @param at For the AT communication
+     * @param attachState The state of the last session for a warm attach or 
+     *        <code>null</code> for an attach with all handshakes
+     * @return The instance of this class
+     * @throws AtCommandFailedException The response from device contains 
+     *         <code>ERROR</code>
+     * @throws IOException The communication to the device failed
+     * @throws IllegalArgumentException If the parameter commHandler or at is 
+     *         <code>null</code>
+     * @since 1.6
+     */
+    public static final FileManager createFileManager(final CommHandler commHandler
+            , final At at, final AttachState attachState) 
+            throws AtCommandFailedException, IOException 
+    {
+        return createFileManager(commHandler, at, new FileManagerProfile(), attachState);
+    }
+    
+    /**
+     * Creates an instance of this class with a specific profile.
+     * @param commHandler The communication handler
+     * @param at For the AT communication
+     * @param profile The tuning parameters of the file manager
+     * @return The instance of this class
+     * @throws AtCommandFailedException The response from device contains 
+     *         <code>ERROR</code>
+     * @throws IOException The communication to the device failed
+     * @throws IllegalArgumentException If the input values ar <code>null</code>
+     * @since 1.6
+     */
+    public static final FileManager createFileManager(final CommHandler commHandler
+            , final At at, final FileManagerProfile profile) 
+            throws AtCommandFailedException, IOException 
+    {
+        if(profile == null)
+        {
+            throw new IllegalArgumentException("The parameter profile cant be null");
+        }
+        
+        return createFileManager(commHandler, at, profile, null);
+    }
+    
+    /**
+     * Creates an instance of this class with a specific profile. If the attach 
+     * state is verified then the AT handshakes will be skipped.
+     * @param commHandler The communication handler
+     * @param at For the AT communication
+     * @param profile The tuning parameters of the file manager
+     * @param attachState The state of the last session for a warm attach or 
+     *        <code>null</code> for an attach with all handshakes
+     * @return The instance of this class
+     * @throws AtCommandFailedException The response from device contains 
+     *         <code>ERROR</code>
+     * @throws IOException The communication to the device failed
+     * @throws IllegalArgumentException If the parameter commHandler, at or 
+     *         profile is <code>null</code>
+     * @since 1.6
+     * @see #createFileManager(de.sitec_systems.jmoduleconnect.CommHandler, de.sitec_systems.jmoduleconnect.at.At, de.sitec_systems.jmoduleconnect.AttachState) 
+     */
+    public static final FileManager createFileManager(final CommHandler commHandler
+            , final At at, final FileManagerProfile profile
+            , final AttachState attachState) 
+            throws AtCommandFailedException, IOException 
+    {
+        if(commHandler == null || at == null || profile == null)
         {
             throw new IllegalArgumentException("The input values cant be null");
         }
         
-        ModuleFileManager fileManager = new ModuleFileManager(commHandler, at);
+        ModuleFileManager fileManager = new ModuleFileManager(commHandler, at, profile);
         try
         {
-            fileManager.init();
+            if(attachState != null && attachState.isFileManagerVerified()
+                    && attachState.isImeiConfirmed())
+            {
+                fileManager.initWarm();
+            }
+            else
+            {
+                fileManager.init();
+                if(attachState != null)
+                {
+                    try
+                    {
+                        attachState.setFileManagerVerified();
+                    }
+                    catch (final IOException ex)
+                    {
+                        LOG.warn("The attach state of: {} could not be stored"
+                                , attachState.getKey(), ex);
+                    }
+                }
+            }
+            at.setModeHandler(fileManager);
             
             return fileManager;
         }
@@ -141,7 +315,20 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         eventNotifierThread.start();
         
         openObexMode();
-        readFileListing();
+    }
+    
+    /**
+     * Initialises the file manager without AT handshakes. The file listing will 
+     * be read at the first access.
+     * @throws IOException The switching to OBEX mode failed
+     * @since 1.6
+     */
+    private void initWarm() throws IOException
+    {
+        eventNotifierThread.start();
+        
+        openObexMode();
+        LOG.debug("Warm attach of file manager");
     }
 
     /**
@@ -160,28 +347,133 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         return obexMode;
     }
 
-    /** {@inheritDoc } */
+    /**
+     * Reads the available data of an OBEX response. A partial received 
+     * response is kept until the next call.
+     * @param is The {@link InputStream}
+     * @throws IOException An error at reading from {@link InputStream} or the
+     *         received response is invalid
+     * @since 1.0
+     */
     @Override
     public void parse(final InputStream is) throws IOException
     {
-        final Obex obexRespTemp = receiveObex(is);
-        responseLock.lock();
+        final byte[] frame = frameAssembler.read(is);
+        if(frame == null)
+        {
+            return;
+        }
+        
+        final Obex obexRespTemp;
         try
         {
-            obexRepsonse = obexRespTemp;
-            responseAvailable.signalAll();
+            obexRespTemp = new Obex(frame, connectPending);
         }
-        finally
+        catch (final IllegalArgumentException ex)
         {
-            responseLock.unlock();
+            throw new IOException("Invalid OBEX response received", ex);
         }
+        
+        responseQueue.offer(obexRespTemp);
     }
     
     private void send(final Obex request) throws IOException
     {
-        LOG.trace("OBEX send - RAW: {}", BinaryUtils.toHexString(request.toByteArray()));
-        LOG.debug("OBEX send: {}", request);
-        commHandler.send(request.toByteArray());
+        sendLock.lock();
+        try
+        {
+            encoder.encode(request);
+            LOG.debug("OBEX send: {}", request);
+            sendEncoded(true);
+        }
+        finally
+        {
+            sendLock.unlock();
+        }
+    }
+    
+    /**
+     * Sends the last encoded OBEX frame of the encoder. The caller must hold
+     * the send lock. The frames with an expected response are counted, so 
+     * the response to an <code>ABORT</code> can be matched.
+     * @param responseExpected <code>true</code> - The device answers the 
+     *        frame / <code>false</code> - The frame is not answered like the 
+     *        not final PUT frames in the Single Response Mode
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    private void sendEncoded(final boolean responseExpected) throws IOException
+    {
+        final int length = encoder.length();
+        if(LOG.isTraceEnabled())
+        {
+            LOG.trace("OBEX send - RAW: {}", BinaryUtils.toHexString(
+                    Arrays.copyOf(encoder.array(), length)));
+        }
+        commHandler.send(encoder.array(), 0, length);
+        lastActivity = System.nanoTime();
+        if(responseExpected)
+        {
+            unansweredFrames++;
+        }
+        else if(abortSent)
+        {
+            silentFramesAfterAbort++;
+        }
+    }
+    
+    /**
+     * Takes the next response from the queue of received responses. While an
+     * <code>ABORT</code> is outstanding the responses are matched in the 
+     * order of sending: the responses to the frames before the 
+     * <code>ABORT</code> are counted down, in the Single Response Mode also 
+     * the <code>CONTINUE</code> responses and the responses with a body are 
+     * skipped, then the next response is the response to the 
+     * <code>ABORT</code>.
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return The response or <code>null</code> if no response was received
+     *         within the timeout
+     * @throws InterruptedException The waiting was interrupted
+     * @since 1.6
+     */
+    private Obex takeResponse(final long timeout, final TimeUnit unit) 
+            throws InterruptedException
+    {
+        final Obex response = responseQueue.poll(timeout, unit);
+        if(response == null)
+        {
+            return null;
+        }
+        
+        sendLock.lock();
+        try
+        {
+            if(unansweredFrames > 0)
+            {
+                unansweredFrames--;
+            }
+            if(abortSent && !abortResponseReceived)
+            {
+                if(responsesBeforeAbort > 0)
+                {
+                    responsesBeforeAbort--;
+                }
+                else if(response.getObexCode() != Obex.Code.RESPONSE_CONTINUE
+                        && response.getHeader(Code.BODY) == null 
+                        && response.getHeader(Code.END_OF_BODY) == null)
+                {
+                    abortResponseReceived = true;
+                    LOG.debug("OBEX response to abort: {}", response);
+                }
+            }
+        }
+        finally
+        {
+            sendLock.unlock();
+        }
+        
+        return response;
     }
     
     /**
@@ -205,43 +497,88 @@ public class ModuleFileManager implements FileManager, ProtocolParser
             waitTimeout = WAIT_TIMEOUT;
         }
         
-        Obex response = null;
-        byte waitTrails = 0;
-
-        responseLock.lock();
+        final Obex response;
         try
         {
-            while(obexRepsonse == null && waitTrails < WAIT_TRAILS)
-            {
-                try
-                {
-                    responseAvailable.await(waitTimeout, TimeUnit.SECONDS);
-                }
-                catch (final InterruptedException ex)
-                {
-                    ex.printStackTrace();
-                }
-                waitTrails++;
-            }
-            response = obexRepsonse;
-            obexRepsonse = null;
+            response = takeResponse(waitTimeout * WAIT_TRAILS, TimeUnit.SECONDS);
         }
-        finally
+        catch (final InterruptedException ex)
         {
-            responseLock.unlock();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for OBEX response was interrupted");
         }
         
         if(response == null)
         {
+            // The order of the following responses is unknown
+            unansweredFrames = 0;
             throw new IOException("No OBEX response after receiving");
         }
         
-        LOG.trace("OBEX receive - RAW: {}", BinaryUtils.toHexString(response.toByteArray()));
+        if(LOG.isTraceEnabled())
+        {
+            LOG.trace("OBEX receive - RAW: {}", BinaryUtils.toHexString(response.toByteArray()));
+        }
         LOG.debug("OBEX receive: {}", response);
         
         return response;
     }
     
+    /**
+     * Checks without waiting if the device has sent an unrequested response. 
+     * In the Single Response Mode the device only responds to errors before 
+     * the final packet.
+     * @throws IOException The device has sent an error response
+     * @since 1.6
+     */
+    private void checkPendingResponse() throws IOException
+    {
+        if(abortSent)
+        {
+            // The responses after an abort are received by the completion of the abort
+            return;
+        }
+        
+        final Obex response;
+        try
+        {
+            response = takeResponse(0, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for OBEX response was interrupted");
+        }
+        if(response != null)
+        {
+            LOG.debug("OBEX receive: {}", response);
+            if(response.getObexCode() != Obex.Code.RESPONSE_CONTINUE &&
+                    response.getObexCode() != Obex.Code.RESPONSE_SUCCESS)
+            {
+                throw new IOException("Error response received: " + response.getObexCode()); 
+            }
+        }
+    }
+    
+    /**
+     * Checks if the response enables the Single Response Mode.
+     * @param response The first response of an operation
+     * @return <code>true</code> - The device has agreed to the Single Response
+     *         Mode / <code>false</code> - Each packet must be confirmed
+     * @since 1.6
+     */
+    private boolean isSingleResponseModeEnabled(final Obex response)
+    {
+        final boolean enabled = singleResponseMode && response.hasHeaderValue(
+                Code.SINGLE_RESPONSE_MODE, ObexHeader.SRM_ENABLE);
+        if(singleResponseMode)
+        {
+            LOG.debug("OBEX Single Response Mode enabled by device: {}", enabled);
+        }
+        
+        return enabled;
+    }
+    
     /**
      * Switches the module from AT to OBEX mode and deregisters the AT parser from
      * {@link CommHandler}.
@@ -256,6 +593,9 @@ public class ModuleFileManager implements FileManager, ProtocolParser
             at.send("AT^SQWE=0");
             at.send("AT^SQWE=3");
             
+            frameAssembler.reset();
+            responseQueue.clear();
+            unansweredFrames = 0;
             commHandler.removeProtocolParser(at);
             commHandler.addProtocolParser(this);
             obexMode = true;
@@ -268,16 +608,49 @@ public class ModuleFileManager implements FileManager, ProtocolParser
 
             final ObexHeader<byte[]> target = new ObexHeader<byte[]>(ObexHeader.Code.TARGET, fsUid);
 
-            final Obex req = new Obex(Obex.Code.REQUEST_CONNECT, target);
+            final Obex req = Obex.createConnectRequest(target, maxPacketLength);
 
-            send(req);
-            final Obex response = receive(false);
+            final Obex response;
+            connectPending = true;
+            try
+            {
+                send(req);
+                response = receive(false);
+            }
+            finally
+            {
+                connectPending = false;
+            }
             if(response.getObexCode() != Obex.Code.RESPONSE_SUCCESS)
             {
                 throw new IOException("Error response received: " + response.getObexCode()); 
             }
             
+            final int negotiatedLength = response.getMaxPacketLength();
+            if(negotiatedLength >= FileManagerProfile.MIN_PACKET_LENGTH)
+            {
+                bodyLength = Math.min(negotiatedLength, maxPacketLength) 
+                        - PUT_PACKET_OVERHEAD;
+            }
+            else
+            {
+                bodyLength = Math.min(DEFAULT_BODY_LENGTH, maxPacketLength 
+                        - PUT_PACKET_OVERHEAD);
+            }
+            sendLock.lock();
+            try
+            {
+                encoder.ensureCapacity(bodyLength + PUT_PACKET_OVERHEAD);
+            }
+            finally
+            {
+                sendLock.unlock();
+            }
+            LOG.debug("OBEX maximum packet length of device: {} - body length: {}"
+                    , negotiatedLength, bodyLength);
+            
             currentDirectory = FileMeta.ROOT_DIRECTORY;
+            flashCache.clear();
             progress = -1;
             
             LOG.debug("OBEX Mode");
@@ -288,80 +661,248 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         }
     }
     
-    private boolean getRunning()
+    /** {@inheritDoc } */
+    @Override
+    public void cancel() throws IOException
     {
-        interruptLock.lock();
+        // Observed by the running operation at the next packet boundary
+        cancelRequested = true;
+        
+        sendLock.lock();
         try
         {
-            return running;
+            if(obexMode && interruptable && !abortSent)
+            {
+                sendAbort();
+            }
         }
         finally
         {
-            interruptLock.unlock();
+            sendLock.unlock();
         }
     }
     
-    private void setRunning(final boolean runnning)
+    /**
+     * Locks the operation lock for a file operation. The first lock of a new
+     * operation of the user discards the cancel request of an older operation.
+     * The nested steps of an operation like the files of a synchronisation 
+     * keep the cancel request.
+     * @since 1.6
+     */
+    private void lockOperation()
     {
-        interruptLock.lock();
-        try
+        operationLock.lock();
+        if(operationLock.getHoldCount() == 1)
         {
-            this.running = runnning;
+            cancelRequested = false;
         }
-        finally
+    }
+    
+    /**
+     * Checks if {@link #cancel()} was called for the running operation. The
+     * check is done before each request and between the steps of an 
+     * operation, so a cancel between two files is not lost.
+     * @throws InterruptedIOException The operation was canceled
+     * @since 1.6
+     */
+    /* package */ void checkCanceled() throws InterruptedIOException
+    {
+        if(cancelRequested)
         {
-            interruptLock.unlock();
+            throw new InterruptedIOException("The operation was interrupted by user");
         }
     }
-
-    /** {@inheritDoc } */
-    @Override
-    public void cancel() throws IOException
+    
+    /**
+     * Sends an OBEX <code>ABORT</code> for the running operation. The count 
+     * of the frames without response is noted, so the response to the 
+     * <code>ABORT</code> can be matched by {@link #completeAbort()}. The 
+     * caller must hold the send lock.
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    private void sendAbort() throws IOException
     {
-        interruptLock.lock();
+        final Obex request = new Obex(Obex.Code.REQUEST_ABORT);
+        encoder.encode(request);
+        LOG.debug("OBEX send: {}", request);
+        responsesBeforeAbort = unansweredFrames;
+        abortResponseReceived = false;
+        sendEncoded(false);
+        abortSent = true;
+        LOG.debug("Abort Message was send");
+    }
+    
+    /**
+     * Marks the running operation as interruptable after its first request. 
+     * From now on {@link #cancel()} sends an <code>ABORT</code> immediately.
+     * If the operation was canceled before then the <code>ABORT</code> is 
+     * sent now.
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    private void beginInterruptable() throws IOException
+    {
+        sendLock.lock();
         try
         {
-            if(obexMode && interruptable)
+            interruptable = true;
+            if(cancelRequested && !abortSent)
             {
-                setRunning(false);
-                final Obex req = new Obex(Obex.Code.REQUEST_ABORT);
-                send(req);
-                final Obex response = receive(false);
-
-                if(response.getObexCode() != Obex.Code.RESPONSE_SUCCESS)
-                {
-                    throw new IOException("Error response received at operation canceling: " + response.getObexCode()); 
-                }
-                
-                LOG.debug("Before Listing");
-                readFileListing();
-                LOG.debug("Abort Message was send");
+                sendAbort();
             }
         }
         finally
         {
-            interruptLock.unlock();
+            sendLock.unlock();
         }
     }
     
-    /** {@inheritDoc } */
-    @Override
-    public void addProgressListener(final ProgressListener progressListener)
-    {
-        eventNotifier.addProgressListener(progressListener);
-    }
-
-    /** {@inheritDoc } */
-    @Override
-    public void removeProgressListener(final ProgressListener progressListener)
-    {
-        eventNotifier.removeProgressListener(progressListener);
-    }
-    
-    private synchronized void notifyProgress(final OperationType opType
-            , final int progress)
+    /**
+     * Marks the running operation as not interruptable, so {@link #cancel()}
+     * dont send an <code>ABORT</code> anymore. 
+     * @return <code>true</code> if an <code>ABORT</code> was sent, then the
+     *         operation must call {@link #completeAbort()}
+     * @since 1.6
+     */
+    private boolean endInterruptable()
     {
-        if(this.progress != progress)
+        sendLock.lock();
+        try
+        {
+            interruptable = false;
+            
+            return abortSent;
+        }
+        finally
+        {
+            sendLock.unlock();
+        }
+    }
+    
+    /**
+     * Completes the <code>ABORT</code> exchange of the running operation. The
+     * outstanding responses to the frames before the <code>ABORT</code>, the 
+     * response to the <code>ABORT</code> and the responses to the frames 
+     * they was sent after the <code>ABORT</code> are received and discarded,
+     * so the next request starts without stale responses. The response to the
+     * <code>ABORT</code> is matched by {@link #takeResponse(long, TimeUnit)}.
+     * @return <code>true</code> - The response to the <code>ABORT</code> was
+     *         received / <code>false</code> - The device has not answered the
+     *         <code>ABORT</code>
+     * @since 1.6
+     */
+    private boolean completeAbort()
+    {
+        try
+        {
+            while(!abortResponseReceived)
+            {
+                final Obex response = takeResponse(WAIT_TIMEOUT, TimeUnit.SECONDS);
+                if(response == null)
+                {
+                    LOG.warn("No response to the OBEX abort received");
+                    break;
+                }
+                if(!abortResponseReceived)
+                {
+                    LOG.debug("Discard OBEX response before abort: {}", response);
+                }
+            }
+            
+            while(abortResponseReceived && unansweredFrames > 0)
+            {
+                final Obex response = takeResponse(WAIT_TIMEOUT, TimeUnit.SECONDS);
+                if(response == null)
+                {
+                    break;
+                }
+                LOG.debug("Discard OBEX response after abort: {}", response);
+            }
+            
+            // Frames without expected response can be answered with an error after the abort
+            Obex response = silentFramesAfterAbort > 0 ? responseQueue.poll(ABORT_QUIET_TIME
+                    , TimeUnit.MILLISECONDS) : null;
+            while(response != null)
+            {
+                LOG.debug("Discard OBEX response after abort: {}", response);
+                response = responseQueue.poll(ABORT_QUIET_TIME, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (final InterruptedException ex)
+        {
+            LOG.debug("The waiting for the abort response was interrupted", ex);
+            Thread.currentThread().interrupt();
+        }
+        
+        sendLock.lock();
+        try
+        {
+            final boolean completed = abortResponseReceived;
+            abortSent = false;
+            abortResponseReceived = false;
+            responsesBeforeAbort = 0;
+            silentFramesAfterAbort = 0;
+            if(!completed)
+            {
+                unansweredFrames = 0;
+            }
+            
+            return completed;
+        }
+        finally
+        {
+            sendLock.unlock();
+        }
+    }
+    
+    /**
+     * Cleans up after an aborted PUT operation. The device can keep the 
+     * received part of the file, so the file is deleted. This step must only 
+     * be done after the <code>ABORT</code> exchange was completed, else the 
+     * response to the <code>DELETE</code> could not be distinguished from 
+     * the outstanding responses. Afterwards the cached file listing of the
+     * directory and the free space estimate are invalidated, because the 
+     * state of the file on the device is unknown.
+     * @param filename The name of the file in the current directory
+     * @param abortCompleted <code>true</code> - The response to the 
+     *        <code>ABORT</code> was received
+     * @since 1.6
+     */
+    private void cleanupAbortedPut(final String filename, final boolean abortCompleted)
+    {
+        if(abortCompleted)
+        {
+            try
+            {
+                delete(filename);
+            }
+            catch (final IOException ex)
+            {
+                LOG.debug("The interrupted file: {} was not deleted", filename, ex);
+            }
+        }
+        flashCache.invalidate(currentDirectory);
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public void addProgressListener(final ProgressListener progressListener)
+    {
+        eventNotifier.addProgressListener(progressListener);
+    }
+
+    /** {@inheritDoc } */
+    @Override
+    public void removeProgressListener(final ProgressListener progressListener)
+    {
+        eventNotifier.removeProgressListener(progressListener);
+    }
+    
+    /* package */ synchronized void notifyProgress(final OperationType opType
+            , final int progress)
+    {
+        if(this.progress != progress)
         {
             final ProgressEvent progressEvent = new ProgressEvent(this, opType, progress, false);
             eventNotifier.addEvent(progressEvent);
@@ -369,7 +910,7 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         }
     }
     
-    private synchronized void notifyProgressDone(final OperationType opType
+    /* package */ synchronized void notifyProgressDone(final OperationType opType
             ,final boolean done)
     {
         final ProgressEvent progressEvent = new ProgressEvent(this, opType, progress, done);
@@ -379,7 +920,8 @@ public class ModuleFileManager implements FileManager, ProtocolParser
     
     /**
      * Switches the module from OBEX to AT mode and register the AT parser again
-     * at {@link CommHandler}.
+     * at {@link CommHandler}. The cached file listings and free space are 
+     * cleared, because the flash filesystem can be changed in AT mode.
      * @throws IOException The switching to AT mode failed
      * @since 1.0
      */
@@ -396,13 +938,13 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         }
         
         obexMode = false;
+        flashCache.clear();
         commHandler.removeProtocolParser(this);
         commHandler.addProtocolParser(at);
         
         try
         {
             at.closeMode();
-            at.send("ATE1");
         }
         catch (final AtCommandFailedException ex)
         {
@@ -411,6 +953,98 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         LOG.debug("AT Mode");
     }
     
+    /**
+     * Closes the OBEX mode, so the device can receive AT commands. A running
+     * file operation will be finished before. The operation lock stays hold
+     * by the calling {@link Thread} until {@link #resumeMode() }, so the 
+     * following file operations are waiting for the AT command and dont open
+     * the OBEX mode in between. The OBEX mode will be opened again at the 
+     * next file operation and the current directory is kept. This method is 
+     * called by the {@link At} of this file manager before an AT command is 
+     * sent.
+     * @throws IOException The switching to AT mode failed
+     * @since 1.6
+     */
+    @Override
+    public void releaseMode() throws IOException
+    {
+        operationLock.lock();
+        boolean released = false;
+        try
+        {
+            interruptLock.lock();
+            try
+            {
+                if(obexMode)
+                {
+                    LOG.debug("OBEX mode released for AT command");
+                    closeObexMode();
+                }
+            }
+            finally
+            {
+                interruptLock.unlock();
+            }
+            released = true;
+        }
+        finally
+        {
+            if(!released)
+            {
+                operationLock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Allows the file operations again after the AT command. The OBEX mode 
+     * will be opened at the next file operation.
+     * @since 1.6
+     */
+    @Override
+    public void resumeMode()
+    {
+        operationLock.unlock();
+    }
+    
+    /**
+     * Closes the OBEX mode if no OBEX frame was sent within the idle timeout.
+     * A running file operation will not be waited for.
+     * @since 1.6
+     */
+    private void closeIdleObexMode()
+    {
+        if(!obexMode || System.nanoTime() - lastActivity < idleTimeout 
+                || !operationLock.tryLock())
+        {
+            return;
+        }
+        try
+        {
+            interruptLock.lock();
+            try
+            {
+                if(obexMode && System.nanoTime() - lastActivity >= idleTimeout)
+                {
+                    LOG.debug("OBEX mode closed after idle timeout");
+                    closeObexMode();
+                }
+            }
+            finally
+            {
+                interruptLock.unlock();
+            }
+        }
+        catch (final IOException ex)
+        {
+            LOG.warn("Closing of idle OBEX mode failed", ex);
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
     /** {@inheritDoc } */
     @Override
     public void close() throws IOException
@@ -420,6 +1054,11 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         try
         {
             eventNotifierThread.interrupt();
+            if(idleMonitor != null)
+            {
+                idleMonitor.shutdownNow();
+            }
+            at.setModeHandler(null);
             if(obexMode)
             {
                 LOG.debug("Disconnecting");
@@ -434,15 +1073,35 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         }
     }
 
+    /**
+     * Gets the working directory without the operation lock.
+     * @return The working directory
+     * @since 1.6
+     */
+    /* package */ FileMeta getWorkingDirectory()
+    {
+        return workingDirectory;
+    }
+    
+    /**
+     * Gets the directory of the directory pointer on the device.
+     * @return The current directory on the device
+     * @since 1.6
+     */
+    /* package */ FileMeta getDirectoryPointer()
+    {
+        return currentDirectory;
+    }
+
     /** {@inheritDoc } */
     @Override
     public FileMeta getCurrenctDirectory()
     {
         FileMeta result = null;
-        operationLock.lock();
+        lockOperation();
         try
         {
-            result = currentDirectory;
+            result = workingDirectory;
         }
         finally
         {
@@ -455,21 +1114,37 @@ public class ModuleFileManager implements FileManager, ProtocolParser
     @Override
     public void makeDirectory(final String directoryName) throws IOException
     {
-        if(directoryName.contains("/") || directoryName.contains("\\"))
+        if(directoryName == null)
         {
-            throw new IllegalArgumentException("Paths not allowed");
+            throw new IllegalArgumentException("The parameter directoryName cant be null");
         }
-        operationLock.lock();
+        lockOperation();
         try
         {
-            setPath(directoryName, true);
-            setPath("..", false);
+            createDirectory(enterParentDirectory(directoryName));
         }
         finally
         {
             operationLock.unlock();
         }
     }
+    
+    /**
+     * Creates a new directory in the current directory and changes the 
+     * directory pointer to the new directory.
+     * @param directoryName The name for new directory
+     * @throws IOException If the directory exists or the communication to the 
+     *         device failed
+     * @since 1.6
+     */
+    /* package */ void createDirectory(final String directoryName) throws IOException
+    {
+        setPath(directoryName, true);
+        final FileMeta directory = new FileMeta(directoryName, currentDirectory
+                , true, new Date(), 0);
+        flashCache.directoryCreated(directory);
+        currentDirectory = directory;
+    }
 
     /** {@inheritDoc } */
     @Override
@@ -479,18 +1154,11 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         {
             throw new IllegalArgumentException("Parameter pathname cant be null");
         }
-        String parameter = pathname;
-        operationLock.lock();
+        lockOperation();
         try
         {
-            FileMeta directory = currentDirectory;
-            if(pathname.contains(":"))
-            {
-                parameter = pathname.toUpperCase();
-                directory = null;
-            }
-            setPath(parameter, false);
-            currentDirectory = new FileMeta(pathname, directory, true);
+            moveToDirectory(resolveDirectory(workingDirectory, pathname));
+            workingDirectory = currentDirectory;
         }
         finally
         {
@@ -531,6 +1199,7 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         interruptLock.lock();
         try
         {
+            checkCanceled();
             send(req);
             final Obex response = receive(false);
             if(response.getObexCode() != Obex.Code.RESPONSE_SUCCESS)
@@ -542,14 +1211,83 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         {
             interruptLock.unlock();
         }
-        readFileListing();
+    }
+    
+    /**
+     * Resolves the directory after a change of the directory pointer. The
+     * path can be relative to the current directory, absolute with drive 
+     * letter or beginning with <code>/</code> for the root of the current drive
+     * and can contain <code>..</code>.
+     * @param directory The current directory
+     * @param pathname The path of the directory change
+     * @return The new current directory
+     * @since 1.6
+     */
+    /* package */ static FileMeta resolveDirectory(final FileMeta directory
+            , final String pathname)
+    {
+        FileMeta result = directory;
+        String path = pathname.replace('\\', '/');
+        
+        final int driveIndex = path.indexOf(':');
+        if(driveIndex >= 0)
+        {
+            final String drive = path.substring(0, driveIndex + 1);
+            if(drive.equalsIgnoreCase(FileMeta.ROOT_DIRECTORY.getName()))
+            {
+                result = FileMeta.ROOT_DIRECTORY;
+            }
+            else
+            {
+                result = new FileMeta(drive.toLowerCase(Locale.ROOT), null, true);
+            }
+            path = path.substring(driveIndex + 1);
+        }
+        else if(path.startsWith("/"))
+        {
+            while(result.getParentDirectory() != null)
+            {
+                result = result.getParentDirectory();
+            }
+        }
+        
+        if(path.isEmpty())
+        {
+            return driveIndex >= 0 ? result : getParent(result);
+        }
+        
+        for(final String segment: path.split("/"))
+        {
+            if(segment.equals(".."))
+            {
+                result = getParent(result);
+            }
+            else if(!segment.isEmpty() && !segment.equals("."))
+            {
+                result = new FileMeta(segment, result, true);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Gets the parent of a directory. The parent of the root is the root.
+     * @param directory The directory
+     * @return The parent directory
+     * @since 1.6
+     */
+    private static FileMeta getParent(final FileMeta directory)
+    {
+        return directory.getParentDirectory() != null 
+                ? directory.getParentDirectory() : directory;
     }
 
     /** {@inheritDoc } */
     @Override
     public void deleteAll() throws IOException
     {
-        operationLock.lock();
+        lockOperation();
         LOG.debug("Start delete all");
         try
         {
@@ -567,7 +1305,9 @@ public class ModuleFileManager implements FileManager, ProtocolParser
                 throw new IOException("Error response received at deleting all files: " + response.getObexCode()); 
             }
 
-            readFileListing();
+            flashCache.clear();
+            moveToDirectory(FileMeta.ROOT_DIRECTORY);
+            workingDirectory = currentDirectory;
             LOG.debug("Finish delete all");
         }
         finally
@@ -581,58 +1321,59 @@ public class ModuleFileManager implements FileManager, ProtocolParser
     public void deleteFile(final String filename, final boolean filledFolder) 
             throws IOException
     {
-        FileMeta target = null;
-        operationLock.lock();
+        lockOperation();
         try
         {
-            for(final FileMeta file: currentFileListing)
+            deleteEntry(enterParentDirectory(filename), filledFolder);
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /**
+     * Deletes a file or folder in the current directory. Afterwards the 
+     * directory pointer is at the current directory again.
+     * @param filename The name of the file or folder
+     * @param filledFolder If <code>true</code> a not empty folder will be 
+     *        erased with included files and sub folders
+     * @throws IOException The parameter <code>filledFolder</code> is false and 
+     *         the filename is an not empty folder or the communication to the 
+     *         device failed
+     * @since 1.6
+     */
+    /* package */ void deleteEntry(final String filename, final boolean filledFolder) 
+            throws IOException
+    {
+        lockOperation();
+        try
+        {
+            checkCanceled();
+            final FileMeta target = getFileMetaFromListing(filename);
+
+            if(target == null)
             {
-                if(file.getName().equalsIgnoreCase(filename))
-                {
-                    target = file;
-                }
+                throw new IOException("File/Folder: " + filename 
+                        + " dont exist on flash");
             }
-
-            if(target != null)
+            
+            if(target.isDirectory())
             {
-                if(target.isDirectory())
-                {
-                    changeDirectory(filename);
-                    if(currentFileListing.isEmpty())
-                    {
-                        changeDirectory("..");
-                        delete(filename);
-                    }
-                    else
-                    {
-                        if(filledFolder)
-                        {
-                            for(final FileMeta file: currentFileListing)
-                            {
-                                deleteFile(file.getName(), true);
-                            }
-                            changeDirectory("..");
-                            delete(filename);
-                            currentFileListing.remove(target);
-                        }
-                        else
-                        {
-                            changeDirectory("..");
-                            throw new IOException("Folder: " + filename 
-                                    + " is not empty");
-                        }
-                    }
-                }
-                else
+                final FileMeta parent = currentDirectory;
+                moveToDirectory(target);
+                final boolean empty = getCurrentFileListing().isEmpty();
+                if(!empty && !filledFolder)
                 {
-                    delete(filename);
+                    moveToDirectory(parent);
+                    throw new IOException("Folder: " + filename 
+                            + " is not empty");
                 }
+                
+                deleteContent();
+                moveToDirectory(parent);
             }
-            else
-            {
-                throw new IOException("File/Folder: " + filename 
-                        + " dont exist on flash");
-            }
+            delete(target.getName());
         }
         finally
         {
@@ -640,7 +1381,42 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         }
     }
     
-    private void delete(final String filename) throws IOException
+    /**
+     * Deletes the content of the current directory recursive. The directory
+     * tree is walked depth first with the cached file listings, so every sub 
+     * directory is entered and left only once and the files are deleted 
+     * without any directory change. Afterwards the directory pointer is at 
+     * the current directory again.
+     * @throws IOException An error at sending OBEX frame or an error response 
+     *         was received
+     * @since 1.6
+     */
+    private void deleteContent() throws IOException
+    {
+        final FileMeta directory = currentDirectory;
+        for(final FileMeta fileMeta: new ArrayList<FileMeta>(getCurrentFileListing()))
+        {
+            checkCanceled();
+            if(fileMeta.isDirectory())
+            {
+                moveToDirectory(fileMeta);
+                deleteContent();
+                moveToDirectory(directory);
+            }
+            delete(fileMeta.getName());
+        }
+    }
+    
+    /**
+     * Deletes a file or an empty directory in the current directory and 
+     * removes it from the cached file listing. The size of the file is added
+     * to the free space estimate.
+     * @param filename The name of the file or directory
+     * @throws IOException An error at sending OBEX frame or an error response 
+     *         was received
+     * @since 1.0
+     */
+    /* package */ void delete(final String filename) throws IOException
     {
         if(!obexMode) openObexMode();
      
@@ -662,6 +1438,8 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         {
             interruptLock.unlock();
         }
+        
+        flashCache.entryDeleted(currentDirectory, filename);
     }
     
     /**
@@ -677,20 +1455,48 @@ public class ModuleFileManager implements FileManager, ProtocolParser
      */
     private byte[] processObexMultipart(final Obex request, final OperationType opType) 
             throws InterruptedIOException, IOException 
+    {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(DEFAULT_BODY_LENGTH);
+        processObexMultipart(request, opType, Channels.newChannel(bos));
+        
+        return bos.toByteArray();
+    }
+    
+    /**
+     * Sends an OBEX message their receives OBEX repsonse thats need more then 
+     * one frame and continue messages after each frame. The data of each frame 
+     * will be written to the sink directly after receiving, so the memory usage
+     * is independent of the file size. A missing <code>LENGTH</code> header
+     * is allowed, then the progress is only notified at start and end.
+     * @param request The request to send
+     * @param opType The type of operation
+     * @param sink The destination of the received binary data
+     * @return The count of received bytes
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException The parameter filename is an directory, dont exist, 
+     *         the communication to the device failed or the writing to the sink
+     *         failed
+     * @since 1.6
+     */
+    /* package */ long processObexMultipart(final Obex request, final OperationType opType
+            , final WritableByteChannel sink) throws InterruptedIOException, IOException 
     {
         if(opType != null) notifyProgress(opType, 0);
 
-        int writeCount = 0;
+        long writeCount = 0;
         
         Obex response = null;
         
-        interruptLock.lock();
-        
-        setRunning(true);
-        interruptable = true;
+        if(singleResponseMode)
+        {
+            request.addHeader(new ObexHeader<Byte>(Code.SINGLE_RESPONSE_MODE
+                    , ObexHeader.SRM_ENABLE));
+        }
         
+        interruptLock.lock();
         try
         {
+            checkCanceled();
             send(request);
 
             response = receive(false);
@@ -706,29 +1512,70 @@ public class ModuleFileManager implements FileManager, ProtocolParser
             interruptLock.unlock();
         }
         
+        IOException failure = null;
+        try
+        {
+            writeCount = receiveMultipart(response, opType, sink);
+        }
+        catch (final IOException ex)
+        {
+            failure = ex;
+        }
+        
+        if(endInterruptable())
+        {
+            completeAbort();
+            final InterruptedIOException ex = new InterruptedIOException((opType != null 
+                    ? opType : "The operation") + " was interrupted by user");
+            ex.bytesTransferred = (int)writeCount;
+            throw ex;
+        }
+        if(failure != null)
+        {
+            throw failure;
+        }
+
+        if(opType != null) notifyProgress(opType, 100);
         
+        return writeCount;
+    }
+    
+    /**
+     * Receives the following frames of a multipart response until the final
+     * response or an cancel.
+     * @param firstResponse The response to the request
+     * @param opType The type of operation or <code>null</code>
+     * @param sink The destination of the data
+     * @return The count of transfered bytes
+     * @throws IOException An error response was received or the writing to 
+     *         the sink failed
+     * @since 1.6
+     */
+    private long receiveMultipart(final Obex firstResponse, final OperationType opType
+            , final WritableByteChannel sink) throws IOException
+    {
+        Obex response = firstResponse;
+        long writeCount = 0;
+        beginInterruptable();
         
         final ObexHeader<Integer> lengthHeader = response.getHeader(Code.LENGTH);
         
-        final double length = lengthHeader.getData();
+        final double length = lengthHeader != null ? lengthHeader.getData() : -1;
         
-        final ByteBuffer byteBuffer = ByteBuffer.allocate(lengthHeader.getData());
+        writeCount += writeBody(response, sink);
         
-        ObexHeader<byte[]> bodyHeader = response.getHeader(Code.BODY);
-        if(bodyHeader != null)
-        {
-            byteBuffer.put(bodyHeader.getData());
-            writeCount = bodyHeader.getData().length;
-        }
+        final boolean srmActive = isSingleResponseModeEnabled(response);
         
-        while(response.getObexCode() == Obex.Code.RESPONSE_CONTINUE && getRunning())
+        while(response.getObexCode() == Obex.Code.RESPONSE_CONTINUE && !cancelRequested)
         {
-            final Obex req = new Obex(Obex.Code.REQUEST_GET);
-            
             interruptLock.lock();
             try
             {
-                send(req);
+                if(!srmActive || response.hasHeaderValue(
+                        Code.SINGLE_RESPONSE_MODE_PARAMETERS, ObexHeader.SRMP_WAIT))
+                {
+                    send(new Obex(Obex.Code.REQUEST_GET));
+                }
                 response = receive(false);
 
                 if(response.getObexCode() != Obex.Code.RESPONSE_CONTINUE &&
@@ -742,32 +1589,69 @@ public class ModuleFileManager implements FileManager, ProtocolParser
                 interruptLock.unlock();
             }
 
-            bodyHeader = response.getHeader(Code.BODY);
-            if(bodyHeader != null)
+            writeCount += writeBody(response, sink);
+            
+            if(opType != null && length > 0)
             {
-                byteBuffer.put(bodyHeader.getData());
-                writeCount += bodyHeader.getData().length;
+                double preValue = writeCount * 99;
+                notifyProgress(opType, (int)(preValue / length));
             }
-            
-            
-            double preValue = writeCount * 99;
-            if(opType != null) notifyProgress(opType, (int)(preValue / length));
         }
         
-        if(!getRunning())
+        return writeCount;
+    }
+    
+    /**
+     * Writes the data of the <code>BODY</code> and <code>END_OF_BODY</code> 
+     * header of an OBEX response to the sink.
+     * @param response The OBEX response
+     * @param sink The destination of the data
+     * @return The count of written bytes
+     * @throws IOException The writing to the sink failed
+     * @since 1.6
+     */
+    private static int writeBody(final Obex response, final WritableByteChannel sink) 
+            throws IOException
+    {
+        if(response.getHeaders() == null)
         {
-            final InterruptedIOException ex = new InterruptedIOException(opType + " was interrupted by user");
-            ex.bytesTransferred = writeCount;
-            throw ex;
+            return 0;
         }
         
-        setRunning(false);
-        interruptable = false;
+        int writeCount = 0;
+        final ObexHeader<ByteBuffer> bodyHeader = response.getHeader(Code.BODY);
+        if(bodyHeader != null)
+        {
+            writeCount += writeFully(bodyHeader.getData(), sink);
+        }
+        final ObexHeader<ByteBuffer> endOfBodyHeader = response.getHeader(Code.END_OF_BODY);
+        if(endOfBodyHeader != null)
+        {
+            writeCount += writeFully(endOfBodyHeader.getData(), sink);
+        }
         
-
-        if(opType != null) notifyProgress(opType, 100);
+        return writeCount;
+    }
+    
+    /**
+     * Writes the complete data to the sink.
+     * @param data The data as view on the received frame
+     * @param sink The destination of the data
+     * @return The count of written bytes
+     * @throws IOException The writing to the sink failed
+     * @since 1.6
+     */
+    private static int writeFully(final ByteBuffer data, final WritableByteChannel sink) 
+            throws IOException
+    {
+        final ByteBuffer buffer = data.duplicate();
+        final int length = buffer.remaining();
+        while(buffer.hasRemaining())
+        {
+            sink.write(buffer);
+        }
         
-        return byteBuffer.array();
+        return length;
     }
 
     /** {@inheritDoc } */
@@ -776,25 +1660,25 @@ public class ModuleFileManager implements FileManager, ProtocolParser
             throws InterruptedIOException, IOException
     {
         FileContent result = null;
-        operationLock.lock();
+        lockOperation();
         try
         {
-            if(!obexMode) openObexMode();
+            final String localName = enterParentDirectory(filename);
 
-            if(!checkFileExist(filename))
+            if(!checkFileExist(localName))
             {
                 throw new IOException("Input value: " + filename 
                         + " is an folder or dont exist");
             }
 
-            final ObexHeader<String> name = new ObexHeader<String>(ObexHeader.Code.NAME, filename);
+            final ObexHeader<String> name = new ObexHeader<String>(ObexHeader.Code.NAME, localName);
             final Obex req = new Obex(Obex.Code.REQUEST_GET_FINAL, name);
 
             final byte[] body = processObexMultipart(req, OperationType.GET_FILE);
 
             notifyProgressDone(OperationType.GET_FILE, true);
 
-            result = new FileContent(filename, currentDirectory, new Date(), body);
+            result = new FileContent(localName, currentDirectory, new Date(), body);
         }
         finally
         {
@@ -804,6 +1688,79 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         return result;
     }
     
+    /** {@inheritDoc } */
+    @Override
+    public long getFile(final String filename, final OutputStream out) 
+            throws InterruptedIOException, IOException
+    {
+        if(out == null)
+        {
+            throw new IllegalArgumentException("The parameter out cant be null");
+        }
+        
+        return getFile(filename, Channels.newChannel(out));
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public long getFile(final String filename, final WritableByteChannel channel) 
+            throws InterruptedIOException, IOException
+    {
+        if(channel == null)
+        {
+            throw new IllegalArgumentException("The parameter channel cant be null");
+        }
+        
+        lockOperation();
+        try
+        {
+            return getFileData(enterParentDirectory(filename), channel);
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /**
+     * Transfers an file from the current directory to an 
+     * {@link WritableByteChannel}.
+     * @param filename The name of file
+     * @param channel The destination of the file data
+     * @return The count of transfered bytes
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException The parameter filename is an directory, dont exist,
+     *         the communication to the device failed or the writing to the 
+     *         channel failed
+     * @since 1.6
+     */
+    /* package */ long getFileData(final String filename, final WritableByteChannel channel) 
+            throws InterruptedIOException, IOException
+    {
+        lockOperation();
+        try
+        {
+            if(!checkFileExist(filename))
+            {
+                throw new IOException("Input value: " + filename 
+                        + " is an folder or dont exist");
+            }
+
+            final ObexHeader<String> name = new ObexHeader<String>(ObexHeader.Code.NAME, filename);
+            final Obex req = new Obex(Obex.Code.REQUEST_GET_FINAL, name);
+
+            final long count = processObexMultipart(req, OperationType.GET_FILE, channel);
+
+            notifyProgressDone(OperationType.GET_FILE, true);
+            
+            return count;
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
     /**
      * Checks in the current filelisting an directory with same name like 
      * directoryName exists.
@@ -826,9 +1783,10 @@ public class ModuleFileManager implements FileManager, ProtocolParser
      * folder.
      * @param filename The filename
      * @return <code>true</code> its an file and exist
+     * @throws IOException The reading of the file listing failed
      * @since 1.0
      */
-    private boolean checkFileExist(final String filename)
+    private boolean checkFileExist(final String filename) throws IOException
     {
         final FileMeta fileMeta = getFileMetaFromListing(filename);
         
@@ -847,30 +1805,272 @@ public class ModuleFileManager implements FileManager, ProtocolParser
      * @param filename The name of the file or folder
      * @return If <code>null</code> no passing element in file listing else the
      *         passing {@link FileMeta}
+     * @throws IOException The reading of the file listing failed
      * @since 1.0
      */
-    private FileMeta getFileMetaFromListing(final String filename)
+    /* package */ FileMeta getFileMetaFromListing(final String filename) throws IOException
+    {
+        if(!flashCache.containsListing(currentDirectory))
+        {
+            readFileListing();
+        }
+        
+        return flashCache.find(currentDirectory, filename);
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public FileMeta getFileMeta(final String path) throws IOException
+    {
+        if(path == null)
+        {
+            throw new IllegalArgumentException("The parameter path cant be null");
+        }
+        
+        lockOperation();
+        try
+        {
+            final FileMeta target = resolveDirectory(workingDirectory
+                    , path.isEmpty() ? "." : path);
+            final FileMeta parent = target.getParentDirectory();
+            if(parent == null)
+            {
+                return target;
+            }
+            
+            if(!flashCache.containsListing(parent))
+            {
+                moveToDirectory(parent);
+                readFileListing();
+            }
+            
+            return flashCache.find(parent, target.getName());
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /**
+     * Changes the directory pointer on device to a directory. The directory
+     * will be reached with the lowest count of <code>SETPATH</code> requests,
+     * either over the common parent directory or over the root directory. 
+     * The current directory is updated after every successful step.
+     * @param target The target directory
+     * @throws IOException The target directory dont exist or the 
+     *         communication to the device failed
+     * @since 1.6
+     */
+    /* package */ void moveToDirectory(final FileMeta target) throws IOException
+    {
+        if(!obexMode) openObexMode();
+        
+        for(final String name: getSetPathRoute(currentDirectory, target))
+        {
+            setPath(name, false);
+            currentDirectory = applySetPath(currentDirectory, name);
+        }
+    }
+    
+    /**
+     * Gets the names of the <code>SETPATH</code> requests from a directory to
+     * an other directory. The route goes over the common parent directory with 
+     * <code>..</code> or over the root directory, whichever needs less 
+     * requests.
+     * @param from The current directory
+     * @param to The target directory
+     * @return The names of the <code>SETPATH</code> requests in order of 
+     *         sending
+     * @since 1.6
+     */
+    /* package */ static List<String> getSetPathRoute(final FileMeta from
+            , final FileMeta to)
     {
-        FileMeta target= null;
-        for(final FileMeta fileMeta: currentFileListing)
+        final List<FileMeta> fromElements = getPathElements(from);
+        final List<FileMeta> toElements = getPathElements(to);
+        final List<String> route = new ArrayList<String>();
+        
+        int common = 0;
+        while(common < fromElements.size() && common < toElements.size() 
+                && fromElements.get(common).getName().equalsIgnoreCase(
+                toElements.get(common).getName()))
+        {
+            common++;
+        }
+        
+        if(common == 0 || (fromElements.size() - common) > common)
+        {
+            route.add(toElements.get(0).getName().toUpperCase(Locale.ROOT));
+            common = 1;
+        }
+        else
         {
-            if(fileMeta.getName().equalsIgnoreCase(filename))
+            for(int i = fromElements.size(); i > common; i--)
             {
-                target = fileMeta;
+                route.add("..");
             }
         }
         
+        for(int i = common; i < toElements.size(); i++)
+        {
+            route.add(toElements.get(i).getName());
+        }
+        
+        return route;
+    }
+    
+    /**
+     * Gets the directory after a successful <code>SETPATH</code> request.
+     * @param directory The directory before the request
+     * @param name The name of the request like <code>A:</code>, 
+     *        <code>..</code> or the name of a sub directory
+     * @return The directory after the request
+     * @since 1.6
+     */
+    /* package */ static FileMeta applySetPath(final FileMeta directory
+            , final String name)
+    {
+        if(name.equals(".."))
+        {
+            return getParent(directory);
+        }
+        else if(name.endsWith(":"))
+        {
+            return resolveDirectory(directory, name);
+        }
+        
+        return new FileMeta(name, directory, true);
+    }
+    
+    /**
+     * Changes the directory pointer to the parent directory of a path. The 
+     * path is resolved relative to the working directory, so the parent of a
+     * plain name is the working directory.
+     * @param path The relative or absolute path of a file or directory
+     * @return The name of the file or directory
+     * @throws IOException The path contains no name, the parent directory 
+     *         dont exist or the communication to the device failed
+     * @since 1.6
+     */
+    private String enterParentDirectory(final String path) throws IOException
+    {
+        final FileMeta target = resolvePath(workingDirectory, path);
+        moveToDirectory(target.getParentDirectory());
+        
+        return target.getName();
+    }
+    
+    /**
+     * Resolves the path of a file or directory relative to the working 
+     * directory. The path must contain a name, so the resolved path has a 
+     * parent directory.
+     * @param workingDirectory The working directory
+     * @param path The relative or absolute path of a file or directory
+     * @return The file or directory with its parent directories
+     * @throws IOException The path contains no name
+     * @since 1.6
+     */
+    /* package */ static FileMeta resolvePath(final FileMeta workingDirectory
+            , final String path) throws IOException
+    {
+        final FileMeta target = resolveDirectory(workingDirectory, path);
+        if(path.isEmpty() || target.getParentDirectory() == null)
+        {
+            throw new IOException("The path: " + path + " contains no name");
+        }
+        
         return target;
     }
+    
+    /**
+     * Gets the file listing of a directory. A cached file listing is returned
+     * without any communication, else the directory pointer is changed to the
+     * directory and the file listing is read.
+     * @param directory The directory
+     * @return A copy of the file listing
+     * @throws IOException The directory dont exist or the communication to the 
+     *         device failed
+     * @since 1.6
+     */
+    private Set<FileMeta> getFileListing(final FileMeta directory) throws IOException
+    {
+        final Set<FileMeta> listing = flashCache.getListing(directory);
+        if(listing != null)
+        {
+            return new TreeSet<FileMeta>(listing);
+        }
+        moveToDirectory(directory);
+        
+        return new TreeSet<FileMeta>(readFileListing());
+    }
+    
+    /**
+     * Gets the directories of a path beginning with the root directory.
+     * @param directory The last directory of the path
+     * @return The directories from root to the directory
+     * @since 1.6
+     */
+    private static List<FileMeta> getPathElements(final FileMeta directory)
+    {
+        final List<FileMeta> elements = new ArrayList<FileMeta>();
+        for(FileMeta element = directory; element != null
+                ; element = element.getParentDirectory())
+        {
+            elements.add(element);
+        }
+        Collections.reverse(elements);
+        
+        return elements;
+    }
 
     /** {@inheritDoc } */
     @Override
     public Set<FileMeta> getFileListing() throws IOException
     {
-        operationLock.lock();
+        lockOperation();
+        try
+        {
+            return getFileListing(workingDirectory);
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public Set<FileMeta> getFileListing(final String path) throws IOException
+    {
+        if(path == null)
+        {
+            throw new IllegalArgumentException("The parameter path cant be null");
+        }
+        
+        lockOperation();
+        try
+        {
+            return getFileListing(resolveDirectory(workingDirectory
+                    , path.isEmpty() ? "." : path));
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public Set<FileMeta> refreshFileListing() throws IOException
+    {
+        lockOperation();
         try
         {
-            return currentFileListing;
+            moveToDirectory(workingDirectory);
+            flashCache.invalidate(currentDirectory);
+            
+            return new TreeSet<FileMeta>(readFileListing());
         }
         finally
         {
@@ -879,27 +2079,54 @@ public class ModuleFileManager implements FileManager, ProtocolParser
     }
     
     /**
-     * Reads the file listing from module an save it in an member.
+     * Gets the file listing of the current directory. The file listing will be
+     * read from module if it was not read before.
+     * @return The files and folders from current directory
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    /* package */ Set<FileMeta> getCurrentFileListing() throws IOException
+    {
+        final Set<FileMeta> listing = flashCache.getListing(currentDirectory);
+        if(listing != null)
+        {
+            return listing;
+        }
+        
+        return readFileListing();
+    }
+    
+    /**
+     * Reads the file listing of the current directory from module an save it 
+     * in the cache.
+     * @return The files and folders from current directory
      * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
      * @throws IOException The parameter filename is an directory, dont exist 
      *         or the communication to the device failed
      * @since 1.0
      */
-    private void readFileListing() throws InterruptedIOException, IOException
+    private Set<FileMeta> readFileListing() throws InterruptedIOException, IOException
     {
         if(!obexMode) openObexMode();
 
         final ObexHeader<String> type = new ObexHeader<String>(ObexHeader.Code.TYPE, "x-obex/folder-listing");
         final Obex req = new Obex(Obex.Code.REQUEST_GET_FINAL, type);
 
-        final byte[] body = processObexMultipart(req, null);
-        final String xml = new String(body, BYTE_CHARSET);
+        final ReceiveBuffer body = new ReceiveBuffer();
+        processObexMultipart(req, null, Channels.newChannel(body));
         
-        LOG.trace("FileListing - XML: {}", xml);
+        if(LOG.isTraceEnabled())
+        {
+            LOG.trace("FileListing - XML: {}", body.toString(BYTE_CHARSET.name()));
+        }
 
         try
         {
-            currentFileListing = parseFileData(xml);
+            final Set<FileMeta> listing = FolderListingParser.parse(body.toInputStream()
+                    , currentDirectory);
+            flashCache.putListing(currentDirectory, listing);
+            
+            return listing;
         }
         catch (final ParseException ex)
         {
@@ -919,9 +2146,10 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         {
             throw new IllegalArgumentException("The input values cant be null");
         }
-        operationLock.lock();
+        lockOperation();
         try
         {
+            moveToDirectory(workingDirectory);
             final byte[] oldPathByteArr = oldPath.getBytes(NAME_CHARSET);
             final byte[] newPathByteArr = newPath.getBytes(NAME_CHARSET);
             final ByteArrayOutputStream bos = new ByteArrayOutputStream(oldPathByteArr.length + newPathByteArr.length + 10);
@@ -954,7 +2182,7 @@ public class ModuleFileManager implements FileManager, ProtocolParser
                 interruptLock.unlock();
             }
 
-            readFileListing();
+            flashCache.entryMoved(currentDirectory, oldPath, newPath);
         }
         finally
         {
@@ -965,7 +2193,7 @@ public class ModuleFileManager implements FileManager, ProtocolParser
     private long getSpace(final byte parameter) throws IOException
     {
         ObexHeader<byte[]> appHeaderResp = null;
-        operationLock.lock();
+        lockOperation();
         try
         {
             if(!obexMode) openObexMode();
@@ -1000,110 +2228,333 @@ public class ModuleFileManager implements FileManager, ProtocolParser
     @Override
     public long getDiskSpace() throws IOException
     {
-        return getSpace((byte)0x01);
+        lockOperation();
+        try
+        {
+            if(diskSpace < 0)
+            {
+                diskSpace = getSpace((byte)0x01);
+            }
+            
+            return diskSpace;
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
     }
     
     /** {@inheritDoc } */
     @Override
     public long getFreeSpace() throws IOException
     {
-        return getSpace((byte)0x02);
-    }
-    
-    /**
-     * Parses an {@link Set} of {@link FileMeta} from the received file listing 
-     * XML.
-     * @param xml THe file listing XML
-     * @return The {@link Set} of {@link FileMeta}
-     * @throws XMLStreamException An error at readin the XML
-     * @throws ParseException An error at parsing the XML
-     * @since 1.0
-     */
-    private Set<FileMeta> parseFileData(final String xml) throws XMLStreamException, ParseException
+        lockOperation();
+        try
+        {
+            final long estimate = flashCache.getFreeSpace();
+            
+            return estimate >= 0 ? estimate : readFreeSpace();
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /**
+     * Reads the free space from the device and updates the free space 
+     * estimate.
+     * @return The free available space in Byte
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    private long readFreeSpace() throws IOException
     {
-        final XMLInputFactory factory = XMLInputFactory.newInstance();
-        final XMLStreamReader parser = factory.createXMLStreamReader(new StringReader(xml));
-
-        final Set<FileMeta> files = new TreeSet<FileMeta>();
+        final long result = getSpace((byte)0x02);
+        flashCache.updateFreeSpace(result);
+        LOG.debug("Free space read from device: {}", result);
         
-        while (parser.hasNext())
+        return result;
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public void putFile(final FileContent file, final boolean override) 
+            throws InterruptedIOException, IOException
+    {
+        putFilePath(file.getName(), file.getLastModified(), file.getData().length
+                , Channels.newChannel(new ByteArrayInputStream(file.getData())), override);
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public void putFile(final String filename, final Date lastModified
+            , final long size, final InputStream in, final boolean override) 
+            throws InterruptedIOException, IOException
+    {
+        if(in == null)
         {
-            switch (parser.getEventType())
-            {
-                case XMLStreamConstants.START_ELEMENT:
-                    if((parser.getLocalName().equals("file") 
-                            || parser.getLocalName().equals("folder"))
-                            & !parser.getAttributeValue(0).equals("telecom") )
-                    {
-                        final String name = parser.getAttributeValue(0);
-                        
-                        final FileMeta file;
-                        if(parser.getLocalName().equals("file"))
-                        {
-                            final Date date = Obex.DATE_FORMAT.parse(parser.getAttributeValue(2));
-                            final int size = Integer.parseInt(parser.getAttributeValue(1));
-                            file = new FileMeta(name, currentDirectory, false, date, size);
-                        }
-                        else
-                        {
-                            final Date date = Obex.DATE_FORMAT.parse(parser.getAttributeValue(1));
-                            file = new FileMeta(name, currentDirectory, true, date, 0);
-                        }           
-                        
-                        files.add(file);
-                    }
-                    break;
-                default:
-                    break;
-            }
-            parser.next();
+            throw new IllegalArgumentException("The parameter in cant be null");
         }
         
-        return files;
+        putFile(filename, lastModified, size, Channels.newChannel(in), override);
     }
-
+    
     /** {@inheritDoc } */
     @Override
-    public void putFile(final FileContent file, final boolean override) 
+    public void putFile(final String filename, final Date lastModified
+            , final long size, final ReadableByteChannel channel
+            , final boolean override) throws InterruptedIOException, IOException
+    {
+        if(filename == null || lastModified == null || channel == null)
+        {
+            throw new IllegalArgumentException("The input values cant be null");
+        }
+        if(size < 0)
+        {
+            throw new IllegalArgumentException("The parameter size cant be negative");
+        }
+        
+        putFilePath(filename, lastModified, size, channel, override);
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public void putFile(final Path path, final boolean override) 
             throws InterruptedIOException, IOException
     {
-        operationLock.lock();
+        if(path == null)
+        {
+            throw new IllegalArgumentException("The parameter path cant be null");
+        }
+        
+        lockOperation();
+        try
+        {
+            moveToDirectory(workingDirectory);
+            putLocalFile(path, override);
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /**
+     * Puts a local file to the flash filesystem on the current directory. The
+     * local file will be memory mapped if possible.
+     * @param path The path of the local file
+     * @param override If <code>true</code> it will override the old one on 
+     *        flash filesystem
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException If parameter override <code>false</code> and a file 
+     *         with same name exists on flash filesystem, the reading of the 
+     *         local file failed or the communication to the device failed
+     * @since 1.6
+     */
+    /* package */ void putLocalFile(final Path path, final boolean override)
+            throws InterruptedIOException, IOException
+    {
+        final FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
         try
         {
-            FileMeta target= null;
-            for(final FileMeta fileMeta: currentFileListing)
+            final long size = fileChannel.size();
+            final Date lastModified = new Date(Files.getLastModifiedTime(path).toMillis());
+            
+            ReadableByteChannel source = fileChannel;
+            if(size > 0 && size <= Integer.MAX_VALUE)
             {
-                if(fileMeta.getName().equalsIgnoreCase(file.getName()))
+                try
+                {
+                    source = new MappedChannel(fileChannel.map(FileChannel.MapMode.READ_ONLY
+                            , 0, size));
+                }
+                catch (final IOException ex)
                 {
-                    target = fileMeta;
+                    LOG.debug("Memory mapping of: {} failed, the file will be read", path, ex);
                 }
             }
+            
+            putFileData(path.getFileName().toString(), lastModified, size, source
+                    , override);
+        }
+        finally
+        {
+            fileChannel.close();
+        }
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public MirrorResult mirror(final String remoteDirectory, final Path localDirectory) 
+            throws InterruptedIOException, IOException
+    {
+        if(remoteDirectory == null || localDirectory == null)
+        {
+            throw new IllegalArgumentException("The input values cant be null");
+        }
+        
+        lockOperation();
+        try
+        {
+            return directoryMirror.mirror(remoteDirectory, localDirectory);
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public void putFileParts(final Path path, final UploadCheckpoint checkpoint) 
+            throws InterruptedIOException, IOException
+    {
+        if(path == null || checkpoint == null)
+        {
+            throw new IllegalArgumentException("The input values cant be null");
+        }
+        
+        lockOperation();
+        try
+        {
+            partUploader.putFileParts(path, checkpoint);
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /** {@inheritDoc } */
+    @Override
+    public SyncResult synchronize(final Path localDirectory, final String remoteDirectory
+            , final boolean deleteStale, final boolean useManifest) 
+            throws InterruptedIOException, IOException
+    {
+        if(localDirectory == null || remoteDirectory == null)
+        {
+            throw new IllegalArgumentException("The input values cant be null");
+        }
+        if(!Files.isDirectory(localDirectory))
+        {
+            throw new FileNotFoundException("The directory: " + localDirectory + " doesnt exist");
+        }
+        
+        lockOperation();
+        try
+        {
+            return directorySynchronizer.synchronize(localDirectory, remoteDirectory
+                    , deleteStale, useManifest);
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /**
+     * A buffer for received data that can be read without copying.
+     * @since 1.6
+     */
+    private static class ReceiveBuffer extends ByteArrayOutputStream
+    {
+        private ReceiveBuffer()
+        {
+            super(DEFAULT_BODY_LENGTH);
+        }
+        
+        /**
+         * Gets an {@link InputStream} on the received data.
+         * @return The {@link InputStream} on the received data
+         * @since 1.6
+         */
+        private InputStream toInputStream()
+        {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+    
+    /**
+     * Puts the data from the source to the flash filesystem on a path. The 
+     * path is resolved relative to the working directory.
+     * @param path The relative or absolute path of the file
+     * @param lastModified The last modification date
+     * @param size The size of the file in bytes
+     * @param source The source of the file data
+     * @param override If <code>true</code> it will override the old one on 
+     *        flash filesystem
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException If parameter override <code>false</code> and a file 
+     *         with same name exists on flash filesystem, the parent directory
+     *         dont exist or the communication to the device failed
+     * @since 1.6
+     */
+    private void putFilePath(final String path, final Date lastModified
+            , final long size, final ReadableByteChannel source
+            , final boolean override) throws InterruptedIOException, IOException
+    {
+        lockOperation();
+        try
+        {
+            putFileData(enterParentDirectory(path), lastModified, size, source
+                    , override);
+        }
+        finally
+        {
+            operationLock.unlock();
+        }
+    }
+    
+    /**
+     * Puts the data from the source to the flash filesystem on the current 
+     * directory. The data will be read part by part directly before sending,
+     * so the memory usage is independent of the file size.
+     * @param filename The name of the file
+     * @param lastModified The last modification date
+     * @param size The size of the file in bytes
+     * @param source The source of the file data
+     * @param override If <code>true</code> it will override the old one on 
+     *        flash filesystem
+     * @throws InterruptedIOException Thrown after an interrupt by {@link #cancel() }
+     * @throws IOException If parameter override <code>false</code> and a file 
+     *         with same name exists on flash filesystem, the source contains 
+     *         less data than the size or the communication to the device failed
+     * @since 1.6
+     */
+    /* package */ void putFileData(final String filename, final Date lastModified
+            , final long size, final ReadableByteChannel source
+            , final boolean override) throws InterruptedIOException, IOException
+    {
+        lockOperation();
+        try
+        {
+            final FileMeta target = getFileMetaFromListing(filename);
 
             if(target != null)
             {
                 if(override)
                 {
-                    deleteFile(target.getName(), true);
+                    deleteEntry(target.getName(), true);
                 }
                 else
                 {
-                    throw new IOException("The file: " + file.getName() 
+                    throw new IOException("The file: " + filename 
                             + " exist on flash");
                 }
             }
 
-            if(file.getData().length > getFreeSpace())
+            if(!flashCache.isSufficient(size) && size > readFreeSpace())
             {
                 throw new IOException("Not enough space available on flash");
             }
 
-            setRunning(true);
-            interruptable = true;
+            checkCanceled();
             notifyProgress(OperationType.PUT_FILE, 0);
             if(!obexMode) openObexMode();
 
-            final double fileSize = file.getData().length;
-            final double filePartLength = MAX_PACKET_LENGTH;
+            final double fileSize = size;
+            final double filePartLength = bodyLength;
             final double parts = fileSize / filePartLength;
             final double partsRounded = Math.ceil(parts);
             final double partPercent;
@@ -1119,78 +2570,122 @@ public class ModuleFileManager implements FileManager, ProtocolParser
             
             int part = 1;
 
-    //        System.out.println("PartPercent: " + partPercent);
-    //        System.out.println("Parts: " + parts);    
+            final int maxPartLength = bodyLength;
 
-            int maxPartLength = MAX_PACKET_LENGTH;
+            final boolean srmActive = putFirstPart(filename, size, lastModified);
+            final int window = srmActive ? 1 : putWindow;
+            int inFlight = 0;
 
-            putFirstPart(file);
+            long writeCount = 0;
+            IOException failure = null;
+            beginInterruptable();
 
-            int writeCount = 0;
-
-            while(writeCount < file.getData().length && getRunning())
+            while(writeCount < size && !cancelRequested)
             {
                 final boolean isLastPart;
-                int contentPartLength = file.getData().length - writeCount;
+                int contentPartLength;
 
-                if(contentPartLength > maxPartLength)
+                if(size - writeCount > maxPartLength)
                 {
                     contentPartLength = maxPartLength;
                     isLastPart = false;
                 } 
                 else 
                 {
+                    contentPartLength = (int)(size - writeCount);
                     isLastPart = true;
                 }
-                putFilePart(file, writeCount, contentPartLength, isLastPart);
+                
+                try
+                {
+                    inFlight = putFilePart(source, writeCount, contentPartLength
+                            , isLastPart, srmActive, window, inFlight);
+                }
+                catch (final IOException ex)
+                {
+                    failure = ex;
+                    break;
+                }
                 notifyProgress(OperationType.PUT_FILE, (int)(partPercent * part));
                 part++;
                 writeCount += contentPartLength;
             }
 
-            interruptable = false;
-            if(!getRunning())
+            if(endInterruptable())
             {
-                deleteFile(file.getName(), false);
+                cleanupAbortedPut(filename, completeAbort());
                 notifyProgressDone(OperationType.PUT_FILE, false);
                 final InterruptedIOException ex = new InterruptedIOException("Put file was interrupted by user");
-                ex.bytesTransferred = writeCount;
+                ex.bytesTransferred = (int)writeCount;
                 throw ex;
             }
-    //        
-            setRunning(false);
+            if(failure != null)
+            {
+                throw failure;
+            }
+            
+            flashCache.fileCreated(currentDirectory, filename, lastModified, size);
         }
         finally
         {
             operationLock.unlock();
         }
-        
-        readFileListing();
 
         notifyProgress(OperationType.PUT_FILE, 100);
         notifyProgressDone(OperationType.PUT_FILE, true);
     }
     
+    /**
+     * Reads from the source until the buffer is full.
+     * @param source The source of the data
+     * @param buffer The buffer
+     * @param offset The count of already read bytes for the error message
+     * @throws IOException The reading failed or the source has reached the end
+     * @since 1.6
+     */
+    private static void readFully(final ReadableByteChannel source
+            , final ByteBuffer buffer, final long offset) throws IOException
+    {
+        while(buffer.hasRemaining())
+        {
+            if(source.read(buffer) < 0)
+            {
+                throw new EOFException("The source of the file ends after " 
+                        + (offset + buffer.position()) + " bytes");
+            }
+        }
+    }
+    
     /**
      * Sends the first frame of an PUT operation to device. The frame contains
      * only meta data then data in the first frame makes the operation very slow.
-     * @param file The file for PUT operation
+     * @param filename The name of the file
+     * @param size The size of the file
+     * @param lastModified The last modification date
+     * @return <code>true</code> - The device has agreed to the Single Response
+     *         Mode / <code>false</code> - Each packet must be confirmed
      * @throws IOException An error at sending OBEX frame
      * @since 1.0
      */
-    private void putFirstPart(final FileContent file) throws IOException
+    private boolean putFirstPart(final String filename, final long size
+            , final Date lastModified) throws IOException
     {
         // HEADER NAME
-        final ObexHeader<String> name = new ObexHeader<String>(ObexHeader.Code.NAME, file.getName());
+        final ObexHeader<String> name = new ObexHeader<String>(ObexHeader.Code.NAME, filename);
         // HEADER LENGTH
-        final ObexHeader<Integer> length = new ObexHeader<Integer>(ObexHeader.Code.LENGTH, file.getData().length);
+        final ObexHeader<Integer> length = new ObexHeader<Integer>(ObexHeader.Code.LENGTH, (int)size);
         // HEADER TIME
-        final ObexHeader<Date> time = new ObexHeader<Date>(ObexHeader.Code.TIME, file.getLastModified());
+        final ObexHeader<Date> time = new ObexHeader<Date>(ObexHeader.Code.TIME, lastModified);
         
         final Map<ObexHeader.Code, ObexHeader> headers = new EnumMap<ObexHeader.Code, ObexHeader>(ObexHeader.Code.class);
         headers.put(name.getObexCode(), name);
         headers.put(length.getObexCode(), length);
         headers.put(time.getObexCode(), time);
+        if(singleResponseMode)
+        {
+            headers.put(Code.SINGLE_RESPONSE_MODE, new ObexHeader<Byte>(
+                    Code.SINGLE_RESPONSE_MODE, ObexHeader.SRM_ENABLE));
+        }
         final Obex req = new Obex(Obex.Code.REQUEST_PUT, headers);
         
         interruptLock.lock();
@@ -1203,6 +2698,8 @@ public class ModuleFileManager implements FileManager, ProtocolParser
             {
                 throw new IOException("Error response received: " + response.getObexCode()); 
             }
+            
+            return isSingleResponseModeEnabled(response);
         }
         finally
         {
@@ -1211,25 +2708,28 @@ public class ModuleFileManager implements FileManager, ProtocolParser
     }
     
     /**
-     * Sends an OBEX frame with data to the module.
-     * @param file The file for PUT operation
-     * @param contentPartOffset The offset in the binary data of the input file
-     * @param contentPartLength The length of data to send from the input file
+     * Sends an OBEX frame with data to the module. The data will be read from
+     * the source directly into the send buffer.
+     * @param source The source of the file data
+     * @param contentPartOffset The count of already sent bytes of the file
+     * @param contentPartLength The length of data to send from the source
      * @param isLastPart Marks the frame as the last frame
-     * @throws IOException An error at sending OBEX frame
+     * @param srmActive <code>true</code> - The Single Response Mode is active
+     *        and only the last frame will be confirmed by the device
+     * @param window The maximum count of frames without response
+     * @param inFlight The count of sent frames without received response
+     * @return The count of sent frames without received response after this 
+     *         frame
+     * @throws IOException An error at reading the source or sending OBEX frame
      * @since 1.0 
      */
-    private void putFilePart(final FileContent file, final int contentPartOffset
-            , final int contentPartLength, final boolean isLastPart) 
-            throws IOException 
-    {
-//        System.out.println("CPO: " + contentPartOffset + " CPL: " + contentPartLength);
-//        System.out.println("ContentPartLength: " + contentPartLength);
-        byte[] contentPart = Arrays.copyOfRange(file.getData(), contentPartOffset
-                , contentPartOffset + contentPartLength);
+    private int putFilePart(final ReadableByteChannel source
+            , final long contentPartOffset, final int contentPartLength
+            , final boolean isLastPart, final boolean srmActive, final int window
+            , final int inFlight) throws IOException 
+    {
         // HEADER_BODY
-        final ObexHeader<byte[]> body;
-        Code bodyCode;
+        final Code bodyCode;
 
         if ( isLastPart )
         {
@@ -1239,10 +2739,9 @@ public class ModuleFileManager implements FileManager, ProtocolParser
         {
             bodyCode = ObexHeader.Code.BODY;	
         }
-        body = new ObexHeader<byte[]>(bodyCode, contentPart);
         
         // REQUEST_PUT
-        Obex.Code reqCode;
+        final Obex.Code reqCode;
         
         if (isLastPart) 
         {
@@ -1253,91 +2752,217 @@ public class ModuleFileManager implements FileManager, ProtocolParser
             reqCode = Obex.Code.REQUEST_PUT;
         }
         
-        final Obex req = new Obex(reqCode, body);
-        
         interruptLock.lock();
         try
         {
-            send(req);
-            final Obex response = receive(false);
-            if(response.getObexCode() != Obex.Code.RESPONSE_CONTINUE &&
-                    response.getObexCode() != Obex.Code.RESPONSE_SUCCESS)
+            sendLock.lock();
+            try
             {
-                throw new IOException("Error response received: " + response.getObexCode()); 
+                final ByteBuffer body = encoder.encodeBody(reqCode, bodyCode
+                        , contentPartLength);
+                readFully(source, body, contentPartOffset);
+                LOG.debug("OBEX send: {} with {} of {} bytes", reqCode, bodyCode
+                        , contentPartLength);
+                sendEncoded(!srmActive || isLastPart);
+            }
+            finally
+            {
+                sendLock.unlock();
+            }
+            
+            if(srmActive)
+            {
+                if(isLastPart)
+                {
+                    Obex response = receive(false);
+                    while(response.getObexCode() == Obex.Code.RESPONSE_CONTINUE)
+                    {
+                        response = receive(false);
+                    }
+                    if(response.getObexCode() != Obex.Code.RESPONSE_SUCCESS)
+                    {
+                        throw new IOException("Error response received: " + response.getObexCode()); 
+                    }
+                }
+                else
+                {
+                    checkPendingResponse();
+                }
+                
+                return 0;
+            }
+            
+            final int pending = inFlight + 1;
+            if(!isLastPart && pending < window)
+            {
+                return pending;
+            }
+            
+            if(isLastPart)
+            {
+                receivePutResponses(pending, pending, true, window > 1);
+                
+                return 0;
+            }
+            else
+            {
+                receivePutResponses(1, pending, false, window > 1);
+                
+                return pending - 1;
             }
         }
         finally
         {
             interruptLock.unlock();
         }
-}
+    }
     
     /**
-     * Reads the response from OBEX request from stream an parse it to an {@link Obex}
-     * object.
-     * @param serialIn The {@link InputStream}
-     * @return The parsed {@link Obex} object
-     * @throws IOException An error at reading from {@link InputStream}
-     * @since 1.0
+     * Receives the responses of sent PUT frames in the order of sending. If 
+     * the device misbehaves at pipelined frames then the pipelining will be 
+     * disabled for all following operations. At an error response the 
+     * responses of all outstanding frames are discarded, so no stale response
+     * is left for the following requests.
+     * @param count The count of expected responses
+     * @param outstanding The count of all sent frames without response. The 
+     *        value is equal or greater than the count
+     * @param containsLastPart <code>true</code> - The last expected response
+     *        is the response to the final frame
+     * @param pipelined <code>true</code> - More than one frame was sent 
+     *        without response
+     * @throws IOException An error response was received or the receiving failed
+     * @since 1.6
      */
-    private Obex receiveObex(final InputStream serialIn) throws IOException
+    private void receivePutResponses(final int count, final int outstanding
+            , final boolean containsLastPart, final boolean pipelined) throws IOException
     {
-        final long t1 = System.nanoTime();
-        final byte[] buffer = new byte[512];
-        boolean received = false;
-        Obex result = null;
-        
-        if(responseBuffer == null)
+        for(int i=0; i<count; i++)
         {
-            responseBuffer = new ByteArrayOutputStream(600);
-        }
-        
-        while(!received)
-        {
-            if(serialIn.available() > 0) 
+            if(abortSent)
             {
-                final int readCount = serialIn.read(buffer);
-//                System.out.println("ReadCount: " + readCount);
-                responseBuffer.write(buffer, 0, readCount);
-                
-                final byte[] response = responseBuffer.toByteArray();
-                
-                if(response.length > 2)
-                {
-                    final int expectedLength = BinaryUtils.byteArrToShort(response, false, 1);
-
-//                    System.out.println("Received: " + BinaryUtils.toHexString(response));
-                    if(response.length == expectedLength)
-                    {
-                        received = true;
-                        result = new Obex(response);
-                    }
-                }
+                // The outstanding responses are received by the completion of the abort
+                return;
             }
-            else
+            
+            final Obex response;
+            try
             {
-                final long runtime = System.nanoTime() - t1;
-                if(runtime > OBEX_RESPONSE_TIMEOUT)
-                {
-                    throw new IOException("Response timeout "
-                            + TimeUnit.NANOSECONDS.toMillis(runtime) + " ms and: " 
-                            + responseBuffer.toByteArray().length);
-                }
-                try
+                response = receive(false);
+            }
+            catch (final InterruptedIOException ex)
+            {
+                throw ex;
+            }
+            catch (final IOException ex)
+            {
+                if(pipelined)
                 {
-//                    System.out.println("Sleep - " + Thread.currentThread().getId());
-                    Thread.sleep(DEFAULT_SLEEP_MILLIS);
+                    disablePutWindow("No response to a pipelined PUT frame");
                 }
-                catch (final InterruptedException ex)
+                throw ex;
+            }
+            
+            final Obex.Code code = response.getObexCode();
+            if(code == Obex.Code.RESPONSE_CONTINUE || abortSent)
+            {
+                continue;
+            }
+            
+            if(code == Obex.Code.RESPONSE_SUCCESS)
+            {
+                if(!pipelined || (containsLastPart && i == count - 1))
                 {
-                    LOG.error("Interrupt at receiving OBEX", ex);
+                    continue;
                 }
+                disablePutWindow("Final response to a pipelined PUT frame");
             }
+            
+            drainResponses(outstanding - i - 1);
+            throw new IOException("Error response received: " + code); 
+        }
+    }
+    
+    /**
+     * Receives and discards the responses of sent frames after an error.
+     * @param count The count of expected responses
+     * @throws InterruptedIOException The waiting was interrupted
+     * @since 1.6
+     */
+    private void drainResponses(final int count) throws InterruptedIOException
+    {
+        for(int i=0; i<count; i++)
+        {
+            try
+            {
+                final Obex response = receive(false);
+                LOG.debug("Discard OBEX response after error: {}", response);
+            }
+            catch (final InterruptedIOException ex)
+            {
+                throw ex;
+            }
+            catch (final IOException ex)
+            {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Disables the pipelining of PUT frames for the following operations.
+     * @param reason The reason for the log
+     * @since 1.6
+     */
+    private void disablePutWindow(final String reason)
+    {
+        if(putWindow > 1)
+        {
+            LOG.warn("{} - The pipelining of PUT frames will be disabled", reason);
+            putWindow = 1;
+        }
+    }
+    
+    /**
+     * Provides the data of a memory mapped file as {@link ReadableByteChannel}.
+     * @since 1.6
+     */
+    private static class MappedChannel implements ReadableByteChannel
+    {
+        private final MappedByteBuffer buffer;
+        private boolean open = true;
+
+        private MappedChannel(final MappedByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException
+        {
+            if(!buffer.hasRemaining())
+            {
+                return -1;
+            }
+            
+            final int count = Math.min(dst.remaining(), buffer.remaining());
+            final ByteBuffer part = buffer.duplicate();
+            part.limit(part.position() + count);
+            dst.put(part);
+            buffer.position(buffer.position() + count);
+            
+            return count;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            open = false;
         }
-        
-        responseBuffer.close();
-        responseBuffer = null;
-        
-        return result;
     }
 }
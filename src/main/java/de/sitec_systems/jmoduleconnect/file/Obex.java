@@ -29,9 +29,7 @@
 package de.sitec_systems.jmoduleconnect.file;
 
 import de.sitec_systems.jmoduleconnect.utils.BinaryUtils;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -43,15 +41,15 @@ import java.util.*;
 /* package */ class Obex
 {
     private final Code obexCode;
-    private final Map<ObexHeader.Code, ObexHeader> headers;
+    private Map<ObexHeader.Code, ObexHeader> headers;
     private final byte flags;
+    private int maxPacketLength;
     
-    public static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyyMMdd'T'HHmmss");
     private static final byte HEADER_LENGTH = 3;
     private static final byte REQUEST_CONNECT_LENGTH = 7;
     private static final byte REQUEST_SETPATH_LENGTH = 5;
     private static final byte OBEX_VERSION_10 = (byte)0x10;
-    private static final short MAX_PACKET_LENGTH = (short)0xFFFF;
+    private static final int MAX_PACKET_LENGTH = 0xFFFF;
     
     /**
      * Defines ids of OBEX frames.
@@ -83,7 +81,36 @@ import java.util.*;
         RESPONSE_BADREQUEST(Type.RESPONSE, (byte)0x40),
         RESPONSE_FINAL(Type.RESPONSE, (byte)0x80),
         RESPONSE_DATABASE_FULL(Type.RESPONSE, (byte)0xE0),
-        RESPONSE_FORBIDDEN(Type.RESPONSE, (byte)0xC3);
+        RESPONSE_FORBIDDEN(Type.RESPONSE, (byte)0xC3),
+        RESPONSE_BADREQUEST_FINAL(Type.RESPONSE, (byte)0xC0),
+        RESPONSE_UNAUTHORIZED(Type.RESPONSE, (byte)0xC1),
+        RESPONSE_NOT_FOUND(Type.RESPONSE, (byte)0xC4),
+        RESPONSE_METHOD_NOT_ALLOWED(Type.RESPONSE, (byte)0xC5),
+        RESPONSE_NOT_ACCEPTABLE(Type.RESPONSE, (byte)0xC6),
+        RESPONSE_REQUEST_TIMEOUT(Type.RESPONSE, (byte)0xC8),
+        RESPONSE_CONFLICT(Type.RESPONSE, (byte)0xC9),
+        RESPONSE_PRECONDITION_FAILED(Type.RESPONSE, (byte)0xCC),
+        RESPONSE_ENTITY_TOO_LARGE(Type.RESPONSE, (byte)0xCD),
+        RESPONSE_UNSUPPORTED_MEDIA_TYPE(Type.RESPONSE, (byte)0xCF),
+        RESPONSE_INTERNAL_SERVER_ERROR(Type.RESPONSE, (byte)0xD0),
+        RESPONSE_NOT_IMPLEMENTED(Type.RESPONSE, (byte)0xD1),
+        RESPONSE_SERVICE_UNAVAILABLE(Type.RESPONSE, (byte)0xD3),
+        RESPONSE_DATABASE_LOCKED(Type.RESPONSE, (byte)0xE1);
+        
+        private static final Code[][] LOOKUP = new Code[Type.values().length][256];
+        
+        static
+        {
+            for(final Code currCode: values())
+            {
+                final Code[] table = LOOKUP[currCode.type.ordinal()];
+                final int index = currCode.code & 0xFF;
+                if(table[index] == null)
+                {
+                    table[index] = currCode;
+                }
+            }
+        }
         
         private final Type type;
         private final byte code;
@@ -115,7 +142,9 @@ import java.util.*;
         }
         
         /**
-         * Gets the <code>Code</code> for the input values.
+         * Gets the <code>Code</code> for the input values. The lookup is done 
+         * with a table in constant time. If more <code>Code</code>s have the 
+         * same type and id, then the first declared one is returned.
          * @param type The {@link Type} of the frame
          * @param value The id as binary
          * @return The <code>Code</code> for the input values
@@ -125,12 +154,10 @@ import java.util.*;
          */
         public static Code getCode(final Type type, final byte value)
         {
-            for(final Code currCode: values())
+            final Code result = LOOKUP[type.ordinal()][value & 0xFF];
+            if(result != null)
             {
-                if(currCode.type == type && currCode.code == value)
-                {
-                    return currCode;
-                }
+                return result;
             }
             
             throw new IllegalArgumentException("Parameter value is invald: " 
@@ -203,6 +230,21 @@ import java.util.*;
     }
     
     public Obex(final byte[] frame)
+    {
+        this(frame, frame.length > HEADER_LENGTH && frame[3] == OBEX_VERSION_10);
+    }
+    
+    /**
+     * Constructs an OBEX response from the received frame.
+     * @param frame The received frame
+     * @param connectResponse <code>true</code> - The frame is the response of 
+     *        an <code>CONNECT</code> request and contains the version, flags and
+     *        maximum packet length / <code>false</code> - The frame contains 
+     *        only headers
+     * @throws IllegalArgumentException If the frame is not valid
+     * @since 1.6
+     */
+    public Obex(final byte[] frame, final boolean connectResponse)
     {
 //        System.out.println("Obex Frame: " + BinaryUtils.toHexString(frame));
         if(!validate(frame))
@@ -215,9 +257,10 @@ import java.util.*;
         if(frame.length > HEADER_LENGTH)
         {
             int pointer = 3;
-            if(frame[3] == OBEX_VERSION_10)
+            if(connectResponse && frame.length >= REQUEST_CONNECT_LENGTH)
             {
                 flags = frame[4];
+                maxPacketLength = BinaryUtils.toUnsigned(BinaryUtils.byteArrToShort(frame, false, 5));
                 pointer += 4;
             }
             else
@@ -229,11 +272,22 @@ import java.util.*;
 //            data = new ArrayList<ObexHeader>();
             while(pointer < frame.length)
             {
-                final ObexHeader header = ObexHeader.createObexHeader(frame, pointer);
 //                System.out.println("Pointer: " + pointer);
-//                System.out.println(BinaryUtils.toHexString(header.toByteArray()));
-                pointer += header.getLength();
-                headers.put(header.getObexCode(), header);
+                final int remaining = frame.length - pointer;
+                final boolean fixedLength = (frame[pointer] & 0x80) != 0;
+                final int headerLength = fixedLength || remaining >= 3
+                        ? ObexHeader.getEncodedLength(frame, pointer) : 0;
+                if(headerLength > remaining || (!fixedLength && headerLength < 3))
+                {
+                    throw new IllegalArgumentException("The OBEX frame contains an invalid header at: " 
+                            + pointer);
+                }
+                final ObexHeader header = ObexHeader.createObexHeader(frame, pointer);
+                pointer += headerLength;
+                if(header != null)
+                {
+                    headers.put(header.getObexCode(), header);
+                }
             }
         }
         else
@@ -243,6 +297,33 @@ import java.util.*;
         }
     }
 
+    /**
+     * Creates an OBEX <code>CONNECT</code> request.
+     * @param target The target header of the request
+     * @param maxPacketLength The maximum packet length that can be received 
+     *        from this side
+     * @return The OBEX <code>CONNECT</code> request
+     * @since 1.6
+     */
+    public static Obex createConnectRequest(final ObexHeader target, final int maxPacketLength)
+    {
+        final Obex obex = new Obex(Code.REQUEST_CONNECT, target);
+        obex.maxPacketLength = maxPacketLength;
+        
+        return obex;
+    }
+
+    /**
+     * Gets the maximum packet length of an <code>CONNECT</code> frame.
+     * @return The maximum packet length / <code>0</code> if the frame contains 
+     *         no maximum packet length
+     * @since 1.6
+     */
+    public int getMaxPacketLength()
+    {
+        return maxPacketLength;
+    }
+
     /**
      * Gets all header from the obex frame.
      * @return All header from the obex frame
@@ -261,9 +342,45 @@ import java.util.*;
      */
     public ObexHeader getHeader(final ObexHeader.Code obexCode)
     {
-        return headers.get(obexCode);
+        return headers != null ? headers.get(obexCode) : null;
     }
 
+    /**
+     * Adds an header to the OBEX frame. An existing header with the same 
+     * {@link ObexHeader.Code} will be replaced.
+     * @param header The header
+     * @since 1.6
+     */
+    public void addHeader(final ObexHeader<?> header)
+    {
+        if(headers == null)
+        {
+            headers = new EnumMap<>(ObexHeader.Code.class);
+        }
+        headers.put(header.getObexCode(), header);
+    }
+    
+    /**
+     * Checks if the OBEX frame contains an header with the specific value.
+     * @param obexCode The {@link ObexHeader.Code} of the header
+     * @param value The value of the header
+     * @return <code>true</code> - The frame contains the header with the value
+     *         / <code>false</code> - The frame contains not the header or the
+     *         header has an other value
+     * @since 1.6
+     */
+    public boolean hasHeaderValue(final ObexHeader.Code obexCode, final Object value)
+    {
+        if(headers == null)
+        {
+            return false;
+        }
+        
+        final ObexHeader<?> header = headers.get(obexCode);
+        
+        return header != null && value.equals(header.getData());
+    }
+    
     /**
      * Gets the {@link Code} of the OBEX frame.
      * @return The {@link Code} of the OBEX frame
@@ -283,7 +400,7 @@ import java.util.*;
      */
     public static boolean validate(final byte[] frame)
     {
-        final short length = BinaryUtils.byteArrToShort(frame, false, 1);
+        final int length = BinaryUtils.toUnsigned(BinaryUtils.byteArrToShort(frame, false, 1));
         
         return length == frame.length;
     }
@@ -295,75 +412,82 @@ import java.util.*;
      */
     public byte[] toByteArray()
     {
-        byte[] headersByteArr = new byte[0];
-        if(headers != null)
-        {
-            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-            for(final ObexHeader header: headers.values())
-            {
-                if(header != null)
-                {
-                    try
-                    {
-                        bos.write(header.toByteArray());
-                    }
-                    catch (final IOException ex)
-                    {
-                        ex.printStackTrace();
-                    }
-                }
-            }
-            try
-            {
-                bos.close();
-            }
-            catch (final IOException ex)
-            {
-                ex.printStackTrace();
-            }
-
-            headersByteArr = bos.toByteArray();
-        }
+        final ByteBuffer buffer = ByteBuffer.allocate(getLength());
+        writeTo(buffer);
         
-        int length = headersByteArr.length;
+        return buffer.array();
+    }
+    
+    /**
+     * Gets the length of the complete OBEX frame.
+     * @return The length of the complete OBEX frame
+     * @since 1.6
+     */
+    public int getLength()
+    {
+        int length;
         
         switch(obexCode)
         {
             case REQUEST_CONNECT:
-                length += REQUEST_CONNECT_LENGTH;
+                length = REQUEST_CONNECT_LENGTH;
                 break;
             case REQUEST_SETPATH:
-                length += REQUEST_SETPATH_LENGTH;
+                length = REQUEST_SETPATH_LENGTH;
                 break;
             default:
-                length += HEADER_LENGTH;
+                length = HEADER_LENGTH;
                 break;
         }
         
-        final byte[] result = new byte[length];
-        result[0] = obexCode.code;
-        
-        BinaryUtils.putToByteArr(result, (short)length, 1, false);
+        if(headers != null)
+        {
+            for(final ObexHeader<?> header: headers.values())
+            {
+                if(header != null)
+                {
+                    length += header.getLength();
+                }
+            }
+        }
         
-        int position = 3;
+        return length;
+    }
+    
+    /**
+     * Writes the OBEX frame directly to the buffer. The buffer must have at 
+     * least {@link #getLength() } bytes remaining.
+     * @param buffer The destination buffer
+     * @since 1.6
+     */
+    public void writeTo(final ByteBuffer buffer)
+    {
+        buffer.put(obexCode.code);
+        buffer.putShort((short)getLength());
         
         if(obexCode == Code.REQUEST_CONNECT)
         {
-            result[3] = (byte)0x13; // Obex Version
-            result[4] = (byte)0x00; // Flags
-            position = 7;
+            buffer.put((byte)0x13); // Obex Version
+            buffer.put((byte)0x00); // Flags
+            buffer.putShort((short)(maxPacketLength > 0 ? maxPacketLength 
+                    : MAX_PACKET_LENGTH));
         }
         else if(obexCode == Code.REQUEST_SETPATH)
         {
-            result[3] = flags;
-            result[4] = (byte)0x00;
-            position = 5;
+            buffer.put(flags);
+            buffer.put((byte)0x00);
         }
         
-        System.arraycopy(headersByteArr, 0, result, position, headersByteArr.length);
-        
-        return result;
+        if(headers != null)
+        {
+            for(final ObexHeader<?> header: headers.values())
+            {
+                if(header != null)
+                {
+                    header.writeTo(buffer);
+                }
+            }
+        }
     }
 
     @Override
@@ -375,7 +499,7 @@ import java.util.*;
         boolean firstElement = true;
         if(headers != null)
         {
-            for(final ObexHeader obexHeader: headers.values())
+            for(final ObexHeader<?> obexHeader: headers.values())
             {
                 if(firstElement)
                 {
@@ -0,0 +1,136 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes OBEX frames into a reused buffer. The buffer grows only if a frame
+ * is larger then all frames before, so the sending of OBEX frames needs no 
+ * allocation per frame. The data of <code>BODY</code> headers can be written 
+ * directly from the source into the buffer. This class is not {@link Thread}
+ * safety.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ class ObexEncoder
+{
+    private ByteBuffer buffer;
+    
+    private static final byte HEADER_LENGTH = 3;
+
+    /**
+     * Constructor
+     * @param capacity The initial capacity of the buffer
+     * @since 1.6
+     */
+    /* package */ ObexEncoder(final int capacity)
+    {
+        buffer = ByteBuffer.allocate(capacity);
+    }
+    
+    /**
+     * Ensures that the buffer can hold a frame with the specific length.
+     * @param capacity The length of the frame
+     * @since 1.6
+     */
+    /* package */ void ensureCapacity(final int capacity)
+    {
+        if(buffer.capacity() < capacity)
+        {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+    }
+    
+    /**
+     * Encodes an OBEX frame into the buffer.
+     * @param obex The OBEX frame
+     * @return The length of the encoded frame
+     * @since 1.6
+     */
+    /* package */ int encode(final Obex obex)
+    {
+        ensureCapacity(obex.getLength());
+        buffer.clear();
+        obex.writeTo(buffer);
+        
+        return buffer.position();
+    }
+    
+    /**
+     * Encodes an OBEX frame with a single body header into the buffer. The
+     * data of the body must be written into the returned view before the 
+     * frame will be sent.
+     * @param obexCode The code of the OBEX frame
+     * @param bodyCode The code of the body header, <code>BODY</code> or 
+     *        <code>END_OF_BODY</code>
+     * @param bodyLength The length of the body data
+     * @return The view on the buffer for the body data with the remaining 
+     *         bytes of the body length
+     * @since 1.6
+     */
+    /* package */ ByteBuffer encodeBody(final Obex.Code obexCode
+            , final ObexHeader.Code bodyCode, final int bodyLength)
+    {
+        final int length = HEADER_LENGTH + HEADER_LENGTH + bodyLength;
+        ensureCapacity(length);
+        buffer.clear();
+        buffer.put(obexCode.getCode());
+        buffer.putShort((short)length);
+        buffer.put(bodyCode.getCode());
+        buffer.putShort((short)(HEADER_LENGTH + bodyLength));
+        
+        final ByteBuffer body = buffer.slice();
+        body.limit(bodyLength);
+        buffer.position(length);
+        
+        return body;
+    }
+    
+    /**
+     * Gets the array of the buffer. The last encoded frame starts at index 
+     * <code>0</code>.
+     * @return The array of the buffer
+     * @since 1.6
+     */
+    /* package */ byte[] array()
+    {
+        return buffer.array();
+    }
+    
+    /**
+     * Gets the length of the last encoded frame.
+     * @return The length of the last encoded frame
+     * @since 1.6
+     */
+    /* package */ int length()
+    {
+        return buffer.position();
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Assembles received OBEX frames from an {@link InputStream}. The length of 
+ * the frame is read once and the frame is read into a new array of exactly 
+ * this length. The state of a partial received frame is kept between the 
+ * calls, so the assembler never waits for data and never reads data of the 
+ * next frame. This class is not {@link Thread} safety.
+ * <p>
+ * The array of a complete frame is handed out and not reused. The 
+ * <code>BODY</code> headers of a parsed {@link Obex} are views on this array
+ * and the responses are consumed by an other {@link Thread}, so a reused 
+ * buffer would be overwritten by the following frame. Only the reading of 
+ * the frame avoids copies.
+ * </p>
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ class ObexFrameAssembler
+{
+    private final byte[] prefix = new byte[PREFIX_LENGTH];
+    private int prefixCount;
+    private byte[] frame;
+    private int position;
+    
+    private static final byte PREFIX_LENGTH = 3;
+    
+    /**
+     * Reads the available data of the current frame from the stream.
+     * @param in The {@link InputStream}
+     * @return The complete frame in a new array or <code>null</code> if the 
+     *         frame is not complete yet
+     * @throws IOException The reading from the stream failed, the stream has
+     *         reached the end or the frame has an invalid length
+     * @since 1.6
+     */
+    /* package */ byte[] read(final InputStream in) throws IOException
+    {
+        if(frame == null)
+        {
+            final int count = in.read(prefix, prefixCount, PREFIX_LENGTH - prefixCount);
+            if(count < 0)
+            {
+                throw new EOFException("The stream ends within an OBEX frame");
+            }
+            prefixCount += count;
+            
+            if(prefixCount < PREFIX_LENGTH)
+            {
+                return null;
+            }
+            
+            final int length = ((prefix[1] & 0xFF) << 8) | (prefix[2] & 0xFF);
+            if(length < PREFIX_LENGTH)
+            {
+                reset();
+                throw new IOException("Invalid OBEX frame length: " + length);
+            }
+            
+            frame = new byte[length];
+            System.arraycopy(prefix, 0, frame, 0, PREFIX_LENGTH);
+            position = PREFIX_LENGTH;
+        }
+        
+        if(position < frame.length && in.available() > 0)
+        {
+            final int count = in.read(frame, position, frame.length - position);
+            if(count < 0)
+            {
+                throw new EOFException("The stream ends within an OBEX frame");
+            }
+            position += count;
+        }
+        
+        if(position == frame.length)
+        {
+            final byte[] result = frame;
+            reset();
+            
+            return result;
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Discards a partial received frame.
+     * @since 1.6
+     */
+    /* package */ void reset()
+    {
+        prefixCount = 0;
+        frame = null;
+        position = 0;
+    }
+}
@@ -29,6 +29,7 @@
 package de.sitec_systems.jmoduleconnect.file;
 
 import de.sitec_systems.jmoduleconnect.utils.BinaryUtils;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.util.Arrays;
@@ -48,6 +49,19 @@ import org.slf4j.LoggerFactory;
     private final T data;
     
     private static final Logger LOG = LoggerFactory.getLogger(ObexHeader.class);
+    
+    /**
+     * The value of the {@link Code#SINGLE_RESPONSE_MODE} header for enabling.
+     * @since 1.6
+     */
+    public static final byte SRM_ENABLE = 0x01;
+    
+    /**
+     * The value of the {@link Code#SINGLE_RESPONSE_MODE_PARAMETERS} header 
+     * that requests the other side to wait.
+     * @since 1.6
+     */
+    public static final byte SRMP_WAIT = 0x01;
     protected static final Charset NAME_CHARSET = Charset.forName("UTF_16BE");
     protected static final Charset BYTE_CHARSET = Charset.forName("ISO_8859_1");
     
@@ -76,7 +90,19 @@ import org.slf4j.LoggerFactory;
         WAN_UUID((byte)0x50),
         OBJECT_CLASS((byte)0x51),
         SESSION_PARAMETERS((byte)0x52),
-        SESSION_SEQUENCE_NUMBER((byte)0x93);
+        SESSION_SEQUENCE_NUMBER((byte)0x93),
+        SINGLE_RESPONSE_MODE((byte)0x97),
+        SINGLE_RESPONSE_MODE_PARAMETERS((byte)0x98);
+        
+        private static final Code[] LOOKUP = new Code[256];
+        
+        static
+        {
+            for(final Code currCode: values())
+            {
+                LOOKUP[currCode.code & 0xFF] = currCode;
+            }
+        }
         
         private final byte code;
 
@@ -93,19 +119,29 @@ import org.slf4j.LoggerFactory;
          */
         public static Code getCode(final byte value)
         {
-//            System.out.println("Header: " + BinaryUtils.toHexString(value));
-            for(final Code currCode: values())
+            final Code result = LOOKUP[value & 0xFF];
+            if(result != null)
             {
-                if(currCode.code == value)
-                {
-                    return currCode;
-                }
+                return result;
             }
             
             throw new IllegalArgumentException("Parameter value " 
                     + BinaryUtils.toHexString(value) + " is invald");
         }
 
+        /**
+         * Finds the <code>Code</code> for the input value. The lookup is done
+         * with a table in constant time.
+         * @param value The code as binary
+         * @return The <code>Code</code> for the input value or <code>null</code>
+         *         for an unknown value
+         * @since 1.6
+         */
+        public static Code findCode(final byte value)
+        {
+            return LOOKUP[value & 0xFF];
+        }
+
         /**
          * Gets the id of the OBEX header.
          * @return The id of the OBEX header
@@ -118,7 +154,10 @@ import org.slf4j.LoggerFactory;
     }
     
     /**
-     * Creates an <code>ObexHeader</code> from input <code>byte[]</code>.
+     * Creates an <code>ObexHeader</code> from input <code>byte[]</code>. The 
+     * data of <code>BODY</code> and <code>END_OF_BODY</code> headers is not 
+     * copied, the header contains a {@link ByteBuffer} view on the input 
+     * <code>byte[]</code>.
      * @param data The input <code>byte[]</code>
      * @param offset The start point of the OBEX header
      * @return The created <code>ObexHeader</code> or <code>null</code> for unknown
@@ -127,36 +166,60 @@ import org.slf4j.LoggerFactory;
      */
     public static ObexHeader createObexHeader(final byte[] data, final int offset)
     {
-        final Code code = Code.getCode(data[offset]);
+        final Code code = Code.findCode(data[offset]);
+        
+        if(code == null)
+        {
+            return null;
+        }
         
         switch(code)
         {
-            case WHO:
-            case TARGET:
             case BODY: 
             case END_OF_BODY:
+                final int bodyLength = getEncodedLength(data, offset);
+                final ByteBuffer bodyPayload = ByteBuffer.wrap(data, offset + 3
+                        , bodyLength - 3).slice();
+                return new ObexHeader<ByteBuffer>(code, bodyPayload);
+            case WHO:
+            case TARGET:
             case APP_PARAMETERS:
-                final short byteLength = BinaryUtils.byteArrToShort(data, false, offset + 1);
+                final int byteLength = getEncodedLength(data, offset);
 //                System.out.println("Length: " + byteLength);
                 final byte[] bytePayload = Arrays.copyOfRange(data, offset + 3, offset + byteLength);
 //                System.out.println(BinaryUtils.toHexString(bytePayload));
                 return new ObexHeader<byte[]>(code, bytePayload);
-            case TYPE:
             case NAME:
-                final short stringLength = BinaryUtils.byteArrToShort(data, false, 1);
-                final byte[] stringPayload = Arrays.copyOfRange(data, offset + 3, stringLength - 3);
-                return new ObexHeader<String>(code, new String(stringPayload, NAME_CHARSET));
+                final int nameLength = getEncodedLength(data, offset);
+                int nameEnd = offset + nameLength;
+                if(nameLength >= 5 && data[nameEnd - 1] == 0 && data[nameEnd - 2] == 0)
+                {
+                    nameEnd -= 2;
+                }
+                return new ObexHeader<String>(code, new String(data, offset + 3
+                        , nameEnd - offset - 3, NAME_CHARSET));
+            case TYPE:
+                final int typeLength = getEncodedLength(data, offset);
+                int typeEnd = offset + typeLength;
+                if(typeLength >= 4 && data[typeEnd - 1] == 0)
+                {
+                    typeEnd--;
+                }
+                return new ObexHeader<String>(code, new String(data, offset + 3
+                        , typeEnd - offset - 3, BYTE_CHARSET));
             case LENGTH:
             case CONNECTION_ID:
                 final int intPayload = BinaryUtils.byteArrToInt(data, false, offset + 1);
                 return new ObexHeader<Integer>(code, intPayload);
+            case SINGLE_RESPONSE_MODE:
+            case SINGLE_RESPONSE_MODE_PARAMETERS:
+                return new ObexHeader<Byte>(code, data[offset + 1]);
             case TIME:
                 Date date = null;
-                final short timeLength = BinaryUtils.byteArrToShort(data, false, 1);
-                final byte[] timePayload = Arrays.copyOfRange(data, offset + 3, timeLength - 3);
+                final int timeLength = getEncodedLength(data, offset);
                 try
                 {
-                    date = Obex.DATE_FORMAT.parse(new String(timePayload, BYTE_CHARSET));
+                    date = ObexTimeCodec.parse(data, offset + 3, timeLength - 3);
                 }
                 catch (final ParseException ex)
                 {
@@ -167,6 +230,27 @@ import org.slf4j.LoggerFactory;
         
         return null;
     }
+    
+    /**
+     * Gets the length of an encoded OBEX header. The length is determined by 
+     * the encoding of the header id, so it works also for unknown headers.
+     * @param data The input <code>byte[]</code>
+     * @param offset The start point of the OBEX header
+     * @return The length of the encoded OBEX header
+     * @since 1.6
+     */
+    public static int getEncodedLength(final byte[] data, final int offset)
+    {
+        switch(data[offset] & 0xC0)
+        {
+            case 0x80:
+                return 2;
+            case 0xC0:
+                return 5;
+            default:
+                return ((data[offset + 1] & 0xFF) << 8) | (data[offset + 2] & 0xFF);
+        }
+    }
 
     public ObexHeader(final Code obexCode, final T data)
     {
@@ -198,15 +282,20 @@ import org.slf4j.LoggerFactory;
             case LENGTH:
                 result = 5;
                 break;
+            case SINGLE_RESPONSE_MODE:
+            case SINGLE_RESPONSE_MODE_PARAMETERS:
+                result = 2;
+                break;
             case BODY: 
-            case APP_PARAMETERS:
             case END_OF_BODY:
+                result = getBodyLength() + 3;
+                break;
+            case APP_PARAMETERS:
                 final byte[] body = (byte[])data;
                 result = body.length + 3;
                 break;
             case NAME:
-                final byte[] name = ((String)data).getBytes(NAME_CHARSET);
-                result = 3 + name.length;
+                result = 3 + ((String)data).length() * 2;
                 break;
             case WHO:
             case TARGET:
@@ -214,12 +303,10 @@ import org.slf4j.LoggerFactory;
                 result = target.length + 3;
                 break;
             case TIME:
-                final byte[] time = Obex.DATE_FORMAT.format((Date)data).getBytes(BYTE_CHARSET);
-                result = 3 + time.length;
+                result = 3 + ObexTimeCodec.LENGTH;
                 break;
              case TYPE:
-                final byte[] type = ((String)data).getBytes(BYTE_CHARSET);
-                result = 3 + type.length;
+                result = 3 + ((String)data).length();
                 break;
         }
         
@@ -236,6 +323,25 @@ import org.slf4j.LoggerFactory;
         return obexCode;
     }
     
+    /**
+     * Gets the length of the data of an <code>BODY</code> or 
+     * <code>END_OF_BODY</code> header. The data can be an <code>byte[]</code>
+     * or an {@link ByteBuffer} view.
+     * @return The length of the data
+     * @since 1.6
+     */
+    private int getBodyLength()
+    {
+        if(data instanceof ByteBuffer)
+        {
+            return ((ByteBuffer)data).remaining();
+        }
+        else
+        {
+            return ((byte[])data).length;
+        }
+    }
+    
     /**
      * Gets the OBEX header as an <code>byte[]</code>.
      * @return The OBEX header as an <code>byte[]</code>
@@ -243,67 +349,89 @@ import org.slf4j.LoggerFactory;
      */
     public byte[] toByteArray()
     {
-        byte[] result = null;
+        final ByteBuffer buffer = ByteBuffer.allocate(getLength());
+        writeTo(buffer);
+        
+        return buffer.array();
+    }
+    
+    /**
+     * Writes the OBEX header directly to the buffer without creating of 
+     * temporary arrays. The buffer must have at least {@link #getLength() } 
+     * bytes remaining.
+     * @param buffer The destination buffer
+     * @since 1.6
+     */
+    public void writeTo(final ByteBuffer buffer)
+    {
         switch(obexCode)
         {
-            case APP_PARAMETERS:
-                final byte[] param = (byte[])data;
-                result = new byte[param.length + 3];
-                result[0] = obexCode.code;
-                BinaryUtils.putToByteArr(result, (short)result.length, 1, false);
-                System.arraycopy(param, 0, result, 3, param.length);
-                break;
             case CONNECTION_ID:
-                result = new byte[5];
-                result[0] = obexCode.code;
-                BinaryUtils.putToByteArr(result, ((Integer)data).intValue(), 1, false);
+            case LENGTH:
+                buffer.put(obexCode.code);
+                buffer.putInt(((Integer)data).intValue());
+                break;
+            case SINGLE_RESPONSE_MODE:
+            case SINGLE_RESPONSE_MODE_PARAMETERS:
+                buffer.put(obexCode.code);
+                buffer.put(((Byte)data).byteValue());
                 break;
             case BODY: 
             case END_OF_BODY:
-                final byte[] body = (byte[])data;
-                result = new byte[body.length + 3];
-                result[0] = obexCode.code;
-                BinaryUtils.putToByteArr(result, (short)result.length, 1, false);
-                System.arraycopy(body, 0, result, 3, body.length);
-                break;
-            case LENGTH:
-                final int length = ((Integer)data).intValue();
-                result = new byte[5];
-                result[0] = obexCode.code;
-                BinaryUtils.putToByteArr(result, length, 1, false);
-                break;
-            case NAME:
-                final byte[] name = ((String)data).getBytes(NAME_CHARSET);
-                result = new byte[3 + name.length];
-                result[0] = obexCode.code;
-                BinaryUtils.putToByteArr(result, (short)result.length, 1, false);
-                System.arraycopy(name, 0, result, 3, name.length);
+                buffer.put(obexCode.code);
+                buffer.putShort((short)(getBodyLength() + 3));
+                if(data instanceof ByteBuffer)
+                {
+                    buffer.put(((ByteBuffer)data).duplicate());
+                }
+                else
+                {
+                    buffer.put((byte[])data);
+                }
                 break;
+            case APP_PARAMETERS:
             case WHO:
             case TARGET:
-                final byte[] target = (byte[])data;
-                result = new byte[target.length + 3];
-                result[0] = obexCode.code;
-                BinaryUtils.putToByteArr(result, (short)result.length, 1, false);
-                System.arraycopy(target, 0, result, 3, target.length);
+                final byte[] bytes = (byte[])data;
+                buffer.put(obexCode.code);
+                buffer.putShort((short)(bytes.length + 3));
+                buffer.put(bytes);
+                break;
+            case NAME:
+                final String name = (String)data;
+                buffer.put(obexCode.code);
+                buffer.putShort((short)(3 + name.length() * 2));
+                for(int i=0; i<name.length(); i++)
+                {
+                    buffer.putChar(name.charAt(i));
+                }
                 break;
             case TIME:
-                final byte[] time = Obex.DATE_FORMAT.format((Date)data).getBytes(BYTE_CHARSET);
-                result = new byte[3 + time.length];
-                result[0] = obexCode.code;
-                BinaryUtils.putToByteArr(result, (short)result.length, 1, false);
-                System.arraycopy(time, 0, result, 3, time.length);
+                buffer.put(obexCode.code);
+                buffer.putShort((short)(3 + ObexTimeCodec.LENGTH));
+                ObexTimeCodec.format((Date)data, buffer);
                 break;
-             case TYPE:
-                final byte[] type = ((String)data).getBytes(BYTE_CHARSET);
-                result = new byte[3 + type.length];
-                result[0] = obexCode.code;
-                BinaryUtils.putToByteArr(result, (short)result.length, 1, false);
-                System.arraycopy(type, 0, result, 3, type.length);
+            case TYPE:
+                putLatin1(buffer, (String)data);
                 break;
         }
-        
-        return result;
+    }
+    
+    /**
+     * Writes the header with a <code>String</code> in ISO 8859-1 encoding.
+     * @param buffer The destination buffer
+     * @param value The <code>String</code>
+     * @since 1.6
+     */
+    private void putLatin1(final ByteBuffer buffer, final String value)
+    {
+        buffer.put(obexCode.code);
+        buffer.putShort((short)(3 + value.length()));
+        for(int i=0; i<value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            buffer.put(c <= 0xFF ? (byte)c : (byte)'?');
+        }
     }
     
     /**
@@ -321,12 +449,28 @@ import org.slf4j.LoggerFactory;
             case CONNECTION_ID:
                 result = ((Integer)data).toString();
                 break;
+            case SINGLE_RESPONSE_MODE:
+            case SINGLE_RESPONSE_MODE_PARAMETERS:
+                result = BinaryUtils.toHexString(((Byte)data).byteValue());
+                break;
             case WHO:
             case TARGET:
             case APP_PARAMETERS:
+                result = BinaryUtils.toHexString((byte[])data);
+                break;
             case BODY: 
             case END_OF_BODY:
-                result = BinaryUtils.toHexString((byte[])data);
+                if(data instanceof ByteBuffer)
+                {
+                    final ByteBuffer view = ((ByteBuffer)data).duplicate();
+                    final byte[] body = new byte[view.remaining()];
+                    view.get(body);
+                    result = BinaryUtils.toHexString(body);
+                }
+                else
+                {
+                    result = BinaryUtils.toHexString((byte[])data);
+                }
                 break;
             case TYPE:
             case NAME:
@@ -0,0 +1,264 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Encodes and decodes the OBEX time format <code>yyyyMMdd'T'HHmmss</code> in
+ * local time. A trailing <code>Z</code> for UTC is accepted at decoding. The 
+ * values are converted directly from and to ASCII digits without any shared
+ * mutable state, so this class can be used concurrently by many file managers.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ final class ObexTimeCodec
+{
+    /**
+     * The length of an encoded time.
+     * @since 1.6
+     */
+    /* package */ static final int LENGTH = 15;
+    
+    private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final char SEPARATOR = 'T';
+    private static final char UTC_INDICATOR = 'Z';
+    
+    private ObexTimeCodec(){}
+    
+    /**
+     * Decodes a time from ASCII bytes.
+     * @param data The <code>byte[]</code> with the time
+     * @param offset The start of the time
+     * @param length The length of the time
+     * @return The decoded time
+     * @throws ParseException The bytes contain no valid OBEX time
+     * @since 1.6
+     */
+    /* package */ static Date parse(final byte[] data, final int offset
+            , final int length) throws ParseException
+    {
+        if(length < LENGTH || data[offset + 8] != SEPARATOR)
+        {
+            throw new ParseException("Invalid OBEX time", 0);
+        }
+        
+        return toDate(digits(data, offset, 4), digits(data, offset + 4, 2)
+                , digits(data, offset + 6, 2), digits(data, offset + 9, 2)
+                , digits(data, offset + 11, 2), digits(data, offset + 13, 2)
+                , length > LENGTH && data[offset + LENGTH] == UTC_INDICATOR);
+    }
+    
+    /**
+     * Decodes a time from a <code>String</code>.
+     * @param value The time
+     * @return The decoded time
+     * @throws ParseException The value is no valid OBEX time
+     * @since 1.6
+     */
+    /* package */ static Date parse(final String value) throws ParseException
+    {
+        if(value.length() < LENGTH || value.charAt(8) != SEPARATOR)
+        {
+            throw new ParseException("Invalid OBEX time: " + value, 0);
+        }
+        
+        return toDate(digits(value, 0, 4), digits(value, 4, 2)
+                , digits(value, 6, 2), digits(value, 9, 2)
+                , digits(value, 11, 2), digits(value, 13, 2)
+                , value.length() > LENGTH && value.charAt(LENGTH) == UTC_INDICATOR);
+    }
+    
+    /**
+     * Encodes a time in local time as ASCII bytes into a buffer. Exactly 
+     * {@link #LENGTH} bytes are written.
+     * @param date The time
+     * @param buffer The destination buffer
+     * @throws IllegalArgumentException The year of the time is not between
+     *         <code>0</code> and <code>9999</code>
+     * @since 1.6
+     */
+    /* package */ static void format(final Date date, final ByteBuffer buffer)
+    {
+        final long millis = date.getTime();
+        final long local = millis + TIME_ZONE.getOffset(millis);
+        long days = local / MILLIS_PER_DAY;
+        if(local % MILLIS_PER_DAY < 0)
+        {
+            days--;
+        }
+        final int secondOfDay = (int)((local - days * MILLIS_PER_DAY) / MILLIS_PER_SECOND);
+        
+        days += 719468;
+        final long era = (days >= 0 ? days : days - 146096) / 146097;
+        final int dayOfEra = (int)(days - era * 146097);
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 
+                - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int monthIndex = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        final int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        
+        if(year < 0 || year > 9999)
+        {
+            throw new IllegalArgumentException("The year: " + year 
+                    + " is not supported by OBEX time");
+        }
+        
+        putDigits(buffer, (int)year, 4);
+        putDigits(buffer, month, 2);
+        putDigits(buffer, day, 2);
+        buffer.put((byte)SEPARATOR);
+        putDigits(buffer, secondOfDay / 3600, 2);
+        putDigits(buffer, secondOfDay / 60 % 60, 2);
+        putDigits(buffer, secondOfDay % 60, 2);
+    }
+    
+    /**
+     * Converts the fields of a time to a {@link Date}.
+     * @param year The year
+     * @param month The month from <code>1</code> to <code>12</code>
+     * @param day The day of month from <code>1</code> to <code>31</code>
+     * @param hour The hour from <code>0</code> to <code>23</code>
+     * @param minute The minute from <code>0</code> to <code>59</code>
+     * @param second The second from <code>0</code> to <code>59</code>
+     * @param utc If <code>true</code> the fields are in UTC else in local time
+     * @return The time
+     * @throws ParseException A field is out of range
+     * @since 1.6
+     */
+    private static Date toDate(final int year, final int month, final int day
+            , final int hour, final int minute, final int second, final boolean utc) 
+            throws ParseException
+    {
+        if(month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 
+                || minute > 59 || second > 59)
+        {
+            throw new ParseException("Invalid OBEX time field", 0);
+        }
+        
+        final int shiftedYear = month <= 2 ? year - 1 : year;
+        final int era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+        final int yearOfEra = shiftedYear - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        final long days = era * 146097L + dayOfEra - 719468;
+        
+        final long local = (days * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second) 
+                * MILLIS_PER_SECOND;
+        if(utc)
+        {
+            return new Date(local);
+        }
+        
+        final long estimate = local - TIME_ZONE.getOffset(local - TIME_ZONE.getRawOffset());
+        
+        return new Date(local - TIME_ZONE.getOffset(estimate));
+    }
+    
+    /**
+     * Reads a decimal number from ASCII bytes.
+     * @param data The <code>byte[]</code> with the digits
+     * @param offset The first digit
+     * @param count The count of digits
+     * @return The number
+     * @throws ParseException A byte is no digit
+     * @since 1.6
+     */
+    private static int digits(final byte[] data, final int offset, final int count) 
+            throws ParseException
+    {
+        int result = 0;
+        for(int i = offset; i < offset + count; i++)
+        {
+            final int digit = data[i] - '0';
+            if(digit < 0 || digit > 9)
+            {
+                throw new ParseException("Invalid digit in OBEX time", i);
+            }
+            result = result * 10 + digit;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Reads a decimal number from a <code>String</code>.
+     * @param value The <code>String</code> with the digits
+     * @param offset The first digit
+     * @param count The count of digits
+     * @return The number
+     * @throws ParseException A character is no digit
+     * @since 1.6
+     */
+    private static int digits(final String value, final int offset, final int count) 
+            throws ParseException
+    {
+        int result = 0;
+        for(int i = offset; i < offset + count; i++)
+        {
+            final int digit = value.charAt(i) - '0';
+            if(digit < 0 || digit > 9)
+            {
+                throw new ParseException("Invalid digit in OBEX time: " + value, i);
+            }
+            result = result * 10 + digit;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Writes a decimal number with leading zeros as ASCII bytes.
+     * @param buffer The destination buffer
+     * @param value The number
+     * @param count The count of digits
+     * @since 1.6
+     */
+    private static void putDigits(final ByteBuffer buffer, final int value
+            , final int count)
+    {
+        int divisor = 1;
+        for(int i = 1; i < count; i++)
+        {
+            divisor *= 10;
+        }
+        for(; divisor > 0; divisor /= 10)
+        {
+            buffer.put((byte)('0' + value / divisor % 10));
+        }
+    }
+}
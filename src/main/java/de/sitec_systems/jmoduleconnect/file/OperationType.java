@@ -35,5 +35,5 @@ package de.sitec_systems.jmoduleconnect.file;
  */
 public enum OperationType
 {
-    GET_FILE, PUT_FILE;
+    GET_FILE, PUT_FILE, MIRROR;
 }
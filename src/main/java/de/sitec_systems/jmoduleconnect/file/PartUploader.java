@@ -0,0 +1,188 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uploads a local file as numbered part files for 
+ * {@link ModuleFileManager#putFileParts(Path, UploadCheckpoint)}. The methods
+ * must be called with the operation lock of the {@link ModuleFileManager}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ class PartUploader
+{
+    private final ModuleFileManager fileManager;
+    
+    private static final Logger LOG = LoggerFactory.getLogger(PartUploader.class);
+    
+    /**
+     * Constructs an uploader for a file manager.
+     * @param fileManager The file manager for the communication to the device
+     * @since 1.6
+     */
+    /* package */ PartUploader(final ModuleFileManager fileManager)
+    {
+        this.fileManager = fileManager;
+    }
+    
+    /**
+     * Uploads a local file as part files to the working directory. The parts
+     * they are recorded in the checkpoint and exist with the right size on 
+     * the flash filesystem are skipped. The manifest is deleted before the 
+     * first uploaded part and written after the stale parts of a previous 
+     * upload are deleted.
+     * @param path The path of the local file
+     * @param checkpoint The checkpoint of the upload
+     * @throws InterruptedIOException Thrown after an interrupt by {@link ModuleFileManager#cancel() }
+     * @throws IOException The reading of the local file or the communication
+     *         to the device failed
+     * @since 1.6
+     */
+    /* package */ void putFileParts(final Path path, final UploadCheckpoint checkpoint) 
+            throws InterruptedIOException, IOException
+    {
+        final FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            final String filename = path.getFileName().toString();
+            final long size = fileChannel.size();
+            final Date lastModified = new Date(Files.getLastModifiedTime(path)
+                    .toMillis() / 1000 * 1000);
+            
+            if(!checkpoint.matches(filename, size, lastModified))
+            {
+                checkpoint.start(filename, size, lastModified);
+            }
+            
+            final int partSize = checkpoint.getPartSize();
+            final int partCount = checkpoint.getPartCount();
+            fileManager.moveToDirectory(fileManager.getWorkingDirectory());
+            int part = 0;
+            while(part < checkpoint.getCompletedParts())
+            {
+                final FileMeta fileMeta = fileManager.getFileMetaFromListing(
+                        UploadCheckpoint.getPartName(filename, part));
+                if(fileMeta == null || fileMeta.isDirectory() 
+                        || fileMeta.getSize() != getPartLength(size, partSize, part))
+                {
+                    break;
+                }
+                part++;
+            }
+            checkpoint.setCompletedParts(part);
+            LOG.debug("Upload of: {} starts at part: {} of: {}", filename, part, partCount);
+            
+            final String manifestName = UploadCheckpoint.getManifestName(filename);
+            if(part < partCount)
+            {
+                deleteFileIfExists(manifestName);
+            }
+            
+            for(; part < partCount; part++)
+            {
+                fileManager.checkCanceled();
+                fileChannel.position((long)part * partSize);
+                fileManager.putFileData(UploadCheckpoint.getPartName(filename, part)
+                        , lastModified, getPartLength(size, partSize, part)
+                        , fileChannel, true);
+                checkpoint.setCompletedParts(part + 1);
+            }
+            
+            int stalePart = partCount;
+            while(deleteFileIfExists(UploadCheckpoint.getPartName(filename, stalePart)))
+            {
+                stalePart++;
+            }
+            
+            if(fileManager.getFileMetaFromListing(manifestName) == null)
+            {
+                fileManager.checkCanceled();
+                final byte[] manifest = checkpoint.createManifest(
+                        DirectorySynchronizer.getHash(path))
+                        .getBytes(ModuleFileManager.MANIFEST_CHARSET);
+                fileManager.putFileData(manifestName, lastModified, manifest.length
+                        , Channels.newChannel(new ByteArrayInputStream(manifest)), true);
+            }
+        }
+        finally
+        {
+            fileChannel.close();
+        }
+    }
+    
+    /**
+     * Deletes a file in the current directory if it exists. A directory with 
+     * the name is not deleted.
+     * @param filename The name of the file
+     * @return <code>true</code> if the file was deleted
+     * @throws InterruptedIOException Thrown after an interrupt by {@link ModuleFileManager#cancel() }
+     * @throws IOException The communication to the device failed
+     * @since 1.6
+     */
+    private boolean deleteFileIfExists(final String filename) 
+            throws InterruptedIOException, IOException
+    {
+        final FileMeta fileMeta = fileManager.getFileMetaFromListing(filename);
+        if(fileMeta == null || fileMeta.isDirectory())
+        {
+            return false;
+        }
+        
+        fileManager.checkCanceled();
+        fileManager.delete(fileMeta.getName());
+        
+        return true;
+    }
+    
+    /**
+     * Gets the length of a part of a file.
+     * @param size The size of the file
+     * @param partSize The size of the parts
+     * @param part The index of the part
+     * @return The length of the part
+     * @since 1.6
+     */
+    private static long getPartLength(final long size, final int partSize
+            , final int part)
+    {
+        return Math.min(partSize, size - (long)part * partSize);
+    }
+}
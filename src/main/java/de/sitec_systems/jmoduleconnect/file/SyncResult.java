@@ -0,0 +1,140 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+/**
+ * Contains the statistics of a directory synchronisation by 
+ * {@link FileManager#synchronize(java.nio.file.Path, String, boolean, boolean)}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class SyncResult
+{
+    private int uploadedFiles;
+    private long uploadedBytes;
+    private int skippedFiles;
+    private int deletedEntries;
+    private int createdDirectories;
+    
+    /**
+     * Constructor
+     * @since 1.6
+     */
+    /* package */ SyncResult(){}
+    
+    /**
+     * Gets the count of uploaded files. These are new or changed files.
+     * @return The count of uploaded files
+     * @since 1.6
+     */
+    public int getUploadedFiles()
+    {
+        return uploadedFiles;
+    }
+    
+    /**
+     * Gets the sum of the sizes of all uploaded files.
+     * @return The uploaded bytes
+     * @since 1.6
+     */
+    public long getUploadedBytes()
+    {
+        return uploadedBytes;
+    }
+    
+    /**
+     * Gets the count of unchanged files they was not uploaded.
+     * @return The count of skipped files
+     * @since 1.6
+     */
+    public int getSkippedFiles()
+    {
+        return skippedFiles;
+    }
+    
+    /**
+     * Gets the count of files and directories they are deleted on the flash 
+     * filesystem, because they dont exist in the local directory.
+     * @return The count of deleted files and directories
+     * @since 1.6
+     */
+    public int getDeletedEntries()
+    {
+        return deletedEntries;
+    }
+    
+    /**
+     * Gets the count of created directories on the flash filesystem.
+     * @return The count of created directories
+     * @since 1.6
+     */
+    public int getCreatedDirectories()
+    {
+        return createdDirectories;
+    }
+    
+    /* package */ void addUploadedFile(final long size)
+    {
+        uploadedFiles++;
+        uploadedBytes += size;
+    }
+    
+    /* package */ void addSkippedFile()
+    {
+        skippedFiles++;
+    }
+    
+    /* package */ void addDeletedEntry()
+    {
+        deletedEntries++;
+    }
+    
+    /* package */ void addCreatedDirectory()
+    {
+        createdDirectories++;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("SyncResult{uploadedFiles=");
+        sb.append(uploadedFiles);
+        sb.append(", uploadedBytes=");
+        sb.append(uploadedBytes);
+        sb.append(", skippedFiles=");
+        sb.append(skippedFiles);
+        sb.append(", deletedEntries=");
+        sb.append(deletedEntries);
+        sb.append(", createdDirectories=");
+        sb.append(createdDirectories);
+        sb.append('}');
+        
+        return sb.toString();
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.util.Date;
+
+/**
+ * Records the progress of an upload by 
+ * {@link FileManager#putFileParts(java.nio.file.Path, UploadCheckpoint)}. The 
+ * file is uploaded as numbered part files and the checkpoint contains the 
+ * count of parts they was acknowledged by the device. A failed or cancelled 
+ * upload can be continued with the same checkpoint, also after a restart of 
+ * the application with a checkpoint restored from its values. After the last
+ * part the manifest {@link #getManifestName(String)} is written, so the 
+ * application on the device can reassemble the parts as soon as the manifest
+ * exists. This class is {@link Thread} safety.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class UploadCheckpoint
+{
+    private String filename;
+    private long size;
+    private Date lastModified;
+    private final int partSize;
+    private int completedParts;
+    
+    /**
+     * The minimum size of a part.
+     * @since 1.6
+     */
+    public static final int MIN_PART_SIZE = 1024;
+    
+    /**
+     * The maximum size of a part. A part of this size needs about 23 seconds
+     * at 115200 baud, so a lost connection never costs more than this time.
+     * @since 1.6
+     */
+    public static final int MAX_PART_SIZE = 0x40000;
+    
+    /**
+     * The default size of a part. A part of this size needs about 3 seconds 
+     * at 115200 baud.
+     * @since 1.6
+     */
+    public static final int DEFAULT_PART_SIZE = 0x8000;
+    
+    /**
+     * Constructs a checkpoint for a new upload with parts of 
+     * {@link #DEFAULT_PART_SIZE}.
+     * @since 1.6
+     */
+    public UploadCheckpoint()
+    {
+        this(DEFAULT_PART_SIZE);
+    }
+    
+    /**
+     * Constructs a checkpoint for a new upload.
+     * @param partSize The size of the parts in bytes
+     * @throws IllegalArgumentException If the parameter partSize is not 
+     *         between {@link #MIN_PART_SIZE} and {@link #MAX_PART_SIZE}
+     * @since 1.6
+     */
+    public UploadCheckpoint(final int partSize)
+    {
+        this(null, 0, null, partSize, 0);
+    }
+    
+    /**
+     * Constructs a checkpoint with the values of a previous upload.
+     * @param filename The name of the uploaded file
+     * @param size The size of the uploaded file
+     * @param lastModified The last modification date of the uploaded file
+     * @param partSize The size of the parts in bytes
+     * @param completedParts The count of acknowledged parts
+     * @throws IllegalArgumentException If the parameter partSize is not 
+     *         between {@link #MIN_PART_SIZE} and {@link #MAX_PART_SIZE} or 
+     *         completedParts is negative
+     * @since 1.6
+     */
+    public UploadCheckpoint(final String filename, final long size
+            , final Date lastModified, final int partSize, final int completedParts)
+    {
+        if(partSize < MIN_PART_SIZE || partSize > MAX_PART_SIZE)
+        {
+            throw new IllegalArgumentException("The parameter partSize must be between " 
+                    + MIN_PART_SIZE + " and " + MAX_PART_SIZE);
+        }
+        if(completedParts < 0)
+        {
+            throw new IllegalArgumentException("The parameter completedParts cant be negative");
+        }
+        this.filename = filename;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.partSize = partSize;
+        this.completedParts = completedParts;
+    }
+
+    /**
+     * Gets the name of the uploaded file.
+     * @return The name of the file or <code>null</code> if the upload was not
+     *         started
+     * @since 1.6
+     */
+    public synchronized String getFilename()
+    {
+        return filename;
+    }
+
+    /**
+     * Gets the size of the uploaded file.
+     * @return The size of the file in bytes
+     * @since 1.6
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the last modification date of the uploaded file.
+     * @return The last modification date or <code>null</code> if the upload 
+     *         was not started
+     * @since 1.6
+     */
+    public synchronized Date getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * Gets the size of the parts.
+     * @return The size of the parts in bytes
+     * @since 1.6
+     */
+    public int getPartSize()
+    {
+        return partSize;
+    }
+
+    /**
+     * Gets the count of parts they was acknowledged by the device.
+     * @return The count of acknowledged parts
+     * @since 1.6
+     */
+    public synchronized int getCompletedParts()
+    {
+        return completedParts;
+    }
+    
+    /**
+     * Gets the count of all parts of the file.
+     * @return The count of parts
+     * @since 1.6
+     */
+    public synchronized int getPartCount()
+    {
+        return size == 0 ? 1 : (int)((size + partSize - 1) / partSize);
+    }
+    
+    /**
+     * Gets the count of bytes they was acknowledged by the device.
+     * @return The count of acknowledged bytes
+     * @since 1.6
+     */
+    public synchronized long getAcknowledgedBytes()
+    {
+        return Math.min((long)completedParts * partSize, size);
+    }
+    
+    /**
+     * Gets if all parts was acknowledged by the device.
+     * @return <code>true</code> if the upload is complete
+     * @since 1.6
+     */
+    public synchronized boolean isComplete()
+    {
+        return filename != null && completedParts >= getPartCount();
+    }
+    
+    /**
+     * Gets the name of a part file on the flash filesystem. The parts are 
+     * named with the filename and the index with at least three digits, like
+     * <code>app.jar.000</code>, <code>app.jar.001</code> and so on.
+     * @param filename The name of the file
+     * @param index The index of the part beginning with <code>0</code>
+     * @return The name of the part file
+     * @since 1.6
+     */
+    public static String getPartName(final String filename, final int index)
+    {
+        return String.format("%s.%03d", filename, index);
+    }
+    
+    /**
+     * Gets the name of the manifest file on the flash filesystem, like 
+     * <code>app.jar.parts</code>. The manifest is written after the last part
+     * and deleted before a part is uploaded again, so all parts are complete
+     * if the manifest exists. The first line of the manifest contains the 
+     * filename, the size and the MD5 hash of the file and each following 
+     * line the name and the size of a part in order of reassembly. The 
+     * values are separated by tabs and the lines end with <code>\n</code>.
+     * @param filename The name of the file
+     * @return The name of the manifest file
+     * @since 1.6
+     */
+    public static String getManifestName(final String filename)
+    {
+        return filename + ".parts";
+    }
+    
+    /**
+     * Creates the content of the manifest file.
+     * @param hash The MD5 hash of the file as hex <code>String</code>
+     * @return The content of the manifest
+     * @see #getManifestName(String)
+     * @since 1.6
+     */
+    /* package */ synchronized String createManifest(final String hash)
+    {
+        final StringBuilder sb = new StringBuilder(filename);
+        sb.append('\t').append(size).append('\t').append(hash).append('\n');
+        final int partCount = getPartCount();
+        for(int i = 0; i < partCount; i++)
+        {
+            sb.append(getPartName(filename, i)).append('\t');
+            sb.append(Math.min(partSize, size - (long)i * partSize)).append('\n');
+        }
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Checks if this checkpoint belongs to the upload of a file.
+     * @param filename The name of the file
+     * @param size The size of the file
+     * @param lastModified The last modification date of the file
+     * @return <code>true</code> if the values are equal to this checkpoint
+     * @since 1.6
+     */
+    /* package */ synchronized boolean matches(final String filename, final long size
+            , final Date lastModified)
+    {
+        return filename.equals(this.filename) && size == this.size 
+                && lastModified.equals(this.lastModified);
+    }
+    
+    /**
+     * Starts this checkpoint for the upload of a file from the first part.
+     * @param filename The name of the file
+     * @param size The size of the file
+     * @param lastModified The last modification date of the file
+     * @since 1.6
+     */
+    /* package */ synchronized void start(final String filename, final long size
+            , final Date lastModified)
+    {
+        this.filename = filename;
+        this.size = size;
+        this.lastModified = lastModified;
+        completedParts = 0;
+    }
+    
+    /**
+     * Sets the count of parts they was acknowledged by the device.
+     * @param completedParts The count of acknowledged parts
+     * @since 1.6
+     */
+    /* package */ synchronized void setCompletedParts(final int completedParts)
+    {
+        this.completedParts = completedParts;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        final StringBuilder sb = new StringBuilder("UploadCheckpoint{filename=");
+        sb.append(filename);
+        sb.append(", size=");
+        sb.append(size);
+        sb.append(", lastModified=");
+        sb.append(lastModified);
+        sb.append(", partSize=");
+        sb.append(partSize);
+        sb.append(", completedParts=");
+        sb.append(completedParts);
+        sb.append('}');
+        
+        return sb.toString();
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/**
+ * Tests the persisting of the {@link AttachState} and the confirmation of the
+ * IMEI for the session.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AttachStateTest extends TestCase
+{
+    private static final String KEY = "/dev/ttyS0";
+    private static final String IMEI = "351234567890123";
+    
+    private File storeFile;
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        storeFile = File.createTempFile("attach", ".properties");
+        assertTrue(storeFile.delete());
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        storeFile.delete();
+    }
+    
+    /**
+     * The verified state is loaded in the next session, but the IMEI is not
+     * confirmed before the AT interface has read it from the device.
+     * @throws IOException If the properties file cant be accessed
+     */
+    public void testConfirmationNotPersisted() throws IOException
+    {
+        final AttachState state = AttachState.loadAttachState(storeFile, KEY);
+        assertFalse(state.isAtVerified(true, false));
+        assertFalse(state.isImeiConfirmed());
+        
+        state.setAtVerified(IMEI, true, false);
+        state.setFileManagerVerified();
+        assertTrue(state.isImeiConfirmed());
+        
+        final AttachState loadedState = AttachState.loadAttachState(storeFile, KEY);
+        assertTrue(loadedState.isAtVerified(true, false));
+        assertFalse(loadedState.isAtVerified(false, false));
+        assertTrue(loadedState.isFileManagerVerified());
+        assertFalse(loadedState.isImeiConfirmed());
+        
+        loadedState.setImeiConfirmed(IMEI);
+        assertTrue(loadedState.isImeiConfirmed());
+    }
+    
+    /**
+     * An other IMEI is not confirmed and a new verification with an other 
+     * IMEI discards the verified file manager.
+     * @throws IOException If the properties file cant be accessed
+     */
+    public void testOtherDevice() throws IOException
+    {
+        final AttachState state = AttachState.loadAttachState(storeFile, KEY);
+        state.setAtVerified(IMEI, false, true);
+        state.setFileManagerVerified();
+        
+        state.setImeiConfirmed("359999999999999");
+        assertFalse(state.isImeiConfirmed());
+        state.setImeiConfirmed(null);
+        assertFalse(state.isImeiConfirmed());
+        
+        state.setAtVerified("359999999999999", false, true);
+        assertTrue(state.isImeiConfirmed());
+        assertFalse(state.isFileManagerVerified());
+    }
+    
+    /**
+     * An invalidated state is not verified and not confirmed.
+     * @throws IOException If the properties file cant be accessed
+     */
+    public void testInvalidate() throws IOException
+    {
+        final AttachState state = AttachState.loadAttachState(storeFile, KEY);
+        state.setAtVerified(IMEI, true, true);
+        state.invalidate();
+        
+        assertFalse(state.isAtVerified(true, true));
+        assertFalse(state.isImeiConfirmed());
+        assertFalse(AttachState.loadAttachState(storeFile, KEY).isAtVerified(true, true));
+    }
+    
+    /**
+     * The IMEI is parsed from the response of <code>AT+CGSN</code>.
+     */
+    public void testParseImei()
+    {
+        assertEquals(IMEI, AttachState.parseImei("\r\n" + IMEI + "\r\n\r\nOK"));
+        assertEquals(IMEI, AttachState.parseImei("ATE0+CMEE=2;+CGSN\r\r\n" + IMEI + "\r\n\r\nOK"));
+        assertNull(AttachState.parseImei("\r\nERROR"));
+        assertNull(AttachState.parseImei("\r\n12345\r\n\r\nOK"));
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import de.sitec_systems.jmoduleconnect.at.AtCommandFailedException.Type;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/**
+ * Tests the resolving of the {@link AtError} by the constructors of 
+ * {@link AtCommandFailedException}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtCommandFailedExceptionTest extends TestCase
+{
+    /**
+     * The constructors with detail message resolve the error from the 
+     * message text.
+     */
+    public void testErrorFromMessage()
+    {
+        assertSame(AtError.CME_SIM_PIN_REQUIRED, new AtCommandFailedException(Type.CME
+                , "AT command: AT+CPIN? deliver +CME ERROR: SIM PIN required").getError());
+        assertSame(AtError.CMS_MEMORY_FULL, new AtCommandFailedException(Type.CMS
+                , "AT command: AT+CMGW deliver +CMS ERROR: memory full"
+                , new IOException()).getError());
+        assertSame(AtError.CME_SIM_BUSY, new AtCommandFailedException(Type.CME
+                , "+CME ERROR: 14").getError());
+        assertSame(AtError.CME_UNKNOWN, new AtCommandFailedException(Type.CME
+                , "+CME ERROR: no such error\r\n").getError());
+        assertEquals(AtCommandFailedException.ERROR_CODE_MODE_OFF
+                , new AtCommandFailedException(Type.CME, "+CME ERROR: 14").getErrorCode());
+    }
+    
+    /**
+     * Without details of the type the error is <code>null</code>.
+     */
+    public void testNoDetails()
+    {
+        assertNull(new AtCommandFailedException(Type.CME).getError());
+        assertNull(new AtCommandFailedException(Type.CME, "Sending failed").getError());
+        assertNull(new AtCommandFailedException(Type.CMS, "+CME ERROR: 10").getError());
+        assertNull(new AtCommandFailedException(Type.CMS, new IOException()).getError());
+        assertNull(new AtCommandFailedException(null, "+CME ERROR: 10").getError());
+    }
+    
+    /**
+     * The type <code>ERROR</code> always resolves to {@link AtError#ERROR}.
+     */
+    public void testPlainError()
+    {
+        assertSame(AtError.ERROR, new AtCommandFailedException(Type.ERROR).getError());
+        assertSame(AtError.ERROR, new AtCommandFailedException(Type.ERROR
+                , "AT command: AT deliver Error").getError());
+    }
+    
+    /**
+     * The constructors with error code resolve the error from the code.
+     */
+    public void testErrorFromCode()
+    {
+        assertSame(AtError.CME_SIM_NOT_INSERTED
+                , new AtCommandFailedException(Type.CME, (short)10).getError());
+        assertSame(AtError.CMS_UNKNOWN
+                , new AtCommandFailedException(Type.CMS, (short)1, "text").getError());
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import de.sitec_systems.jmoduleconnect.at.AtCommandFailedException.Type;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ * Tests the parsing, comparing and writing of the {@link AtConfigurator}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtConfiguratorTest extends TestCase
+{
+    private FakeAt at;
+    private AtConfigurator configurator;
+
+    @Override
+    protected void setUp()
+    {
+        at = new FakeAt();
+        configurator = AtConfigurator.createConfigurator(at);
+    }
+    
+    /**
+     * The parameters they are not given in the desired value are not compared.
+     */
+    public void testIsEqualWithPrefixParameters()
+    {
+        assertTrue(AtConfigurator.isEqual("2,1", "2,1,0,0,1"));
+        assertTrue(AtConfigurator.isEqual("2,1,0,0,1", "2,1,0,0,1"));
+        assertTrue(AtConfigurator.isEqual("2", "2,1"));
+        assertFalse(AtConfigurator.isEqual("2,2", "2,1,0,0,1"));
+        assertFalse(AtConfigurator.isEqual("2,1,0", "2,1"));
+        assertFalse(AtConfigurator.isEqual("1", "12"));
+    }
+    
+    /**
+     * The values are compared without quotes, whitespaces and case, but the 
+     * separators within quotes are part of the parameter.
+     */
+    public void testIsEqualNormalized()
+    {
+        assertTrue(AtConfigurator.isEqual("\"off\"", "OFF"));
+        assertTrue(AtConfigurator.isEqual(" 2 , 1 ", "2,1"));
+        assertTrue(AtConfigurator.isEqual("\"a,b\",1", "\"A,B\",1,0"));
+        assertFalse(AtConfigurator.isEqual("\"a,b\"", "a,b"));
+    }
+    
+    /**
+     * The lines of keyed commands like <code>^SCFG</code> are stored by 
+     * command and key and the first line is stored by command.
+     */
+    public void testParseKeyedLines()
+    {
+        final Map<String, String> values = new HashMap<String, String>();
+        AtConfigurator.parseValues(Arrays.asList("+CNMI", "^SCFG")
+                , "\r\n+CNMI: 2,1,0,0,1\r\n"
+                + "^SCFG: \"Userware/Autostart\",\"0\"\r\n"
+                + "^SCFG: \"MEopMode/Airplane\",\"off\"\r\n\r\nOK", values);
+        
+        assertEquals("2,1,0,0,1", values.get("+CNMI"));
+        assertEquals("\"0\"", values.get(AtConfigurator.getSettingId("^SCFG"
+                , "\"Userware/Autostart\"")));
+        assertEquals("\"off\"", values.get(AtConfigurator.getSettingId("^SCFG"
+                , "\"meopmode/airplane\"")));
+        assertNull(values.get(AtConfigurator.getSettingId("^SCFG", "\"Unknown\"")));
+    }
+    
+    /**
+     * Only the differing settings and the basic commands are written. The 
+     * basic commands are not read and the writes are concatenated.
+     * @throws Exception If the applying fails
+     */
+    public void testApply() throws Exception
+    {
+        at.responses.put("AT+CNMI?;^SCFG?", "\r\n+CNMI: 2,1,0,0,1\r\n"
+                + "^SCFG: \"Userware/Autostart\",\"0\"\r\n"
+                + "^SCFG: \"MEopMode/Airplane\",\"off\"\r\n\r\nOK");
+        configurator.addSetting(new AtSetting("+CNMI", "2,1"));
+        configurator.addSetting(new AtSetting("^SCFG", "\"Userware/Autostart\"", "\"1\""));
+        configurator.addSetting(new AtSetting("AT^SCFG", "\"MEopMode/Airplane\"", "\"off\""));
+        configurator.addSetting(new AtSetting("E", "0"));
+        configurator.addSetting(new AtSetting("&c", "1"));
+        
+        final List<AtSetting> written = configurator.apply();
+        
+        assertEquals(3, written.size());
+        assertEquals(Arrays.asList("AT+CNMI?;^SCFG?"
+                , "AT^SCFG=\"Userware/Autostart\",\"1\";E0&C1"), at.commands);
+    }
+    
+    /**
+     * Settings without difference are not written.
+     * @throws Exception If the applying fails
+     */
+    public void testApplyUpToDate() throws Exception
+    {
+        at.responses.put("AT+IPR?", "\r\n+IPR: 115200\r\n\r\nOK");
+        configurator.addSetting(new AtSetting("+IPR", "115200"));
+        
+        assertTrue(configurator.apply().isEmpty());
+        assertEquals(Arrays.asList("AT+IPR?"), at.commands);
+    }
+    
+    /**
+     * The concatenated command lines dont exceed the maximum length.
+     * @throws Exception If the applying fails
+     */
+    public void testApplyMaximumLength() throws Exception
+    {
+        for(int i=0; i<10; i++)
+        {
+            configurator.addSetting(new AtSetting("^SCFG", "\"Userware/Parameter" + i + "\""
+                    , "\"value" + i + "\""));
+        }
+        at.responses.put("AT^SCFG?", "\r\nOK");
+        
+        assertEquals(10, configurator.apply().size());
+        
+        int settings = 0;
+        for(final String command: at.commands.subList(1, at.commands.size()))
+        {
+            assertTrue(command, command.length() <= 128);
+            settings += command.split(";").length;
+        }
+        assertEquals(10, settings);
+        assertTrue(at.commands.size() > 2);
+    }
+    
+    /**
+     * If a concatenated write fails then the settings are written alone and 
+     * the error of the failed setting is thrown.
+     * @throws Exception If the applying fails
+     */
+    public void testApplyFailedBatch() throws Exception
+    {
+        at.responses.put("AT+CNMI?;+CMEE?", "\r\nOK");
+        at.failing.add("AT+CMEE=2;+CNMI=9,9");
+        at.failing.add("AT+CNMI=9,9");
+        configurator.addSetting(new AtSetting("+CMEE", "2"));
+        configurator.addSetting(new AtSetting("+CNMI", "9,9"));
+        
+        try
+        {
+            configurator.apply();
+            fail("The failed setting is not reported");
+        }
+        catch (final AtCommandFailedException ex)
+        {
+            // Expected
+        }
+        
+        assertEquals(Arrays.asList("AT+CMEE?;+CNMI?", "AT+CMEE=2;+CNMI=9,9"
+                , "AT+CMEE=2", "AT+CNMI=9,9"), at.commands);
+    }
+    
+    /**
+     * The write commands of extended and basic commands.
+     */
+    public void testWriteCommand()
+    {
+        assertEquals("AT+CNMI=2,1", new AtSetting("+CNMI", "2,1").getWriteCommand());
+        assertEquals("AT^SCFG=\"Userware/Autostart\",\"1\"", new AtSetting("at^scfg"
+                , "\"Userware/Autostart\"", "\"1\"").getWriteCommand());
+        assertEquals("ATE0", new AtSetting("E", "0").getWriteCommand());
+        assertEquals("AT&C1", new AtSetting("&C", "1").getWriteCommand());
+        assertTrue(new AtSetting("+CNMI", "2,1").isExtended());
+        assertFalse(new AtSetting("&C", "1").isExtended());
+    }
+    
+    /**
+     * An {@link At} which records the sent commands and delivers the 
+     * responses they was set for the commands.
+     */
+    private static class FakeAt implements At
+    {
+        private final List<String> commands = new ArrayList<String>();
+        private final Map<String, String> responses = new HashMap<String, String>();
+        private final List<String> failing = new ArrayList<String>();
+
+        @Override
+        public String send(final String atCommand) throws AtCommandFailedException, IOException
+        {
+            commands.add(atCommand);
+            if(failing.contains(atCommand))
+            {
+                throw new AtCommandFailedException(Type.CME, "+CME ERROR: 3");
+            }
+            final String response = responses.get(atCommand);
+            
+            return response != null ? response : "\r\nOK";
+        }
+
+        @Override
+        public AtResponse trySend(final String atCommand) throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addAtListener(final AtListener atListener)
+        {
+        }
+
+        @Override
+        public void removeAtListener(final AtListener atListener)
+        {
+        }
+
+        @Override
+        public void closeMode()
+        {
+        }
+
+        @Override
+        public void setModeHandler(final ModeHandler modeHandler)
+        {
+        }
+
+        @Override
+        public boolean isProtocol(final InputStream is)
+        {
+            return false;
+        }
+
+        @Override
+        public void parse(final InputStream is)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import de.sitec_systems.jmoduleconnect.at.AtCommandFailedException.Type;
+import java.util.Locale;
+import junit.framework.TestCase;
+
+/**
+ * Tests the lookup tables of {@link AtError}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtErrorTest extends TestCase
+{
+    /**
+     * Every error is found by its code and by its message in any case.
+     */
+    public void testRoundTrip()
+    {
+        for(final AtError error: AtError.values())
+        {
+            assertSame(error, AtError.getError(error.getType(), error.getCode()));
+            assertSame(error, AtError.getError(error.getType(), error.getMessage()));
+            assertSame(error, AtError.getError(error.getType()
+                    , error.getMessage().toUpperCase(Locale.ROOT)));
+        }
+    }
+    
+    /**
+     * Unknown codes and messages are resolved to the unknown error of the type.
+     */
+    public void testUnknown()
+    {
+        assertSame(AtError.CME_UNKNOWN, AtError.getError(Type.CME, 9));
+        assertSame(AtError.CME_UNKNOWN, AtError.getError(Type.CME, 151));
+        assertSame(AtError.CME_UNKNOWN, AtError.getError(Type.CME, -1));
+        assertSame(AtError.CME_UNKNOWN, AtError.getError(Type.CME, 300));
+        assertSame(AtError.CME_UNKNOWN, AtError.getError(Type.CME, "no such error"));
+        assertSame(AtError.CME_UNKNOWN, AtError.getError(Type.CME, (String)null));
+        assertSame(AtError.CMS_UNKNOWN, AtError.getError(Type.CMS, 0));
+        assertSame(AtError.CMS_UNKNOWN, AtError.getError(Type.CMS, 501));
+        assertSame(AtError.CMS_UNKNOWN, AtError.getError(Type.CMS, "phone failure"));
+        assertSame(AtError.CMS_UNKNOWN, AtError.getError(Type.CMS, (String)null));
+        assertSame(AtError.ERROR, AtError.getError(Type.ERROR, 3));
+        assertSame(AtError.ERROR, AtError.getError(Type.ERROR, "SIM busy"));
+    }
+    
+    /**
+     * The same message is resolved by the type.
+     */
+    public void testSameMessageOtherType()
+    {
+        assertSame(AtError.CME_SIM_PIN_REQUIRED, AtError.getError(Type.CME, "SIM PIN required"));
+        assertSame(AtError.CMS_SIM_PIN_REQUIRED, AtError.getError(Type.CMS, "SIM PIN required"));
+        assertSame(AtError.CME_NETWORK_TIMEOUT, AtError.getError(Type.CME, 31));
+        assertSame(AtError.CMS_NETWORK_TIMEOUT, AtError.getError(Type.CMS, 332));
+    }
+    
+    /**
+     * The case of the messages is ignored independent of the default 
+     * {@link Locale}.
+     */
+    public void testLocaleIndependent()
+    {
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try
+        {
+            assertSame(AtError.CME_SIM_PIN_REQUIRED, AtError.getError(Type.CME, "SIM PIN REQUIRED"));
+            assertSame(AtError.CME_ILLEGAL_MS, AtError.getError(Type.CME, "ILLEGAL MS"));
+            assertSame(AtError.CMS_INVALID_MEMORY_INDEX, AtError.getError(Type.CMS, "INVALID MEMORY INDEX"));
+        }
+        finally
+        {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+    
+    /**
+     * The type is required.
+     */
+    public void testNullType()
+    {
+        try
+        {
+            AtError.getError(null, 3);
+            fail("Accepted type null");
+        }
+        catch (final IllegalArgumentException ex)
+        {
+            // Expected
+        }
+        
+        try
+        {
+            AtError.getError(null, "SIM busy");
+            fail("Accepted type null");
+        }
+        catch (final IllegalArgumentException ex)
+        {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import de.sitec_systems.jmoduleconnect.at.AtCommandFailedException.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests the parsing of AT responses by {@link AtImpl}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtImplTest extends TestCase
+{
+    private static final String COMMAND = "AT+CPIN?\r";
+    
+    /**
+     * A successful response has no error and the echo is removed.
+     */
+    public void testSuccess()
+    {
+        final AtResponse response = AtImpl.createResponse(COMMAND
+                , COMMAND + "\r\n+CPIN: READY\r\n\r\nOK\r\n", true);
+        
+        assertTrue(response.isSuccess());
+        assertNull(response.getError());
+        assertEquals(AtCommandFailedException.ERROR_CODE_MODE_OFF, response.getErrorCode());
+        assertEquals("+CPIN: READY\r\n\r\nOK", response.getResponse());
+        assertEquals(COMMAND, response.getAtCommand());
+    }
+    
+    /**
+     * The numeric CME and CMS errors are resolved by code.
+     */
+    public void testNumericErrors()
+    {
+        AtResponse response = AtImpl.createResponse(COMMAND
+                , COMMAND + "\r\n+CME ERROR: 10\r\n", true);
+        assertFalse(response.isSuccess());
+        assertSame(AtError.CME_SIM_NOT_INSERTED, response.getError());
+        assertEquals(10, response.getErrorCode());
+        
+        response = AtImpl.createResponse(COMMAND, "\r\n+CMS ERROR: 321\r\n", true);
+        assertSame(AtError.CMS_INVALID_MEMORY_INDEX, response.getError());
+        assertEquals(321, response.getErrorCode());
+        
+        response = AtImpl.createResponse(COMMAND, "\r\n+CME ERROR: 0\r\n", true);
+        assertSame(AtError.CME_PHONE_FAILURE, response.getError());
+        assertEquals(0, response.getErrorCode());
+        
+        response = AtImpl.createResponse(COMMAND, "\r\n+CME ERROR: 3", true);
+        assertSame(AtError.CME_OPERATION_NOT_ALLOWED, response.getError());
+    }
+    
+    /**
+     * The verbose CME and CMS errors are resolved by message.
+     */
+    public void testVerboseErrors()
+    {
+        AtResponse response = AtImpl.createResponse(COMMAND
+                , COMMAND + "\r\n+CME ERROR: SIM PIN required\r\n", false);
+        assertSame(AtError.CME_SIM_PIN_REQUIRED, response.getError());
+        assertEquals(AtCommandFailedException.ERROR_CODE_MODE_OFF, response.getErrorCode());
+        
+        response = AtImpl.createResponse(COMMAND
+                , "\r\n+CMS ERROR: SIM PIN required\r\n", false);
+        assertSame(AtError.CMS_SIM_PIN_REQUIRED, response.getError());
+        
+        response = AtImpl.createResponse(COMMAND
+                , "\r\n+CME ERROR: network not allowed - emergency calls only\r\n", false);
+        assertSame(AtError.CME_NETWORK_NOT_ALLOWED, response.getError());
+    }
+    
+    /**
+     * A verbose error is resolved by message although numeric error codes 
+     * are expected.
+     */
+    public void testVerboseErrorInNumericMode()
+    {
+        final AtResponse response = AtImpl.createResponse(COMMAND
+                , "\r\n+CME ERROR: SIM busy\r\n", true);
+        
+        assertSame(AtError.CME_SIM_BUSY, response.getError());
+        assertEquals(AtCommandFailedException.ERROR_CODE_MODE_OFF, response.getErrorCode());
+    }
+    
+    /**
+     * Unknown codes and messages are resolved to the unknown error of the type.
+     */
+    public void testUnknownErrors()
+    {
+        AtResponse response = AtImpl.createResponse(COMMAND, "\r\n+CME ERROR: 999\r\n", true);
+        assertSame(AtError.CME_UNKNOWN, response.getError());
+        assertEquals(999, response.getErrorCode());
+        
+        response = AtImpl.createResponse(COMMAND, "\r\n+CMS ERROR: 12\r\n", true);
+        assertSame(AtError.CMS_UNKNOWN, response.getError());
+        
+        response = AtImpl.createResponse(COMMAND, "\r\n+CME ERROR: no such error\r\n", false);
+        assertSame(AtError.CME_UNKNOWN, response.getError());
+        
+        response = AtImpl.createResponse(COMMAND, "\r\n+CME ERROR: 10\r\n", false);
+        assertSame(AtError.CME_UNKNOWN, response.getError());
+    }
+    
+    /**
+     * A plain <code>ERROR</code> is resolved to {@link AtError#ERROR}.
+     */
+    public void testPlainError()
+    {
+        final AtResponse response = AtImpl.createResponse(COMMAND
+                , COMMAND + "\r\nERROR\r\n", true);
+        
+        assertSame(AtError.ERROR, response.getError());
+        assertSame(Type.ERROR, response.getError().getType());
+        assertEquals(AtCommandFailedException.ERROR_CODE_MODE_OFF, response.getErrorCode());
+    }
+    
+    /**
+     * URCs before the final result code are split from a response without 
+     * echo and the own lines of the AT command are kept.
+     */
+    public void testSplitEvents()
+    {
+        final List<String> events = new ArrayList<String>();
+        
+        assertEquals("\r\n+CREG: 0,1\r\n\r\nOK\r\n", AtImpl.splitEvents("AT+CREG?"
+                , "\r\n+CMTI: \"SM\",1\r\n\r\n+CREG: 0,1\r\n\r\nOK\r\n", events));
+        assertEquals(Arrays.asList("\r\n+CMTI: \"SM\",1\r\n"), events);
+        
+        events.clear();
+        assertEquals("\r\n+CREG: 0,1\r\n\r\nOK\r\n", AtImpl.splitEvents("AT+CREG?"
+                , "\r\n+CREG: 0,1\r\n\r\n+CIEV: signal,3\r\n\r\nOK\r\n", events));
+        assertEquals(Arrays.asList("\r\n+CIEV: signal,3\r\n"), events);
+        
+        events.clear();
+        assertEquals("\r\nOK\r\n", AtImpl.splitEvents("AT&W"
+                , "\r\n+CREG: 1\r\n\r\n^SIS: 0,1\r\n\r\nOK\r\n", events));
+        assertEquals(Arrays.asList("\r\n+CREG: 1\r\n", "\r\n^SIS: 0,1\r\n"), events);
+    }
+    
+    /**
+     * The lines of all AT commands of a command line are kept and a URC 
+     * within the lines of the response is split.
+     */
+    public void testSplitEventsCommandLine()
+    {
+        final List<String> events = new ArrayList<String>();
+        
+        assertEquals("\r\n+CMEE: 1\r\n\r\n^SCFG: \"MEopMode/Airplane\",\"off\"\r\n\r\nOK\r\n"
+                , AtImpl.splitEvents("AT+CMEE?;^scfg=\"MEopMode/Airplane\""
+                , "\r\n+CMEE: 1\r\n\r\n^SCFG: \"MEopMode/Airplane\",\"off\"\r\n\r\nOK\r\n"
+                , events));
+        assertTrue(events.isEmpty());
+        
+        assertEquals("\r\n+CMGL: 1,\"REC READ\"\r\n+49123\r\n\r\nOK\r\n"
+                , AtImpl.splitEvents("AT+CMGL=\"ALL\""
+                , "\r\n+CMGL: 1,\"REC READ\"\r\n+CMTI: \"SM\",2\r\n+49123\r\n\r\nOK\r\n"
+                , events));
+        assertEquals(Arrays.asList("\r\n+CMTI: \"SM\",2\r\n"), events);
+    }
+    
+    /**
+     * A response without URCs and the final result codes are not changed.
+     */
+    public void testSplitEventsWithoutEvents()
+    {
+        final List<String> events = new ArrayList<String>();
+        final String[] responses = {"\r\n123456789012345\r\n\r\nOK\r\n"
+                , "\r\n+CME ERROR: SIM PIN required\r\n", "\r\nERROR\r\n"
+                , "AT+CSQ\r\r\n+CSQ: 20,99\r\n\r\nOK\r\n"};
+        for(final String response: responses)
+        {
+            assertEquals(response, AtImpl.splitEvents("AT+CSQ", response, events));
+        }
+        assertTrue(events.isEmpty());
+    }
+    
+    /**
+     * The exception of a failed response contains the resolved error.
+     */
+    public void testToException()
+    {
+        final AtCommandFailedException ex = AtImpl.createResponse(COMMAND
+                , "\r\n+CME ERROR: 11\r\n", true).toException();
+        
+        assertSame(Type.CME, ex.getType());
+        assertSame(AtError.CME_SIM_PIN_REQUIRED, ex.getError());
+        assertEquals(11, ex.getErrorCode());
+        assertTrue(ex.getMessage().contains("+CME ERROR: 11"));
+    }
+}
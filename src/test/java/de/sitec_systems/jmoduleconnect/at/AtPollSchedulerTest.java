@@ -0,0 +1,409 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.at;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Tests the scheduling rules of the {@link AtPollScheduler} with a 
+ * controlled clock.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class AtPollSchedulerTest extends TestCase
+{
+    private static final long START = 5000;
+    private static final long WINDOW = 250;
+    
+    private FakeClock clock;
+    private FakeAt at;
+    private AtPollScheduler scheduler;
+    private RecordingListener listener1;
+    private RecordingListener listener2;
+
+    @Override
+    protected void setUp()
+    {
+        clock = new FakeClock();
+        clock.now = ms(START);
+        at = new FakeAt();
+        scheduler = new AtPollScheduler(at, ms(WINDOW), clock);
+        listener1 = new RecordingListener();
+        listener2 = new RecordingListener();
+    }
+    
+    /**
+     * The AT commands are deduplicated by the trimmed upper case command and 
+     * sent once for all subscribers.
+     */
+    public void testDeduplication()
+    {
+        scheduler.subscribe("at+csq", 1, TimeUnit.SECONDS, listener1);
+        scheduler.subscribe(" AT+CSQ ", 1, TimeUnit.SECONDS, listener2);
+        
+        final Map<String, List<AtPollListener>> batch = scheduler.takeDueQueries(clock.now);
+        
+        assertEquals(Collections.singleton("at+csq"), batch.keySet());
+        assertEquals(2, batch.get("at+csq").size());
+        assertTrue(batch.get("at+csq").containsAll(Arrays.asList(listener1, listener2)));
+        
+        pollBatch(batch);
+        assertEquals(Arrays.asList("at+csq"), at.commands);
+        assertEquals(1, listener1.received.size());
+        assertEquals(1, listener2.received.size());
+    }
+    
+    /**
+     * The polls are aligned to the grid of the batch window, which starts at
+     * the creation of the scheduler.
+     */
+    public void testGridAlignment()
+    {
+        clock.now = ms(START + 100);
+        scheduler.subscribe("AT+CSQ", 1, TimeUnit.SECONDS, listener1);
+        assertEquals(ms(START + 250), scheduler.getNextPoll());
+        
+        clock.now = ms(START + 250);
+        scheduler.subscribe("AT+CREG?", 1, TimeUnit.SECONDS, listener1);
+        assertEquals(ms(START + 250), scheduler.getNextPoll());
+        
+        clock.now = ms(START + 260);
+        scheduler.subscribe("AT+COPS?", 1, TimeUnit.SECONDS, listener1);
+        assertEquals(ms(START + 250), scheduler.getNextPoll());
+        
+        assertEquals(Arrays.asList("AT+CSQ", "AT+CREG?")
+                , new ArrayList<String>(scheduler.takeDueQueries(ms(START + 250)).keySet()));
+        assertEquals(ms(START + 500), scheduler.getNextPoll());
+        assertEquals(Arrays.asList("AT+COPS?")
+                , new ArrayList<String>(scheduler.takeDueQueries(ms(START + 500)).keySet()));
+        assertEquals(ms(START + 1250), scheduler.getNextPoll());
+    }
+    
+    /**
+     * The AT commands they are due within the batch window are taken together.
+     */
+    public void testBatchWindow()
+    {
+        scheduler.subscribe("AT+CSQ", 1, TimeUnit.SECONDS, listener1);
+        clock.now = ms(START + 10);
+        scheduler.subscribe("AT+CREG?", 1, TimeUnit.SECONDS, listener1);
+        
+        assertEquals(2, scheduler.takeDueQueries(ms(START + 10)).size());
+        assertTrue(scheduler.takeDueQueries(ms(START + 749)).isEmpty());
+        assertEquals(Collections.singleton("AT+CSQ")
+                , scheduler.takeDueQueries(ms(START + 751)).keySet());
+        assertEquals(Collections.singleton("AT+CREG?")
+                , scheduler.takeDueQueries(ms(START + 1010)).keySet());
+        assertEquals(2, scheduler.takeDueQueries(ms(START + 2010)).size());
+    }
+    
+    /**
+     * A delayed poll is aligned to the next point on the grid and not 
+     * repeated for the missed intervals.
+     */
+    public void testDelayedPoll()
+    {
+        scheduler.subscribe("AT+CSQ", 500, TimeUnit.MILLISECONDS, listener1);
+        
+        assertEquals(1, scheduler.takeDueQueries(ms(START + 1600)).size());
+        assertEquals(ms(START + 1750), scheduler.getNextPoll());
+    }
+    
+    /**
+     * The shortest interval of all subscribers is used. A shorter interval 
+     * is served at the next point on the grid and a longer interval after 
+     * the next poll.
+     */
+    public void testMinimumIntervalMerging()
+    {
+        scheduler.subscribe("AT+CSQ", 3, TimeUnit.SECONDS, listener1);
+        scheduler.takeDueQueries(clock.now);
+        assertEquals(ms(START + 3000), scheduler.getNextPoll());
+        
+        clock.now = ms(START + 400);
+        scheduler.subscribe("AT+CSQ", 1, TimeUnit.SECONDS, listener2);
+        assertEquals(ms(START + 1500), scheduler.getNextPoll());
+        
+        scheduler.takeDueQueries(ms(START + 1500));
+        assertEquals(ms(START + 2500), scheduler.getNextPoll());
+        
+        clock.now = ms(START + 1600);
+        scheduler.unsubscribe("AT+CSQ", listener2);
+        assertEquals(ms(START + 2500), scheduler.getNextPoll());
+        scheduler.takeDueQueries(ms(START + 2500));
+        assertEquals(ms(START + 5500), scheduler.getNextPoll());
+    }
+    
+    /**
+     * A new interval of an existing subscriber replaces the old one.
+     */
+    public void testUpdateInterval()
+    {
+        scheduler.subscribe("AT+CSQ", 1, TimeUnit.SECONDS, listener1);
+        scheduler.subscribe("AT+CSQ", 2, TimeUnit.SECONDS, listener1);
+        scheduler.takeDueQueries(clock.now);
+        
+        assertEquals(ms(START + 2000), scheduler.getNextPoll());
+        assertEquals(1, scheduler.takeDueQueries(ms(START + 2000)).get("AT+CSQ").size());
+    }
+    
+    /**
+     * The AT command is not polled after the last subscriber has 
+     * unsubscribed and a new subscription starts at the grid again.
+     */
+    public void testLastSubscriberUnsubscribes()
+    {
+        scheduler.subscribe("AT+CSQ", 1, TimeUnit.SECONDS, listener1);
+        scheduler.subscribe("AT+CSQ", 1, TimeUnit.SECONDS, listener2);
+        scheduler.takeDueQueries(clock.now);
+        
+        scheduler.unsubscribe("at+csq", listener1);
+        assertEquals(ms(START + 1000), scheduler.getNextPoll());
+        scheduler.unsubscribe("AT+CSQ", listener2);
+        assertEquals(Long.MAX_VALUE, scheduler.getNextPoll());
+        assertTrue(scheduler.takeDueQueries(ms(START + 10000)).isEmpty());
+        
+        scheduler.unsubscribe("AT+CSQ", listener2);
+        scheduler.unsubscribe(null, listener2);
+        
+        clock.now = ms(START + 1100);
+        scheduler.subscribe("AT+CSQ", 1, TimeUnit.SECONDS, listener2);
+        assertEquals(ms(START + 1250), scheduler.getNextPoll());
+    }
+    
+    /**
+     * A failed poll is delivered to all subscribers as failure.
+     */
+    public void testFailedPoll()
+    {
+        at.error = AtError.CME_SIM_BUSY;
+        scheduler.subscribe("AT+CPIN?", 1, TimeUnit.SECONDS, listener1);
+        
+        pollBatch(scheduler.takeDueQueries(clock.now));
+        
+        assertTrue(listener1.received.isEmpty());
+        assertEquals(1, listener1.failed.size());
+        assertSame(AtError.CME_SIM_BUSY, listener1.failed.get(0).getAtError());
+    }
+    
+    /**
+     * Invalid subscriptions are rejected.
+     */
+    public void testInvalidSubscription()
+    {
+        final String[] commands = {null, "CSQ"};
+        for(final String command: commands)
+        {
+            try
+            {
+                scheduler.subscribe(command, 1, TimeUnit.SECONDS, listener1);
+                fail("Accepted: " + command);
+            }
+            catch (final IllegalArgumentException ex)
+            {
+                // Expected
+            }
+        }
+        
+        try
+        {
+            scheduler.subscribe("AT+CSQ", 0, TimeUnit.SECONDS, listener1);
+            fail("Accepted interval 0");
+        }
+        catch (final IllegalArgumentException ex)
+        {
+            // Expected
+        }
+        assertEquals(Long.MAX_VALUE, scheduler.getNextPoll());
+    }
+    
+    /**
+     * The started scheduler polls with the system clock until the last 
+     * subscriber unsubscribes.
+     * @throws InterruptedException If the test was interrupted
+     */
+    public void testScheduling() throws InterruptedException
+    {
+        final AtPollScheduler systemScheduler = AtPollScheduler.createPollScheduler(at
+                , 10, TimeUnit.MILLISECONDS);
+        try
+        {
+            final CountDownLatch polls = new CountDownLatch(3);
+            final AtPollListener countingListener = new RecordingListener()
+            {
+                @Override
+                public void pollReceived(final AtPollEvent atPollEvent)
+                {
+                    polls.countDown();
+                }
+            };
+            systemScheduler.subscribe("AT+CSQ", 20, TimeUnit.MILLISECONDS, countingListener);
+            assertTrue(polls.await(5, TimeUnit.SECONDS));
+            
+            systemScheduler.unsubscribe("AT+CSQ", countingListener);
+            Thread.sleep(50);
+            final int count = at.getCommandCount();
+            Thread.sleep(100);
+            assertEquals(count, at.getCommandCount());
+        }
+        finally
+        {
+            systemScheduler.close();
+        }
+    }
+    
+    private void pollBatch(final Map<String, List<AtPollListener>> batch)
+    {
+        for(final Map.Entry<String, List<AtPollListener>> entry: batch.entrySet())
+        {
+            scheduler.poll(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    private static long ms(final long millis)
+    {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+    
+    /**
+     * A clock they is moved by the test.
+     */
+    private static class FakeClock implements AtPollScheduler.Clock
+    {
+        private long now;
+
+        @Override
+        public long nanoTime()
+        {
+            return now;
+        }
+    }
+    
+    /**
+     * Records the received events.
+     */
+    private static class RecordingListener implements AtPollListener
+    {
+        private final List<AtPollEvent> received = new ArrayList<AtPollEvent>();
+        private final List<AtPollEvent> failed = new ArrayList<AtPollEvent>();
+
+        @Override
+        public void pollReceived(final AtPollEvent atPollEvent)
+        {
+            received.add(atPollEvent);
+        }
+
+        @Override
+        public void pollFailed(final AtPollEvent atPollEvent)
+        {
+            failed.add(atPollEvent);
+        }
+    }
+    
+    /**
+     * An {@link At} which records the polled commands.
+     */
+    private static class FakeAt implements At
+    {
+        private final List<String> commands = new ArrayList<String>();
+        private volatile AtError error;
+
+        @Override
+        public AtResponse trySend(final String atCommand)
+        {
+            synchronized(commands)
+            {
+                commands.add(atCommand);
+            }
+            
+            return error == null ? new AtResponse(atCommand, "+CSQ: 20,99\r\n\r\nOK"
+                    , null, AtCommandFailedException.ERROR_CODE_MODE_OFF, null)
+                    : new AtResponse(atCommand, "", error, error.getCode(), error.getMessage());
+        }
+        
+        private int getCommandCount()
+        {
+            synchronized(commands)
+            {
+                return commands.size();
+            }
+        }
+
+        @Override
+        public String send(final String atCommand) throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addAtListener(final AtListener atListener)
+        {
+        }
+
+        @Override
+        public void removeAtListener(final AtListener atListener)
+        {
+        }
+
+        @Override
+        public void closeMode()
+        {
+        }
+
+        @Override
+        public void setModeHandler(final ModeHandler modeHandler)
+        {
+        }
+
+        @Override
+        public boolean isProtocol(final InputStream is)
+        {
+            return false;
+        }
+
+        @Override
+        public void parse(final InputStream is)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,721 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import de.sitec_systems.jmoduleconnect.CommHandler;
+import de.sitec_systems.jmoduleconnect.ProtocolParser;
+import de.sitec_systems.jmoduleconnect.at.At;
+import de.sitec_systems.jmoduleconnect.at.AtListener;
+import de.sitec_systems.jmoduleconnect.at.AtResponse;
+import de.sitec_systems.jmoduleconnect.at.ModeHandler;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simulated device with an in-memory flash filesystem for the tests of 
+ * {@link ModuleFileManager}. The device answers the OBEX requests on an own
+ * {@link Thread} after a configurable latency and records the operation codes
+ * of all requests. The {@link At} of the device only switches to the OBEX 
+ * mode.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+/* package */ class FakeObexDevice implements CommHandler
+{
+    /* package */ static final int CONNECT = 0x80;
+    /* package */ static final int DISCONNECT = 0x81;
+    /* package */ static final int PUT = 0x02;
+    /* package */ static final int PUT_FINAL = 0x82;
+    /* package */ static final int GET = 0x03;
+    /* package */ static final int GET_FINAL = 0x83;
+    /* package */ static final int SETPATH = 0x85;
+    /* package */ static final int ABORT = 0xFF;
+    
+    private static final byte SUCCESS = (byte)0xA0;
+    private static final byte CONTINUE = (byte)0x90;
+    private static final byte BAD_REQUEST = (byte)0xC0;
+    private static final byte FORBIDDEN = (byte)0xC3;
+    private static final byte NOT_FOUND = (byte)0xC4;
+    private static final Charset NAME_CHARSET = Charset.forName("UTF-16BE");
+    private static final Charset TEXT_CHARSET = Charset.forName("ISO-8859-1");
+    private static final String TIME_FORMAT = "yyyyMMdd'T'HHmmss";
+    
+    /**
+     * A file or directory on the simulated flash filesystem.
+     */
+    /* package */ static class Node
+    {
+        private final boolean directory;
+        private final Map<String, Node> children 
+                = new TreeMap<String, Node>(String.CASE_INSENSITIVE_ORDER);
+        private final Node parent;
+        private byte[] data = new byte[0];
+        private Date lastModified = new Date();
+        
+        private Node(final boolean directory, final Node parent)
+        {
+            this.directory = directory;
+            this.parent = parent;
+        }
+        
+        /* package */ byte[] getData()
+        {
+            return data;
+        }
+        
+        /* package */ Node getChild(final String name)
+        {
+            synchronized(children)
+            {
+                return children.get(name);
+            }
+        }
+        
+        /* package */ List<String> getChildNames()
+        {
+            synchronized(children)
+            {
+                return new ArrayList<String>(children.keySet());
+            }
+        }
+        
+        /* package */ Node addDirectory(final String name)
+        {
+            final Node node = new Node(true, this);
+            putChild(name, node);
+            
+            return node;
+        }
+        
+        /* package */ Node addFile(final String name, final byte[] data)
+        {
+            final Node node = new Node(false, this);
+            node.data = data;
+            putChild(name, node);
+            
+            return node;
+        }
+        
+        private void putChild(final String name, final Node node)
+        {
+            synchronized(children)
+            {
+                children.put(name, node);
+            }
+        }
+        
+        private void removeChild(final String name)
+        {
+            synchronized(children)
+            {
+                children.remove(name);
+            }
+        }
+    }
+    
+    private final Node root = new Node(true, null);
+    private final ScheduledExecutorService executor;
+    private final List<Integer> requests 
+            = Collections.synchronizedList(new ArrayList<Integer>());
+    private final FakeAt at = new FakeAt();
+    private volatile ProtocolParser protocolParser;
+    private volatile long latency;
+    private volatile int cancelOpCode = -1;
+    private volatile int cancelCount;
+    private volatile FileManager cancelFileManager;
+    private Node currentDirectory = root;
+    private ByteArrayOutputStream putData;
+    private String putName;
+    private Date putTime;
+    private byte[] getData;
+    private int getPosition;
+    
+    /* package */ FakeObexDevice()
+    {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() 
+        {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "FakeObexDevice");
+                thread.setDaemon(true);
+                
+                return thread;
+            }
+        });
+    }
+    
+    /* package */ At getAt()
+    {
+        return at;
+    }
+    
+    /* package */ Node getRoot()
+    {
+        return root;
+    }
+    
+    /**
+     * Sets the time between a request and its response.
+     * @param latency The latency in milliseconds
+     */
+    /* package */ void setLatency(final long latency)
+    {
+        this.latency = latency;
+    }
+    
+    /**
+     * Calls {@link FileManager#cancel()} before the response to a request.
+     * @param fileManager The file manager to cancel
+     * @param opCode The operation code of the request
+     * @param count The number of the request with this operation code 
+     *        beginning with <code>1</code>, counted from the call of this method
+     */
+    /* package */ void cancelAt(final FileManager fileManager, final int opCode
+            , final int count)
+    {
+        cancelFileManager = fileManager;
+        cancelCount = count;
+        cancelOpCode = opCode;
+    }
+    
+    /**
+     * Gets the count of received requests with an operation code.
+     * @param opCode The operation code
+     * @return The count of requests
+     */
+    /* package */ int getRequestCount(final int opCode)
+    {
+        int count = 0;
+        synchronized(requests)
+        {
+            for(final Integer request: requests)
+            {
+                if(request == opCode)
+                {
+                    count++;
+                }
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Gets the count of all received requests.
+     * @return The count of requests
+     */
+    /* package */ int getRequestCount()
+    {
+        return requests.size();
+    }
+    
+    /* package */ void resetRequests()
+    {
+        requests.clear();
+    }
+    
+    /**
+     * Waits until all received requests are answered.
+     * @throws InterruptedException The waiting was interrupted
+     */
+    /* package */ void awaitIdle() throws InterruptedException
+    {
+        final Object marker = new Object();
+        final List<Object> done = Collections.synchronizedList(new ArrayList<Object>());
+        executor.schedule(new Runnable() 
+        {
+            @Override
+            public void run()
+            {
+                done.add(marker);
+            }
+        }, latency, TimeUnit.MILLISECONDS);
+        while(done.isEmpty())
+        {
+            Thread.sleep(5);
+        }
+    }
+
+    @Override
+    public void addProtocolParser(final ProtocolParser protocolParser)
+    {
+        this.protocolParser = protocolParser;
+    }
+
+    @Override
+    public void removeProtocolParser(final ProtocolParser protocolParser)
+    {
+        if(this.protocolParser == protocolParser)
+        {
+            this.protocolParser = null;
+        }
+    }
+
+    @Override
+    public void send(final byte[] data) throws IOException
+    {
+        send(data, 0, data.length);
+    }
+
+    @Override
+    public void send(final byte[] data, final int offset, final int length) 
+            throws IOException
+    {
+        final byte[] frame = Arrays.copyOfRange(data, offset, offset + length);
+        requests.add(frame[0] & 0xFF);
+        executor.schedule(new Runnable() 
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    handle(frame);
+                }
+                catch (final IOException ex)
+                {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }, latency, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+    
+    private void handle(final byte[] frame) throws IOException
+    {
+        final int opCode = frame[0] & 0xFF;
+        if(opCode == cancelOpCode && --cancelCount == 0)
+        {
+            cancelOpCode = -1;
+            cancelFileManager.cancel();
+        }
+        
+        switch(opCode)
+        {
+            case CONNECT:
+                currentDirectory = root;
+                deliver(new byte[]{SUCCESS, 0x00, 0x07, 0x10, 0x00, 0x20, 0x00});
+                break;
+            case DISCONNECT:
+                respond(SUCCESS);
+                break;
+            case ABORT:
+                putData = null;
+                getData = null;
+                respond(SUCCESS);
+                break;
+            case SETPATH:
+                handleSetPath(frame[3], parseHeaders(frame, 5));
+                break;
+            case GET:
+            case GET_FINAL:
+                handleGet(parseHeaders(frame, 3));
+                break;
+            case PUT:
+            case PUT_FINAL:
+                handlePut(opCode == PUT_FINAL, parseHeaders(frame, 3));
+                break;
+            default:
+                respond(BAD_REQUEST);
+        }
+    }
+    
+    private void handleSetPath(final int flags, final Map<Integer, byte[]> headers) 
+            throws IOException
+    {
+        if((flags & 0x01) != 0)
+        {
+            if(currentDirectory.parent != null)
+            {
+                currentDirectory = currentDirectory.parent;
+            }
+            respond(SUCCESS);
+            return;
+        }
+        
+        final String name = getName(headers);
+        if(name == null || name.isEmpty() || name.contains(":"))
+        {
+            currentDirectory = root;
+            respond(SUCCESS);
+            return;
+        }
+        
+        Node node = currentDirectory.getChild(name);
+        if(node == null && (flags & 0x02) == 0)
+        {
+            node = currentDirectory.addDirectory(name);
+        }
+        if(node == null)
+        {
+            respond(NOT_FOUND);
+        }
+        else if(!node.directory)
+        {
+            respond(FORBIDDEN);
+        }
+        else
+        {
+            currentDirectory = node;
+            respond(SUCCESS);
+        }
+    }
+    
+    private void handleGet(final Map<Integer, byte[]> headers) throws IOException
+    {
+        final boolean first = getData == null;
+        if(first)
+        {
+            if(headers.containsKey(0x42))
+            {
+                getData = createListing().getBytes(TEXT_CHARSET);
+            }
+            else
+            {
+                final String name = getName(headers);
+                final Node node = name != null ? currentDirectory.getChild(name) : null;
+                if(node == null || node.directory)
+                {
+                    respond(NOT_FOUND);
+                    return;
+                }
+                getData = node.data;
+            }
+            getPosition = 0;
+        }
+        
+        final int count = Math.min(0x800, getData.length - getPosition);
+        final byte[] body = Arrays.copyOfRange(getData, getPosition, getPosition + count);
+        getPosition += count;
+        final boolean last = getPosition >= getData.length;
+        final List<byte[]> responseHeaders = new ArrayList<byte[]>();
+        if(first)
+        {
+            responseHeaders.add(ByteBuffer.allocate(5).put((byte)0xC3)
+                    .putInt(getData.length).array());
+        }
+        responseHeaders.add(createHeader(last ? 0x49 : 0x48, body));
+        if(last)
+        {
+            getData = null;
+        }
+        respond(last ? SUCCESS : CONTINUE, responseHeaders.toArray(new byte[0][]));
+    }
+    
+    private void handlePut(final boolean last, final Map<Integer, byte[]> headers) 
+            throws IOException
+    {
+        if(headers.containsKey(0x4C))
+        {
+            handleAppParameters(headers.get(0x4C));
+            return;
+        }
+        
+        if(putData == null)
+        {
+            final String name = getName(headers);
+            if(name == null)
+            {
+                respond(BAD_REQUEST);
+                return;
+            }
+            if(last && !headers.containsKey(0x48) && !headers.containsKey(0x49) 
+                    && !headers.containsKey(0xC3))
+            {
+                final Node node = currentDirectory.getChild(name);
+                if(node == null)
+                {
+                    respond(NOT_FOUND);
+                }
+                else if(node.directory && !node.getChildNames().isEmpty())
+                {
+                    respond(FORBIDDEN);
+                }
+                else
+                {
+                    currentDirectory.removeChild(name);
+                    respond(SUCCESS);
+                }
+                return;
+            }
+            putData = new ByteArrayOutputStream();
+            putName = name;
+            putTime = headers.containsKey(0x44) 
+                    ? parseTime(new String(headers.get(0x44), TEXT_CHARSET)) : new Date();
+        }
+        
+        final byte[] body = headers.containsKey(0x48) ? headers.get(0x48) : headers.get(0x49);
+        if(body != null)
+        {
+            putData.write(body);
+        }
+        if(last)
+        {
+            currentDirectory.addFile(putName, putData.toByteArray()).lastModified = putTime;
+            putData = null;
+            respond(SUCCESS);
+        }
+        else
+        {
+            respond(CONTINUE);
+        }
+    }
+    
+    private void handleAppParameters(final byte[] parameters) throws IOException
+    {
+        if(parameters[0] == 0x32)
+        {
+            final long space = 1 << 24;
+            respond(SUCCESS, createHeader(0x4C, new byte[]{0x32, 4
+                    , (byte)(space >> 24), (byte)(space >> 16), (byte)(space >> 8)
+                    , (byte)space}));
+        }
+        else
+        {
+            respond(BAD_REQUEST);
+        }
+    }
+    
+    private String createListing()
+    {
+        final SimpleDateFormat format = new SimpleDateFormat(TIME_FORMAT);
+        final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\"?>"
+                + "<folder-listing version=\"1.0\">");
+        for(final String name: currentDirectory.getChildNames())
+        {
+            final Node node = currentDirectory.getChild(name);
+            if(node.directory)
+            {
+                sb.append("<folder name=\"").append(name);
+            }
+            else
+            {
+                sb.append("<file name=\"").append(name);
+                sb.append("\" size=\"").append(node.data.length);
+            }
+            sb.append("\" modified=\"").append(format.format(node.lastModified));
+            sb.append("\"/>");
+        }
+        sb.append("</folder-listing>");
+        
+        return sb.toString();
+    }
+    
+    private static Date parseTime(final String time)
+    {
+        try
+        {
+            return new SimpleDateFormat(TIME_FORMAT).parse(time.replace("Z", ""));
+        }
+        catch (final ParseException ex)
+        {
+            return new Date();
+        }
+    }
+    
+    private static String getName(final Map<Integer, byte[]> headers)
+    {
+        final byte[] name = headers.get(0x01);
+        if(name == null)
+        {
+            return null;
+        }
+        
+        final String result = new String(name, NAME_CHARSET);
+        final int end = result.indexOf('\0');
+        
+        return end >= 0 ? result.substring(0, end) : result;
+    }
+    
+    private static Map<Integer, byte[]> parseHeaders(final byte[] frame, final int offset)
+    {
+        final Map<Integer, byte[]> headers = new HashMap<Integer, byte[]>();
+        int position = offset;
+        while(position < frame.length)
+        {
+            final int code = frame[position] & 0xFF;
+            final int length;
+            switch(code & 0xC0)
+            {
+                case 0x80:
+                    length = 2;
+                    headers.put(code, new byte[]{frame[position + 1]});
+                    break;
+                case 0xC0:
+                    length = 5;
+                    headers.put(code, Arrays.copyOfRange(frame, position + 1, position + 5));
+                    break;
+                default:
+                    length = ((frame[position + 1] & 0xFF) << 8) | (frame[position + 2] & 0xFF);
+                    headers.put(code, Arrays.copyOfRange(frame, position + 3, position + length));
+            }
+            position += length;
+        }
+        
+        return headers;
+    }
+    
+    private static byte[] createHeader(final int code, final byte[] data)
+    {
+        return ByteBuffer.allocate(3 + data.length).put((byte)code)
+                .putShort((short)(3 + data.length)).put(data).array();
+    }
+    
+    private void respond(final byte code, final byte[]... headers) throws IOException
+    {
+        int length = 3;
+        for(final byte[] header: headers)
+        {
+            length += header.length;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(code).putShort((short)length);
+        for(final byte[] header: headers)
+        {
+            buffer.put(header);
+        }
+        deliver(buffer.array());
+    }
+    
+    private void deliver(final byte[] frame) throws IOException
+    {
+        final ProtocolParser parser = protocolParser;
+        if(parser != null)
+        {
+            parser.parse(new ByteArrayInputStream(frame));
+        }
+    }
+    
+    /**
+     * An {@link At} they only switches the device to the OBEX mode.
+     */
+    private class FakeAt implements At
+    {
+        private volatile ModeHandler modeHandler;
+        private volatile boolean atMode = true;
+        
+        @Override
+        public void addAtListener(final AtListener atListener)
+        {
+        }
+
+        @Override
+        public void closeMode()
+        {
+            atMode = true;
+        }
+
+        @Override
+        public void removeAtListener(final AtListener atListener)
+        {
+        }
+
+        @Override
+        public void setModeHandler(final ModeHandler modeHandler)
+        {
+            this.modeHandler = modeHandler;
+        }
+
+        @Override
+        public String send(final String atCommand) throws IOException
+        {
+            final ModeHandler handler = atMode ? null : modeHandler;
+            if(handler != null)
+            {
+                handler.releaseMode();
+            }
+            try
+            {
+                if(!atMode)
+                {
+                    throw new IOException("The device is not in AT mode");
+                }
+                if(atCommand.contains("SQWE=3"))
+                {
+                    atMode = false;
+                }
+                
+                return "OK";
+            }
+            finally
+            {
+                if(handler != null)
+                {
+                    handler.resumeMode();
+                }
+            }
+        }
+
+        @Override
+        public AtResponse trySend(final String atCommand)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isProtocol(final InputStream is)
+        {
+            return false;
+        }
+
+        @Override
+        public void parse(final InputStream is)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.TreeSet;
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link FileMetaCache}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class FileMetaCacheTest extends TestCase
+{
+    private static final FileMeta ROOT = FileMeta.ROOT_DIRECTORY;
+    
+    private FileMetaCache cache;
+
+    @Override
+    protected void setUp()
+    {
+        cache = new FileMetaCache();
+    }
+    
+    public void testFindWithoutCase()
+    {
+        final FileMeta file = file(ROOT, "Data.TXT", 10);
+        cache.put(ROOT, listing(file));
+        
+        assertTrue(cache.contains(ROOT));
+        assertSame(file, cache.find(ROOT, "data.txt"));
+        assertSame(file, cache.find(new FileMeta("A:", null, true), "DATA.txt"));
+        assertNull(cache.find(ROOT, "other.txt"));
+    }
+    
+    public void testNotCachedDirectory()
+    {
+        final FileMeta directory = new FileMeta("dir", ROOT, true);
+        assertFalse(cache.contains(directory));
+        assertNull(cache.get(directory));
+        assertNull(cache.find(directory, "a"));
+        
+        cache.add(directory, file(directory, "a", 1));
+        assertFalse(cache.contains(directory));
+    }
+    
+    public void testAddAndRemove()
+    {
+        cache.put(ROOT, listing());
+        cache.add(ROOT, file(ROOT, "a", 1));
+        assertEquals(1, cache.get(ROOT).size());
+        
+        cache.remove(ROOT, "A");
+        assertNull(cache.find(ROOT, "a"));
+        assertTrue(cache.get(ROOT).isEmpty());
+    }
+    
+    public void testRemoveDirectoryInvalidatesSubDirectories()
+    {
+        final FileMeta directory = new FileMeta("dir", ROOT, true);
+        final FileMeta subDirectory = new FileMeta("sub", directory, true);
+        cache.put(ROOT, listing(directory));
+        cache.put(directory, listing(subDirectory));
+        cache.put(subDirectory, listing());
+        
+        cache.remove(ROOT, "DIR");
+        assertTrue(cache.contains(ROOT));
+        assertFalse(cache.contains(directory));
+        assertFalse(cache.contains(subDirectory));
+    }
+    
+    /**
+     * A directory with the same beginning of the name is not a sub directory.
+     */
+    public void testInvalidateKeepsSiblings()
+    {
+        final FileMeta directory = new FileMeta("a", ROOT, true);
+        final FileMeta sibling = new FileMeta("ab", ROOT, true);
+        cache.put(ROOT, listing());
+        cache.put(directory, listing());
+        cache.put(sibling, listing());
+        
+        cache.invalidate(directory);
+        assertFalse(cache.contains(directory));
+        assertTrue(cache.contains(sibling));
+        assertTrue(cache.contains(ROOT));
+        
+        cache.invalidate(ROOT);
+        assertFalse(cache.contains(ROOT));
+        assertFalse(cache.contains(sibling));
+    }
+    
+    public void testClear()
+    {
+        cache.put(ROOT, listing());
+        cache.clear();
+        assertFalse(cache.contains(ROOT));
+    }
+    
+    public void testListingIsUnmodifiable()
+    {
+        cache.put(ROOT, listing());
+        try
+        {
+            cache.get(ROOT).add(file(ROOT, "a", 1));
+            fail("The listing is modifiable");
+        }
+        catch(final UnsupportedOperationException ex)
+        {
+            // expected
+        }
+    }
+    
+    private static FileMeta file(final FileMeta directory, final String name
+            , final int size)
+    {
+        return new FileMeta(name, directory, false, new Date(0), size);
+    }
+    
+    private static Set<FileMeta> listing(final FileMeta... files)
+    {
+        final Set<FileMeta> listing = new TreeSet<FileMeta>();
+        for(final FileMeta file: files)
+        {
+            listing.add(file);
+        }
+        
+        return listing;
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.util.Date;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Tests the invalidation rules of the {@link FlashCache}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class FlashCacheTest extends TestCase
+{
+    private static final FileMeta ROOT = FileMeta.ROOT_DIRECTORY;
+    private static final int ALLOWANCE = 1000;
+    
+    private FlashCache cache;
+    private FileMeta directory;
+
+    @Override
+    protected void setUp()
+    {
+        cache = new FlashCache(1, TimeUnit.HOURS, ALLOWANCE);
+        directory = new FileMeta("dir", ROOT, true);
+        cache.putListing(ROOT, new TreeSet<FileMeta>());
+        cache.putListing(directory, new TreeSet<FileMeta>());
+        cache.updateFreeSpace(100000);
+    }
+    
+    public void testFileCreated()
+    {
+        cache.fileCreated(directory, "a.txt", new Date(1500), 5000);
+        
+        final FileMeta file = cache.find(directory, "A.TXT");
+        assertEquals(5000, file.getSize());
+        assertEquals(1000, file.getLastModified().getTime());
+        assertSame(directory, file.getParentDirectory());
+        assertEquals(95000, cache.getFreeSpace());
+        assertTrue(cache.isSufficient(95000 - 2 * ALLOWANCE));
+        assertFalse(cache.isSufficient(95000 - 2 * ALLOWANCE + 1));
+    }
+    
+    public void testDirectoryCreated()
+    {
+        final FileMeta subDirectory = new FileMeta("sub", directory, true);
+        cache.directoryCreated(subDirectory);
+        
+        assertTrue(cache.find(directory, "SUB").isDirectory());
+        assertTrue(cache.containsListing(subDirectory));
+        assertTrue(cache.getListing(subDirectory).isEmpty());
+        assertEquals(100000, cache.getFreeSpace());
+    }
+    
+    public void testKnownEntryDeleted()
+    {
+        cache.fileCreated(directory, "a.txt", new Date(0), 5000);
+        cache.entryDeleted(directory, "A.txt");
+        
+        assertNull(cache.find(directory, "a.txt"));
+        assertTrue(cache.containsListing(directory));
+        assertEquals(100000, cache.getFreeSpace());
+    }
+    
+    /**
+     * The size of a not cached file is unknown, so the free space must be 
+     * read again.
+     */
+    public void testUnknownEntryDeleted()
+    {
+        cache.entryDeleted(directory, "unknown.txt");
+        
+        assertEquals(-1, cache.getFreeSpace());
+        assertFalse(cache.isSufficient(0));
+        assertTrue(cache.containsListing(directory));
+    }
+    
+    public void testDirectoryDeleted()
+    {
+        final FileMeta subDirectory = new FileMeta("sub", directory, true);
+        cache.directoryCreated(subDirectory);
+        cache.entryDeleted(directory, "sub");
+        
+        assertNull(cache.find(directory, "sub"));
+        assertFalse(cache.containsListing(subDirectory));
+    }
+    
+    public void testLocalMove()
+    {
+        cache.fileCreated(directory, "a.txt", new Date(0), 5000);
+        cache.entryMoved(directory, "a.txt", "b.txt");
+        
+        assertNull(cache.find(directory, "a.txt"));
+        assertEquals(5000, cache.find(directory, "b.txt").getSize());
+        assertTrue(cache.containsListing(ROOT));
+    }
+    
+    public void testMoveOverDirectoriesClears()
+    {
+        cache.fileCreated(directory, "a.txt", new Date(0), 5000);
+        cache.entryMoved(directory, "a.txt", "../b.txt");
+        
+        assertFalse(cache.containsListing(directory));
+        assertFalse(cache.containsListing(ROOT));
+    }
+    
+    public void testMoveOfDirectoryClears()
+    {
+        cache.directoryCreated(new FileMeta("sub", directory, true));
+        cache.entryMoved(directory, "sub", "other");
+        
+        assertFalse(cache.containsListing(directory));
+    }
+    
+    /**
+     * An aborted put or a refresh drops the listing of the directory and the
+     * free space, the other directories stay cached.
+     */
+    public void testInvalidate()
+    {
+        cache.invalidate(directory);
+        
+        assertFalse(cache.containsListing(directory));
+        assertTrue(cache.containsListing(ROOT));
+        assertEquals(-1, cache.getFreeSpace());
+    }
+    
+    /**
+     * A reopened OBEX mode clears the whole cache.
+     */
+    public void testClear()
+    {
+        cache.clear();
+        
+        assertFalse(cache.containsListing(directory));
+        assertFalse(cache.containsListing(ROOT));
+        assertEquals(-1, cache.getFreeSpace());
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.stream.XMLStreamException;
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link FolderListingParser} with folder listings like they was
+ * received from the modules.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class FolderListingParserTest extends TestCase
+{
+    private static final String DECLARATION = "<?xml version=\"1.0\"?>\r\n";
+    private static final String DOCTYPE = "<!DOCTYPE folder-listing SYSTEM " 
+            + "\"obex-folder-listing.dtd\">\r\n";
+    private static final String LISTING = "<folder-listing version=\"1.0\">\r\n"
+            + "<parent-folder/>\r\n"
+            + "<folder name=\"telecom\" modified=\"20150101T000000\"/>\r\n"
+            + "<folder name=\"data\" modified=\"20150601T101500\"/>\r\n"
+            + "<file name=\"app.jar\" size=\"123456\" modified=\"20150602T111213\"/>\r\n"
+            + "<file modified=\"20150603T000001Z\" size=\" 17 \" name=\"app.jad\"/>\r\n"
+            + "</folder-listing>\r\n";
+    
+    private final FileMeta directory = new FileMeta("java", FileMeta.ROOT_DIRECTORY, true);
+    
+    /**
+     * A listing with XML declaration and DOCTYPE is parsed and the 
+     * <code>telecom</code> folder is skipped.
+     * @throws Exception If the parsing fails
+     */
+    public void testWithDoctype() throws Exception
+    {
+        assertListing(parse(DECLARATION + DOCTYPE + LISTING));
+    }
+    
+    /**
+     * A listing without DOCTYPE and XML declaration is parsed the same way.
+     * @throws Exception If the parsing fails
+     */
+    public void testWithoutDoctype() throws Exception
+    {
+        assertListing(parse(DECLARATION + LISTING));
+        assertListing(parse(LISTING));
+    }
+    
+    /**
+     * The predefined entities, character references and 
+     * <code>ISO-8859-1</code> characters are decoded in the names.
+     * @throws Exception If the parsing fails
+     */
+    public void testEntitiesAndEscapes() throws Exception
+    {
+        final Map<String, FileMeta> files = parse(DECLARATION + DOCTYPE 
+                + "<folder-listing version=\"1.0\">"
+                + "<file name=\"a&amp;b&lt;c&gt;.txt\" size=\"1\"/>"
+                + "<file name=\"&quot;q&apos;.txt\" size=\"2\"/>"
+                + "<file name=\"m&#228;rz&#x20;1.txt\" size=\"3\"/>"
+                + "<file name=\"\u00f6l.txt\" size=\"4\"/>"
+                + "<folder name=\"x&amp;y\"/>"
+                + "</folder-listing>");
+        
+        assertEquals(5, files.size());
+        assertEquals(1, files.get("a&b<c>.txt").getSize());
+        assertEquals(2, files.get("\"q'.txt").getSize());
+        assertEquals(3, files.get("m\u00e4rz 1.txt").getSize());
+        assertEquals(4, files.get("\u00f6l.txt").getSize());
+        assertTrue(files.get("x&y").isDirectory());
+        assertEquals("a:/java/x&y", files.get("x&y").getPath());
+    }
+    
+    /**
+     * The missing attributes <code>size</code> and <code>modified</code> 
+     * are replaced by <code>0</code> and the begin of the epoch. Elements 
+     * without name are skipped.
+     * @throws Exception If the parsing fails
+     */
+    public void testMissingAttributes() throws Exception
+    {
+        final Map<String, FileMeta> files = parse("<folder-listing version=\"1.0\">"
+                + "<file name=\"nosize.txt\" modified=\"20150602T111213\"/>"
+                + "<file name=\"nodate.txt\" size=\"5\"/>"
+                + "<file name=\"nothing.txt\"/>"
+                + "<folder name=\"nodate\"/>"
+                + "<file size=\"6\"/>"
+                + "</folder-listing>");
+        
+        assertEquals(4, files.size());
+        assertEquals(0, files.get("nosize.txt").getSize());
+        assertEquals(ObexTimeCodec.parse("20150602T111213")
+                , files.get("nosize.txt").getLastModified());
+        assertEquals(5, files.get("nodate.txt").getSize());
+        assertEquals(0L, files.get("nodate.txt").getLastModified().getTime());
+        assertEquals(0, files.get("nothing.txt").getSize());
+        assertEquals(0L, files.get("nothing.txt").getLastModified().getTime());
+        assertEquals(0L, files.get("nodate").getLastModified().getTime());
+    }
+    
+    /**
+     * An empty listing contains no files.
+     * @throws Exception If the parsing fails
+     */
+    public void testEmptyListing() throws Exception
+    {
+        assertTrue(parse(DECLARATION + DOCTYPE 
+                + "<folder-listing version=\"1.0\"><parent-folder/></folder-listing>")
+                .isEmpty());
+    }
+    
+    /**
+     * Invalid sizes and dates are reported as {@link ParseException}.
+     * @throws Exception If the parsing fails
+     */
+    public void testInvalidValues() throws Exception
+    {
+        final String[] invalidListings = {"<folder-listing><file name=\"a\" size=\"1x\"/></folder-listing>"
+                , "<folder-listing><file name=\"a\" modified=\"2015\"/></folder-listing>"
+                , "<folder-listing><file name=\"a\" modified=\"20151301T000000\"/></folder-listing>"};
+        for(final String listing: invalidListings)
+        {
+            try
+            {
+                parse(listing);
+                fail("Accepted: " + listing);
+            }
+            catch (final ParseException ex)
+            {
+                // Expected
+            }
+        }
+    }
+    
+    /**
+     * Malformed XML and external entities are reported as 
+     * {@link XMLStreamException}.
+     * @throws Exception If the parsing fails
+     */
+    public void testMalformedXml() throws Exception
+    {
+        final String[] invalidListings = {"<folder-listing><file name=\"a\"></folder-listing>"
+                , "<folder-listing><file name=\"a&b\"/></folder-listing>"
+                , "<!DOCTYPE folder-listing [<!ENTITY x SYSTEM \"file:///etc/passwd\">]>"
+                        + "<folder-listing><file name=\"&x;\"/></folder-listing>"};
+        for(final String listing: invalidListings)
+        {
+            try
+            {
+                parse(listing);
+                fail("Accepted: " + listing);
+            }
+            catch (final XMLStreamException ex)
+            {
+                // Expected
+            }
+        }
+    }
+    
+    private void assertListing(final Map<String, FileMeta> files) throws ParseException
+    {
+        assertEquals(3, files.size());
+        assertFalse(files.containsKey("telecom"));
+        
+        final FileMeta data = files.get("data");
+        assertTrue(data.isDirectory());
+        assertEquals(0, data.getSize());
+        assertEquals(ObexTimeCodec.parse("20150601T101500"), data.getLastModified());
+        assertSame(directory, data.getParentDirectory());
+        
+        final FileMeta jar = files.get("app.jar");
+        assertFalse(jar.isDirectory());
+        assertEquals(123456, jar.getSize());
+        assertEquals(ObexTimeCodec.parse("20150602T111213"), jar.getLastModified());
+        assertEquals("a:/java/app.jar", jar.getPath());
+        
+        final FileMeta jad = files.get("app.jad");
+        assertEquals(17, jad.getSize());
+        assertEquals(ObexTimeCodec.parse("20150603T000001Z"), jad.getLastModified());
+    }
+    
+    private Map<String, FileMeta> parse(final String listing) 
+            throws XMLStreamException, ParseException, UnsupportedEncodingException
+    {
+        final Set<FileMeta> files = FolderListingParser.parse(
+                new ByteArrayInputStream(listing.getBytes("ISO-8859-1")), directory);
+        final Map<String, FileMeta> result = new HashMap<String, FileMeta>();
+        for(final FileMeta file: files)
+        {
+            assertNull(file.getName(), result.put(file.getName(), file));
+        }
+        
+        return result;
+    }
+}
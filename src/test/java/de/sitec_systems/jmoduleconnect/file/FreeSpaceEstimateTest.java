@@ -0,0 +1,110 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link FreeSpaceEstimate}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class FreeSpaceEstimateTest extends TestCase
+{
+    private FreeSpaceEstimate estimate;
+
+    @Override
+    protected void setUp()
+    {
+        estimate = new FreeSpaceEstimate(1, TimeUnit.HOURS, 1000);
+    }
+    
+    public void testInitiallyInvalid()
+    {
+        assertFalse(estimate.isValid());
+        assertFalse(estimate.isSufficient(0));
+    }
+    
+    public void testUpdate()
+    {
+        estimate.update(10000);
+        assertTrue(estimate.isValid());
+        assertEquals(10000, estimate.get());
+        assertTrue(estimate.isSufficient(9000));
+        assertFalse(estimate.isSufficient(9001));
+    }
+    
+    /**
+     * Every operation increases the uncertainty by the allowance.
+     */
+    public void testAllocateAndRelease()
+    {
+        estimate.update(10000);
+        estimate.allocate(2000);
+        assertEquals(8000, estimate.get());
+        assertTrue(estimate.isSufficient(6000));
+        assertFalse(estimate.isSufficient(6001));
+        
+        estimate.release(2000);
+        assertEquals(10000, estimate.get());
+        assertTrue(estimate.isSufficient(7000));
+        assertFalse(estimate.isSufficient(7001));
+    }
+    
+    public void testUpdateResetsUncertainty()
+    {
+        estimate.update(10000);
+        estimate.allocate(0);
+        estimate.allocate(0);
+        assertFalse(estimate.isSufficient(8000));
+        
+        estimate.update(10000);
+        assertTrue(estimate.isSufficient(9000));
+    }
+    
+    public void testInvalidate()
+    {
+        estimate.update(10000);
+        estimate.invalidate();
+        assertFalse(estimate.isValid());
+        assertFalse(estimate.isSufficient(0));
+        
+        estimate.update(5000);
+        assertTrue(estimate.isValid());
+    }
+    
+    public void testMaxAge()
+    {
+        final FreeSpaceEstimate expired = new FreeSpaceEstimate(0, TimeUnit.SECONDS, 0);
+        expired.update(10000);
+        assertFalse(expired.isValid());
+        assertFalse(expired.isSufficient(0));
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ * Tests the use of the cached file listings and free space by 
+ * {@link ModuleFileManager} with a {@link FakeObexDevice}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class ModuleFileManagerCacheTest extends TestCase
+{
+    private static final long DISK_SIZE = 1 << 24;
+    
+    private FakeObexDevice device;
+    private FileManager fileManager;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        device = new FakeObexDevice();
+        device.getRoot().addFile("old.txt", new byte[3000]);
+        device.getRoot().addDirectory("dir");
+        fileManager = ModuleFileManager.createFileManager(device, device.getAt());
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        fileManager.close();
+        device.close();
+    }
+    
+    public void testListingIsCached() throws Exception
+    {
+        assertEquals(2, fileManager.getFileListing().size());
+        assertIdle();
+        
+        assertEquals(2, fileManager.getFileListing().size());
+        assertNotNull(fileManager.getFileMeta("OLD.TXT"));
+        assertEquals(0, device.getRequestCount());
+    }
+    
+    public void testPutUpdatesCache() throws Exception
+    {
+        fileManager.getFileListing();
+        assertEquals(DISK_SIZE, fileManager.getFreeSpace());
+        assertIdle();
+        
+        putFile("new.txt", 2000);
+        assertEquals(1, device.getRequestCount(FakeObexDevice.PUT_FINAL));
+        assertEquals(0, device.getRequestCount(FakeObexDevice.GET_FINAL));
+        assertIdle();
+        
+        final Set<FileMeta> listing = fileManager.getFileListing();
+        assertEquals(3, listing.size());
+        assertEquals(2000, fileManager.getFileMeta("new.txt").getSize());
+        assertEquals(DISK_SIZE - 2000, fileManager.getFreeSpace());
+        assertEquals(0, device.getRequestCount());
+    }
+    
+    public void testDeleteUpdatesCache() throws Exception
+    {
+        fileManager.getFileListing();
+        fileManager.getFreeSpace();
+        assertIdle();
+        
+        fileManager.deleteFile("old.txt", false);
+        assertEquals(1, device.getRequestCount(FakeObexDevice.PUT_FINAL));
+        assertEquals(0, device.getRequestCount(FakeObexDevice.GET_FINAL));
+        assertIdle();
+        
+        assertEquals(1, fileManager.getFileListing().size());
+        assertNull(fileManager.getFileMeta("old.txt"));
+        assertEquals(DISK_SIZE + 3000, fileManager.getFreeSpace());
+        assertEquals(0, device.getRequestCount());
+    }
+    
+    public void testMakeDirectoryUpdatesCache() throws Exception
+    {
+        fileManager.getFileListing();
+        assertIdle();
+        
+        fileManager.makeDirectory("new");
+        assertIdle();
+        
+        assertTrue(fileManager.getFileMeta("new").isDirectory());
+        assertTrue(fileManager.getFileListing("new").isEmpty());
+        assertEquals(0, device.getRequestCount(FakeObexDevice.GET_FINAL));
+    }
+    
+    /**
+     * The device can be changed by AT commands while the OBEX mode is closed,
+     * so the listings and the free space are read again after the reopen.
+     */
+    public void testModeReopenClearsCache() throws Exception
+    {
+        fileManager.getFileListing();
+        fileManager.getFreeSpace();
+        device.getAt().send("AT");
+        device.getRoot().addFile("other.txt", new byte[10]);
+        assertIdle();
+        
+        assertEquals(3, fileManager.getFileListing().size());
+        assertEquals(1, device.getRequestCount(FakeObexDevice.CONNECT));
+        assertEquals(1, device.getRequestCount(FakeObexDevice.GET_FINAL));
+        
+        fileManager.getFreeSpace();
+        assertEquals(1, device.getRequestCount(FakeObexDevice.PUT_FINAL));
+    }
+    
+    public void testRefreshReadsListing() throws Exception
+    {
+        fileManager.getFileListing();
+        device.getRoot().addFile("other.txt", new byte[10]);
+        assertIdle();
+        
+        assertEquals(2, fileManager.getFileListing().size());
+        assertEquals(3, fileManager.refreshFileListing().size());
+        assertEquals(1, device.getRequestCount(FakeObexDevice.GET_FINAL));
+    }
+    
+    private void putFile(final String filename, final int size) throws Exception
+    {
+        fileManager.putFile(filename, new Date(), size
+                , new ByteArrayInputStream(new byte[size]), false);
+    }
+    
+    /**
+     * Waits for the answers of the device and resets the recorded requests.
+     */
+    private void assertIdle() throws Exception
+    {
+        device.awaitIdle();
+        device.resetRequests();
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import junit.framework.TestCase;
+
+/**
+ * Tests the cancel of running operations by {@link ModuleFileManager#cancel()}
+ * with a {@link FakeObexDevice}. After every cancel only one ABORT may be 
+ * sent and the next operation must work like before.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class ModuleFileManagerCancelTest extends TestCase
+{
+    private static final int FILE_SIZE = 20000;
+    
+    private FakeObexDevice device;
+    private FileManager fileManager;
+    private Path localDirectory;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        device = new FakeObexDevice();
+        device.setLatency(2);
+        final FileManagerProfile profile = new FileManagerProfile();
+        profile.setMaxPacketLength(512);
+        profile.setPutWindow(4);
+        fileManager = ModuleFileManager.createFileManager(device, device.getAt()
+                , profile);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        fileManager.close();
+        device.close();
+        if(localDirectory != null)
+        {
+            deleteLocal(localDirectory);
+        }
+    }
+    
+    public void testCancelMultiFrameGet() throws Exception
+    {
+        final byte[] data = createData(FILE_SIZE);
+        device.getRoot().addFile("big.bin", data);
+        fileManager.getFileListing();
+        assertIdle();
+        
+        device.cancelAt(fileManager, FakeObexDevice.GET, 2);
+        try
+        {
+            fileManager.getFile("big.bin");
+            fail("The download was not canceled");
+        }
+        catch(final InterruptedIOException ex)
+        {
+            // expected
+        }
+        device.awaitIdle();
+        assertEquals(1, device.getRequestCount(FakeObexDevice.ABORT));
+        
+        assertTrue(Arrays.equals(data, fileManager.getFile("big.bin").getData()));
+        device.awaitIdle();
+        assertEquals(1, device.getRequestCount(FakeObexDevice.ABORT));
+    }
+    
+    public void testCancelWindowedPut() throws Exception
+    {
+        fileManager.getFileListing();
+        assertIdle();
+        
+        final byte[] data = createData(FILE_SIZE);
+        device.cancelAt(fileManager, FakeObexDevice.PUT, 3);
+        try
+        {
+            putFile("big.bin", data);
+            fail("The upload was not canceled");
+        }
+        catch(final InterruptedIOException ex)
+        {
+            // expected
+        }
+        device.awaitIdle();
+        assertEquals(1, device.getRequestCount(FakeObexDevice.ABORT));
+        assertNull(device.getRoot().getChild("big.bin"));
+        assertNull(fileManager.getFileMeta("big.bin"));
+        
+        putFile("big.bin", data);
+        device.awaitIdle();
+        assertEquals(1, device.getRequestCount(FakeObexDevice.ABORT));
+        assertTrue(Arrays.equals(data, device.getRoot().getChild("big.bin").getData()));
+        assertEquals(FILE_SIZE, fileManager.getFileMeta("big.bin").getSize());
+        assertEquals(1, fileManager.refreshFileListing().size());
+    }
+    
+    /**
+     * A cancel while a not interruptable request like SETPATH is running 
+     * sends no ABORT and stops the operation before the next step.
+     */
+    public void testCancelBetweenSteps() throws Exception
+    {
+        localDirectory = Files.createTempDirectory("cancel");
+        final Path first = Files.createDirectory(localDirectory.resolve("a"));
+        final Path second = Files.createDirectory(localDirectory.resolve("b"));
+        Files.write(first.resolve("f1.txt"), createData(1000));
+        Files.write(first.resolve("f2.txt"), createData(2000));
+        Files.write(second.resolve("f3.txt"), createData(3000));
+        
+        device.cancelAt(fileManager, FakeObexDevice.SETPATH, 2);
+        try
+        {
+            fileManager.synchronize(localDirectory, "sync", false, false);
+            fail("The synchronisation was not canceled");
+        }
+        catch(final InterruptedIOException ex)
+        {
+            // expected
+        }
+        device.awaitIdle();
+        assertEquals(0, device.getRequestCount(FakeObexDevice.ABORT));
+        assertTrue(device.getRoot().getChild("sync").getChild("a").getChildNames().isEmpty());
+        assertNull(device.getRoot().getChild("sync").getChild("b"));
+        
+        final SyncResult result = fileManager.synchronize(localDirectory, "sync"
+                , false, false);
+        device.awaitIdle();
+        assertEquals(3, result.getUploadedFiles());
+        assertEquals(0, device.getRequestCount(FakeObexDevice.ABORT));
+        assertEquals(3000, device.getRoot().getChild("sync").getChild("b")
+                .getChild("f3.txt").getData().length);
+    }
+    
+    /**
+     * A cancel without a running operation dont affect the next operation.
+     */
+    public void testCancelWhileIdle() throws Exception
+    {
+        fileManager.getFileListing();
+        assertIdle();
+        
+        fileManager.cancel();
+        final byte[] data = createData(FILE_SIZE);
+        putFile("big.bin", data);
+        device.awaitIdle();
+        assertEquals(0, device.getRequestCount(FakeObexDevice.ABORT));
+        assertTrue(Arrays.equals(data, device.getRoot().getChild("big.bin").getData()));
+    }
+    
+    private void putFile(final String filename, final byte[] data) 
+            throws Exception
+    {
+        fileManager.putFile(filename, new Date(), data.length
+                , new ByteArrayInputStream(data), false);
+    }
+    
+    private static byte[] createData(final int size)
+    {
+        final byte[] data = new byte[size];
+        for(int i = 0; i < size; i++)
+        {
+            data[i] = (byte)i;
+        }
+        return data;
+    }
+    
+    private static void deleteLocal(final Path path) throws Exception
+    {
+        if(Files.isDirectory(path))
+        {
+            try(final DirectoryStream<Path> children = Files.newDirectoryStream(path))
+            {
+                for(final Path child: children)
+                {
+                    deleteLocal(child);
+                }
+            }
+        }
+        Files.delete(path);
+    }
+    
+    /**
+     * Waits for the answers of the device and resets the recorded requests.
+     */
+    private void assertIdle() throws Exception
+    {
+        device.awaitIdle();
+        device.resetRequests();
+    }
+}
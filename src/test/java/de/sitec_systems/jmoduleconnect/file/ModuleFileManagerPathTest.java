@@ -0,0 +1,225 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests the path resolution and the <code>SETPATH</code> route of 
+ * {@link ModuleFileManager}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class ModuleFileManagerPathTest extends TestCase
+{
+    private static final FileMeta ROOT = FileMeta.ROOT_DIRECTORY;
+    
+    public void testResolveRoot()
+    {
+        final FileMeta dir = directory("a:/x/y");
+        assertSame(ROOT, ModuleFileManager.resolveDirectory(dir, "/"));
+        assertSame(ROOT, ModuleFileManager.resolveDirectory(dir, "a:"));
+        assertSame(ROOT, ModuleFileManager.resolveDirectory(dir, "A:/"));
+        assertEquals("a:/z", ModuleFileManager.resolveDirectory(dir, "/z").getPath());
+        assertEquals("a:/z", ModuleFileManager.resolveDirectory(dir, "A:\\z").getPath());
+    }
+    
+    public void testResolveOtherDrive()
+    {
+        final FileMeta result = ModuleFileManager.resolveDirectory(ROOT, "B:/data");
+        assertEquals("b:/data", result.getPath());
+        assertNull(result.getParentDirectory().getParentDirectory());
+    }
+    
+    public void testResolveRelative()
+    {
+        final FileMeta dir = directory("a:/x");
+        assertEquals("a:/x/y", ModuleFileManager.resolveDirectory(dir, "y").getPath());
+        assertEquals("a:/x/y/z", ModuleFileManager.resolveDirectory(dir, "y/z").getPath());
+        assertEquals("a:/x/y", ModuleFileManager.resolveDirectory(dir, "./y").getPath());
+        assertEquals("a:/x/y/z", ModuleFileManager.resolveDirectory(dir, "y\\z").getPath());
+    }
+    
+    public void testResolveTrailingSlashes()
+    {
+        final FileMeta dir = directory("a:/x");
+        assertEquals("a:/x/y", ModuleFileManager.resolveDirectory(dir, "y/").getPath());
+        assertEquals("a:/x/y/z", ModuleFileManager.resolveDirectory(dir, "y//z//").getPath());
+        assertEquals("a:/y", ModuleFileManager.resolveDirectory(dir, "../y/").getPath());
+    }
+    
+    public void testResolveParent()
+    {
+        final FileMeta dir = directory("a:/x/y");
+        assertEquals("a:/x", ModuleFileManager.resolveDirectory(dir, "..").getPath());
+        assertEquals("a:/x/z", ModuleFileManager.resolveDirectory(dir, "../z").getPath());
+        assertSame(ROOT, ModuleFileManager.resolveDirectory(dir, "../.."));
+    }
+    
+    /**
+     * The parent of the root is the root, so <code>..</code> above the root
+     * stays at the root.
+     */
+    public void testResolveParentAboveRoot()
+    {
+        assertSame(ROOT, ModuleFileManager.resolveDirectory(ROOT, ".."));
+        assertSame(ROOT, ModuleFileManager.resolveDirectory(directory("a:/x"), "../../.."));
+        assertEquals("a:/y", ModuleFileManager.resolveDirectory(ROOT, "../../y").getPath());
+    }
+    
+    /**
+     * An empty path changes to the parent directory like the legacy 
+     * behaviour of the directory change.
+     */
+    public void testResolveEmpty()
+    {
+        assertEquals("a:/x", ModuleFileManager.resolveDirectory(directory("a:/x/y"), "").getPath());
+        assertSame(ROOT, ModuleFileManager.resolveDirectory(ROOT, ""));
+    }
+    
+    public void testResolvePath() throws IOException
+    {
+        final FileMeta dir = directory("a:/x");
+        
+        FileMeta result = ModuleFileManager.resolvePath(dir, "file.txt");
+        assertEquals("file.txt", result.getName());
+        assertEquals("a:/x", result.getParentDirectory().getPath());
+        
+        result = ModuleFileManager.resolvePath(dir, "../y/file.txt");
+        assertEquals("a:/y/file.txt", result.getPath());
+        
+        result = ModuleFileManager.resolvePath(dir, "/file.txt");
+        assertSame(ROOT, result.getParentDirectory());
+    }
+    
+    public void testResolvePathWithoutName()
+    {
+        final FileMeta dir = directory("a:/x");
+        for(final String path: new String[]{"", "/", "a:", "..", "../.."})
+        {
+            try
+            {
+                ModuleFileManager.resolvePath(dir, path);
+                fail("No exception for the path: " + path);
+            }
+            catch(final IOException ex)
+            {
+                assertTrue(ex.getMessage().contains("contains no name"));
+            }
+        }
+    }
+    
+    public void testRouteSameDirectory()
+    {
+        assertRoute("a:/x/y", "a:/x/y");
+        assertRoute("a:", "a:");
+    }
+    
+    public void testRouteToRoot()
+    {
+        assertRoute("a:/x", "a:", "..");
+        assertRoute("a:/x/y/z", "a:", "A:");
+    }
+    
+    public void testRouteToChild()
+    {
+        assertRoute("a:", "a:/x/y", "x", "y");
+        assertRoute("a:/x", "a:/x/y", "y");
+    }
+    
+    public void testRouteToParent()
+    {
+        assertRoute("a:/x/y", "a:/x", "..");
+        assertRoute("a:/x/y/z", "a:/x/y", "..");
+    }
+    
+    public void testRouteToSibling()
+    {
+        assertRoute("a:/x/y", "a:/x/z", "..", "z");
+        assertRoute("a:/x", "a:/y", "..", "y");
+    }
+    
+    /**
+     * If more <code>..</code> requests are needed than the shared directories
+     * then the route goes over the root. On a tie the route goes up.
+     */
+    public void testRouteOverRoot()
+    {
+        assertRoute("a:/x/y/z/v", "a:/x/w", "A:", "x", "w");
+        assertRoute("a:/x/y/z", "a:/x/w", "..", "..", "w");
+        assertRoute("a:/x/y", "a:/w", "A:", "w");
+    }
+    
+    public void testRouteIgnoresCase()
+    {
+        assertRoute("a:/X/y", "a:/x/Z", "..", "Z");
+    }
+    
+    public void testRouteToOtherDrive()
+    {
+        assertRoute("a:/x", "b:/y", "B:", "y");
+    }
+    
+    public void testApplySetPath()
+    {
+        final FileMeta dir = directory("a:/x");
+        assertEquals("a:/x/y", ModuleFileManager.applySetPath(dir, "y").getPath());
+        assertSame(ROOT, ModuleFileManager.applySetPath(dir, ".."));
+        assertSame(ROOT, ModuleFileManager.applySetPath(ROOT, ".."));
+        assertSame(ROOT, ModuleFileManager.applySetPath(dir, "A:"));
+        assertEquals("b:", ModuleFileManager.applySetPath(dir, "B:").getPath());
+    }
+    
+    /**
+     * Checks the route and checks that the route ends in the target directory.
+     */
+    private static void assertRoute(final String from, final String to
+            , final String... expected)
+    {
+        final FileMeta fromDir = directory(from);
+        final FileMeta toDir = directory(to);
+        final List<String> route = ModuleFileManager.getSetPathRoute(fromDir, toDir);
+        assertEquals(Arrays.asList(expected), route);
+        
+        FileMeta current = fromDir;
+        for(final String name: route)
+        {
+            current = ModuleFileManager.applySetPath(current, name);
+        }
+        assertEquals(to.toLowerCase(), current.getPath().toLowerCase());
+    }
+    
+    private static FileMeta directory(final String path)
+    {
+        return ModuleFileManager.resolveDirectory(ROOT, path);
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests the resumable upload of {@link ModuleFileManager} with a 
+ * {@link FakeObexDevice}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class ModuleFileManagerUploadTest extends TestCase
+{
+    private static final int PART_SIZE = UploadCheckpoint.MIN_PART_SIZE;
+    
+    private FakeObexDevice device;
+    private FileManager fileManager;
+    private Path file;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        device = new FakeObexDevice();
+        fileManager = ModuleFileManager.createFileManager(device, device.getAt());
+        file = Files.createTempFile("upload", ".bin");
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        fileManager.close();
+        device.close();
+        Files.deleteIfExists(file);
+    }
+    
+    public void testUpload() throws Exception
+    {
+        final byte[] data = writeFile(5000, 1);
+        final UploadCheckpoint checkpoint = new UploadCheckpoint(PART_SIZE);
+        fileManager.putFileParts(file, checkpoint);
+        
+        assertTrue(checkpoint.isComplete());
+        assertEquals(5, checkpoint.getPartCount());
+        assertTrue(Arrays.equals(data, reassemble(5)));
+        assertEquals(checkpoint.createManifest(getHash(data)), readManifest());
+        assertNull(getPart(5));
+    }
+    
+    /**
+     * A canceled upload continues with the first part they was not 
+     * acknowledged, the acknowledged parts are not sent again.
+     */
+    public void testResume() throws Exception
+    {
+        final byte[] data = writeFile(5000, 1);
+        final UploadCheckpoint checkpoint = new UploadCheckpoint(PART_SIZE);
+        device.cancelAt(fileManager, FakeObexDevice.PUT_FINAL, 3);
+        try
+        {
+            fileManager.putFileParts(file, checkpoint);
+            fail("The upload was not canceled");
+        }
+        catch(final InterruptedIOException ex)
+        {
+            // expected
+        }
+        final int completed = checkpoint.getCompletedParts();
+        assertTrue(completed > 0 && completed < 5);
+        assertNull(getManifest());
+        
+        final byte[] marker = new byte[PART_SIZE];
+        device.getRoot().addFile(UploadCheckpoint.getPartName(getFilename(), 0), marker);
+        fileManager.putFileParts(file, checkpoint);
+        
+        assertTrue(checkpoint.isComplete());
+        assertSame(marker, getPart(0).getData());
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, PART_SIZE, data.length)
+                , Arrays.copyOfRange(reassemble(5), PART_SIZE, data.length)));
+        assertNotNull(getManifest());
+    }
+    
+    /**
+     * A changed file starts again from the first part, the manifest is 
+     * deleted before the first part and the parts behind the new last part 
+     * are deleted.
+     */
+    public void testRestartDeletesStaleParts() throws Exception
+    {
+        writeFile(5000, 1);
+        final UploadCheckpoint checkpoint = new UploadCheckpoint(PART_SIZE);
+        fileManager.putFileParts(file, checkpoint);
+        assertNotNull(getPart(4));
+        
+        final byte[] data = writeFile(2500, 2);
+        device.cancelAt(fileManager, FakeObexDevice.PUT_FINAL, 2);
+        try
+        {
+            fileManager.putFileParts(file, checkpoint);
+            fail("The upload was not canceled");
+        }
+        catch(final InterruptedIOException ex)
+        {
+            // expected
+        }
+        assertNull(getManifest());
+        
+        fileManager.putFileParts(file, checkpoint);
+        assertTrue(checkpoint.isComplete());
+        assertEquals(3, checkpoint.getPartCount());
+        assertTrue(Arrays.equals(data, reassemble(3)));
+        assertNull(getPart(3));
+        assertNull(getPart(4));
+        assertEquals(checkpoint.createManifest(getHash(data)), readManifest());
+    }
+    
+    /**
+     * A complete upload sends no part again.
+     */
+    public void testCompleteUpload() throws Exception
+    {
+        writeFile(3000, 1);
+        final UploadCheckpoint checkpoint = new UploadCheckpoint(PART_SIZE);
+        fileManager.putFileParts(file, checkpoint);
+        device.awaitIdle();
+        device.resetRequests();
+        
+        fileManager.putFileParts(file, checkpoint);
+        assertEquals(0, device.getRequestCount(FakeObexDevice.PUT));
+        assertEquals(0, device.getRequestCount(FakeObexDevice.PUT_FINAL));
+    }
+    
+    private byte[] writeFile(final int size, final int seed) throws IOException
+    {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        Files.write(file, data);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(seed * 1000000000L));
+        
+        return data;
+    }
+    
+    private String getFilename()
+    {
+        return file.getFileName().toString();
+    }
+    
+    private FakeObexDevice.Node getPart(final int index)
+    {
+        return device.getRoot().getChild(UploadCheckpoint.getPartName(getFilename(), index));
+    }
+    
+    private FakeObexDevice.Node getManifest()
+    {
+        return device.getRoot().getChild(UploadCheckpoint.getManifestName(getFilename()));
+    }
+    
+    private String readManifest()
+    {
+        return new String(getManifest().getData(), Charset.forName("UTF-8"));
+    }
+    
+    private byte[] reassemble(final int partCount)
+    {
+        byte[] result = new byte[0];
+        for(int i = 0; i < partCount; i++)
+        {
+            final byte[] part = getPart(i).getData();
+            final int offset = result.length;
+            result = Arrays.copyOf(result, offset + part.length);
+            System.arraycopy(part, 0, result, offset, part.length);
+        }
+        
+        return result;
+    }
+    
+    private static String getHash(final byte[] data) throws Exception
+    {
+        final MessageDigest digest = MessageDigest.getInstance("MD5");
+        
+        return String.format("%032x", new BigInteger(1, digest.digest(data)));
+    }
+}
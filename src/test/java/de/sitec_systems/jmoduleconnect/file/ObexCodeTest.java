@@ -0,0 +1,132 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the lookup tables of {@link Obex.Code} and {@link ObexHeader.Code}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class ObexCodeTest extends TestCase
+{
+    /**
+     * Every frame code must be found by its type and id. If more codes have 
+     * the same type and id, then the first declared one must be returned.
+     */
+    public void testFrameCodeRoundTrip()
+    {
+        for(final Obex.Code code: Obex.Code.values())
+        {
+            final Obex.Code result = Obex.Code.getCode(code.getType(), code.getCode());
+            assertEquals(code.getType(), result.getType());
+            assertEquals(code.getCode(), result.getCode());
+            assertSame(code.name(), findFirstFrameCode(code.getType(), code.getCode()), result);
+        }
+    }
+    
+    /**
+     * Every value of every type must be resolved like a linear search over 
+     * the declared codes.
+     */
+    public void testFrameCodeAllValues()
+    {
+        for(final Obex.Type type: Obex.Type.values())
+        {
+            for(int i = 0; i < 256; i++)
+            {
+                final Obex.Code expected = findFirstFrameCode(type, (byte)i);
+                try
+                {
+                    assertSame(expected, Obex.Code.getCode(type, (byte)i));
+                }
+                catch (final IllegalArgumentException ex)
+                {
+                    assertNull(type + " " + i, expected);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Every header code must be found by its id.
+     */
+    public void testHeaderCodeRoundTrip()
+    {
+        for(final ObexHeader.Code code: ObexHeader.Code.values())
+        {
+            assertSame(code, ObexHeader.Code.getCode(code.getCode()));
+            assertSame(code, ObexHeader.Code.findCode(code.getCode()));
+        }
+    }
+    
+    /**
+     * Every value must be resolved like a linear search over the declared 
+     * header codes and unknown values must be rejected.
+     */
+    public void testHeaderCodeAllValues()
+    {
+        for(int i = 0; i < 256; i++)
+        {
+            ObexHeader.Code expected = null;
+            for(final ObexHeader.Code code: ObexHeader.Code.values())
+            {
+                if(code.getCode() == (byte)i)
+                {
+                    expected = code;
+                    break;
+                }
+            }
+            
+            assertSame(expected, ObexHeader.Code.findCode((byte)i));
+            try
+            {
+                assertSame(expected, ObexHeader.Code.getCode((byte)i));
+            }
+            catch (final IllegalArgumentException ex)
+            {
+                assertNull(String.valueOf(i), expected);
+            }
+        }
+    }
+    
+    private static Obex.Code findFirstFrameCode(final Obex.Type type, final byte value)
+    {
+        for(final Obex.Code code: Obex.Code.values())
+        {
+            if(code.getType() == type && code.getCode() == value)
+            {
+                return code;
+            }
+        }
+        
+        return null;
+    }
+}
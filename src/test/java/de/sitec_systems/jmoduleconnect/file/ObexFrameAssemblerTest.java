@@ -0,0 +1,289 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ObexFrameAssembler}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class ObexFrameAssemblerTest extends TestCase
+{
+    private static final byte[] FRAME_1 = {(byte)0xA0, 0x00, 0x08, (byte)0xCB
+            , 0x00, 0x00, 0x00, 0x01};
+    private static final byte[] FRAME_2 = {(byte)0x90, 0x00, 0x03};
+    private static final byte[] FRAME_3 = {(byte)0xA0, 0x00, 0x06, 0x49, 0x00
+            , 0x03};
+    
+    private ObexFrameAssembler assembler;
+
+    @Override
+    protected void setUp()
+    {
+        assembler = new ObexFrameAssembler();
+    }
+    
+    /**
+     * A complete frame is returned with one call.
+     * @throws IOException If the reading fails
+     */
+    public void testCompleteFrame() throws IOException
+    {
+        final InputStream in = new ByteArrayInputStream(FRAME_1);
+        
+        assertTrue(Arrays.equals(FRAME_1, assembler.read(in)));
+        assertEquals(0, in.available());
+    }
+    
+    /**
+     * A frame split in chunks is returned after the last chunk. The split 
+     * within the length prefix is included.
+     * @throws IOException If the reading fails
+     */
+    public void testSplitFrame() throws IOException
+    {
+        final ChunkInputStream in = new ChunkInputStream();
+        in.add(FRAME_1, 0, 1);
+        in.add(FRAME_1, 1, 1);
+        in.add(FRAME_1, 2, 2);
+        in.add(FRAME_1, 4, 4);
+        
+        assertNull(assembler.read(in));
+        assertNull(assembler.read(in));
+        assertNull(assembler.read(in));
+        assertTrue(Arrays.equals(FRAME_1, assembler.read(in)));
+    }
+    
+    /**
+     * A read without available data returns <code>null</code> and keeps the 
+     * partial frame.
+     * @throws IOException If the reading fails
+     */
+    public void testNoDataAvailable() throws IOException
+    {
+        final ChunkInputStream in = new ChunkInputStream();
+        in.add(FRAME_1, 0, 4);
+        
+        assertNull(assembler.read(in));
+        assertNull(assembler.read(in));
+        in.add(FRAME_1, 4, 4);
+        assertTrue(Arrays.equals(FRAME_1, assembler.read(in)));
+    }
+    
+    /**
+     * Several frames in one buffer are returned one by one and the data of 
+     * the next frame is not consumed.
+     * @throws IOException If the reading fails
+     */
+    public void testSeveralFramesInOneBuffer() throws IOException
+    {
+        final byte[] data = new byte[FRAME_1.length + FRAME_2.length + FRAME_3.length];
+        System.arraycopy(FRAME_1, 0, data, 0, FRAME_1.length);
+        System.arraycopy(FRAME_2, 0, data, FRAME_1.length, FRAME_2.length);
+        System.arraycopy(FRAME_3, 0, data, FRAME_1.length + FRAME_2.length
+                , FRAME_3.length);
+        final InputStream in = new ByteArrayInputStream(data);
+        
+        assertTrue(Arrays.equals(FRAME_1, assembler.read(in)));
+        assertEquals(FRAME_2.length + FRAME_3.length, in.available());
+        assertTrue(Arrays.equals(FRAME_2, assembler.read(in)));
+        assertEquals(FRAME_3.length, in.available());
+        assertTrue(Arrays.equals(FRAME_3, assembler.read(in)));
+        assertEquals(0, in.available());
+    }
+    
+    /**
+     * The arrays of complete frames are not reused.
+     * @throws IOException If the reading fails
+     */
+    public void testFrameArrayNotReused() throws IOException
+    {
+        final byte[] data = new byte[FRAME_1.length * 2];
+        System.arraycopy(FRAME_1, 0, data, 0, FRAME_1.length);
+        System.arraycopy(FRAME_1, 0, data, FRAME_1.length, FRAME_1.length);
+        final InputStream in = new ByteArrayInputStream(data);
+        
+        final byte[] first = assembler.read(in);
+        final byte[] second = assembler.read(in);
+        
+        assertNotSame(first, second);
+        assertTrue(Arrays.equals(FRAME_1, first));
+    }
+    
+    /**
+     * A length smaller than the prefix is rejected and the assembler starts 
+     * with the next frame.
+     * @throws IOException If the reading fails
+     */
+    public void testInvalidLength() throws IOException
+    {
+        final byte[][] invalidFrames = {{(byte)0xA0, 0x00, 0x00}
+                , {(byte)0xA0, 0x00, 0x02}};
+        for(final byte[] invalidFrame: invalidFrames)
+        {
+            try
+            {
+                assembler.read(new ByteArrayInputStream(invalidFrame));
+                fail("Invalid length accepted: " + invalidFrame[2]);
+            }
+            catch (final EOFException ex)
+            {
+                fail("Wrong exception: " + ex);
+            }
+            catch (final IOException ex)
+            {
+                // Expected
+            }
+            
+            assertTrue(Arrays.equals(FRAME_2
+                    , assembler.read(new ByteArrayInputStream(FRAME_2))));
+        }
+    }
+    
+    /**
+     * The maximum length of 0xFFFF is accepted.
+     * @throws IOException If the reading fails
+     */
+    public void testMaximumLength() throws IOException
+    {
+        final byte[] data = new byte[0xFFFF];
+        data[0] = (byte)0xA0;
+        data[1] = (byte)0xFF;
+        data[2] = (byte)0xFF;
+        data[data.length - 1] = 0x55;
+        
+        final byte[] result = assembler.read(new ByteArrayInputStream(data));
+        
+        assertNotNull(result);
+        assertTrue(Arrays.equals(data, result));
+    }
+    
+    /**
+     * The end of the stream within a frame is reported.
+     * @throws IOException If the reading fails
+     */
+    public void testEndOfStream() throws IOException
+    {
+        final ChunkInputStream in = new ChunkInputStream();
+        in.add(FRAME_1, 0, 2);
+        assertNull(assembler.read(in));
+        
+        in.close();
+        try
+        {
+            assembler.read(in);
+            fail("End of stream not reported");
+        }
+        catch (final EOFException ex)
+        {
+            // Expected
+        }
+    }
+    
+    /**
+     * A reset discards the partial frame.
+     * @throws IOException If the reading fails
+     */
+    public void testReset() throws IOException
+    {
+        final ChunkInputStream in = new ChunkInputStream();
+        in.add(FRAME_1, 0, 5);
+        assertNull(assembler.read(in));
+        
+        assembler.reset();
+        in.add(FRAME_2, 0, FRAME_2.length);
+        assertTrue(Arrays.equals(FRAME_2, assembler.read(in)));
+    }
+    
+    /**
+     * An {@link InputStream} which delivers the data in separate chunks like
+     * a serial interface. A read never returns more than the current chunk.
+     */
+    private static class ChunkInputStream extends InputStream
+    {
+        private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+        private int position;
+        private boolean closed;
+        
+        private void add(final byte[] data, final int offset, final int length)
+        {
+            chunks.add(Arrays.copyOfRange(data, offset, offset + length));
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final byte[] data = new byte[1];
+            final int count = read(data, 0, 1);
+            
+            return count < 0 ? -1 : data[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+        {
+            if(chunks.isEmpty())
+            {
+                return closed ? -1 : 0;
+            }
+            
+            final byte[] chunk = chunks.getFirst();
+            final int count = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+            if(position == chunk.length)
+            {
+                chunks.removeFirst();
+                position = 0;
+            }
+            
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return chunks.isEmpty() ? 0 : chunks.getFirst().length - position;
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+}
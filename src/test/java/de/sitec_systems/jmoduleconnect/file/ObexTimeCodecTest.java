@@ -0,0 +1,254 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ObexTimeCodec} against {@link SimpleDateFormat} and 
+ * {@link Calendar}. The references use the proleptic gregorian calendar like
+ * the OBEX time, so the years before 1582 can be compared too. The local time
+ * is the default {@link TimeZone} of the JVM.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class ObexTimeCodecTest extends TestCase
+{
+    private static final String PATTERN = "yyyyMMdd'T'HHmmss";
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final String[] TIMES = {"19700101T000000", "19691231T235959"
+            , "20000229T120000", "19000228T235959", "19000301T000000"
+            , "21000228T235959", "21000301T000000", "20160229T010203"
+            , "19991231T235959", "20000101T000000", "16000229T000000"
+            , "00010101T000000", "99991231T235959", "20150329T013000"
+            , "20150329T033000", "20151025T013000", "20151025T033000"
+            , "20150615T083015", "20151215T083015"};
+    
+    private SimpleDateFormat localFormat;
+    private SimpleDateFormat utcFormat;
+
+    @Override
+    protected void setUp()
+    {
+        localFormat = createFormat(TimeZone.getDefault());
+        utcFormat = createFormat(TimeZone.getTimeZone("UTC"));
+    }
+    
+    /**
+     * The local times are decoded like {@link SimpleDateFormat}, also at 
+     * leap years and century boundaries.
+     * @throws ParseException If the parsing fails
+     */
+    public void testParseLocal() throws ParseException
+    {
+        for(final String time: TIMES)
+        {
+            assertEquals(time, localFormat.parse(time), ObexTimeCodec.parse(time));
+            
+            final byte[] data = time.getBytes(ASCII);
+            assertEquals(time, localFormat.parse(time)
+                    , ObexTimeCodec.parse(data, 0, data.length));
+        }
+    }
+    
+    /**
+     * The times with <code>Z</code> are decoded as UTC.
+     * @throws ParseException If the parsing fails
+     */
+    public void testParseUtc() throws ParseException
+    {
+        for(final String time: TIMES)
+        {
+            assertEquals(time, utcFormat.parse(time), ObexTimeCodec.parse(time + 'Z'));
+            
+            final byte[] data = (time + 'Z').getBytes(ASCII);
+            assertEquals(time, utcFormat.parse(time)
+                    , ObexTimeCodec.parse(data, 0, data.length));
+        }
+    }
+    
+    /**
+     * A time within a larger <code>byte[]</code> is decoded from the offset.
+     * @throws ParseException If the parsing fails
+     */
+    public void testParseWithOffset() throws ParseException
+    {
+        final byte[] data = "xx20160229T010203Zxx".getBytes(ASCII);
+        
+        assertEquals(utcFormat.parse("20160229T010203")
+                , ObexTimeCodec.parse(data, 2, 16));
+        assertEquals(localFormat.parse("20160229T010203")
+                , ObexTimeCodec.parse(data, 2, 15));
+    }
+    
+    /**
+     * The encoding produces the same text as {@link SimpleDateFormat}.
+     */
+    public void testFormat()
+    {
+        final Calendar calendar = createCalendar(TimeZone.getDefault());
+        calendar.clear();
+        calendar.set(2000, Calendar.FEBRUARY, 29, 23, 59, 59);
+        assertEquals("20000229T235959", format(calendar.getTime()));
+        calendar.set(1900, Calendar.MARCH, 1, 0, 0, 0);
+        assertEquals("19000301T000000", format(calendar.getTime()));
+        calendar.set(2100, Calendar.FEBRUARY, 28, 12, 0, 0);
+        assertEquals("21000228T120000", format(calendar.getTime()));
+        
+        final Random random = new Random(4711);
+        final long min = createTime(1, 1, 1);
+        final long max = createTime(10000, 1, 1) - 1000L;
+        for(int i = 0; i < 10000; i++)
+        {
+            final Date date = new Date(min + (long)(random.nextDouble() * (max - min)));
+            assertEquals(String.valueOf(date.getTime()), localFormat.format(date)
+                    , format(date));
+        }
+    }
+    
+    /**
+     * The milliseconds are truncated and the decoded time is the encoded time.
+     * @throws ParseException If the parsing fails
+     */
+    public void testRoundTrip() throws ParseException
+    {
+        final Random random = new Random(42);
+        final long min = createTime(1900, 1, 1);
+        final long max = createTime(2100, 1, 1);
+        for(int i = 0; i < 10000; i++)
+        {
+            final long millis = min + (long)(random.nextDouble() * (max - min));
+            final Date date = new Date(millis - (millis % 1000L + 1000L) % 1000L);
+            final String text = format(new Date(date.getTime() + 999L));
+            
+            assertEquals(text, localFormat.parse(text), ObexTimeCodec.parse(text));
+            assertEquals(text, localFormat.format(date), text);
+        }
+    }
+    
+    /**
+     * Times with a year out of the range of four digits are rejected.
+     */
+    public void testFormatInvalidYear()
+    {
+        final Date[] dates = {new Date(createTime(10000, 1, 2))
+                , new Date(createTime(1, 1, 1) - 367L * 86400000L)};
+        for(final Date date: dates)
+        {
+            try
+            {
+                format(date);
+                fail("Accepted: " + date.getTime());
+            }
+            catch (final IllegalArgumentException ex)
+            {
+                // Expected
+            }
+        }
+    }
+    
+    /**
+     * Invalid times are rejected as text and as bytes.
+     */
+    public void testParseInvalid()
+    {
+        final String[] invalidTimes = {"", "2015", "20150615T08301", "20150615 083015"
+                , "2015061xT083015", "20150615T08301x", "-0150615T083015"
+                , "20151315T083015", "20150015T083015", "20150600T083015"
+                , "20150632T083015", "20150615T243015", "20150615T086015"
+                , "20150615T083060", "2015-06-15T08:30:15"};
+        for(final String time: invalidTimes)
+        {
+            try
+            {
+                ObexTimeCodec.parse(time);
+                fail("Accepted: " + time);
+            }
+            catch (final ParseException ex)
+            {
+                // Expected
+            }
+            
+            final byte[] data = time.getBytes(ASCII);
+            try
+            {
+                ObexTimeCodec.parse(data, 0, data.length);
+                fail("Accepted as bytes: " + time);
+            }
+            catch (final ParseException ex)
+            {
+                // Expected
+            }
+        }
+    }
+    
+    private static String format(final Date date)
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(ObexTimeCodec.LENGTH);
+        ObexTimeCodec.format(date, buffer);
+        assertFalse(buffer.hasRemaining());
+        
+        return new String(buffer.array(), ASCII);
+    }
+    
+    private static long createTime(final int year, final int month, final int day)
+    {
+        final Calendar calendar = createCalendar(TimeZone.getDefault());
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        
+        return calendar.getTimeInMillis();
+    }
+    
+    private static Calendar createCalendar(final TimeZone timeZone)
+    {
+        final GregorianCalendar calendar = new GregorianCalendar(timeZone);
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+        
+        return calendar;
+    }
+    
+    private static SimpleDateFormat createFormat(final TimeZone timeZone)
+    {
+        final SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+        format.setCalendar(createCalendar(timeZone));
+        format.setLenient(false);
+        
+        return format;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * jModuleConnect is an framework for communication and file management on modem 
+ * modules.
+ * 
+ * This project was inspired by the project TC65SH 
+ * by Christoph Vilsmeier: <http://www.vilsmeier-consulting.de/tc65sh.html>
+ * 
+ * Copyright (C) 2015 sitec systems GmbH <http://www.sitec-systems.de>
+ * 
+ * This file is part of jModuleConnect.
+ * 
+ * jModuleConnect is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your option) 
+ * any later version.
+ * 
+ * jModuleConnect is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS 
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more 
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with jModuleConnect. If not, see <http://www.gnu.org/licenses/>.
+ */
+/*
+ * Author: Mattes Standfuss
+ * Copyright (c): sitec systems GmbH, 2015
+ */
+package de.sitec_systems.jmoduleconnect.file;
+
+import java.util.Date;
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link UploadCheckpoint}.
+ * @author sitec systems GmbH
+ * @since 1.6
+ */
+public class UploadCheckpointTest extends TestCase
+{
+    public void testDefaultPartSize()
+    {
+        assertEquals(UploadCheckpoint.DEFAULT_PART_SIZE, new UploadCheckpoint().getPartSize());
+    }
+    
+    public void testPartSizeBounds()
+    {
+        new UploadCheckpoint(UploadCheckpoint.MIN_PART_SIZE);
+        new UploadCheckpoint(UploadCheckpoint.MAX_PART_SIZE);
+        for(final int partSize: new int[]{0, UploadCheckpoint.MIN_PART_SIZE - 1
+                , UploadCheckpoint.MAX_PART_SIZE + 1})
+        {
+            try
+            {
+                new UploadCheckpoint(partSize);
+                fail("No exception for the part size: " + partSize);
+            }
+            catch(final IllegalArgumentException ex)
+            {
+                // expected
+            }
+        }
+    }
+    
+    public void testPartCount()
+    {
+        final UploadCheckpoint checkpoint = new UploadCheckpoint(1024);
+        checkpoint.start("a", 0, new Date(0));
+        assertEquals(1, checkpoint.getPartCount());
+        checkpoint.start("a", 1024, new Date(0));
+        assertEquals(1, checkpoint.getPartCount());
+        checkpoint.start("a", 1025, new Date(0));
+        assertEquals(2, checkpoint.getPartCount());
+    }
+    
+    public void testStartResetsCompletedParts()
+    {
+        final UploadCheckpoint checkpoint = new UploadCheckpoint("a", 3000
+                , new Date(0), 1024, 2);
+        assertTrue(checkpoint.matches("a", 3000, new Date(0)));
+        assertFalse(checkpoint.matches("a", 3001, new Date(0)));
+        assertFalse(checkpoint.matches("a", 3000, new Date(1000)));
+        assertEquals(2048, checkpoint.getAcknowledgedBytes());
+        
+        checkpoint.start("a", 3001, new Date(0));
+        assertEquals(0, checkpoint.getCompletedParts());
+        assertFalse(checkpoint.isComplete());
+        checkpoint.setCompletedParts(3);
+        assertTrue(checkpoint.isComplete());
+        assertEquals(3001, checkpoint.getAcknowledgedBytes());
+    }
+    
+    public void testNames()
+    {
+        assertEquals("app.jar.000", UploadCheckpoint.getPartName("app.jar", 0));
+        assertEquals("app.jar.012", UploadCheckpoint.getPartName("app.jar", 12));
+        assertEquals("app.jar.1000", UploadCheckpoint.getPartName("app.jar", 1000));
+        assertEquals("app.jar.parts", UploadCheckpoint.getManifestName("app.jar"));
+    }
+    
+    public void testManifest()
+    {
+        final UploadCheckpoint checkpoint = new UploadCheckpoint("app.jar", 2500
+                , new Date(0), 1024, 0);
+        assertEquals("app.jar\t2500\tabc\n"
+                + "app.jar.000\t1024\n"
+                + "app.jar.001\t1024\n"
+                + "app.jar.002\t452\n", checkpoint.createManifest("abc"));
+    }
+}